@@ -0,0 +1,116 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IAgendaEvent;
+import interfaces.IEvent;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** The events of several calendars merged into one lazy iterator, sorted by start date.
+ * <p>
+ * Each calendar is read with its own lazy iterator, so the agenda works on the versions of the calendars
+ * at the time it was created, just like the iterators of a single calendar. A priority queue holds the next event
+ * of every calendar; each step takes the smallest of them and advances only that calendar, so listing
+ * {@code n} events of {@code k} calendars looks at {@code n + k} events and costs {@code O((n + k) log k)}, however large the calendars are.
+ * Events with the same start date keep their creation order across the calendars.
+ * </p>
+ */
+class Agenda implements Iterator<IAgendaEvent>
+{
+	/** The next event of one calendar and the iterator behind it. */
+	private static class Cursor
+	{
+		private final String calendarName;
+		private final Iterator<IEvent> events;
+		private Event next;
+
+		Cursor(String calendarName, Iterator<IEvent> events)
+		{
+			this.calendarName = calendarName;
+			this.events = events;
+		}
+
+		/** Moves to the next event of the calendar.
+		 * @return {@code false} if the calendar has no more events.
+		 */
+		boolean advance()
+		{
+			if (this.events.hasNext())
+			{
+				this.next = (Event) this.events.next();
+				return true;
+			}
+			this.next = null;
+			return false;
+		}
+	}
+
+	private static final Comparator<Cursor> ORDER = new Comparator<Cursor>()
+	{
+		@Override
+		public int compare(Cursor cursor1, Cursor cursor2)
+		{
+			return cursor1.next.compareTo(cursor2.next);
+		}
+	};
+
+	private final PriorityQueue<Cursor> cursors;
+
+	/**
+	 * @param calendars The calendars to merge.
+	 * @param from The first event to list, see {@link Event#searchKey(java.util.Date)}.
+	 * @param until The end of the events to list, not included, {@code null} for no end.
+	 */
+	Agenda(List<Calendar> calendars, Event from, Event until)
+	{
+		this.cursors = new PriorityQueue<Cursor>(Math.max(1, calendars.size()), ORDER);
+		for (Calendar calendar : calendars)
+		{
+			Cursor cursor = new Cursor(calendar.getName(), calendar.getEvents().iterator(from, until, false));
+			if (cursor.advance())
+			{
+				this.cursors.add(cursor);
+			}
+		}
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return !this.cursors.isEmpty();
+	}
+
+	@Override
+	public IAgendaEvent next()
+	{
+		Cursor cursor = this.cursors.poll();
+		if (cursor == null)
+		{
+			throw new NoSuchElementException();
+		}
+		AgendaEvent agendaEvent = new AgendaEvent(cursor.next, cursor.calendarName);
+		if (cursor.advance())
+		{
+			this.cursors.add(cursor);
+		}
+		return agendaEvent;
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+}
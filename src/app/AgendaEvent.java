@@ -0,0 +1,71 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IAgendaEvent;
+
+import java.util.Date;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** An event of an agenda together with the name of its calendar.
+ * The event itself is not copied, it is immutable like every {@link Event}.
+ */
+public class AgendaEvent implements IAgendaEvent
+{
+	private final Event event;
+	private final String calendarName;
+
+	AgendaEvent(Event event, String calendarName)
+	{
+		this.event = event;
+		this.calendarName = calendarName;
+	}
+
+	@Override
+	public String getCalendarName()
+	{
+		return this.calendarName;
+	}
+
+	@Override
+	public String getEventName()
+	{
+		return this.event.getEventName();
+	}
+
+	@Override
+	public Date getStartDate()
+	{
+		return this.event.getStartDate();
+	}
+
+	@Override
+	public Date getEndDate()
+	{
+		return this.event.getEndDate();
+	}
+
+	@Override
+	public boolean isPrivate()
+	{
+		return this.event.isPrivate();
+	}
+
+	@Override
+	public boolean isPublic()
+	{
+		return this.event.isPublic();
+	}
+
+	/** The event of the calendar. */
+	Event getEvent()
+	{
+		return this.event;
+	}
+}
@@ -4,14 +4,28 @@
 package app;
 
 import interfaces.IApp;
+import interfaces.ICacheStatistics;
+import interfaces.ICalendarChanges;
+import interfaces.IConditionalResult;
 import interfaces.IEvent;
+import interfaces.IEventPage;
+import interfaces.IPublicEventListener;
+import interfaces.ISubscription;
+import interfaces.ITimelineEvent;
 import interfaces.IUser;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.locks.ReentrantLock;
 
 import app.AppExceptions.*;
+import app.Journal.SyncPolicy;
 
 /**
  * @author Lukas Keller
@@ -23,11 +37,140 @@ public class App implements IApp
 {
 	private Authentication auth;
 
+	/** Journal of all changes, {@code null} if the app only keeps its state in memory. */
+	private Journal journal;
+
+	/** Snapshot of the state up to the current journal generation, next to the journal file. */
+	private File snapshotFile;
+
+	/** Writes a checkpoint every {@value #CHECKPOINT_INTERVAL} ms if there are changes, {@code null} without journal. */
+	private Timer checkpointTimer;
+	static final long CHECKPOINT_INTERVAL = 10 * 60 * 1000;
+
+	/** Default of {@link #setPasswordHashIterations(int)}. */
+	public static final int DEFAULT_PASSWORD_HASH_ITERATIONS = PasswordHash.DEFAULT_ITERATIONS;
+
+	/** Held while a checkpoint is taken, so that there is only one at a time. */
+	private final ReentrantLock checkpointLock = new ReentrantLock();
+
+	/** First failure of a periodic checkpoint, reported by {@link #close()}. */
+	private volatile IOException checkpointFailure;
+
+	/** Creates an app which only keeps its state in memory. */
 	public App()
 	{
 		this.auth = new Authentication();
 	}
 
+	/** Creates an app which appends all its changes to a {@link Journal}. The state is loaded from the last
+	 * {@link Snapshot} first, if there is one, then the changes journaled since are replayed, so the app starts
+	 * with the state it had when it was closed or crashed. A checkpoint is written every {@value #CHECKPOINT_INTERVAL} ms
+	 * if there have been changes, so that the journal to replay stays short.
+	 * @param journalFile File of the journal, created if it does not exist. The snapshot is kept in the same directory,
+	 * with the suffix {@code .snapshot}.
+	 * @param policy When the changes are forced to the disk.
+	 * @throws IOException If the snapshot or the journal cannot be read, or do not lead to a valid state.
+	 */
+	public App(File journalFile, SyncPolicy policy) throws IOException
+	{
+		this.auth = new Authentication();
+		this.snapshotFile = new File(journalFile.getPath() + ".snapshot");
+		long generation = 0;
+		if (this.snapshotFile.exists())
+		{
+			generation = Snapshot.load(this.snapshotFile, this.auth);
+		}
+		this.journal = Journal.open(journalFile, policy, this.auth, generation);
+		this.auth.setJournal(this.journal);
+
+		this.checkpointTimer = new Timer("Checkpoint " + journalFile.getName(), true);
+		this.checkpointTimer.schedule(new TimerTask()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					if (App.this.journal.hasChanges())
+					{
+						App.this.checkpoint();
+					}
+				}
+				catch (IOException e)
+				{
+					App.this.checkpointFailure = e;
+					this.cancel();
+				}
+			}
+		}, CHECKPOINT_INTERVAL, CHECKPOINT_INTERVAL);
+	}
+
+	/** Writes a snapshot of the whole state and deletes the journal it replaces, so that the next start only has to load
+	 * the snapshot and the changes made since. The changes are only stopped while the image of the state is taken
+	 * and the journal starts its next generation; the image is written while they go on.
+	 * @throws IllegalStateException If the app has no journal.
+	 * @throws IOException If the snapshot or the journal cannot be written. The journal cannot be used any more if it failed;
+	 * a failed snapshot leaves the previous one and the journal since, which are replayed on the next start.
+	 */
+	public void checkpoint() throws IOException
+	{
+		if (this.journal == null)
+		{
+			throw new IllegalStateException("The app has no journal!");
+		}
+		this.checkpointLock.lock();
+		try
+		{
+			Snapshot.Image image;
+			long generation;
+			List<User> users = this.auth.stopChanges();
+			try
+			{
+				image = Snapshot.capture(this.auth, users);
+				generation = this.journal.rotate();
+			}
+			finally
+			{
+				this.auth.resumeChanges(users);
+			}
+			// the snapshot is moved into place once it is complete, so a crash leaves the old snapshot and the journal
+			Snapshot.write(this.snapshotFile, image, generation);
+			this.journal.deleteSegments(generation);
+		}
+		finally
+		{
+			this.checkpointLock.unlock();
+		}
+	}
+
+	/** Sets the PBKDF2 iterations of the password hashes created from now on by all apps, {@value #DEFAULT_PASSWORD_HASH_ITERATIONS} by default.
+	 * Hashes keep the iterations they were created with. Fewer iterations make leaked hashes cheaper to guess,
+	 * so this is only lowered by tests and benchmarks which create many users.
+	 * @throws IllegalArgumentException If {@code iterations} is less than 1.
+	 */
+	@OnlyForTesting
+	public static void setPasswordHashIterations(int iterations)
+	{
+		PasswordHash.setIterations(iterations);
+	}
+
+	/** Forces all changes to the disk and closes the journal. Changes made afterwards fail.
+	 * Does nothing if the app has no journal.
+	 * @throws IOException If the journal cannot be written, or a periodic checkpoint has failed.
+	 */
+	public void close() throws IOException
+	{
+		if (this.journal != null)
+		{
+			this.checkpointTimer.cancel();
+			this.journal.close();
+			if (this.checkpointFailure != null)
+			{
+				throw this.checkpointFailure;
+			}
+		}
+	}
+
 	@Override
 	public void createUser(String username, String password) throws UsernameAlreadyExistException
 	{
@@ -47,12 +190,73 @@ public class App implements IApp
 	}
 
 	@Override
-	public ArrayList<String> getAllCalendarsNamesFromUser(String username) throws UnknownUserException
+	public List<String> getAllCalendarsNamesFromUser(String username) throws UnknownUserException
 	{
 		User user = this.auth.getUser(username);
 		return user.getAllMyCalendarNames();
 	}
 
+	@Override
+	public long getUsersPublicVersion(String username) throws UnknownUserException
+	{
+		return this.auth.getUser(username).getPublicVersion();
+	}
+
+	@Override
+	public long getUsersCalendarPublicVersion(String username, String calendarName) throws UnknownUserException, UnknownCalendarException
+	{
+		return this.auth.getUser(username).getCalendar(calendarName).getPublicVersion();
+	}
+
+	@Override
+	public IConditionalResult<List<String>> getAllCalendarsNamesFromUserIfModified(String username, long knownVersion) throws UnknownUserException
+	{
+		User user = this.auth.getUser(username);
+		// the version is read first, so that a change made meanwhile is found by the next read
+		long version = user.getPublicVersion();
+		if (version == knownVersion)
+		{
+			return ConditionalResult.notModified();
+		}
+		return ConditionalResult.modified(user.getAllMyCalendarNames(), version);
+	}
+
+	@Override
+	public IConditionalResult<ArrayList<IEvent>> getUsersCalendarPublicEventsOverviewIfModified(String username, String calendarName, Date date, long knownVersion) throws UnknownUserException, UnknownCalendarException
+	{
+		Calendar calendar = this.auth.getUser(username).getCalendar(calendarName);
+		long version = calendar.getPublicVersion();
+		if (version == knownVersion)
+		{
+			return ConditionalResult.notModified();
+		}
+		return ConditionalResult.modified(calendar.getAllPublicEventsAtDate(date), version);
+	}
+
+	@Override
+	public IConditionalResult<ArrayList<IEvent>> getUsersCalendarPublicEventsOverviewIfModified(String username, String calendarName, Date from, Date to, long knownVersion) throws UnknownUserException, UnknownCalendarException
+	{
+		Calendar calendar = this.auth.getUser(username).getCalendar(calendarName);
+		long version = calendar.getPublicVersion();
+		if (version == knownVersion)
+		{
+			return ConditionalResult.notModified();
+		}
+		return ConditionalResult.modified(calendar.getAllPublicEventsDuring(from, to), version);
+	}
+
+	@Override
+	public IConditionalResult<ArrayList<IEvent>> getUsersCalendarPublicEventsStartingBetweenIfModified(String username, String calendarName, Date from, Date to, int limit, long knownVersion) throws UnknownUserException, UnknownCalendarException
+	{
+		Calendar calendar = this.auth.getUser(username).getCalendar(calendarName);
+		long version = calendar.getPublicVersion();
+		if (version == knownVersion)
+		{
+			return ConditionalResult.notModified();
+		}
+		return ConditionalResult.modified(calendar.getAllPublicEventsStartingBetween(from, to, limit), version);
+	}
+
 	@Override
 	public ArrayList<IEvent> getUsersCalendarPublicEventsOverview(String username, String calendarName, Date date) throws UnknownUserException, UnknownCalendarException, AccessDeniedException
 	{
@@ -60,6 +264,13 @@ public class App implements IApp
 		return user.getMyCalendarPublicEventsAtDate(calendarName, date);
 	}
 
+	@Override
+	public ArrayList<IEvent> getUsersCalendarPublicEventsOverview(String username, String calendarName, Date from, Date to) throws UnknownUserException, UnknownCalendarException, AccessDeniedException
+	{
+		User user = this.auth.getUser(username);
+		return user.getMyCalendarPublicEventsDuring(calendarName, from, to);
+	}
+
 	@Override
 	public Iterator<IEvent> getUsersCalendarPublicEvents(String username, String calendarName, Date startDate) throws UnknownUserException, UnknownCalendarException, AccessDeniedException
 	{
@@ -67,6 +278,60 @@ public class App implements IApp
 		return user.getMyCalendarPublicEventsStartingFrom(calendarName, startDate);
 	}
 
+	@Override
+	public ArrayList<IEvent> getUsersCalendarPublicEventsStartingBetween(String username, String calendarName, Date from, Date to, int limit) throws UnknownUserException, UnknownCalendarException
+	{
+		User user = this.auth.getUser(username);
+		return user.getMyCalendarPublicEventsStartingBetween(calendarName, from, to, limit);
+	}
+
+	@Override
+	public IEventPage getUsersCalendarPublicEventsPage(String username, String calendarName, Date startDate, String cursor, int pageSize) throws UnknownUserException, UnknownCalendarException, InvalidCursorException
+	{
+		User user = this.auth.getUser(username);
+		return user.getMyCalendarPublicEventsPage(calendarName, startDate, cursor, pageSize);
+	}
+
+	@Override
+	public ICalendarChanges getUsersCalendarPublicChangesSince(String username, String calendarName, String syncToken) throws UnknownUserException, UnknownCalendarException, InvalidCursorException
+	{
+		User user = this.auth.getUser(username);
+		return user.getCalendar(calendarName).getPublicChangesSince(syncToken);
+	}
+
+	@Override
+	public ArrayList<ITimelineEvent> getAllUsersPublicEventsStartingFrom(Date startDate, int limit)
+	{
+		return this.auth.getTimeline().getEventsStartingFrom(startDate, limit);
+	}
+
+	@Override
+	public ISubscription subscribeToPublicEvents(String username, String calendarName, IPublicEventListener listener, int bufferSize) throws UnknownUserException, UnknownCalendarException
+	{
+		User user = this.auth.getUser(username);
+		if (calendarName != null)
+		{
+			user.getCalendar(calendarName);
+		}
+		return this.auth.getChangeFeed().subscribe(user, calendarName, listener, bufferSize);
+	}
+
+	@Override
+	public ICacheStatistics getOverviewCacheStatistics()
+	{
+		return this.auth.getOverviewCache().getStatistics();
+	}
+
+	@Override
+	public void setOverviewCacheCapacity(int entries)
+	{
+		if (entries < 0)
+		{
+			throw new IllegalArgumentException("The capacity must not be negative!");
+		}
+		this.auth.getOverviewCache().setCapacity(entries);
+	}
+
 	@Override
 	public IUser loginUser(String username, String password) throws UnknownUserException, AccessDeniedException
 	{
@@ -4,6 +4,7 @@
 package app;
 
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author Lukas Keller
@@ -90,4 +91,43 @@ public class AppExceptions
 			super(String.format("The start date \"%tc\" cannot begin after end date \"%tc\"!", startDate, endDate));
 		}
 	}
+
+	public static class InvalidDatesException extends Exception
+	{
+		private final List<Integer> positions;
+		private final List<InvalidDateException> invalidDates;
+
+		/**
+		 * If events of a batch end before they start. None of the events of the batch has been created.
+		 * @param positions Positions of the invalid events in the batch.
+		 * @param invalidDates The error of each of them.
+		 */
+		public InvalidDatesException(List<Integer> positions, List<InvalidDateException> invalidDates)
+		{
+			super(String.format("%d events of the batch cannot begin after they end! The first one at position %d: %s", positions.size(), positions.get(0), invalidDates.get(0).getMessage()));
+			this.positions = positions;
+			this.invalidDates = invalidDates;
+		}
+
+		public List<Integer> getPositions()
+		{
+			return this.positions;
+		}
+
+		public List<InvalidDateException> getInvalidDates()
+		{
+			return this.invalidDates;
+		}
+	}
+
+	public static class InvalidCursorException extends Exception
+	{
+		/**
+		 * If {@code cursor} was not handed out by a paginated query.
+		 */
+		public InvalidCursorException(String cursor)
+		{
+			super(String.format("The cursor \"%s\" is not valid!", cursor));
+		}
+	}
 }
@@ -0,0 +1,119 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Columns in parallel arrays on the heap. An event costs about 36 bytes. */
+class ArrayEventColumns extends EventColumns
+{
+	private final long[] startTimes;
+	private final long[] endTimes;
+	private final long[] sequences;
+	private final int[] nameIds;
+	private final long[] publicRows;
+	private final long[] prefixMaxEnds;
+	private final long[] blockMaxEnds;
+
+	/** Provides empty columns with a new name dictionary. */
+	ArrayEventColumns()
+	{
+		this(new NameDictionary(), 0);
+	}
+
+	private ArrayEventColumns(NameDictionary names, int size)
+	{
+		super(names, size);
+		this.startTimes = new long[size];
+		this.endTimes = new long[size];
+		this.sequences = new long[size];
+		this.nameIds = new int[size];
+		this.publicRows = new long[(size + 63) >>> 6];
+		this.prefixMaxEnds = new long[size];
+		this.blockMaxEnds = new long[(size + (1 << BLOCK_BITS) - 1) >>> BLOCK_BITS];
+	}
+
+	@Override
+	EventColumns create(int size)
+	{
+		return new ArrayEventColumns(new NameDictionary(), size);
+	}
+
+	@Override
+	int maxPendingChanges()
+	{
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	long startTime(int row)
+	{
+		return this.startTimes[row];
+	}
+
+	@Override
+	long endTime(int row)
+	{
+		return this.endTimes[row];
+	}
+
+	@Override
+	long sequence(int row)
+	{
+		return this.sequences[row];
+	}
+
+	@Override
+	int nameId(int row)
+	{
+		return this.nameIds[row];
+	}
+
+	@Override
+	long prefixMaxEnd(int row)
+	{
+		return this.prefixMaxEnds[row];
+	}
+
+	@Override
+	long blockMaxEnd(int block)
+	{
+		return this.blockMaxEnds[block];
+	}
+
+	@Override
+	protected long publicWord(int word)
+	{
+		return this.publicRows[word];
+	}
+
+	@Override
+	protected void setRow(int row, long startTime, long endTime, long sequence, int nameId, boolean isPublic)
+	{
+		this.startTimes[row] = startTime;
+		this.endTimes[row] = endTime;
+		this.sequences[row] = sequence;
+		this.nameIds[row] = nameId;
+		if (isPublic)
+		{
+			this.publicRows[row >>> 6] |= 1L << row;
+		}
+	}
+
+	@Override
+	protected void setPrefixMaxEnd(int row, long maxEnd)
+	{
+		this.prefixMaxEnds[row] = maxEnd;
+	}
+
+	@Override
+	protected void setBlockMaxEnd(int block, long maxEnd)
+	{
+		this.blockMaxEnds[block] = maxEnd;
+	}
+}
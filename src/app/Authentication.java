@@ -4,7 +4,9 @@
 package app;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import app.AppExceptions.*;
 
@@ -14,63 +16,177 @@ import app.AppExceptions.*;
  *
  */
 
-/** Handles the user database with the corresponding passwords and functions to alter or
+/** Handles the user database with the corresponding password hashes and functions to alter or
  * access the {@link User} objects used for read-write access to calendars and events.
+ * The database can be used by several threads at once.
+ * <p>
+ * Changes of an entry hold its monitor, and the creation and deletion of a user the lock of the {@link User} as well,
+ * so that the changes reach the {@link Journal} in the order they are made.
+ * Only a {@link PasswordHash} of a password is kept and journaled, never the password itself.
+ * All of them hold the {@link #databaseLock} for reading, which lets {@link #stopChanges()} stop them for a checkpoint.
+ * </p>
  */
 public class Authentication
 {
-	private ArrayList<Tuple> userDatabase;
+	/** Keyed by user name, so lookups, inserts and deletes do not depend on the number of users. */
+	private ConcurrentHashMap<String, Tuple> userDatabase;
+
+	/** Journal of the changes, {@code null} if they are not journaled. */
+	private Journal journal;
+
+	/** Delivers the changes of the public events to the subscribers. */
+	private final ChangeFeed feed = new ChangeFeed();
+
+	/** The public events of all users in the database. */
+	private final PublicTimeline timeline = new PublicTimeline(this.feed);
+
+	/** The recent day overviews of the calendars of all users in the database. */
+	private final DayOverviewCache overviewCache = new DayOverviewCache();
+
+	/** Held for reading by the changes of the database, and for writing by {@link #stopChanges()}. */
+	private final ReentrantReadWriteLock databaseLock = new ReentrantReadWriteLock();
 
 	public Authentication()
 	{
-		this.userDatabase = new ArrayList<Tuple>();
+		this.userDatabase = new ConcurrentHashMap<String, Tuple>();
 	}
 
 	private class Tuple
 	{
 		private User user;
-		private String password;
-		public Tuple(User user, String password)
+		private volatile PasswordHash passwordHash;
+
+		/** Set once the entry has been removed from the database. Guarded by the monitor of the entry. */
+		private boolean removed;
+		public Tuple(User user, PasswordHash passwordHash)
 		{
 			this.user = user;
-			this.password = password;
-		}
-		public String getUsername()
-		{
-			return this.user.getName();
+			this.passwordHash = passwordHash;
 		}
 		public User getUser()
 		{
 			return this.user;
 		}
-		public String getPassword()
+		public PasswordHash getPasswordHash()
 		{
-			return this.password;
+			return this.passwordHash;
 		}
-		public void setPassword(String newPassword)
+		public void setPasswordHash(PasswordHash newPasswordHash)
 		{
-			this.password = newPassword;
+			this.passwordHash = newPasswordHash;
 		}
 	}
 
+	/** Journals all changes from now on, including those of the users already in the database. */
+	void setJournal(Journal journal)
+	{
+		this.journal = journal;
+		for (Tuple t : this.userDatabase.values())
+		{
+			t.getUser().setJournal(journal);
+		}
+	}
+
+	/** The public events of all users in the database. */
+	PublicTimeline getTimeline()
+	{
+		return this.timeline;
+	}
+
+	/** Delivers the changes of the public events to the subscribers. */
+	ChangeFeed getChangeFeed()
+	{
+		return this.feed;
+	}
+
+	/** The recent day overviews of the calendars of all users in the database. */
+	DayOverviewCache getOverviewCache()
+	{
+		return this.overviewCache;
+	}
+
 	public User createNewUser(String username, String password) throws UsernameAlreadyExistException
 	{
-		isUsernameUnused(username);
+		return this.createNewUser(username, PasswordHash.create(password));
+	}
 
-		User newUser = new User(username);
-		this.userDatabase.add(new Tuple(newUser, password));
-		return newUser;
+	/** Adds a user whose password is only known by its hash, when the database is restored from a {@link Snapshot} or the {@link Journal}.
+	 * @param passwordHash Text form of the {@link PasswordHash}.
+	 */
+	User restoreUser(String username, String passwordHash) throws UsernameAlreadyExistException
+	{
+		return this.createNewUser(username, PasswordHash.parse(passwordHash));
 	}
 
-	private void isUsernameUnused(String username) throws UsernameAlreadyExistException
+	private User createNewUser(String username, PasswordHash passwordHash) throws UsernameAlreadyExistException
 	{
-		for (Tuple t : userDatabase)
+		User newUser = new User(username);
+		Tuple newTuple = new Tuple(newUser, passwordHash);
+		Journal journal = this.journal;
+		long position = 0;
+		this.databaseLock.readLock().lock();
+		try
 		{
-			if (t.getUsername().equals(username))
+			// the user is visible once added, but cannot be changed before its creation is journaled
+			synchronized (newTuple)
 			{
-				throw new UsernameAlreadyExistException(username);
+				newUser.getLock().lock();
+				try
+				{
+					newUser.setJournal(journal);
+					newUser.setTimeline(this.timeline);
+					newUser.setOverviewCache(this.overviewCache);
+					if (this.userDatabase.putIfAbsent(username, newTuple) != null)
+					{
+						throw new UsernameAlreadyExistException(username);
+					}
+					if (journal != null)
+					{
+						position = journal.logCreateUser(username, passwordHash.toString());
+					}
+				}
+				finally
+				{
+					newUser.getLock().unlock();
+				}
 			}
 		}
+		finally
+		{
+			this.databaseLock.readLock().unlock();
+		}
+		if (journal != null)
+		{
+			journal.commit(position);
+		}
+		return newUser;
+	}
+
+	/** Looks up the entry of {@code username} in the database.
+	 * @throws UnknownUserException If {@code username} is not in the database.
+	 */
+	private Tuple getTuple(String username) throws UnknownUserException
+	{
+		Tuple t = this.userDatabase.get(username);
+		if (t == null)
+		{
+			throw new UnknownUserException(username);
+		}
+		return t;
+	}
+
+	/** Looks up the entry of {@code username} and checks the {@code password} against it.
+	 * @throws UnknownUserException If {@code username} is not in the database.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 */
+	private Tuple getTuple(String username, String password) throws UnknownUserException, AccessDeniedException
+	{
+		Tuple t = this.getTuple(username);
+		if (!t.getPasswordHash().matches(password))
+		{
+			throw new AccessDeniedException(username);
+		}
+		return t;
 	}
 
 	/** Used to get the User object which is required to work with calendar objects (add, modify, delete events).
@@ -89,23 +205,7 @@ public class Authentication
 	 */
 	public User getUser(String username, String password) throws UnknownUserException, AccessDeniedException
 	{
-		Iterator<Tuple> iteratorUsers = this.userDatabase.iterator();
-		while (iteratorUsers.hasNext())
-		{
-			Tuple t = iteratorUsers.next();
-			if (t.getUsername().equals(username))
-			{
-				if (t.getPassword().equals(password))
-				{
-					return t.getUser();
-				}
-				else
-				{
-					throw new AccessDeniedException(username);
-				}
-			}
-		}
-		throw new UnknownUserException(username);
+		return this.getTuple(username, password).getUser();
 	}
 
 	/** This is a more permissive function to get the {@link User}. It does not ask for a password.
@@ -118,41 +218,160 @@ public class Authentication
 	 */
 	public User getUser(String username) throws UnknownUserException
 	{
-		Iterator<Tuple> iteratorUsers = this.userDatabase.iterator();
-		while (iteratorUsers.hasNext())
-		{
-			Tuple t = iteratorUsers.next();
-			if (t.getUsername().equals(username))
-			{
-				return t.getUser();
-			}
-		}
-		throw new UnknownUserException(username);
+		return this.getTuple(username).getUser();
 	}
 
 	public void setNewPassword(String username, String oldPassword, String newPassword) throws UnknownUserException, AccessDeniedException
 	{
-		this.getUser(username, oldPassword);
-		for (Tuple t : this.userDatabase)
+		this.setNewPassword(username, true, oldPassword, PasswordHash.create(newPassword));
+	}
+
+	/** Replaces the password of a user by the one of {@code newPasswordHash} without checking the old one, when the database is restored from the {@link Journal}.
+	 * @param newPasswordHash Text form of the {@link PasswordHash}.
+	 */
+	void restorePassword(String username, String newPasswordHash) throws UnknownUserException, AccessDeniedException
+	{
+		this.setNewPassword(username, false, null, PasswordHash.parse(newPasswordHash));
+	}
+
+	/** @param checked Whether {@code oldPassword} must match, {@code false} only for a change which has been checked before it was journaled. */
+	private void setNewPassword(String username, boolean checked, String oldPassword, PasswordHash newPasswordHash) throws UnknownUserException, AccessDeniedException
+	{
+		Tuple t = this.getTuple(username);
+		Journal journal = this.journal;
+		long position = 0;
+		this.databaseLock.readLock().lock();
+		try
 		{
-			if (t.getUsername().equals(username))
+			// the check and the change must not interleave with another password change
+			synchronized (t)
 			{
-				t.setPassword(newPassword);
-				break;
+				if (t.removed)
+				{
+					throw new UnknownUserException(username);
+				}
+				if (checked && !t.getPasswordHash().matches(oldPassword))
+				{
+					throw new AccessDeniedException(username);
+				}
+				if (journal != null)
+				{
+					position = journal.logChangePassword(username, newPasswordHash.toString());
+				}
+				t.setPasswordHash(newPasswordHash);
 			}
 		}
+		finally
+		{
+			this.databaseLock.readLock().unlock();
+		}
+		if (journal != null)
+		{
+			journal.commit(position);
+		}
 	}
 
 	public void deleteUser(String username, String password) throws UnknownUserException, AccessDeniedException
 	{
-		this.getUser(username, password);
-		for (Tuple t : this.userDatabase)
+		this.deleteUser(username, true, password);
+	}
+
+	/** Removes a user without checking its password, when the database is restored from the {@link Journal}. */
+	void restoreDeletion(String username) throws UnknownUserException, AccessDeniedException
+	{
+		this.deleteUser(username, false, null);
+	}
+
+	/** @param checked Whether {@code password} must match, {@code false} only for a deletion which has been checked before it was journaled. */
+	private void deleteUser(String username, boolean checked, String password) throws UnknownUserException, AccessDeniedException
+	{
+		Tuple t = this.getTuple(username);
+		Journal journal = this.journal;
+		long position = 0;
+		this.databaseLock.readLock().lock();
+		try
 		{
-			if (t.getUsername().equals(username))
+			synchronized (t)
 			{
-				this.userDatabase.remove(t);
-				break;
+				User user = t.getUser();
+				user.getLock().lock();
+				try
+				{
+					if (t.removed)
+					{
+						throw new UnknownUserException(username);
+					}
+					if (checked && !t.getPasswordHash().matches(password))
+					{
+						throw new AccessDeniedException(username);
+					}
+					if (journal != null)
+					{
+						position = journal.logDeleteUser(username);
+					}
+					// only removes the entry that was checked, not one created again in the meantime
+					this.userDatabase.remove(username, t);
+					t.removed = true;
+					// changes still made through the deleted user are lost with it
+					user.setJournal(null);
+					for (Calendar calendar : user.getCalendars())
+					{
+						this.timeline.removeAll(calendar);
+						this.overviewCache.removeAll(calendar);
+					}
+					// a user created again with the same name must not deliver to these subscribers
+					this.feed.removeAll(user);
+					user.setTimeline(null);
+					user.setOverviewCache(null);
+				}
+				finally
+				{
+					user.getLock().unlock();
+				}
 			}
 		}
+		finally
+		{
+			this.databaseLock.readLock().unlock();
+		}
+		if (journal != null)
+		{
+			journal.commit(position);
+		}
+	}
+
+	/** Stops all changes of the database, and of the calendars and events of all users, until {@link #resumeChanges(List)}.
+	 * Changes in progress are completed first.
+	 * @return All users, whose locks are now held by the caller.
+	 */
+	List<User> stopChanges()
+	{
+		this.databaseLock.writeLock().lock();
+		ArrayList<User> users = new ArrayList<User>(this.userDatabase.size());
+		for (Tuple t : this.userDatabase.values())
+		{
+			t.getUser().getLock().lock();
+			users.add(t.getUser());
+		}
+		return users;
+	}
+
+	/** Lets the changes stopped by {@link #stopChanges()} continue. */
+	void resumeChanges(List<User> users)
+	{
+		for (User user : users)
+		{
+			user.getLock().unlock();
+		}
+		this.databaseLock.writeLock().unlock();
+	}
+
+	/** The text form of the {@link PasswordHash} of a user, for snapshots of the database taken while the changes are stopped.
+	 * @return {@code null} if there is no such user.
+	 */
+	String getPasswordHash(String username)
+	{
+		Tuple t = this.userDatabase.get(username);
+		return t == null ? null : t.getPasswordHash().toString();
 	}
 }
@@ -0,0 +1,77 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.ICacheStatistics;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** The counters of a cache at one point in time, see {@link DayOverviewCache}.
+ */
+public class CacheStatistics implements ICacheStatistics
+{
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final long invalidations;
+	private final int size;
+	private final int capacity;
+
+	CacheStatistics(long hits, long misses, long evictions, long invalidations, int size, int capacity)
+	{
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.invalidations = invalidations;
+		this.size = size;
+		this.capacity = capacity;
+	}
+
+	@Override
+	public long getHits()
+	{
+		return this.hits;
+	}
+
+	@Override
+	public long getMisses()
+	{
+		return this.misses;
+	}
+
+	@Override
+	public long getEvictions()
+	{
+		return this.evictions;
+	}
+
+	@Override
+	public long getInvalidations()
+	{
+		return this.invalidations;
+	}
+
+	@Override
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	@Override
+	public int getCapacity()
+	{
+		return this.capacity;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "hits: " + this.hits + ", misses: " + this.misses + ", evictions: " + this.evictions
+				+ ", invalidations: " + this.invalidations + ", size: " + this.size + "/" + this.capacity;
+	}
+}
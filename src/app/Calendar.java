@@ -4,12 +4,19 @@
 package app;
 
 import interfaces.ICalendar;
+import interfaces.ICalendarChanges;
 import interfaces.IEvent;
+import interfaces.IEventVisitor;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import app.AppExceptions.*;
 
@@ -19,20 +26,109 @@ import app.AppExceptions.*;
  *
  */
 
+/** Calendar holding the events of an user.
+ * <p>
+ * Reads never lock: the events are held in an immutable {@link EventStore}, and every query works on the version
+ * of the store that is current when the query starts. Writers serialize on the lock of the {@link #owner},
+ * build the next version of the store and publish it with a single volatile write.
+ * Readers therefore never see a half-done change, and an edit replaces an event by its edited version in one step.
+ * If the app has a {@link Journal}, the change is appended to it under the lock and committed after releasing it.
+ * </p>
+ * <p>
+ * The kind of store is chosen per calendar, see {@link ICalendar.Storage}. All queries give the same results with every store.
+ * </p>
+ */
 public class Calendar implements ICalendar
 {
 	private String name;
 	private User owner;
 
-	private ArrayList<IEvent> privateEvents;
-	private ArrayList<IEvent> publicEvents;
+	/** The lock of the {@link #owner}, taken by all changes of this calendar. */
+	private final ReentrantLock lock;
+
+	private final Storage storage;
+
+	/** All (public and private) events, kept sorted by start date and indexed by time span.
+	 * The visibility is an attribute of the {@link Event}. Replaced by a new version on every change. */
+	private volatile EventStore events;
+
+	/** Point lookup of the events by name and start date. If several events share name and start date,
+	 * the first of them in the order of {@link #events} is indexed.
+	 * {@code null} for stores which do not keep {@link Event} objects; they are searched instead. */
+	private ConcurrentHashMap<EventKey, Event> eventIndex;
+
+	/** Number of events for the keys of {@link #eventIndex} which are shared by more than one event.
+	 * Only used by writers, under the {@link #lock}. */
+	private HashMap<EventKey, Integer> sharedKeys;
+
+	/** Set once the calendar has been deleted, with the {@link #lock} held. Changes through references kept from before then fail,
+	 * so that no change reaches the {@link Journal} after the deletion of the calendar. Guarded by the {@link #lock}. */
+	private boolean detached;
+
+	/** The recent changes, for clients syncing a copy of the calendar. */
+	private final ChangeLog changeLog = new ChangeLog();
+
+	/** Version stamps of all events and of the public events, see {@link #getVersion()}. Only changed with the {@link #lock} held. */
+	private volatile long version = newVersionStamp();
+	private volatile long publicVersion = newVersionStamp();
+
+	private static final Random versionStamps = new Random();
 
 	public Calendar(User owner, String name)
+	{
+		this(owner, name, Storage.TREE);
+	}
+
+	public Calendar(User owner, String name, Storage storage)
 	{
 		this.owner = owner;
 		this.name = name;
-		this.privateEvents = new ArrayList<IEvent>();
-		this.publicEvents = new ArrayList<IEvent>();
+		this.storage = storage;
+		this.lock = owner.getLock();
+		if (storage == Storage.COLUMNAR)
+		{
+			this.events = new ColumnarEventStore(new ArrayEventColumns());
+		}
+		else if (storage == Storage.OFF_HEAP)
+		{
+			this.events = new ColumnarEventStore(new OffHeapEventColumns());
+		}
+		else
+		{
+			this.events = EventTree.empty();
+			this.eventIndex = new ConcurrentHashMap<EventKey, Event>();
+			this.sharedKeys = new HashMap<EventKey, Integer>();
+		}
+	}
+
+	/** Key of the {@link Calendar#eventIndex}. */
+	private static class EventKey
+	{
+		private String eventName;
+		private long startDate;
+
+		public EventKey(String eventName, long startDate)
+		{
+			this.eventName = eventName;
+			this.startDate = startDate;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof EventKey))
+			{
+				return false;
+			}
+			EventKey key = (EventKey) o;
+			return this.startDate == key.startDate && this.eventName.equals(key.eventName);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * this.eventName.hashCode() + (int) (this.startDate ^ (this.startDate >>> 32));
+		}
 	}
 
 	@Override
@@ -41,16 +137,98 @@ public class Calendar implements ICalendar
 		return this.name;
 	}
 
+	@Override
+	public Storage getStorage()
+	{
+		return this.storage;
+	}
+
+	/** Provides the version stamp of all (public and private) events, see {@link #getPublicVersion()}.
+	 * @return A value which changes with every change of the events.
+	 */
+	public long getVersion()
+	{
+		return this.version;
+	}
+
+	@Override
+	public long getPublicVersion()
+	{
+		return this.publicVersion;
+	}
+
+	/** A random first value for a version stamp, so that the stamps of a calendar created again,
+	 * for example by a restart of the app, do not repeat the stamps handed out before. */
+	static long newVersionStamp()
+	{
+		return versionStamps.nextLong();
+	}
+
 	@Override
 	public Iterator<IEvent> getAllPublicEventsStartingFrom(Date startDate)
 	{
-		return this.getEventsWithStartDateOrMore(startDate, this.publicEvents).iterator();
+		return this.iterator(Event.searchKey(startDate), true);
 	}
 
 	@Override
 	public ArrayList<IEvent> getAllPublicEventsAtDate(Date date)
 	{
-		return this.getEventsWithDate(date, this.publicEvents);
+		return this.getEventsWithDate(date, true);
+	}
+
+	@Override
+	public ArrayList<IEvent> getAllPublicEventsDuring(Date from, Date to)
+	{
+		return this.getEventsDuring(from, to, true);
+	}
+
+	@Override
+	public ArrayList<IEvent> getAllPublicEventsStartingBetween(Date from, Date to, int limit)
+	{
+		return this.getEventsStartingBetween(from, to, limit, true);
+	}
+
+	@Override
+	public boolean visitPublicEventsAtDate(Date date, IEventVisitor visitor)
+	{
+		return this.events.visitOverlapping(date.getTime(), date.getTime(), true, visitor);
+	}
+
+	@Override
+	public boolean visitPublicEventsDuring(Date from, Date to, IEventVisitor visitor)
+	{
+		return this.events.visitOverlapping(from.getTime(), to.getTime() - 1, true, visitor);
+	}
+
+	@Override
+	public boolean visitPublicEventsStartingBetween(Date from, Date to, IEventVisitor visitor)
+	{
+		return this.events.visitStartingBetween(from.getTime(), to.getTime(), true, visitor);
+	}
+
+	@Override
+	public CalendarChanges getPublicChangesSince(String syncToken) throws InvalidCursorException
+	{
+		return this.changeLog.changesSince(this, syncToken, true);
+	}
+
+	@Override
+	public EventPage getPublicEventsPage(Date startDate, String cursor, int pageSize) throws InvalidCursorException
+	{
+		if (pageSize < 1)
+		{
+			throw new IllegalArgumentException("The page size must be at least 1!");
+		}
+
+		Event from = cursor == null ? Event.searchKey(startDate) : EventPage.searchKey(cursor);
+		Iterator<IEvent> iteratorEvents = this.events.iterator(from, null, true);
+
+		ArrayList<IEvent> page = new ArrayList<IEvent>(pageSize);
+		while (page.size() < pageSize && iteratorEvents.hasNext())
+		{
+			page.add(iteratorEvents.next());
+		}
+		return new EventPage(page, iteratorEvents.hasNext());
 	}
 
 	/** Creates a new private event in the given {@link Calendar}.
@@ -58,11 +236,12 @@ public class Calendar implements ICalendar
 	 * @param startDate Date of the event to begin.
 	 * @param endDate Date of the event to end.
 	 * @throws InvalidDateException If {@code endDate} is placed before {@code startDate}.
+	 * @throws UnknownCalendarException If the calendar has been deleted.
 	 */
-	public void createPrivateEvent(String name, Date startDate, Date endDate) throws InvalidDateException
+	public void createPrivateEvent(String name, Date startDate, Date endDate) throws InvalidDateException, UnknownCalendarException
 	{
 		Event newEvent = new Event(name, startDate, endDate);
-		this.privateEvents.add(newEvent);
+		this.insertEvent(newEvent);
 	}
 
 	/** Creates a new public event in the given {@link Calendar}.
@@ -70,12 +249,29 @@ public class Calendar implements ICalendar
 	 * @param startDate Date of the event to begin.
 	 * @param endDate Date of the event to end.
 	 * @throws InvalidDateException If {@code endDate} is placed before {@code startDate}.
+	 * @throws UnknownCalendarException If the calendar has been deleted.
 	 */
-	public void createPublicEvent(String name, Date startDate, Date endDate) throws InvalidDateException
+	public void createPublicEvent(String name, Date startDate, Date endDate) throws InvalidDateException, UnknownCalendarException
 	{
-		Event newEvent = new Event(name, startDate, endDate);
-		newEvent.setPrivateVisibility(false);
-		this.publicEvents.add(newEvent);
+		Event newEvent = new Event(name, startDate, endDate, false);
+		this.insertEvent(newEvent);
+	}
+
+	/** Creates all events of a batch at once. The dates of all events are checked first; the events are then sorted
+	 * once and merged into the calendar in a single pass, which is much cheaper than creating them one by one.
+	 * The events with the same start date are ordered as in the batch.
+	 * @throws InvalidDatesException If events end before they start, listing all of them. No event is created then.
+	 * @throws UnknownCalendarException If the calendar has been deleted.
+	 */
+	public void createEvents(EventBatch batch) throws InvalidDatesException, UnknownCalendarException
+	{
+		if (batch.size() == 0)
+		{
+			return;
+		}
+		Event[] newEvents = Event.create(batch);
+		Arrays.sort(newEvents);
+		this.insertEvents(newEvents, newEvents.length);
 	}
 
 	public User getOwner()
@@ -86,133 +282,464 @@ public class Calendar implements ICalendar
 	/* Functions to get particular events from calendars */
 
 	/** Provides an {@link Iterator} with all (public and private) events, that begin at the given {@code startDate} or after it.
+	 * The iterator is lazy and works on a snapshot like the one of {@link #getAllPublicEventsStartingFrom(Date)}.
 	 * @param startDate Starting point of events.
-	 * @return All events that are set to start at {@code startDate} or later.
+	 * @return All events that are set to start at {@code startDate} or later, sorted by start date.
 	 */
 	public Iterator<IEvent> getAllEventsStartingFrom(Date startDate)
 	{
-		ArrayList<IEvent> eventList = new ArrayList<IEvent>();
-		eventList.addAll(this.privateEvents);
-		eventList.addAll(this.publicEvents);
-		eventList = this.getEventsWithStartDateOrMore(startDate, eventList);
-		this.sortEvents(eventList);
-		return eventList.iterator();
+		return this.iterator(Event.searchKey(startDate), false);
 	}
 
-	/** Provides all (public and private) events happening at a given {@code date}.
+	/** Provides the (public and private) events starting at {@code from} or later and before {@code to}.
+	 * @param from Begin of the time range.
+	 * @param to End of the time range, not included.
+	 * @param limit Maximal number of events to return, {@link ICalendar#NO_LIMIT} for all of them.
+	 * @return The first {@code limit} matching events sorted by start date as an {@link ArrayList}.
+	 */
+	public ArrayList<IEvent> getAllEventsStartingBetween(Date from, Date to, int limit)
+	{
+		return this.getEventsStartingBetween(from, to, limit, false);
+	}
+
+	/** Provides the (public and private) events created, edited or deleted since the sync token, see {@link ICalendar#getPublicChangesSince(String)}.
+	 * @param syncToken {@code null} for all events, otherwise {@link ICalendarChanges#getSyncToken()} of the previous sync.
+	 * @return The changes, or all events if the changes since {@code syncToken} are not known any more.
+	 * @throws InvalidCursorException If {@code syncToken} was not handed out by a sync query.
+	 */
+	public CalendarChanges getAllChangesSince(String syncToken) throws InvalidCursorException
+	{
+		return this.changeLog.changesSince(this, syncToken, false);
+	}
+
+	/** Sets the number of recent changes, deletions included, kept for {@link #getAllChangesSince(String)}.
+	 * Clients which are more changes behind get all events.
+	 * @param changes At least 1, {@value ChangeLog#DEFAULT_RETENTION} if never set.
+	 */
+	public void setChangeRetention(int changes)
+	{
+		this.lock.lock();
+		try
+		{
+			this.changeLog.setRetention(changes);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/** Provides all (public and private) events happening at a given {@code date},
+	 * that is events which start at {@code date} or before and end at {@code date} or later.
 	 * @param date Date form which to list all current events.
-	 * @return All matching events as an {@link ArrayList}.
+	 * @return All matching events sorted by start date as an {@link ArrayList}.
 	 */
 	public ArrayList<IEvent> getAllEventsAtDate(Date date)
 	{
-		ArrayList<IEvent> eventList = new ArrayList<IEvent>();
-		eventList.addAll(this.privateEvents);
-		eventList.addAll(this.publicEvents);
-		this.sortEvents(eventList);
-		return this.getEventsWithDate(date, eventList);
+		return this.getEventsWithDate(date, false);
+	}
+
+	/** Provides all (public and private) events overlapping the time span from {@code from} (inclusive) to {@code to} (exclusive),
+	 * that is events which start before {@code to} and end at {@code from} or later.
+	 * @param from Begin of the time span.
+	 * @param to End of the time span, not included.
+	 * @return All matching events sorted by start date as an {@link ArrayList}.
+	 */
+	public ArrayList<IEvent> getAllEventsDuring(Date from, Date to)
+	{
+		return this.getEventsDuring(from, to, false);
+	}
+
+	/** Passes all (public and private) events happening at a given {@code date} to the {@code visitor},
+	 * like {@link #getAllEventsAtDate(Date)} lists them. No object is created per query.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 */
+	public boolean visitAllEventsAtDate(Date date, IEventVisitor visitor)
+	{
+		return this.events.visitOverlapping(date.getTime(), date.getTime(), false, visitor);
+	}
+
+	/** Passes all (public and private) events overlapping the time span from {@code from} to {@code to} (exclusive) to the {@code visitor},
+	 * like {@link #getAllEventsDuring(Date, Date)} lists them. No object is created per query.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 */
+	public boolean visitAllEventsDuring(Date from, Date to, IEventVisitor visitor)
+	{
+		return this.events.visitOverlapping(from.getTime(), to.getTime() - 1, false, visitor);
+	}
+
+	/** Passes the (public and private) events starting at {@code from} or later and before {@code to} to the {@code visitor},
+	 * like {@link #getAllEventsStartingBetween(Date, Date, int)} lists them. No object is created per query.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 */
+	public boolean visitAllEventsStartingBetween(Date from, Date to, IEventVisitor visitor)
+	{
+		return this.events.visitStartingBetween(from.getTime(), to.getTime(), false, visitor);
 	}
 
 	@Override
 	public Event getEvent(String eventName, Date startDate) throws UnknownEventException
 	{
-		Iterator<IEvent> iteratorAllEvents = this.getAllEventsStartingFrom(startDate);
-		IEvent currentEvent = null;
-		while (iteratorAllEvents.hasNext())
+		Event event;
+		if (this.eventIndex != null)
 		{
-			currentEvent = iteratorAllEvents.next();
-			if (currentEvent.getEventName().equals(eventName) && currentEvent.getStartDate().equals(startDate))
-			{
-				return (Event) currentEvent;
-			}
+			event = this.eventIndex.get(new EventKey(eventName, startDate.getTime()));
+		}
+		else
+		{
+			event = this.events.find(eventName, startDate.getTime());
 		}
-		throw new UnknownEventException(eventName, startDate);
+		if (event == null)
+		{
+			throw new UnknownEventException(eventName, startDate);
+		}
+		return event;
 	}
 
 	/* Functions used to modify events */
 
-	public void editEvent(String eventName, Date startDate, String newEventName, Date newStartDate, Date newEndDate, Boolean newPrivateVisible) throws UnknownEventException, InvalidDateException
+	public void editEvent(String eventName, Date startDate, String newEventName, Date newStartDate, Date newEndDate, Boolean newPrivateVisible) throws UnknownEventException, InvalidDateException, UnknownCalendarException
 	{
-		Event e = this.getEvent(eventName, startDate);
-
-		if(newEventName != null)
+		Journal journal;
+		long position = 0;
+		this.lock.lock();
+		try
 		{
-			e.setEventName(newEventName);
-		}
+			this.checkAttached();
+			Event e = this.getEvent(eventName, startDate);
+			Event editedEvent = e.edit(newEventName, newStartDate, newEndDate, newPrivateVisible);
 
-		if(newStartDate != null)
-		{
-			e.setStartDate(newStartDate);
+			journal = this.owner.getJournal();
+			if (journal != null)
+			{
+				position = journal.logEditEvent(this.owner.getName(), this.name, e, editedEvent);
+			}
+			this.publish(e, editedEvent);
 		}
-
-		if(newEndDate != null)
+		finally
 		{
-			e.setEndDate(newEndDate);
+			this.lock.unlock();
 		}
-
-		if(newPrivateVisible != null)
+		if (journal != null)
 		{
-			e.setPrivateVisibility(newPrivateVisible);
+			journal.commit(position);
 		}
 	}
 
 	/* Private methods */
 
-	private ArrayList<IEvent> getEventsWithDate(Date date, ArrayList<IEvent> events)
+	/** Adds a newly created {@code event} to the calendar. */
+	void insertEvent(Event event) throws UnknownCalendarException
 	{
-		ArrayList<IEvent> output = new ArrayList<IEvent>();
-		for (IEvent event : events)
+		Journal journal;
+		long position = 0;
+		this.lock.lock();
+		try
 		{
-			if (event.getEndDate().after(date) || event.getEndDate().equals(date))
+			this.checkAttached();
+			journal = this.owner.getJournal();
+			if (journal != null)
 			{
-				output.add(event);
+				position = journal.logCreateEvent(this.owner.getName(), this.name, event);
 			}
+			this.publish(null, event);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		if (journal != null)
+		{
+			journal.commit(position);
 		}
-		return output;
 	}
 
-	private ArrayList<IEvent> getEventsWithStartDateOrMore(Date startDate, ArrayList<IEvent> events)
+	/** Adds newly created or restored events to the calendar in one pass.
+	 * @param sortedEvents Events sorted by {@link Event#compareTo(Event)}, none of them in the calendar yet.
+	 * @param count Number of events to take from the start of {@code sortedEvents}.
+	 */
+	void insertEvents(Event[] sortedEvents, int count) throws UnknownCalendarException
 	{
-		ArrayList<IEvent> output = new ArrayList<IEvent>();
-		for (IEvent event : events)
+		Journal journal;
+		long position = 0;
+		this.lock.lock();
+		try
 		{
-			if (event.getStartDate().after(startDate) || event.getStartDate().equals(startDate)) // = if (! event.getStartDate().before(startDate))
+			this.checkAttached();
+			journal = this.owner.getJournal();
+			if (journal != null)
+			{
+				position = journal.logCreateEvents(this.owner.getName(), this.name, sortedEvents, count);
+			}
+			this.events = this.events.addAll(sortedEvents, count);
+			if (this.eventIndex != null)
 			{
-				output.add(event);
+				for (int i = 0; i < count; i++)
+				{
+					this.addToIndex(sortedEvents[i]);
+				}
+			}
+			this.changeLog.logChanged(sortedEvents, count);
+			boolean publicChange = false;
+			for (int i = 0; i < count && !publicChange; i++)
+			{
+				publicChange = sortedEvents[i].isPublic();
+			}
+			this.changed(publicChange);
+			DayOverviewCache overviewCache = this.owner.getOverviewCache();
+			if (overviewCache != null)
+			{
+				for (int i = 0; i < count; i++)
+				{
+					overviewCache.invalidate(this, sortedEvents[i]);
+				}
+			}
+			PublicTimeline timeline = this.owner.getTimeline();
+			if (timeline != null)
+			{
+				timeline.addAll(this, sortedEvents, count);
 			}
 		}
-		return output;
+		finally
+		{
+			this.lock.unlock();
+		}
+		if (journal != null)
+		{
+			journal.commit(position);
+		}
+	}
+
+	/** The current version of the events. */
+	EventStore getEvents()
+	{
+		return this.events;
 	}
 
-	private void sortEvents(ArrayList<IEvent> inputList)
+	/** Provides a lazy iterator over the current version of the events. */
+	private Iterator<IEvent> iterator(Event from, boolean onlyPublic)
 	{
-		IEvent[] arrayOfEvents = new IEvent[inputList.size()];
-		inputList.toArray(arrayOfEvents);
+		return this.events.iterator(from, null, onlyPublic);
+	}
 
-		Arrays.sort(arrayOfEvents);
+	/** Collects the events happening at {@code date}, sorted by start date.
+	 * The result is taken from the {@link DayOverviewCache} of the owner if it is there, and stored there otherwise.
+	 * @param onlyPublic If {@code true}, private events are skipped.
+	 */
+	private ArrayList<IEvent> getEventsWithDate(Date date, boolean onlyPublic)
+	{
+		long time = date.getTime();
+		DayOverviewCache overviewCache = this.owner.getOverviewCache();
+		if (overviewCache == null)
+		{
+			ArrayList<IEvent> output = new ArrayList<IEvent>();
+			this.events.collectOverlapping(time, time, onlyPublic, output);
+			return output;
+		}
+
+		IEvent[] cached = overviewCache.get(this, time, onlyPublic);
+		if (cached == null)
+		{
+			// the version is read first, so that a result of events changed meanwhile is not stored
+			long version = this.version;
+			ArrayList<IEvent> found = new ArrayList<IEvent>();
+			this.events.collectOverlapping(time, time, onlyPublic, found);
+			cached = found.toArray(new IEvent[found.size()]);
+			overviewCache.put(this, time, onlyPublic, cached, version);
+		}
+		// a copy, as the callers may change the list
+		ArrayList<IEvent> output = new ArrayList<IEvent>(cached.length);
+		Collections.addAll(output, cached);
+		return output;
+	}
 
-		inputList.clear();
+	/** Collects the events overlapping the time span from {@code from} to {@code to} (exclusive), sorted by start date.
+	 * @param onlyPublic If {@code true}, private events are skipped.
+	 */
+	private ArrayList<IEvent> getEventsDuring(Date from, Date to, boolean onlyPublic)
+	{
+		ArrayList<IEvent> output = new ArrayList<IEvent>();
+		this.events.collectOverlapping(from.getTime(), to.getTime() - 1, onlyPublic, output);
+		return output;
+	}
 
-		for(IEvent e: arrayOfEvents)
+	/** Collects the events starting at {@code from} or later and before {@code to}, sorted by start date.
+	 * Only the events in the range are visited.
+	 * @param limit Maximal number of events to collect, {@link ICalendar#NO_LIMIT} for all of them.
+	 * @param onlyPublic If {@code true}, private events are skipped.
+	 */
+	private ArrayList<IEvent> getEventsStartingBetween(Date from, Date to, int limit, boolean onlyPublic)
+	{
+		ArrayList<IEvent> output = new ArrayList<IEvent>();
+		Iterator<IEvent> iteratorEvents = this.events.iterator(Event.searchKey(from), Event.searchKey(to), onlyPublic);
+		while ((limit == NO_LIMIT || output.size() < limit) && iteratorEvents.hasNext())
 		{
-			inputList.add(e);
+			output.add(iteratorEvents.next());
 		}
+		return output;
 	}
 
 	/** Deletes the event from the calendar.
 	 * @param eventName Title of the event to identify it.
 	 * @param startDate Date when the event to be deleted starts.
 	 * @throws UnknownEventException If the event is not in the calendar.
+	 * @throws UnknownCalendarException If the calendar has been deleted.
+	 */
+	public void deleteEvent(String eventName, Date startDate) throws UnknownEventException, UnknownCalendarException
+	{
+		Journal journal;
+		long position = 0;
+		this.lock.lock();
+		try
+		{
+			this.checkAttached();
+			Event eventToDelete = this.getEvent(eventName, startDate);
+			journal = this.owner.getJournal();
+			if (journal != null)
+			{
+				position = journal.logDeleteEvent(this.owner.getName(), this.name, eventToDelete);
+			}
+			this.publish(eventToDelete, null);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		if (journal != null)
+		{
+			journal.commit(position);
+		}
+	}
+
+	/** Marks the calendar as deleted, see {@link #detached}. Must be called with the {@link #lock} held. */
+	void detach()
+	{
+		this.detached = true;
+	}
+
+	/** Must be called with the {@link #lock} held, before a change is journaled.
+	 * @throws UnknownCalendarException If the calendar has been deleted.
 	 */
-	public void deleteEvent(String eventName, Date startDate) throws UnknownEventException
+	private void checkAttached() throws UnknownCalendarException
 	{
-		Event eventToDelete = this.getEvent(eventName, startDate);
-		if (eventToDelete.isPrivate())
+		if (this.detached)
 		{
-			this.privateEvents.remove(eventToDelete);
+			throw new UnknownCalendarException(this.name);
+		}
+	}
+
+	/* Publishing changes */
+
+	/** Replaces the event {@code removed} by {@code added} and publishes the new version of the events.
+	 * The change is logged in the {@link ChangeLog}, the version stamps are moved on, the days of both events are dropped from
+	 * the {@link DayOverviewCache}, and the {@link PublicTimeline} of the owner is updated as well.
+	 * Must be called with the {@link #lock} held.
+	 * @param removed Event to remove, {@code null} to only add.
+	 * @param added Event to add, {@code null} to only remove.
+	 */
+	private void publish(Event removed, Event added)
+	{
+		EventStore withoutRemoved = removed == null ? this.events : this.events.remove(removed);
+		this.events = added == null ? withoutRemoved : withoutRemoved.add(added);
+		// the index only follows the published store, so that a lookup never finds an event the store does not hold yet
+		if (this.eventIndex != null)
+		{
+			if (removed != null)
+			{
+				this.removeFromIndex(removed, withoutRemoved);
+			}
+			if (added != null)
+			{
+				this.addToIndex(added);
+			}
+		}
+
+		if (added != null)
+		{
+			this.changeLog.logChanged(removed, added);
 		}
 		else
 		{
-			this.publicEvents.remove(eventToDelete);
+			this.changeLog.logRemoved(removed);
+		}
+		this.changed((removed != null && removed.isPublic()) || (added != null && added.isPublic()));
+		DayOverviewCache overviewCache = this.owner.getOverviewCache();
+		if (overviewCache != null)
+		{
+			if (removed != null)
+			{
+				overviewCache.invalidate(this, removed);
+			}
+			if (added != null)
+			{
+				overviewCache.invalidate(this, added);
+			}
+		}
+		PublicTimeline timeline = this.owner.getTimeline();
+		if (timeline != null)
+		{
+			timeline.replace(this, removed, added);
+		}
+	}
+
+	/** Moves the version stamps of the calendar and of its owner on. Must be called with the {@link #lock} held.
+	 * @param publicChange {@code true} if a public event was changed, or an event was made public or private.
+	 */
+	private void changed(boolean publicChange)
+	{
+		this.version++;
+		if (publicChange)
+		{
+			this.publicVersion++;
+		}
+		this.owner.changed(publicChange);
+	}
+
+	/** Adds the {@code event} to the index. */
+	private void addToIndex(Event event)
+	{
+		EventKey key = new EventKey(event.getEventName(), event.getStartTime());
+		Event indexed = this.eventIndex.get(key);
+		if (indexed == null)
+		{
+			this.eventIndex.put(key, event);
+			return;
+		}
+
+		Integer count = this.sharedKeys.get(key);
+		this.sharedKeys.put(key, count == null ? 2 : count + 1);
+		if (event.compareTo(indexed) < 0)
+		{
+			this.eventIndex.put(key, event);
+		}
+	}
+
+	/** Removes the {@code event} from the index.
+	 * If another event has the same name and start date, it takes the place in the index.
+	 * @param remainingEvents The events without {@code event}, searched for such a replacement.
+	 */
+	private void removeFromIndex(Event event, EventStore remainingEvents)
+	{
+		EventKey key = new EventKey(event.getEventName(), event.getStartTime());
+		Integer count = this.sharedKeys.isEmpty() ? null : this.sharedKeys.get(key);
+		if (count == null)
+		{
+			this.eventIndex.remove(key);
+			return;
+		}
+
+		if (count == 2)
+		{
+			this.sharedKeys.remove(key);
+		}
+		else
+		{
+			this.sharedKeys.put(key, count - 1);
+		}
+
+		if (this.eventIndex.get(key) == event)
+		{
+			this.eventIndex.put(key, remainingEvents.find(event.getEventName(), event.getStartTime()));
 		}
 	}
 }
@@ -0,0 +1,57 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.ICalendarChanges;
+import interfaces.ISyncedEvent;
+
+import java.util.ArrayList;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** The result of a sync query, see {@link ChangeLog}.
+ */
+public class CalendarChanges implements ICalendarChanges
+{
+	private final boolean fullSync;
+	private final ArrayList<ISyncedEvent> changedEvents;
+	private final ArrayList<Long> removedEventIds;
+	private final String syncToken;
+
+	CalendarChanges(boolean fullSync, ArrayList<ISyncedEvent> changedEvents, ArrayList<Long> removedEventIds, String syncToken)
+	{
+		this.fullSync = fullSync;
+		this.changedEvents = changedEvents;
+		this.removedEventIds = removedEventIds;
+		this.syncToken = syncToken;
+	}
+
+	@Override
+	public boolean isFullSync()
+	{
+		return this.fullSync;
+	}
+
+	@Override
+	public ArrayList<ISyncedEvent> getChangedEvents()
+	{
+		return this.changedEvents;
+	}
+
+	@Override
+	public ArrayList<Long> getRemovedEventIds()
+	{
+		return this.removedEventIds;
+	}
+
+	@Override
+	public String getSyncToken()
+	{
+		return this.syncToken;
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IPublicEventChange;
+import interfaces.IPublicEventChange.Type;
+import interfaces.IPublicEventListener;
+import interfaces.ISubscription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Delivers the changes of public events to the subscribed {@link IPublicEventListener listeners}.
+ * <p>
+ * The changes are reported by the {@link PublicTimeline}, under the lock of the owner of the calendar, so they are
+ * in the order they were made. Each subscription buffers them in a bounded buffer, which only takes its monitor
+ * for a moment; when the buffer is full, further changes are dropped and counted, so that a slow listener never holds up
+ * the writers. A buffer is drained {@value #BATCH_DELAY} ms after its first change, so that the changes made meanwhile
+ * are handed to the listener in one batch and the writers only wake up a thread once per batch.
+ * The buffers are drained by at most {@value #MAX_DELIVERY_THREADS} threads of the feed. A subscription is drained by at most one thread
+ * at a time, and the threads are only kept while there are changes to deliver, so a slow listener only delays its own subscription
+ * as long as there are fewer slow ones than threads, and no thread is kept for idle ones. Subscriptions waiting for a thread
+ * are queued, each at most once, as it is only handed over again after it has been drained.
+ * </p>
+ * <p>
+ * The subscriptions belong to the {@link User} object, not to its name: when the user is deleted, they end with the delivery
+ * of the deletion of its events, and a user created again with the same name starts without subscriptions.
+ * </p>
+ * <p>
+ * Only public events reach the feed, and a change between private and public only carries the public version,
+ * so nothing private is delivered. A change may be delivered before it is forced to the {@link Journal}.
+ * </p>
+ */
+final class ChangeFeed
+{
+	/** Milliseconds the changes are collected before they are delivered. */
+	static final long BATCH_DELAY = 10;
+
+	/** Maximal number of threads calling the listeners at the same time. */
+	static final int MAX_DELIVERY_THREADS = 16;
+
+	/** Seconds a thread of the feed waits for more work before it stops. */
+	private static final long IDLE_SECONDS = 60;
+
+	/** The subscriptions keyed by the user whose events they receive. */
+	private final ConcurrentHashMap<User, CopyOnWriteArrayList<Subscription>> subscriptions = new ConcurrentHashMap<User, CopyOnWriteArrayList<Subscription>>();
+
+	/** Waits the {@link #BATCH_DELAY} and hands the subscriptions to the {@link #deliverer}. */
+	private final ScheduledThreadPoolExecutor timer;
+
+	/** Calls the listeners, a thread for each subscription being delivered. */
+	private final ThreadPoolExecutor deliverer;
+
+	ChangeFeed()
+	{
+		ThreadFactory threads = new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "Change feed");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		this.timer = new ScheduledThreadPoolExecutor(1, threads);
+		this.timer.setKeepAliveTime(IDLE_SECONDS, TimeUnit.SECONDS);
+		this.timer.allowCoreThreadTimeOut(true);
+		this.deliverer = new ThreadPoolExecutor(MAX_DELIVERY_THREADS, MAX_DELIVERY_THREADS, IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threads);
+		this.deliverer.allowCoreThreadTimeOut(true);
+	}
+
+	/** A listener with its buffer of changes not yet delivered. */
+	private class Subscription implements ISubscription, Runnable
+	{
+		private final User user;
+
+		/** The calendar whose events are delivered, {@code null} for all calendars of the user. */
+		private final String calendarName;
+
+		private final IPublicEventListener listener;
+		private final int bufferSize;
+
+		// guarded by the monitor of the subscription
+		private final ArrayDeque<IPublicEventChange> buffer = new ArrayDeque<IPublicEventChange>();
+		private int droppedChanges;
+		private boolean scheduled;
+		/** Set when the user has been deleted: no further changes are taken, and the subscription is cancelled once the buffer is delivered. */
+		private boolean ended;
+		private volatile boolean cancelled;
+
+		/** Hands the subscription to the {@link ChangeFeed#deliverer} once the {@link ChangeFeed#BATCH_DELAY} is over. */
+		private final Runnable handOver = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				ChangeFeed.this.deliverer.execute(Subscription.this);
+			}
+		};
+
+		Subscription(User user, String calendarName, IPublicEventListener listener, int bufferSize)
+		{
+			this.user = user;
+			this.calendarName = calendarName;
+			this.listener = listener;
+			this.bufferSize = bufferSize;
+		}
+
+		/** Delivers the buffer after the {@link ChangeFeed#BATCH_DELAY}. Must be called with the monitor of the subscription held. */
+		private void schedule()
+		{
+			this.scheduled = true;
+			ChangeFeed.this.timer.schedule(this.handOver, BATCH_DELAY, TimeUnit.MILLISECONDS);
+		}
+
+		/** Buffers the change and makes sure that the buffer is drained. */
+		synchronized void offer(IPublicEventChange change)
+		{
+			if (this.cancelled || this.ended)
+			{
+				return;
+			}
+			if (this.buffer.size() < this.bufferSize)
+			{
+				this.buffer.add(change);
+			}
+			else
+			{
+				this.droppedChanges++;
+			}
+			if (!this.scheduled)
+			{
+				this.schedule();
+			}
+		}
+
+		/** Delivers the buffered changes in one batch. */
+		@Override
+		public void run()
+		{
+			List<IPublicEventChange> changes;
+			int dropped;
+			synchronized (this)
+			{
+				changes = new ArrayList<IPublicEventChange>(this.buffer);
+				this.buffer.clear();
+				dropped = this.droppedChanges;
+				this.droppedChanges = 0;
+			}
+
+			try
+			{
+				if (!this.cancelled && !changes.isEmpty())
+				{
+					this.listener.onChanges(Collections.unmodifiableList(changes));
+				}
+				if (!this.cancelled && dropped > 0)
+				{
+					this.listener.onChangesDropped(dropped);
+				}
+			}
+			catch (RuntimeException e)
+			{
+				this.cancel();
+			}
+
+			boolean delivered;
+			synchronized (this)
+			{
+				// the changes made in the meantime are delivered as the next batch
+				delivered = this.buffer.isEmpty() && this.droppedChanges == 0;
+				if (delivered)
+				{
+					this.scheduled = false;
+				}
+				else
+				{
+					this.schedule();
+				}
+			}
+			if (delivered && this.isEnded())
+			{
+				this.cancel();
+			}
+		}
+
+		/** Takes no further changes, and cancels the subscription once the changes taken so far are delivered. */
+		void end()
+		{
+			synchronized (this)
+			{
+				this.ended = true;
+				if (this.scheduled)
+				{
+					// cancelled by the delivery of the last batch
+					return;
+				}
+			}
+			this.cancel();
+		}
+
+		private synchronized boolean isEnded()
+		{
+			return this.ended;
+		}
+
+		@Override
+		public void cancel()
+		{
+			ChangeFeed.this.unsubscribe(this);
+			synchronized (this)
+			{
+				this.cancelled = true;
+				this.buffer.clear();
+				this.droppedChanges = 0;
+			}
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return this.cancelled;
+		}
+	}
+
+	/** Starts delivering the changes of public events of a user to the {@code listener}.
+	 * @param calendarName The calendar whose changes are delivered, {@code null} for all calendars of the user.
+	 * @param bufferSize Maximal number of changes buffered for the listener, at least 1.
+	 */
+	ISubscription subscribe(User user, String calendarName, IPublicEventListener listener, int bufferSize)
+	{
+		if (bufferSize < 1)
+		{
+			throw new IllegalArgumentException("The buffer size must be at least 1!");
+		}
+		Subscription subscription = new Subscription(user, calendarName, listener, bufferSize);
+		CopyOnWriteArrayList<Subscription> newList = new CopyOnWriteArrayList<Subscription>();
+		CopyOnWriteArrayList<Subscription> list = this.subscriptions.putIfAbsent(user, newList);
+		(list == null ? newList : list).add(subscription);
+		return subscription;
+	}
+
+	/** Ends all subscriptions of the {@code user}, after it has been deleted and the deletion of its public events has been reported.
+	 * The changes buffered are still delivered. Must be called with the lock of the {@code user} held.
+	 */
+	void removeAll(User user)
+	{
+		CopyOnWriteArrayList<Subscription> list = this.subscriptions.remove(user);
+		if (list == null)
+		{
+			return;
+		}
+		for (Subscription subscription : list)
+		{
+			subscription.end();
+		}
+	}
+
+	private void unsubscribe(Subscription subscription)
+	{
+		CopyOnWriteArrayList<Subscription> list = this.subscriptions.get(subscription.user);
+		if (list != null)
+		{
+			// an empty list is kept, a subscription added meanwhile to it would be lost otherwise
+			list.remove(subscription);
+		}
+	}
+
+	/** Reports the replacement of the event {@code removed} of the {@code calendar} by {@code added}.
+	 * Must be called with the lock of the owner of the {@code calendar} held.
+	 * @param removed Event before the change, {@code null} if it was created.
+	 * @param added Event after the change, {@code null} if it was deleted.
+	 */
+	void publish(Calendar calendar, Event removed, Event added)
+	{
+		if (this.subscriptions.isEmpty())
+		{
+			return;
+		}
+		boolean wasPublic = removed != null && removed.isPublic();
+		boolean isPublic = added != null && added.isPublic();
+		Type type;
+		if (wasPublic)
+		{
+			type = isPublic ? Type.EDITED : (added == null ? Type.DELETED : Type.MADE_PRIVATE);
+		}
+		else if (isPublic)
+		{
+			type = removed == null ? Type.CREATED : Type.MADE_PUBLIC;
+		}
+		else
+		{
+			return;
+		}
+		this.publish(calendar, type, wasPublic ? removed : null, isPublic ? added : null);
+	}
+
+	/** Reports the change to the subscriptions of the owner and of the {@code calendar}. */
+	private void publish(Calendar calendar, Type type, Event oldEvent, Event newEvent)
+	{
+		User owner = calendar.getOwner();
+		CopyOnWriteArrayList<Subscription> list = this.subscriptions.get(owner);
+		if (list == null)
+		{
+			return;
+		}
+		String username = owner.getName();
+		PublicEventChange change = null;
+		for (Subscription subscription : list)
+		{
+			if (subscription.calendarName == null || subscription.calendarName.equals(calendar.getName()))
+			{
+				if (change == null)
+				{
+					change = new PublicEventChange(type, username, calendar.getName(), oldEvent, newEvent);
+				}
+				subscription.offer(change);
+			}
+		}
+	}
+}
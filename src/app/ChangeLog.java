@@ -0,0 +1,316 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IEvent;
+import interfaces.ISyncedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import app.AppExceptions.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** The recent changes of a calendar, for clients which keep a copy of the calendar and only ask for what changed since their last sync.
+ * <p>
+ * Every change of the calendar raises its version, a modification sequence counted from 0, and is logged with the new version:
+ * the creation or edit of an event with the position of its new version, the deletion with a tombstone.
+ * An event keeps its identity ({@link Event#getSequence()}) when it is edited, so the changes of an event can be matched.
+ * A sync finds the first change after the version of the client by a binary search and collects the changes from there,
+ * so it costs {@code O(c log n)} for {@code c} changes, however large the calendar is.
+ * </p>
+ * <p>
+ * The syncs of only the public events have a sequence and a log of their own, which only count the changes of public events:
+ * an event made private is logged there as removed, and the changes of private events not at all. So their tokens tell nothing
+ * about private events, and private changes never push public ones out of the log.
+ * </p>
+ * <p>
+ * Only the last {@link #getRetention()} changes of each log, tombstones included, are kept. A client whose version is older than that
+ * gets all events of the calendar instead, and so does a client whose sync token is from another calendar of the same name,
+ * from the other log or from before a restart of the app: the token names the incarnation of the log, a random number drawn when it is created.
+ * The logs are kept in arrays which are only appended to; when they are full, the changes to keep are copied into new arrays.
+ * Readers take no lock: they work on the arrays and the length published last, and never read the entries appended after.
+ * </p>
+ */
+final class ChangeLog
+{
+	/** Number of changes kept if not set otherwise. */
+	static final int DEFAULT_RETENTION = 10000;
+
+	private static final String SEPARATOR = ".";
+
+	private static final Random incarnations = new Random();
+
+	private static final long TOMBSTONE = Long.MIN_VALUE;
+
+	/** The published state of a log. The arrays are shared with the next states, which only append to them. */
+	private static final class View
+	{
+		private final long[] versions;
+		private final long[] sequences;
+
+		/** Start of the new version of the event, {@link Long#MIN_VALUE} for a tombstone. */
+		private final long[] startTimes;
+
+		private final int size;
+
+		/** The version of the log. */
+		private final long version;
+
+		/** The newest version whose change is not kept any more; clients with this version or a newer one can be synced. */
+		private final long horizon;
+
+		View(long[] versions, long[] sequences, long[] startTimes, int size, long version, long horizon)
+		{
+			this.versions = versions;
+			this.sequences = sequences;
+			this.startTimes = startTimes;
+			this.size = size;
+			this.version = version;
+			this.horizon = horizon;
+		}
+	}
+
+	/** A sequence of changes with its own versions. */
+	private static final class Log
+	{
+		private final long incarnation = incarnations.nextLong();
+
+		// the state of the writers, only used with the lock of the calendar held
+		private int retention = DEFAULT_RETENTION;
+		private long[] versions = new long[16];
+		private long[] sequences = new long[16];
+		private long[] startTimes = new long[16];
+		private int size;
+		private long version;
+		private long horizon;
+
+		/** The state seen by the readers, published after each change. */
+		private volatile View view = new View(this.versions, this.sequences, this.startTimes, 0, 0, 0);
+
+		void append(long sequence, long startTime)
+		{
+			if (this.size == this.versions.length)
+			{
+				int keep = Math.min(this.size, this.retention);
+				int from = this.size - keep;
+				if (from > 0)
+				{
+					this.horizon = this.versions[from - 1];
+				}
+				// the readers keep the old arrays, the entries are only overwritten in the new ones
+				int capacity = Math.max(16, 2 * keep);
+				this.versions = Arrays.copyOfRange(this.versions, from, from + capacity);
+				this.sequences = Arrays.copyOfRange(this.sequences, from, from + capacity);
+				this.startTimes = Arrays.copyOfRange(this.startTimes, from, from + capacity);
+				this.size = keep;
+			}
+			this.version++;
+			this.versions[this.size] = this.version;
+			this.sequences[this.size] = sequence;
+			this.startTimes[this.size] = startTime;
+			this.size++;
+		}
+
+		/** Publishes the changes appended since the last call, if there are any. */
+		void publish()
+		{
+			if (this.view.version != this.version)
+			{
+				this.view = new View(this.versions, this.sequences, this.startTimes, this.size, this.version, this.horizon);
+			}
+		}
+	}
+
+	/** All changes, for the syncs of all events. */
+	private final Log allEvents = new Log();
+
+	/** The changes of public events, for the syncs of only the public events. */
+	private final Log publicEvents = new Log();
+
+	int getRetention()
+	{
+		return this.allEvents.retention;
+	}
+
+	/** Sets the number of changes to keep in each log, applied when the log is full the next time.
+	 * Must be called with the lock of the calendar held. */
+	void setRetention(int retention)
+	{
+		if (retention < 1)
+		{
+			throw new IllegalArgumentException("At least one change must be kept!");
+		}
+		this.allEvents.retention = retention;
+		this.publicEvents.retention = retention;
+	}
+
+	/** Logs the creation or the edit of an event. Must be called with the lock of the calendar held.
+	 * @param previous The old version of the event, {@code null} if it has been created.
+	 * @param event The new version of the event.
+	 */
+	void logChanged(Event previous, Event event)
+	{
+		this.allEvents.append(event.getSequence(), event.getStartTime());
+		if (event.isPublic())
+		{
+			this.publicEvents.append(event.getSequence(), event.getStartTime());
+		}
+		else if (previous != null && previous.isPublic())
+		{
+			// gone for the public clients
+			this.publicEvents.append(event.getSequence(), TOMBSTONE);
+		}
+		this.publish();
+	}
+
+	/** Logs the creation of events, as one change each. Must be called with the lock of the calendar held. */
+	void logChanged(Event[] events, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			this.allEvents.append(events[i].getSequence(), events[i].getStartTime());
+			if (events[i].isPublic())
+			{
+				this.publicEvents.append(events[i].getSequence(), events[i].getStartTime());
+			}
+		}
+		this.publish();
+	}
+
+	/** Logs the deletion of an event. Must be called with the lock of the calendar held. */
+	void logRemoved(Event event)
+	{
+		this.allEvents.append(event.getSequence(), TOMBSTONE);
+		if (event.isPublic())
+		{
+			this.publicEvents.append(event.getSequence(), TOMBSTONE);
+		}
+		this.publish();
+	}
+
+	private void publish()
+	{
+		this.allEvents.publish();
+		this.publicEvents.publish();
+	}
+
+	/** Lists the changes since the version of {@code syncToken}, or all events if they are not known.
+	 * @param calendar The calendar of this log.
+	 * @param syncToken A token handed out by this method with the same {@code onlyPublic}, {@code null} for all events.
+	 * @param onlyPublic If {@code true}, only the changes of public events are listed, an event made private as removed.
+	 * @throws InvalidCursorException If {@code syncToken} was not handed out by a sync query.
+	 */
+	CalendarChanges changesSince(Calendar calendar, String syncToken, boolean onlyPublic) throws InvalidCursorException
+	{
+		Log log = onlyPublic ? this.publicEvents : this.allEvents;
+		View current = log.view;
+		// read after the log, so that it has at least all changes logged, maybe newer ones
+		EventStore events = calendar.getEvents();
+		long since = parseToken(log, syncToken);
+		ArrayList<ISyncedEvent> changedEvents = new ArrayList<ISyncedEvent>();
+		ArrayList<Long> removedEventIds = new ArrayList<Long>();
+		String newToken = Long.toString(log.incarnation, Character.MAX_RADIX) + SEPARATOR + Long.toString(current.version, Character.MAX_RADIX);
+
+		if (since < current.horizon || since > current.version)
+		{
+			// a newer version of the events is fine: its changes are listed again by the next sync
+			Iterator<IEvent> iteratorEvents = events.iterator(Event.searchKey(Long.MIN_VALUE), null, onlyPublic);
+			while (iteratorEvents.hasNext())
+			{
+				changedEvents.add(new SyncedEvent((Event) iteratorEvents.next()));
+			}
+			return new CalendarChanges(true, changedEvents, removedEventIds, newToken);
+		}
+
+		// the last change of each event, in the order of the last changes
+		LinkedHashMap<Long, Integer> lastChanges = new LinkedHashMap<Long, Integer>();
+		for (int i = firstAfter(current, since); i < current.size; i++)
+		{
+			Long sequence = current.sequences[i];
+			lastChanges.remove(sequence);
+			lastChanges.put(sequence, i);
+		}
+		for (Map.Entry<Long, Integer> lastChange : lastChanges.entrySet())
+		{
+			long sequence = lastChange.getKey();
+			long startTime = current.startTimes[lastChange.getValue()];
+			if (startTime == TOMBSTONE)
+			{
+				removedEventIds.add(sequence);
+				continue;
+			}
+			Iterator<IEvent> found = events.iterator(Event.searchKeyAfter(startTime, sequence - 1), Event.searchKeyAfter(startTime, sequence), false);
+			if (!found.hasNext())
+			{
+				// changed again after this version of the log, listed by the next sync
+				continue;
+			}
+			Event event = (Event) found.next();
+			if (onlyPublic && event.isPrivate())
+			{
+				// made private after this version of the log, listed as removed by the next sync
+				continue;
+			}
+			changedEvents.add(new SyncedEvent(event));
+		}
+		return new CalendarChanges(false, changedEvents, removedEventIds, newToken);
+	}
+
+	/** The index of the first change after the version {@code since}. */
+	private static int firstAfter(View current, long since)
+	{
+		int low = 0;
+		int high = current.size;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (current.versions[middle] <= since)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** Converts a sync token back to the version it was handed out for.
+	 * @return The version, or {@code -1} if {@code syncToken} is {@code null} or belongs to another incarnation or log.
+	 * @throws InvalidCursorException If {@code syncToken} is not a sync token.
+	 */
+	private static long parseToken(Log log, String syncToken) throws InvalidCursorException
+	{
+		if (syncToken == null)
+		{
+			return -1;
+		}
+		int separator = syncToken.indexOf(SEPARATOR);
+		if (separator < 0)
+		{
+			throw new InvalidCursorException(syncToken);
+		}
+		try
+		{
+			long incarnation = Long.parseLong(syncToken.substring(0, separator), Character.MAX_RADIX);
+			long version = Long.parseLong(syncToken.substring(separator + 1), Character.MAX_RADIX);
+			return incarnation == log.incarnation ? version : -1;
+		}
+		catch (NumberFormatException e)
+		{
+			throw new InvalidCursorException(syncToken);
+		}
+	}
+}
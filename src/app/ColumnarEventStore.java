@@ -0,0 +1,465 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IEvent;
+import interfaces.IEventVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Event store for very large calendars, which keeps the events in {@link EventColumns} of primitives instead of objects.
+ * <p>
+ * {@link Event} objects are only created when an event is read, and scans run over contiguous memory.
+ * The columns are either arrays on the heap ({@link ArrayEventColumns}) or buffers outside of it ({@link OffHeapEventColumns}).
+ * </p>
+ * <p>
+ * Like all stores, the columns never change. To keep single changes cheap, new events go to a small {@link EventTree}
+ * first and deleted events are only marked as deleted. Once these changes exceed 1/{@value #MERGE_RATIO} of the columns,
+ * or the {@link EventColumns#maxPendingChanges()}, they are merged into new columns in one pass which copies the rows.
+ * A change therefore costs O(log n) plus an amortized copy of {@value #MERGE_RATIO} rows.
+ * </p>
+ */
+class ColumnarEventStore implements EventStore
+{
+	/** The pending changes are merged once there are more than the columns' size divided by this ratio. */
+	private static final int MERGE_RATIO = 32;
+
+	/** Pending changes are never merged before there are that many. */
+	private static final int MIN_MERGE = 64;
+
+	private final EventColumns columns;
+
+	/** Events added since the columns have been built. */
+	private final EventTree recentEvents;
+
+	/** Sorted rows of the columns whose events have been removed since the columns have been built. */
+	private final int[] deletedRows;
+
+	/** Provides a store without events.
+	 * @param emptyColumns Columns without rows, of the kind the store keeps its events in.
+	 */
+	ColumnarEventStore(EventColumns emptyColumns)
+	{
+		this(emptyColumns, EventTree.empty(), new int[0]);
+	}
+
+	private ColumnarEventStore(EventColumns columns, EventTree recentEvents, int[] deletedRows)
+	{
+		this.columns = columns;
+		this.recentEvents = recentEvents;
+		this.deletedRows = deletedRows;
+	}
+
+	@Override
+	public int size()
+	{
+		return this.columns.size - this.deletedRows.length + this.recentEvents.size();
+	}
+
+	@Override
+	public EventStore add(Event event)
+	{
+		return this.withChanges(this.recentEvents.add(event), this.deletedRows);
+	}
+
+	@Override
+	public EventStore remove(Event event)
+	{
+		EventTree newRecentEvents = this.recentEvents.remove(event);
+		if (newRecentEvents != this.recentEvents)
+		{
+			return this.withChanges(newRecentEvents, this.deletedRows);
+		}
+
+		int row = this.columns.rowOf(event.getStartTime(), event.getSequence());
+		if (row < 0 || this.isDeleted(row))
+		{
+			return this;
+		}
+
+		int position = -Arrays.binarySearch(this.deletedRows, row) - 1;
+		int[] newDeletedRows = new int[this.deletedRows.length + 1];
+		System.arraycopy(this.deletedRows, 0, newDeletedRows, 0, position);
+		newDeletedRows[position] = row;
+		System.arraycopy(this.deletedRows, position, newDeletedRows, position + 1, this.deletedRows.length - position);
+		return this.withChanges(this.recentEvents, newDeletedRows);
+	}
+
+	/** {@inheritDoc}
+	 * Small batches become pending changes like single events. Otherwise the events are merged with the columns
+	 * and the pending changes into new columns right away.
+	 */
+	@Override
+	public EventStore addAll(Event[] sortedEvents, int count)
+	{
+		if (count == 0)
+		{
+			return this;
+		}
+		int changes = this.recentEvents.size() + this.deletedRows.length + count;
+		if (changes <= MIN_MERGE || changes <= this.maxPendingChanges())
+		{
+			return new ColumnarEventStore(this.columns, this.recentEvents.addAll(sortedEvents, count), this.deletedRows);
+		}
+		Iterator<IEvent> newEvents = Arrays.<IEvent>asList(sortedEvents).subList(0, count).iterator();
+		if (this.recentEvents.size() > 0)
+		{
+			newEvents = new MergingIterator(this.recentEvents.iterator(Event.searchKey(Long.MIN_VALUE), null, false), newEvents);
+		}
+		return this.merge(this.deletedRows, newEvents, this.recentEvents.size() + count);
+	}
+
+	/** Number of pending changes up to which they are not merged into the columns. */
+	private int maxPendingChanges()
+	{
+		return Math.min(this.columns.size / MERGE_RATIO, this.columns.maxPendingChanges());
+	}
+
+	/** Provides the store with the given pending changes, merged into new columns if there are too many of them. */
+	private ColumnarEventStore withChanges(EventTree newRecentEvents, int[] newDeletedRows)
+	{
+		int changes = newRecentEvents.size() + newDeletedRows.length;
+		if (changes <= MIN_MERGE || changes <= this.maxPendingChanges())
+		{
+			return new ColumnarEventStore(this.columns, newRecentEvents, newDeletedRows);
+		}
+		return this.merge(newDeletedRows, newRecentEvents.iterator(Event.searchKey(Long.MIN_VALUE), null, false), newRecentEvents.size());
+	}
+
+	/** Builds new columns in one pass, copying the rows which are not deleted and inserting the new events between them.
+	 * @param newEvents The events to insert, in order.
+	 * @param count Number of events in {@code newEvents}.
+	 */
+	private ColumnarEventStore merge(int[] newDeletedRows, Iterator<IEvent> newEvents, int count)
+	{
+		EventColumns merged = this.columns.create(this.columns.size - newDeletedRows.length + count);
+		Event nextEvent = newEvents.hasNext() ? (Event) newEvents.next() : null;
+		int deleted = 0;
+		for (int row = 0; row < this.columns.size; row++)
+		{
+			if (deleted < newDeletedRows.length && newDeletedRows[deleted] == row)
+			{
+				deleted++;
+				continue;
+			}
+			long startTime = this.columns.startTime(row);
+			while (nextEvent != null && (nextEvent.getStartTime() < startTime
+					|| (nextEvent.getStartTime() == startTime && nextEvent.getSequence() < this.columns.sequence(row))))
+			{
+				merged.append(nextEvent);
+				nextEvent = newEvents.hasNext() ? (Event) newEvents.next() : null;
+			}
+			merged.appendRow(this.columns, row);
+		}
+		for (; nextEvent != null; nextEvent = newEvents.hasNext() ? (Event) newEvents.next() : null)
+		{
+			merged.append(nextEvent);
+		}
+		merged.finish();
+		return new ColumnarEventStore(merged, EventTree.empty(), new int[0]);
+	}
+
+	private boolean isDeleted(int row)
+	{
+		return this.deletedRows.length > 0 && Arrays.binarySearch(this.deletedRows, row) >= 0;
+	}
+
+	@Override
+	public Iterator<IEvent> iterator(Event from, Event until, boolean onlyPublic)
+	{
+		Iterator<IEvent> columnEvents = new ColumnIterator(from, until, onlyPublic);
+		if (this.recentEvents.size() == 0)
+		{
+			return columnEvents;
+		}
+		return new MergingIterator(columnEvents, this.recentEvents.iterator(from, until, onlyPublic));
+	}
+
+	@Override
+	public void collectOverlapping(long from, long to, boolean onlyPublic, ArrayList<IEvent> output)
+	{
+		if (this.recentEvents.size() == 0)
+		{
+			this.collectOverlappingRows(from, to, onlyPublic, output);
+			return;
+		}
+
+		ArrayList<IEvent> columnEvents = new ArrayList<IEvent>();
+		this.collectOverlappingRows(from, to, onlyPublic, columnEvents);
+		ArrayList<IEvent> recent = new ArrayList<IEvent>();
+		this.recentEvents.collectOverlapping(from, to, onlyPublic, recent);
+
+		Iterator<IEvent> merged = new MergingIterator(columnEvents.iterator(), recent.iterator());
+		while (merged.hasNext())
+		{
+			output.add(merged.next());
+		}
+	}
+
+	/** Collects the overlapping events of the columns.
+	 * The search starts at the first row which can overlap the time span, and skips blocks of rows which all end before it.
+	 */
+	private void collectOverlappingRows(long from, long to, boolean onlyPublic, ArrayList<IEvent> output)
+	{
+		EventColumns c = this.columns;
+		int end = c.firstRowStartingAfter(to);
+		int row = c.firstRowEndingAtOrAfter(from);
+		while (row < end)
+		{
+			int block = row >>> EventColumns.BLOCK_BITS;
+			if (c.blockMaxEnd(block) < from)
+			{
+				row = (block + 1) << EventColumns.BLOCK_BITS;
+				continue;
+			}
+
+			int blockEnd = Math.min(end, (block + 1) << EventColumns.BLOCK_BITS);
+			for (; row < blockEnd; row++)
+			{
+				if (c.endTime(row) >= from && (!onlyPublic || c.isPublic(row)) && !this.isDeleted(row))
+				{
+					output.add(c.event(row));
+				}
+			}
+		}
+	}
+
+	/** {@inheritDoc}
+	 * The rows are searched like {@link #collectOverlappingRows(long, long, boolean, ArrayList)} does. The pending events
+	 * are merged in between by looking up the next one in the {@link EventTree} whenever one has been passed on.
+	 */
+	@Override
+	public boolean visitOverlapping(long from, long to, boolean onlyPublic, IEventVisitor visitor)
+	{
+		EventColumns c = this.columns;
+		Event recent = this.recentEvents.firstOverlapping(Long.MIN_VALUE, Long.MIN_VALUE, from, to, onlyPublic);
+		int end = c.firstRowStartingAfter(to);
+		int row = c.firstRowEndingAtOrAfter(from);
+		while (row < end)
+		{
+			int block = row >>> EventColumns.BLOCK_BITS;
+			if (c.blockMaxEnd(block) < from)
+			{
+				row = (block + 1) << EventColumns.BLOCK_BITS;
+				continue;
+			}
+
+			int blockEnd = Math.min(end, (block + 1) << EventColumns.BLOCK_BITS);
+			for (; row < blockEnd; row++)
+			{
+				if (c.endTime(row) >= from && (!onlyPublic || c.isPublic(row)) && !this.isDeleted(row))
+				{
+					for (; recent != null && isBefore(recent, c, row); recent = this.recentEvents.firstOverlapping(recent.getStartTime(), recent.getSequence() + 1, from, to, onlyPublic))
+					{
+						if (!recent.accept(visitor))
+						{
+							return false;
+						}
+					}
+					if (!c.visit(row, visitor))
+					{
+						return false;
+					}
+				}
+			}
+		}
+		for (; recent != null; recent = this.recentEvents.firstOverlapping(recent.getStartTime(), recent.getSequence() + 1, from, to, onlyPublic))
+		{
+			if (!recent.accept(visitor))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** {@inheritDoc}
+	 * The pending events are merged in between the rows like in {@link #visitOverlapping(long, long, boolean, IEventVisitor)}.
+	 */
+	@Override
+	public boolean visitStartingBetween(long from, long to, boolean onlyPublic, IEventVisitor visitor)
+	{
+		EventColumns c = this.columns;
+		Event recent = this.recentEvents.first(from, Long.MIN_VALUE, onlyPublic);
+		int end = c.lowerBound(to, Long.MIN_VALUE);
+		for (int row = c.lowerBound(from, Long.MIN_VALUE); row < end; row++)
+		{
+			if (onlyPublic)
+			{
+				row = c.nextPublicRow(row, end);
+				if (row == end)
+				{
+					break;
+				}
+			}
+			if (this.isDeleted(row))
+			{
+				continue;
+			}
+			for (; recent != null && isBefore(recent, c, row); recent = this.recentEvents.first(recent.getStartTime(), recent.getSequence() + 1, onlyPublic))
+			{
+				if (!recent.accept(visitor))
+				{
+					return false;
+				}
+			}
+			if (!c.visit(row, visitor))
+			{
+				return false;
+			}
+		}
+		for (; recent != null && recent.getStartTime() < to; recent = this.recentEvents.first(recent.getStartTime(), recent.getSequence() + 1, onlyPublic))
+		{
+			if (!recent.accept(visitor))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Tells if the {@code event} is ordered before the {@code row} of the columns. */
+	private static boolean isBefore(Event event, EventColumns columns, int row)
+	{
+		long startTime = columns.startTime(row);
+		return event.getStartTime() < startTime || (event.getStartTime() == startTime && event.getSequence() < columns.sequence(row));
+	}
+
+	@Override
+	public Event find(String eventName, long startTime)
+	{
+		Event found = this.recentEvents.find(eventName, startTime);
+
+		EventColumns c = this.columns;
+		int id = c.names.lookup(eventName);
+		if (id < 0)
+		{
+			return found;
+		}
+		for (int row = c.lowerBound(startTime, Long.MIN_VALUE); row < c.size && c.startTime(row) == startTime; row++)
+		{
+			if (c.nameId(row) == id && !this.isDeleted(row))
+			{
+				Event event = c.event(row);
+				return found == null || event.compareTo(found) < 0 ? event : found;
+			}
+		}
+		return found;
+	}
+
+	/** Iterator over the rows of the columns, which skips deleted rows. */
+	private class ColumnIterator implements Iterator<IEvent>
+	{
+		private int row;
+		private int end;
+		private boolean onlyPublic;
+
+		private ColumnIterator(Event from, Event until, boolean onlyPublic)
+		{
+			this.onlyPublic = onlyPublic;
+			this.end = until == null ? columns.size : columns.lowerBound(until.getStartTime(), until.getSequence());
+			this.row = this.skip(columns.lowerBound(from.getStartTime(), from.getSequence()));
+		}
+
+		/** Provides the first row from {@code row} on which is to be returned. */
+		private int skip(int row)
+		{
+			while (true)
+			{
+				if (this.onlyPublic)
+				{
+					row = columns.nextPublicRow(row, this.end);
+				}
+				if (row >= this.end || !isDeleted(row))
+				{
+					return row;
+				}
+				row++;
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return this.row < this.end;
+		}
+
+		@Override
+		public IEvent next()
+		{
+			if (this.row >= this.end)
+			{
+				throw new NoSuchElementException();
+			}
+			Event event = columns.event(this.row);
+			this.row = this.skip(this.row + 1);
+			return event;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/** Merges two iterators, each sorted by {@link Event#compareTo(Event)}, into one sorted iterator. */
+	private static class MergingIterator implements Iterator<IEvent>
+	{
+		private Iterator<IEvent> first;
+		private Iterator<IEvent> second;
+		private Event nextOfFirst;
+		private Event nextOfSecond;
+
+		private MergingIterator(Iterator<IEvent> first, Iterator<IEvent> second)
+		{
+			this.first = first;
+			this.second = second;
+			this.nextOfFirst = first.hasNext() ? (Event) first.next() : null;
+			this.nextOfSecond = second.hasNext() ? (Event) second.next() : null;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return this.nextOfFirst != null || this.nextOfSecond != null;
+		}
+
+		@Override
+		public IEvent next()
+		{
+			Event event;
+			if (this.nextOfSecond == null || (this.nextOfFirst != null && this.nextOfFirst.compareTo(this.nextOfSecond) < 0))
+			{
+				if (this.nextOfFirst == null)
+				{
+					throw new NoSuchElementException();
+				}
+				event = this.nextOfFirst;
+				this.nextOfFirst = this.first.hasNext() ? (Event) this.first.next() : null;
+			}
+			else
+			{
+				event = this.nextOfSecond;
+				this.nextOfSecond = this.second.hasNext() ? (Event) this.second.next() : null;
+			}
+			return event;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IConditionalResult;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** The result of a conditional read. An unchanged result is always the same constant, so it costs no allocation.
+ */
+public class ConditionalResult<T> implements IConditionalResult<T>
+{
+	@SuppressWarnings("rawtypes")
+	private static final ConditionalResult NOT_MODIFIED = new ConditionalResult<Object>(false, null, 0);
+
+	private final boolean modified;
+	private final T result;
+	private final long version;
+
+	private ConditionalResult(boolean modified, T result, long version)
+	{
+		this.modified = modified;
+		this.result = result;
+		this.version = version;
+	}
+
+	/** The result for a caller whose version is still current. */
+	@SuppressWarnings("unchecked")
+	static <T> ConditionalResult<T> notModified()
+	{
+		return NOT_MODIFIED;
+	}
+
+	/** A changed result.
+	 * @param version The version read before the {@code result}, so that a change in between is found by the next read.
+	 */
+	static <T> ConditionalResult<T> modified(T result, long version)
+	{
+		return new ConditionalResult<T>(true, result, version);
+	}
+
+	@Override
+	public boolean isModified()
+	{
+		return this.modified;
+	}
+
+	@Override
+	public T getResult()
+	{
+		return this.result;
+	}
+
+	@Override
+	public long getVersion()
+	{
+		return this.version;
+	}
+}
@@ -0,0 +1,371 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** The results of recent day overviews ({@link Calendar#getAllPublicEventsAtDate(java.util.Date)} and
+ * {@link Calendar#getAllEventsAtDate(java.util.Date)}) of all calendars of the app, so that popular days are not searched again and again.
+ * <p>
+ * An entry is keyed by the calendar, the date and whether only public events are listed. The date is the exact point in time
+ * asked for, usually the midnight of a day. When the cache is full, an entry used long ago is evicted: the least recently used
+ * of {@value #EVICTION_SAMPLES} entries picked at random, which comes close to evicting the least recently used entry of all,
+ * without keeping the entries in the order of use.
+ * </p>
+ * <p>
+ * The calendars invalidate exactly the entries an event belongs to, with the lock of their owner held: when an event is created,
+ * changed or deleted, the entries of the dates from its start to its end are dropped, the entries of only the public events
+ * only if the event is or was public. To find them, the entries are also kept sorted by date per calendar.
+ * A result is only stored if its calendar did not change while it was searched, so a stored result is never older than the events.
+ * </p>
+ * <p>
+ * Lookups never lock, like the other reads of a calendar: the entries are in a {@link ConcurrentHashMap}, and a hit only
+ * stamps its entry with the {@link #clock}. The changes of the entries hold the {@link #lock}. A reader storing the result
+ * of a miss only tries to take it, and drops the result if another thread holds it, so readers never wait for each other.
+ * </p>
+ */
+final class DayOverviewCache
+{
+	/** Default for {@link #setCapacity(int)}. */
+	static final int DEFAULT_CAPACITY = 4096;
+
+	/** Number of entries compared to pick the one to evict. */
+	private static final int EVICTION_SAMPLES = 8;
+
+	/** All entries, read without lock. */
+	private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+	/** Held by the changes of the entries. Guards the fields below, except the counters of the readers. */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private volatile int capacity;
+
+	/** All entries in no particular order, to pick the samples for an eviction. */
+	private final ArrayList<Entry> samples = new ArrayList<Entry>();
+	private final Random random = new Random();
+
+	/** The entries of each calendar by date, of only public events and of all events. */
+	private final HashMap<Calendar, Days> calendars = new HashMap<Calendar, Days>();
+
+	/** Counts the stored results, the time of the stamps of the entries. Only written with the lock held. */
+	private volatile long clock;
+
+	// counted by the readers, without sharing a single counter
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	private long evictions;
+	private long invalidations;
+
+	DayOverviewCache()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	DayOverviewCache(int capacity)
+	{
+		this.capacity = capacity;
+	}
+
+	private static class Key
+	{
+		private final Calendar calendar;
+		private final long time;
+		private final boolean onlyPublic;
+
+		public Key(Calendar calendar, long time, boolean onlyPublic)
+		{
+			this.calendar = calendar;
+			this.time = time;
+			this.onlyPublic = onlyPublic;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			Key key = (Key) o;
+			return this.calendar == key.calendar && this.time == key.time && this.onlyPublic == key.onlyPublic;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int hash = System.identityHashCode(this.calendar) * 31 + (int) (this.time ^ (this.time >>> 32));
+			return this.onlyPublic ? ~hash : hash;
+		}
+	}
+
+	private static class Entry
+	{
+		private final Key key;
+		private final IEvent[] events;
+
+		/** The {@link DayOverviewCache#clock} when the entry was used last. */
+		private volatile long lastUse;
+
+		/** Position in {@link DayOverviewCache#samples}. Guarded by the lock of the cache. */
+		private int index;
+
+		public Entry(Key key, IEvent[] events, long lastUse)
+		{
+			this.key = key;
+			this.events = events;
+			this.lastUse = lastUse;
+		}
+	}
+
+	private static class Days
+	{
+		private final TreeMap<Long, Entry> publicEvents = new TreeMap<Long, Entry>();
+		private final TreeMap<Long, Entry> allEvents = new TreeMap<Long, Entry>();
+
+		public TreeMap<Long, Entry> get(boolean onlyPublic)
+		{
+			return onlyPublic ? this.publicEvents : this.allEvents;
+		}
+
+		public boolean isEmpty()
+		{
+			return this.publicEvents.isEmpty() && this.allEvents.isEmpty();
+		}
+	}
+
+	/** Looks up the events of the {@code calendar} happening at {@code time}, without locking.
+	 * @return The events as stored by {@link #put(Calendar, long, boolean, IEvent[], long)}, {@code null} if they are not in the cache.
+	 * The array must not be changed.
+	 */
+	IEvent[] get(Calendar calendar, long time, boolean onlyPublic)
+	{
+		Entry entry = this.entries.get(new Key(calendar, time, onlyPublic));
+		if (entry == null)
+		{
+			this.misses.increment();
+			return null;
+		}
+		this.hits.increment();
+		// only written once per tick, so that the readers of a popular entry do not keep writing to it
+		long now = this.clock;
+		if (entry.lastUse != now)
+		{
+			entry.lastUse = now;
+		}
+		return entry.events;
+	}
+
+	/** Stores the events of the {@code calendar} happening at {@code time}, unless the calendar changed since they were searched,
+	 * or another thread is changing the entries right now.
+	 * @param events The events, not to be changed any more.
+	 * @param version {@link Calendar#getVersion()} read before the events were searched.
+	 */
+	void put(Calendar calendar, long time, boolean onlyPublic, IEvent[] events, long version)
+	{
+		if (this.capacity == 0 || !this.lock.tryLock())
+		{
+			return;
+		}
+		try
+		{
+			// read once under the lock, the capacity may have been set to 0 since it was checked
+			int capacity = this.capacity;
+			// an invalidation may have run before the result was stored
+			if (capacity == 0 || calendar.getVersion() != version)
+			{
+				return;
+			}
+			Key key = new Key(calendar, time, onlyPublic);
+			Entry entry = new Entry(key, events, ++this.clock);
+			Days days = this.calendars.get(calendar);
+			if (days == null)
+			{
+				days = new Days();
+				this.calendars.put(calendar, days);
+			}
+			// replaces an entry stored by a concurrent reader, in all maps
+			Entry replaced = days.get(onlyPublic).put(time, entry);
+			if (replaced != null)
+			{
+				this.removeSample(replaced);
+			}
+			entry.index = this.samples.size();
+			this.samples.add(entry);
+			this.entries.put(key, entry);
+			this.evict(capacity, entry);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/** Drops the entries of the dates the {@code event} of the {@code calendar} happens at, after it has been created, changed or deleted.
+	 * Must be called after the change is published and {@link Calendar#getVersion()} moved on.
+	 */
+	void invalidate(Calendar calendar, Event event)
+	{
+		this.lock.lock();
+		try
+		{
+			Days days = this.calendars.get(calendar);
+			if (days == null)
+			{
+				return;
+			}
+			this.invalidate(days.allEvents, event);
+			if (event.isPublic())
+			{
+				this.invalidate(days.publicEvents, event);
+			}
+			if (days.isEmpty())
+			{
+				this.calendars.remove(calendar);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	private void invalidate(TreeMap<Long, Entry> days, Event event)
+	{
+		Iterator<Entry> entries = days.subMap(event.getStartTime(), true, event.getEndTime(), true).values().iterator();
+		while (entries.hasNext())
+		{
+			Entry entry = entries.next();
+			entries.remove();
+			this.entries.remove(entry.key);
+			this.removeSample(entry);
+			this.invalidations++;
+		}
+	}
+
+	/** Drops all entries of the {@code calendar}, after it has been deleted. */
+	void removeAll(Calendar calendar)
+	{
+		this.lock.lock();
+		try
+		{
+			Days days = this.calendars.remove(calendar);
+			if (days == null)
+			{
+				return;
+			}
+			for (Entry entry : days.publicEvents.values())
+			{
+				this.entries.remove(entry.key);
+				this.removeSample(entry);
+			}
+			for (Entry entry : days.allEvents.values())
+			{
+				this.entries.remove(entry.key);
+				this.removeSample(entry);
+			}
+			this.invalidations += days.publicEvents.size() + days.allEvents.size();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/** Changes the maximal number of entries, evicting entries used long ago if there are more.
+	 * @param capacity Maximal number of entries, {@code 0} to disable the cache.
+	 */
+	void setCapacity(int capacity)
+	{
+		this.lock.lock();
+		try
+		{
+			this.capacity = capacity;
+			this.evict(capacity, null);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	CacheStatistics getStatistics()
+	{
+		this.lock.lock();
+		try
+		{
+			return new CacheStatistics(this.hits.sum(), this.misses.sum(), this.evictions, this.invalidations, this.samples.size(), this.capacity);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/** Evicts entries until there are at most {@code capacity}, each the least recently used of some samples,
+	 * or of all entries if there are not more than samples.
+	 * @param stored The entry just stored, which is not evicted, {@code null} if there is none.
+	 */
+	private void evict(int capacity, Entry stored)
+	{
+		while (this.samples.size() > capacity)
+		{
+			int size = this.samples.size();
+			if (size == 1 && this.samples.get(0) == stored)
+			{
+				// nothing else left to evict
+				break;
+			}
+			Entry oldest = null;
+			for (int i = 0; i < Math.min(size, EVICTION_SAMPLES); i++)
+			{
+				Entry sample = this.samples.get(size <= EVICTION_SAMPLES ? i : this.random.nextInt(size));
+				if (sample != stored && (oldest == null || sample.lastUse < oldest.lastUse))
+				{
+					oldest = sample;
+				}
+			}
+			if (oldest == null)
+			{
+				// only picked the entry just stored
+				continue;
+			}
+			this.entries.remove(oldest.key);
+			this.removeSample(oldest);
+			Days days = this.calendars.get(oldest.key.calendar);
+			days.get(oldest.key.onlyPublic).remove(oldest.key.time);
+			if (days.isEmpty())
+			{
+				this.calendars.remove(oldest.key.calendar);
+			}
+			this.evictions++;
+		}
+	}
+
+	/** Removes the {@code entry} from the {@link #samples}, by moving the last one into its place. */
+	private void removeSample(Entry entry)
+	{
+		Entry last = this.samples.remove(this.samples.size() - 1);
+		if (last != entry)
+		{
+			last.index = entry.index;
+			this.samples.set(entry.index, last);
+		}
+	}
+}
@@ -3,7 +3,11 @@
  */
 package app;
 import interfaces.IEvent;
+import interfaces.IEventVisitor;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
 import app.AppExceptions.*;
 
 /**
@@ -12,12 +16,25 @@ import app.AppExceptions.*;
  *
  */
 
+/** An event of a {@link Calendar}.
+ * <p>
+ * Events are immutable. Start and end are stored as milliseconds since the epoch, so ordering and filtering
+ * compare primitives, and the {@link Date} objects passed in or handed out are copies:
+ * changing them afterwards cannot move an event within its calendar.
+ * </p>
+ */
 public class Event implements IEvent, Comparable<Event>
 {
-	private String eventName;
-	private Date startDate;
-	private Date endDate;
-	private boolean isPrivate;
+	// events never change, so a calendar can hand them to readers of older versions of its events
+	private final String eventName;
+	private final long startTime;
+	private final long endTime;
+	private final boolean isPrivate;
+
+	/** Creation order, used to order events with the same start date. */
+	private final long sequence;
+
+	private static final AtomicLong sequenceCounter = new AtomicLong();
 
 	/** Constructor for specific event with the state 'private'
 	 * @param eventName A precise name / description for the event
@@ -27,22 +44,133 @@ public class Event implements IEvent, Comparable<Event>
 	 */
 	public Event(String eventName, Date startDate, Date endDate) throws InvalidDateException
 	{
+		this(eventName, startDate, endDate, true);
+	}
 
-		checkValidDates(startDate, endDate);
+	/** Constructor for specific event with the given visibility.
+	 * @param isPrivate {@code true} for a private, {@code false} for a public event.
+	 * @throws InvalidDateException If {@code endDate} is placed before {@code startDate}.
+	 */
+	Event(String eventName, Date startDate, Date endDate, boolean isPrivate) throws InvalidDateException
+	{
+		this(eventName, startDate.getTime(), endDate.getTime(), isPrivate, sequenceCounter.getAndIncrement());
+		checkValidDates(this.startTime, this.endTime);
+	}
 
+	private Event(String eventName, long startTime, long endTime, boolean isPrivate, long sequence)
+	{
 		this.eventName = eventName;
-		this.startDate = startDate;
-		this.endDate = endDate;
-		this.isPrivate = true;
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.isPrivate = isPrivate;
+		this.sequence = sequence;
+	}
+
+	/** Constructor for search keys.
+	 */
+	private Event(long startTime, long sequence)
+	{
+		this.eventName = null;
+		this.startTime = startTime;
+		this.endTime = startTime;
+		this.isPrivate = false;
+		this.sequence = sequence;
+	}
+
+	/** Recreates an event from the values of an event that has been created before,
+	 * for stores which do not keep the {@link Event} objects and for the {@link Journal}.
+	 * The values are not checked again.
+	 */
+	static Event restore(String eventName, long startTime, long endTime, boolean isPrivate, long sequence)
+	{
+		return new Event(eventName, startTime, endTime, isPrivate, sequence);
+	}
+
+	/** Creates the events of a batch, after checking all of them. Their sequences follow the order of the batch.
+	 * @throws InvalidDatesException If events end before they start, listing all of them. No event is created then.
+	 */
+	static Event[] create(EventBatch batch) throws InvalidDatesException
+	{
+		ArrayList<Integer> positions = null;
+		ArrayList<InvalidDateException> invalidDates = null;
+		for (int i = 0; i < batch.size(); i++)
+		{
+			try
+			{
+				checkValidDates(batch.getStartTime(i), batch.getEndTime(i));
+			}
+			catch (InvalidDateException e)
+			{
+				if (positions == null)
+				{
+					positions = new ArrayList<Integer>();
+					invalidDates = new ArrayList<InvalidDateException>();
+				}
+				positions.add(i);
+				invalidDates.add(e);
+			}
+		}
+		if (positions != null)
+		{
+			throw new InvalidDatesException(positions, invalidDates);
+		}
+
+		long firstSequence = sequenceCounter.getAndAdd(batch.size());
+		Event[] events = new Event[batch.size()];
+		for (int i = 0; i < events.length; i++)
+		{
+			events[i] = new Event(batch.getName(i), batch.getStartTime(i), batch.getEndTime(i), batch.isPrivate(i), firstSequence + i);
+		}
+		return events;
 	}
 
-	private void checkValidDates(Date startDate, Date endDate) throws InvalidDateException
+	/** Makes sure that events created from now on are ordered after the event with the given {@code sequence},
+	 * which has been restored from the {@link Journal}.
+	 */
+	static void reserveSequence(long sequence)
 	{
-		if (startDate.after(endDate))
+		long current = sequenceCounter.get();
+		while (current <= sequence && !sequenceCounter.compareAndSet(current, sequence + 1))
 		{
-			throw new InvalidDateException(startDate, endDate);
+			current = sequenceCounter.get();
 		}
+	}
+
+	/** Provides a key to seek in ordered event collections.
+	 * @param startDate Date to seek.
+	 * @return A key which is ordered before all events starting at {@code startDate} or later
+	 * and after all events starting before it.
+	 */
+	static Event searchKey(Date startDate)
+	{
+		return searchKey(startDate.getTime());
+	}
+
+	/** Provides a key to seek in ordered event collections, like {@link #searchKey(Date)}.
+	 * @param startTime Milliseconds since the epoch to seek.
+	 */
+	static Event searchKey(long startTime)
+	{
+		return new Event(startTime, -1);
+	}
+
+	/** Provides a key to seek in ordered event collections right behind a given event.
+	 * The event itself does not need to exist anymore.
+	 * @param startTime {@link #getStartTime()} of the event.
+	 * @param sequence {@link #getSequence()} of the event.
+	 * @return A key which is ordered after the event and before all events following it.
+	 */
+	static Event searchKeyAfter(long startTime, long sequence)
+	{
+		return new Event(startTime, sequence + 1);
+	}
 
+	private static void checkValidDates(long startTime, long endTime) throws InvalidDateException
+	{
+		if (startTime > endTime)
+		{
+			throw new InvalidDateException(new Date(startTime), new Date(endTime));
+		}
 	}
 
 	/////////////
@@ -55,76 +183,123 @@ public class Event implements IEvent, Comparable<Event>
 		return this.eventName;
 	}
 
+	/** Provides the start as a new {@link Date}, which the caller may change freely. */
 	@Override
 	public Date getStartDate()
 	{
-		return this.startDate;
+		return new Date(this.startTime);
 	}
 
+	/** Provides the end as a new {@link Date}, which the caller may change freely. */
 	@Override
 	public Date getEndDate()
 	{
-		return this.endDate;
+		return new Date(this.endTime);
 	}
 
-	@Override
-	public boolean isPrivate()
+	/** Start in milliseconds since the epoch. */
+	long getStartTime()
 	{
-		return this.isPrivate;
+		return this.startTime;
 	}
 
-	@Override
-	public boolean isPublic()
+	/** End in milliseconds since the epoch. */
+	long getEndTime()
 	{
-		return !this.isPrivate;
+		return this.endTime;
 	}
 
-	/////////////
-	// SETTERS //
-	/////////////
-
-	public void setEventName(String name)
+	/** Position of the event among events with the same start date. */
+	long getSequence()
 	{
-		this.eventName = name;
+		return this.sequence;
 	}
 
-	public void setStartDate(Date startDate) throws InvalidDateException
+	/** Passes the values of the event to the {@code visitor}.
+	 * @return The answer of the visitor, {@code false} to stop.
+	 */
+	boolean accept(IEventVisitor visitor)
 	{
-		checkValidDates(startDate, this.endDate);
-
-		this.startDate = startDate;
+		return visitor.visit(this.eventName, this.startTime, this.endTime, this.isPrivate);
 	}
 
-	public void setEndDate(Date endDate) throws InvalidDateException
+	@Override
+	public boolean isPrivate()
 	{
-		checkValidDates(this.startDate, endDate);
+		return this.isPrivate;
+	}
 
-		this.endDate = endDate;
+	@Override
+	public boolean isPublic()
+	{
+		return !this.isPrivate;
 	}
 
-	public void setPrivateVisibility(boolean value)
+	/////////////
+	// EDITING //
+	/////////////
+
+	/** Provides the edited version of this event. The event itself stays unchanged.
+	 * The edited event keeps the position of this event among events with the same start date.
+	 * @param newEventName New name, {@code null} to keep the name.
+	 * @param newStartDate New start date, {@code null} to keep the start date.
+	 * @param newEndDate New end date, {@code null} to keep the end date.
+	 * @param newPrivateVisible New visibility, {@code null} to keep the visibility.
+	 * @throws InvalidDateException If the new end date is placed before the new start date.
+	 */
+	Event edit(String newEventName, Date newStartDate, Date newEndDate, Boolean newPrivateVisible) throws InvalidDateException
 	{
-		this.isPrivate = value;
+		long newStartTime = newStartDate != null ? newStartDate.getTime() : this.startTime;
+		long newEndTime = newEndDate != null ? newEndDate.getTime() : this.endTime;
+		checkValidDates(newStartTime, newEndTime);
+
+		return new Event(newEventName != null ? newEventName : this.eventName,
+				newStartTime,
+				newEndTime,
+				newPrivateVisible != null ? newPrivateVisible : this.isPrivate,
+				this.sequence);
 	}
 
 	/////////////
 	// COMPARE //
 	/////////////
 
+	/** Orders events by their start date. Events with the same start date are ordered by creation,
+	 * so two different events never compare as equal.
+	 */
 	@Override
 	public int compareTo(Event eventToCompare)
 	{
-		if(this.startDate.before(eventToCompare.getStartDate()))
+		if (this.startTime != eventToCompare.startTime)
 		{
-			return -1;
+			return this.startTime < eventToCompare.startTime ? -1 : 1;
 		}
-		else if(this.startDate.after(eventToCompare.getStartDate()))
+		if (this.sequence != eventToCompare.sequence)
 		{
-			return 1;
+			return this.sequence < eventToCompare.sequence ? -1 : 1;
 		}
-		else
+		return 0;
+	}
+
+	/** Events are equal if they have the same values and come from the same creation.
+	 * Events read twice from a store which does not keep the {@link Event} objects are therefore equal.
+	 */
+	@Override
+	public boolean equals(Object o)
+	{
+		if (!(o instanceof Event))
 		{
-			return 0;
+			return false;
 		}
+		Event event = (Event) o;
+		return this.sequence == event.sequence && this.startTime == event.startTime && this.endTime == event.endTime
+				&& this.isPrivate == event.isPrivate
+				&& (this.eventName == null ? event.eventName == null : this.eventName.equals(event.eventName));
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (int) (this.sequence ^ (this.sequence >>> 32));
 	}
 }
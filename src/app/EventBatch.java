@@ -0,0 +1,105 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Events to create together with {@link Calendar#createEvents(EventBatch)}.
+ * <p>
+ * The values are collected as given; the dates are only checked when the batch is created, so that all invalid
+ * events are reported at once. The values are kept in arrays instead of objects, as a batch may hold many events.
+ * The dates are copied, so changing them afterwards does not change the batch.
+ * </p>
+ */
+public class EventBatch
+{
+	private String[] names;
+	private long[] startTimes;
+	private long[] endTimes;
+	private boolean[] privates;
+	private int size;
+
+	public EventBatch()
+	{
+		this(16);
+	}
+
+	/** @param expectedSize Number of events the batch will hold, to avoid growing it. */
+	public EventBatch(int expectedSize)
+	{
+		int capacity = Math.max(1, expectedSize);
+		this.names = new String[capacity];
+		this.startTimes = new long[capacity];
+		this.endTimes = new long[capacity];
+		this.privates = new boolean[capacity];
+	}
+
+	/** Adds a private event to the batch, see {@link Calendar#createPrivateEvent(String, Date, Date)}. */
+	public void addPrivateEvent(String name, Date startDate, Date endDate)
+	{
+		this.add(name, startDate.getTime(), endDate.getTime(), true);
+	}
+
+	/** Adds a public event to the batch, see {@link Calendar#createPublicEvent(String, Date, Date)}. */
+	public void addPublicEvent(String name, Date startDate, Date endDate)
+	{
+		this.add(name, startDate.getTime(), endDate.getTime(), false);
+	}
+
+	void add(String name, long startTime, long endTime, boolean isPrivate)
+	{
+		if (this.size == this.names.length)
+		{
+			int capacity = this.size * 2;
+			this.names = Arrays.copyOf(this.names, capacity);
+			this.startTimes = Arrays.copyOf(this.startTimes, capacity);
+			this.endTimes = Arrays.copyOf(this.endTimes, capacity);
+			this.privates = Arrays.copyOf(this.privates, capacity);
+		}
+		this.names[this.size] = name;
+		this.startTimes[this.size] = startTime;
+		this.endTimes[this.size] = endTime;
+		this.privates[this.size] = isPrivate;
+		this.size++;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	/** Removes all events, keeping the memory for the next batch. */
+	public void clear()
+	{
+		Arrays.fill(this.names, 0, this.size, null);
+		this.size = 0;
+	}
+
+	String getName(int index)
+	{
+		return this.names[index];
+	}
+
+	long getStartTime(int index)
+	{
+		return this.startTimes[index];
+	}
+
+	long getEndTime(int index)
+	{
+		return this.endTimes[index];
+	}
+
+	boolean isPrivate(int index)
+	{
+		return this.privates[index];
+	}
+}
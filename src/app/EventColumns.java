@@ -0,0 +1,288 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IEventVisitor;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** The events of a {@link ColumnarEventStore} as sorted rows of primitives: start, end and sequence as {@code long},
+ * the name as {@code int} id of a {@link NameDictionary} and the visibility as bit set.
+ * <p>
+ * Columns are built once by {@link #append(Event)} or {@link #appendRow(EventColumns, int)} and {@link #finish()},
+ * and never changed afterwards. Where the rows are kept is up to the subclass.
+ * </p>
+ */
+abstract class EventColumns
+{
+	/** Rows per block of {@link #blockMaxEnd(int)}, as power of two. */
+	static final int BLOCK_BITS = 6;
+
+	final NameDictionary names;
+	final int size;
+
+	/** Number of rows appended so far. */
+	private int appended;
+
+	/** While rows are copied by {@link #appendRow(EventColumns, int)}: the ids in {@link #names} of the name ids of {@link #copiedNames},
+	 * {@code -1} for names not copied yet. Dropped by {@link #finish()}. */
+	private int[] copiedIds;
+	private NameDictionary copiedNames;
+
+	protected EventColumns(NameDictionary names, int size)
+	{
+		this.names = names;
+		this.size = size;
+	}
+
+	/** Provides empty columns of the same kind with room for {@code size} rows and a new name dictionary,
+	 * so that the names of events which are gone are not kept any more once the rows are copied. */
+	abstract EventColumns create(int size);
+
+	/** Maximal number of changes a store keeps on the heap before merging them into new columns. */
+	abstract int maxPendingChanges();
+
+	abstract long startTime(int row);
+
+	abstract long endTime(int row);
+
+	abstract long sequence(int row);
+
+	abstract int nameId(int row);
+
+	/** Latest end of the rows from the first one to {@code row}. As it never decreases,
+	 * the first row that can overlap a time span is found by binary search. */
+	abstract long prefixMaxEnd(int row);
+
+	/** Latest end of the rows of a block of 2^{@value #BLOCK_BITS} rows, to skip blocks of past events. */
+	abstract long blockMaxEnd(int block);
+
+	/** Provides 64 bits of the bit set of the public rows, starting at row {@code word * 64}. */
+	protected abstract long publicWord(int word);
+
+	protected abstract void setRow(int row, long startTime, long endTime, long sequence, int nameId, boolean isPublic);
+
+	protected abstract void setPrefixMaxEnd(int row, long maxEnd);
+
+	protected abstract void setBlockMaxEnd(int block, long maxEnd);
+
+	/** Adds the next row. Events must be appended in order. */
+	void append(Event event)
+	{
+		this.setRow(this.appended++, event.getStartTime(), event.getEndTime(), event.getSequence(), this.names.idOf(event.getEventName()), event.isPublic());
+	}
+
+	/** Adds a copy of a row of other columns, without creating an {@link Event}. Rows must be appended in order.
+	 * The name is looked up in the dictionary of these columns only once per name id of the {@code source}. */
+	void appendRow(EventColumns source, int row)
+	{
+		this.setRow(this.appended++, source.startTime(row), source.endTime(row), source.sequence(row), this.copyName(source.names, source.nameId(row)), source.isPublic(row));
+	}
+
+	/** Provides the id in {@link #names} of the name with the id {@code sourceId} in {@code source}, adding the name if it is new. */
+	private int copyName(NameDictionary source, int sourceId)
+	{
+		if (source == this.names)
+		{
+			return sourceId;
+		}
+		if (this.copiedNames != source)
+		{
+			this.copiedNames = source;
+			this.copiedIds = new int[source.size()];
+			Arrays.fill(this.copiedIds, -1);
+		}
+		int id = this.copiedIds[sourceId];
+		if (id < 0)
+		{
+			id = this.names.idOf(source.name(sourceId));
+			this.copiedIds[sourceId] = id;
+		}
+		return id;
+	}
+
+	/** Computes the end date summaries once all rows are appended. */
+	void finish()
+	{
+		this.copiedIds = null;
+		this.copiedNames = null;
+		long maxEnd = Long.MIN_VALUE;
+		long blockMaxEnd = Long.MIN_VALUE;
+		for (int row = 0; row < this.size; row++)
+		{
+			long endTime = this.endTime(row);
+			maxEnd = Math.max(maxEnd, endTime);
+			this.setPrefixMaxEnd(row, maxEnd);
+			blockMaxEnd = Math.max(blockMaxEnd, endTime);
+			if (((row + 1) & ((1 << BLOCK_BITS) - 1)) == 0 || row + 1 == this.size)
+			{
+				this.setBlockMaxEnd(row >>> BLOCK_BITS, blockMaxEnd);
+				blockMaxEnd = Long.MIN_VALUE;
+			}
+		}
+	}
+
+	boolean isPublic(int row)
+	{
+		return (this.publicWord(row >>> 6) & (1L << row)) != 0;
+	}
+
+	/** Provides the first public row from {@code row} on, {@code end} if there is none before it.
+	 * Skips 64 private rows at a time. */
+	int nextPublicRow(int row, int end)
+	{
+		if (row >= end)
+		{
+			return end;
+		}
+		int word = row >>> 6;
+		long bits = this.publicWord(word) & (-1L << row);
+		while (bits == 0)
+		{
+			word++;
+			if (word << 6 >= end)
+			{
+				return end;
+			}
+			bits = this.publicWord(word);
+		}
+		return Math.min(end, (word << 6) + Long.numberOfTrailingZeros(bits));
+	}
+
+	/** Provides the event of a row as a new {@link Event}. */
+	Event event(int row)
+	{
+		return Event.restore(this.names.name(this.nameId(row)), this.startTime(row), this.endTime(row), !this.isPublic(row), this.sequence(row));
+	}
+
+	/** Passes the values of a row to the {@code visitor}, without creating an {@link Event}.
+	 * @return The answer of the visitor, {@code false} to stop.
+	 */
+	boolean visit(int row, IEventVisitor visitor)
+	{
+		return visitor.visit(this.names.name(this.nameId(row)), this.startTime(row), this.endTime(row), !this.isPublic(row));
+	}
+
+	/** Provides the first row ordered at or after the given start time and sequence, {@link #size} if there is none. */
+	int lowerBound(long startTime, long sequence)
+	{
+		int low = 0;
+		int high = this.size;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			long middleStart = this.startTime(middle);
+			if (middleStart < startTime || (middleStart == startTime && this.sequence(middle) < sequence))
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** Provides the row of the event with the given start time and sequence, -1 if there is none. */
+	int rowOf(long startTime, long sequence)
+	{
+		int row = this.lowerBound(startTime, sequence);
+		return row < this.size && this.startTime(row) == startTime && this.sequence(row) == sequence ? row : -1;
+	}
+
+	/** Provides the first row starting after {@code time}, {@link #size} if there is none. */
+	int firstRowStartingAfter(long time)
+	{
+		int low = 0;
+		int high = this.size;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (this.startTime(middle) <= time)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** Provides the first row such that it or an earlier row ends at {@code time} or later. No row before it overlaps {@code time}. */
+	int firstRowEndingAtOrAfter(long time)
+	{
+		int low = 0;
+		int high = this.size;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (this.prefixMaxEnd(middle) < time)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** Assigns ids to event names, so that a name used by many events is stored once.
+	 * Each merge of a store builds new columns with a new dictionary, holding only the names of the copied rows,
+	 * so names of deleted or renamed events do not pile up. Columns never change their dictionary,
+	 * and a dictionary only gets names added while its columns are built, by the writer holding the lock of the calendar.
+	 */
+	static class NameDictionary
+	{
+		private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+		private volatile String[] names = new String[16];
+		private int count;
+
+		/** Provides the id of the {@code name}, adding it if it is new. */
+		int idOf(String name)
+		{
+			Integer id = this.ids.get(name);
+			if (id != null)
+			{
+				return id;
+			}
+			if (this.count == this.names.length)
+			{
+				this.names = Arrays.copyOf(this.names, this.count * 2);
+			}
+			this.names[this.count] = name;
+			this.ids.put(name, this.count);
+			return this.count++;
+		}
+
+		/** Provides the id of the {@code name}, -1 if no event has been stored with it. */
+		int lookup(String name)
+		{
+			Integer id = this.ids.get(name);
+			return id == null ? -1 : id;
+		}
+
+		String name(int id)
+		{
+			return this.names[id];
+		}
+
+		/** Number of names, which are the ids from 0 to one less. */
+		int size()
+		{
+			return this.count;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IEvent;
+import interfaces.IEventPage;
+
+import java.util.ArrayList;
+
+import app.AppExceptions.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** One page of a paginated event query.
+ * <p>
+ * The cursor stores the position of the last event of the page, that is its start date and its creation order
+ * ({@link Event#getSequence()}), not an offset. Fetching the next page therefore seeks directly behind that position.
+ * If the calendar changes between two pages, the next page simply continues behind the old position:
+ * events created or moved before it are not listed, events created or moved after it are.
+ * The cursor stays valid even if the last event itself was deleted or edited.
+ * </p>
+ */
+public class EventPage implements IEventPage
+{
+	private static final String SEPARATOR = ".";
+
+	private ArrayList<IEvent> events;
+	private String nextCursor;
+
+	/**
+	 * @param events The events of the page.
+	 * @param hasNextPage If {@code true}, a cursor pointing behind the last of the {@code events} is created.
+	 */
+	EventPage(ArrayList<IEvent> events, boolean hasNextPage)
+	{
+		this.events = events;
+		if (hasNextPage)
+		{
+			Event last = (Event) events.get(events.size() - 1);
+			this.nextCursor = Long.toString(last.getStartTime(), Character.MAX_RADIX) + SEPARATOR
+					+ Long.toString(last.getSequence(), Character.MAX_RADIX);
+		}
+	}
+
+	@Override
+	public ArrayList<IEvent> getEvents()
+	{
+		return this.events;
+	}
+
+	@Override
+	public boolean hasNextPage()
+	{
+		return this.nextCursor != null;
+	}
+
+	@Override
+	public String getNextCursor()
+	{
+		return this.nextCursor;
+	}
+
+	/** Converts a cursor back to the position to continue from.
+	 * @param cursor A cursor provided by {@link #getNextCursor()}.
+	 * @return A key ordered right behind the last event of the page the cursor belongs to.
+	 * @throws InvalidCursorException If {@code cursor} is not a cursor of this class.
+	 */
+	static Event searchKey(String cursor) throws InvalidCursorException
+	{
+		int separator = cursor.indexOf(SEPARATOR);
+		if (separator < 0)
+		{
+			throw new InvalidCursorException(cursor);
+		}
+		try
+		{
+			long startDate = Long.parseLong(cursor.substring(0, separator), Character.MAX_RADIX);
+			long sequence = Long.parseLong(cursor.substring(separator + 1), Character.MAX_RADIX);
+			return Event.searchKeyAfter(startDate, sequence);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new InvalidCursorException(cursor);
+		}
+	}
+}
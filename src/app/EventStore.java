@@ -0,0 +1,79 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IEvent;
+import interfaces.IEventVisitor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Storage of the events of a {@link Calendar}, sorted by {@link Event#compareTo(Event)}.
+ * <p>
+ * A store never changes: {@link #add(Event)} and {@link #remove(Event)} return a new version of it.
+ * A version can therefore be read by any number of threads without locking, while a writer prepares the next one.
+ * </p>
+ * @see interfaces.ICalendar.Storage
+ */
+interface EventStore
+{
+	public int size();
+
+	/** Provides a new version of the store which contains the {@code event} as well. */
+	public EventStore add(Event event);
+
+	/** Provides a new version of the store without the {@code event}.
+	 * @return This store, if the event is not in it.
+	 */
+	public EventStore remove(Event event);
+
+	/** Provides a new version of the store which contains the given events as well, merged in a single pass.
+	 * @param sortedEvents Events sorted by {@link Event#compareTo(Event)}, none of them in the store yet.
+	 * @param count Number of events to take from the start of {@code sortedEvents}.
+	 */
+	public EventStore addAll(Event[] sortedEvents, int count);
+
+	/** Provides the events in order from {@code from} up to {@code until}.
+	 * The iterator is lazy: it only looks at the events it returns or skips.
+	 * @param from Position to start from (included), typically an {@link Event#searchKey(java.util.Date)}.
+	 * @param until Position to stop at (excluded), {@code null} to iterate to the end.
+	 * @param onlyPublic If {@code true}, private events are skipped.
+	 */
+	public Iterator<IEvent> iterator(Event from, Event until, boolean onlyPublic);
+
+	/** Collects the events overlapping the time span from {@code from} to {@code to} (both inclusive, in milliseconds),
+	 * that is every event starting at {@code to} or before and ending at {@code from} or later.
+	 * The events are added sorted by start date.
+	 * @param onlyPublic If {@code true}, private events are skipped.
+	 * @param output List the events are added to.
+	 */
+	public void collectOverlapping(long from, long to, boolean onlyPublic, ArrayList<IEvent> output);
+
+	/** Passes the events overlapping the time span from {@code from} to {@code to} (both inclusive, in milliseconds)
+	 * to the {@code visitor}, sorted by start date, like {@link #collectOverlapping(long, long, boolean, ArrayList)} collects them.
+	 * No object is created.
+	 * @param onlyPublic If {@code true}, private events are skipped.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 */
+	public boolean visitOverlapping(long from, long to, boolean onlyPublic, IEventVisitor visitor);
+
+	/** Passes the events starting at {@code from} or later and before {@code to} (in milliseconds) to the {@code visitor}, in order.
+	 * No object is created.
+	 * @param onlyPublic If {@code true}, private events are skipped.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 */
+	public boolean visitStartingBetween(long from, long to, boolean onlyPublic, IEventVisitor visitor);
+
+	/** Looks up an event by name and start date.
+	 * @param startTime Start in milliseconds since the epoch.
+	 * @return The first such event in order, {@code null} if there is none.
+	 */
+	public Event find(String eventName, long startTime);
+}
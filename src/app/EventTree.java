@@ -0,0 +1,549 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IEvent;
+import interfaces.IEventVisitor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Immutable balanced search tree (AVL) holding the events of a {@link Calendar} ordered by {@link Event#compareTo(Event)}.
+ * <p>
+ * Every node also knows the latest end date of its subtree, once for all events and once for the public ones.
+ * This turns the tree into an interval tree: overlap queries skip every subtree whose events all end
+ * before the queried time span, and stop at the first event starting after it.
+ * </p>
+ * <p>
+ * The tree is persistent: a new version shares all nodes with the old one except the O(log n) nodes on the path to the change.
+ * </p>
+ */
+class EventTree implements EventStore
+{
+	private static final EventTree EMPTY = new EventTree(null);
+
+	private final Node root;
+
+	private static class Node
+	{
+		private final Event event;
+		private final Node left;
+		private final Node right;
+		private final int height;
+		private final int size;
+
+		/** Latest end date (in milliseconds) of all events in this subtree. */
+		private final long maxEnd;
+		/** Latest end date (in milliseconds) of the public events in this subtree, {@link Long#MIN_VALUE} if there are none. */
+		private final long maxPublicEnd;
+
+		private Node(Event event, Node left, Node right)
+		{
+			this.event = event;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.size = size(left) + size(right) + 1;
+
+			long end = event.getEndTime();
+			long maxEnd = end;
+			long maxPublicEnd = event.isPublic() ? end : Long.MIN_VALUE;
+			if (left != null)
+			{
+				maxEnd = Math.max(maxEnd, left.maxEnd);
+				maxPublicEnd = Math.max(maxPublicEnd, left.maxPublicEnd);
+			}
+			if (right != null)
+			{
+				maxEnd = Math.max(maxEnd, right.maxEnd);
+				maxPublicEnd = Math.max(maxPublicEnd, right.maxPublicEnd);
+			}
+			this.maxEnd = maxEnd;
+			this.maxPublicEnd = maxPublicEnd;
+		}
+	}
+
+	private EventTree(Node root)
+	{
+		this.root = root;
+	}
+
+	/** Provides the tree without events. */
+	public static EventTree empty()
+	{
+		return EMPTY;
+	}
+
+	@Override
+	public int size()
+	{
+		return size(this.root);
+	}
+
+	@Override
+	public EventTree add(Event event)
+	{
+		return new EventTree(insert(this.root, event));
+	}
+
+	@Override
+	public EventTree remove(Event event)
+	{
+		Node newRoot = delete(this.root, event);
+		return newRoot == this.root ? this : new EventTree(newRoot);
+	}
+
+	/** {@inheritDoc}
+	 * The events of the tree and the new ones are merged into an array, from which a new, perfectly balanced tree is built.
+	 * This costs O(n + m) instead of O(m log n), so it pays off for large batches. Batches which are small compared
+	 * to the tree are inserted one by one instead.
+	 */
+	@Override
+	public EventTree addAll(Event[] sortedEvents, int count)
+	{
+		if (count == 0)
+		{
+			return this;
+		}
+		int size = this.size();
+		if ((long) count * (64 - Long.numberOfLeadingZeros(size)) < size)
+		{
+			EventTree tree = this;
+			for (int i = 0; i < count; i++)
+			{
+				tree = tree.add(sortedEvents[i]);
+			}
+			return tree;
+		}
+
+		Event[] merged = new Event[this.size() + count];
+		Iterator<IEvent> iteratorEvents = this.iterator(Event.searchKey(Long.MIN_VALUE), null, false);
+		Event next = iteratorEvents.hasNext() ? (Event) iteratorEvents.next() : null;
+		int added = 0;
+		for (int i = 0; i < merged.length; i++)
+		{
+			if (next != null && (added == count || next.compareTo(sortedEvents[added]) < 0))
+			{
+				merged[i] = next;
+				next = iteratorEvents.hasNext() ? (Event) iteratorEvents.next() : null;
+			}
+			else
+			{
+				merged[i] = sortedEvents[added++];
+			}
+		}
+		return new EventTree(build(merged, 0, merged.length));
+	}
+
+	/** {@inheritDoc}
+	 * The iterator walks the tree as it is advanced and stops at the first event that is not ordered before {@code until},
+	 * without looking at the rest of the tree. Subtrees without public events are not visited at all if {@code onlyPublic} is set.
+	 */
+	@Override
+	public Iterator<IEvent> iterator(Event from, Event until, boolean onlyPublic)
+	{
+		return new TreeIterator(from, until, onlyPublic);
+	}
+
+	@Override
+	public void collectOverlapping(long from, long to, boolean onlyPublic, ArrayList<IEvent> output)
+	{
+		collectOverlapping(this.root, from, to, onlyPublic, output);
+	}
+
+	private static void collectOverlapping(Node node, long from, long to, boolean onlyPublic, ArrayList<IEvent> output)
+	{
+		if (node == null || (onlyPublic ? node.maxPublicEnd : node.maxEnd) < from)
+		{
+			// every event in this subtree is over before the time span
+			return;
+		}
+
+		collectOverlapping(node.left, from, to, onlyPublic, output);
+
+		Event event = node.event;
+		if (event.getStartTime() > to)
+		{
+			// this event and everything to the right starts after the time span
+			return;
+		}
+		if (event.getEndTime() >= from && (event.isPublic() || !onlyPublic))
+		{
+			output.add(event);
+		}
+
+		collectOverlapping(node.right, from, to, onlyPublic, output);
+	}
+
+	@Override
+	public boolean visitOverlapping(long from, long to, boolean onlyPublic, IEventVisitor visitor)
+	{
+		return visitOverlapping(this.root, from, to, onlyPublic, visitor);
+	}
+
+	/** Walks the subtree like {@link #collectOverlapping(Node, long, long, boolean, ArrayList)}.
+	 * @return {@code false} if the visitor stopped.
+	 */
+	private static boolean visitOverlapping(Node node, long from, long to, boolean onlyPublic, IEventVisitor visitor)
+	{
+		if (node == null || (onlyPublic ? node.maxPublicEnd : node.maxEnd) < from)
+		{
+			return true;
+		}
+		if (!visitOverlapping(node.left, from, to, onlyPublic, visitor))
+		{
+			return false;
+		}
+
+		Event event = node.event;
+		if (event.getStartTime() > to)
+		{
+			return true;
+		}
+		if (event.getEndTime() >= from && (event.isPublic() || !onlyPublic) && !event.accept(visitor))
+		{
+			return false;
+		}
+		return visitOverlapping(node.right, from, to, onlyPublic, visitor);
+	}
+
+	@Override
+	public boolean visitStartingBetween(long from, long to, boolean onlyPublic, IEventVisitor visitor)
+	{
+		return visitStartingBetween(this.root, from, to, onlyPublic, visitor);
+	}
+
+	/** Walks the subtree in order, skipping the subtrees which start before {@code from} or after {@code to}.
+	 * @return {@code false} if the visitor stopped.
+	 */
+	private static boolean visitStartingBetween(Node node, long from, long to, boolean onlyPublic, IEventVisitor visitor)
+	{
+		if (node == null || (onlyPublic && node.maxPublicEnd == Long.MIN_VALUE))
+		{
+			return true;
+		}
+
+		Event event = node.event;
+		long startTime = event.getStartTime();
+		if (startTime >= from && !visitStartingBetween(node.left, from, to, onlyPublic, visitor))
+		{
+			return false;
+		}
+		if (startTime >= to)
+		{
+			return true;
+		}
+		if (startTime >= from && (event.isPublic() || !onlyPublic) && !event.accept(visitor))
+		{
+			return false;
+		}
+		return visitStartingBetween(node.right, from, to, onlyPublic, visitor);
+	}
+
+	/** Provides the first event ordered at or after the given start time and sequence, without creating an iterator.
+	 * @param onlyPublic If {@code true}, private events are skipped.
+	 * @return The event, {@code null} if there is none.
+	 */
+	Event first(long startTime, long sequence, boolean onlyPublic)
+	{
+		return first(this.root, startTime, sequence, onlyPublic);
+	}
+
+	private static Event first(Node node, long startTime, long sequence, boolean onlyPublic)
+	{
+		if (node == null || (onlyPublic && node.maxPublicEnd == Long.MIN_VALUE))
+		{
+			return null;
+		}
+		Event event = node.event;
+		if (isBefore(event, startTime, sequence))
+		{
+			return first(node.right, startTime, sequence, onlyPublic);
+		}
+		Event found = first(node.left, startTime, sequence, onlyPublic);
+		if (found != null)
+		{
+			return found;
+		}
+		if (event.isPublic() || !onlyPublic)
+		{
+			return event;
+		}
+		return first(node.right, startTime, sequence, onlyPublic);
+	}
+
+	/** Provides the first event ordered at or after the given start time and sequence, which overlaps the time span
+	 * from {@code from} to {@code to} (both inclusive), without creating an iterator.
+	 * @param onlyPublic If {@code true}, private events are skipped.
+	 * @return The event, {@code null} if there is none.
+	 */
+	Event firstOverlapping(long startTime, long sequence, long from, long to, boolean onlyPublic)
+	{
+		return firstOverlapping(this.root, startTime, sequence, from, to, onlyPublic);
+	}
+
+	private static Event firstOverlapping(Node node, long startTime, long sequence, long from, long to, boolean onlyPublic)
+	{
+		if (node == null || (onlyPublic ? node.maxPublicEnd : node.maxEnd) < from)
+		{
+			return null;
+		}
+		Event event = node.event;
+		if (isBefore(event, startTime, sequence))
+		{
+			return firstOverlapping(node.right, startTime, sequence, from, to, onlyPublic);
+		}
+		Event found = firstOverlapping(node.left, startTime, sequence, from, to, onlyPublic);
+		if (found != null || event.getStartTime() > to)
+		{
+			return found;
+		}
+		if (event.getEndTime() >= from && (event.isPublic() || !onlyPublic))
+		{
+			return event;
+		}
+		return firstOverlapping(node.right, startTime, sequence, from, to, onlyPublic);
+	}
+
+	/** Tells if the {@code event} is ordered before the given start time and sequence. */
+	private static boolean isBefore(Event event, long startTime, long sequence)
+	{
+		return event.getStartTime() < startTime || (event.getStartTime() == startTime && event.getSequence() < sequence);
+	}
+
+	/** {@inheritDoc}
+	 * Only the events with the same start date are compared by name.
+	 */
+	@Override
+	public Event find(String eventName, long startTime)
+	{
+		Iterator<IEvent> iteratorEvents = this.iterator(Event.searchKey(startTime), null, false);
+		while (iteratorEvents.hasNext())
+		{
+			Event currentEvent = (Event) iteratorEvents.next();
+			if (currentEvent.getStartTime() != startTime)
+			{
+				return null;
+			}
+			if (currentEvent.getEventName().equals(eventName))
+			{
+				return currentEvent;
+			}
+		}
+		return null;
+	}
+
+	/////////////////
+	// AVL HELPERS //
+	/////////////////
+
+	private static int height(Node node)
+	{
+		return node == null ? 0 : node.height;
+	}
+
+	private static int size(Node node)
+	{
+		return node == null ? 0 : node.size;
+	}
+
+	/** Builds a balanced subtree of the sorted events from {@code from} (inclusive) to {@code to} (exclusive). */
+	private static Node build(Event[] sortedEvents, int from, int to)
+	{
+		if (from >= to)
+		{
+			return null;
+		}
+		int middle = (from + to) >>> 1;
+		return new Node(sortedEvents[middle], build(sortedEvents, from, middle), build(sortedEvents, middle + 1, to));
+	}
+
+	private static Node insert(Node node, Event event)
+	{
+		if (node == null)
+		{
+			return new Node(event, null, null);
+		}
+
+		if (event.compareTo(node.event) < 0)
+		{
+			return balance(node.event, insert(node.left, event), node.right);
+		}
+		else
+		{
+			return balance(node.event, node.left, insert(node.right, event));
+		}
+	}
+
+	/** Deletes the {@code event} from the subtree.
+	 * @return The new subtree, {@code node} itself if the event is not in it.
+	 */
+	private static Node delete(Node node, Event event)
+	{
+		if (node == null)
+		{
+			return null;
+		}
+
+		int compare = event.compareTo(node.event);
+		if (compare < 0)
+		{
+			Node left = delete(node.left, event);
+			return left == node.left ? node : balance(node.event, left, node.right);
+		}
+		if (compare > 0)
+		{
+			Node right = delete(node.right, event);
+			return right == node.right ? node : balance(node.event, node.left, right);
+		}
+
+		if (node.left == null)
+		{
+			return node.right;
+		}
+		if (node.right == null)
+		{
+			return node.left;
+		}
+
+		Node successor = node.right;
+		while (successor.left != null)
+		{
+			successor = successor.left;
+		}
+		return balance(successor.event, node.left, deleteMin(node.right));
+	}
+
+	private static Node deleteMin(Node node)
+	{
+		if (node.left == null)
+		{
+			return node.right;
+		}
+		return balance(node.event, deleteMin(node.left), node.right);
+	}
+
+	/** Creates the node for {@code event} with the given children, rotating if their heights differ by more than one. */
+	private static Node balance(Event event, Node left, Node right)
+	{
+		int balance = height(left) - height(right);
+
+		if (balance > 1)
+		{
+			if (height(left.left) >= height(left.right))
+			{
+				// rotate right
+				return new Node(left.event, left.left, new Node(event, left.right, right));
+			}
+			// rotate left, then right
+			Node middle = left.right;
+			return new Node(middle.event, new Node(left.event, left.left, middle.left), new Node(event, middle.right, right));
+		}
+		if (balance < -1)
+		{
+			if (height(right.right) >= height(right.left))
+			{
+				// rotate left
+				return new Node(right.event, new Node(event, left, right.left), right.right);
+			}
+			// rotate right, then left
+			Node middle = right.left;
+			return new Node(middle.event, new Node(event, left, middle.left), new Node(right.event, middle.right, right.right));
+		}
+		return new Node(event, left, right);
+	}
+
+	/** In-order iterator with an explicit stack of the nodes still to visit.
+	 * The stack never holds more nodes than the height of the tree.
+	 */
+	private class TreeIterator implements Iterator<IEvent>
+	{
+		private ArrayDeque<Node> stack = new ArrayDeque<Node>();
+		private Event until;
+		private boolean onlyPublic;
+		private Event next;
+
+		private TreeIterator(Event from, Event until, boolean onlyPublic)
+		{
+			this.until = until;
+			this.onlyPublic = onlyPublic;
+
+			Node node = root;
+			while (this.isWorthVisiting(node))
+			{
+				if (node.event.compareTo(from) >= 0)
+				{
+					this.stack.push(node);
+					node = node.left;
+				}
+				else
+				{
+					node = node.right;
+				}
+			}
+			this.advance();
+		}
+
+		private boolean isWorthVisiting(Node node)
+		{
+			return node != null && (!this.onlyPublic || node.maxPublicEnd != Long.MIN_VALUE);
+		}
+
+		/** Pops nodes until the next matching event is found. */
+		private void advance()
+		{
+			this.next = null;
+			while (this.next == null && !this.stack.isEmpty())
+			{
+				Node node = this.stack.pop();
+				if (this.until != null && node.event.compareTo(this.until) >= 0)
+				{
+					// everything left on the stack comes even later
+					this.stack.clear();
+					return;
+				}
+				for (Node child = node.right; this.isWorthVisiting(child); child = child.left)
+				{
+					this.stack.push(child);
+				}
+				if (node.event.isPublic() || !this.onlyPublic)
+				{
+					this.next = node.event;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return this.next != null;
+		}
+
+		@Override
+		public IEvent next()
+		{
+			if (this.next == null)
+			{
+				throw new NoSuchElementException();
+			}
+			Event event = this.next;
+			this.advance();
+			return event;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Iterator;
+
+import app.AppExceptions.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Exports the events of a calendar of a user as an iCalendar stream (RFC 5545, {@code .ics}).
+ * <p>
+ * The events are written one by one while walking the calendar in start order, so the memory used does not depend
+ * on the size of the calendar. The walk reads the version of the calendar at its beginning; changes made meanwhile
+ * are not exported.
+ * </p>
+ * <p>
+ * Every event becomes a {@code VEVENT} with its name as {@code SUMMARY}, start and end in UTC, and {@code CLASS:PUBLIC}
+ * or {@code CLASS:PRIVATE}. Dates are written in seconds, as iCalendar knows no milliseconds. Lines longer than 75 bytes
+ * are folded, and lines end with CRLF.
+ * </p>
+ */
+public class IcsExporter
+{
+	private static final long SECOND = 1000L;
+	private static final long DAY = 24L * 60L * 60L * SECOND;
+	private static final int MAX_LINE_BYTES = 75;
+	private static final String CRLF = "\r\n";
+
+	private final Calendar calendar;
+	private final String uidSuffix;
+
+	/** The exporter of a calendar.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 */
+	public IcsExporter(IUser user, String calendarName) throws UnknownCalendarException
+	{
+		this.calendar = user.getCalendar(calendarName);
+		this.uidSuffix = "@" + user.getName() + "/" + calendarName;
+	}
+
+	/** Writes all events of the calendar as one {@code VCALENDAR}. The writer is flushed, but not closed.
+	 * @return The number of events exported.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	public long exportEvents(Writer writer) throws IOException
+	{
+		StringBuilder line = new StringBuilder(128);
+		writer.write("BEGIN:VCALENDAR" + CRLF + "VERSION:2.0" + CRLF + "PRODID:-//ESE2011//Calendar framework//EN" + CRLF);
+		this.writeText(writer, line, "X-WR-CALNAME:", this.calendar.getName());
+		String timestamp = formatDate(System.currentTimeMillis());
+
+		long exported = 0;
+		Iterator<IEvent> events = this.calendar.getAllEventsStartingFrom(new Date(Long.MIN_VALUE));
+		while (events.hasNext())
+		{
+			Event event = (Event) events.next();
+			writer.write("BEGIN:VEVENT" + CRLF);
+			this.writeText(writer, line, "UID:", event.getSequence() + this.uidSuffix);
+			writer.write("DTSTAMP:" + timestamp + CRLF);
+			writer.write("DTSTART:" + formatDate(event.getStartTime()) + CRLF);
+			writer.write("DTEND:" + formatDate(event.getEndTime()) + CRLF);
+			if (event.getEventName() != null)
+			{
+				this.writeText(writer, line, "SUMMARY:", event.getEventName());
+			}
+			writer.write(event.isPrivate() ? "CLASS:PRIVATE" + CRLF : "CLASS:PUBLIC" + CRLF);
+			writer.write("END:VEVENT" + CRLF);
+			exported++;
+		}
+		writer.write("END:VCALENDAR" + CRLF);
+		writer.flush();
+		return exported;
+	}
+
+	/** Writes a property with a text value, escaped and folded. */
+	private void writeText(Writer writer, StringBuilder line, String property, String value) throws IOException
+	{
+		line.setLength(0);
+		line.append(property);
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+			case '\\':
+			case ';':
+			case ',':
+				line.append('\\').append(c);
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				break;
+			default:
+				line.append(c);
+			}
+		}
+		fold(writer, line);
+	}
+
+	/** Writes a line, broken into lines of at most {@value #MAX_LINE_BYTES} bytes in UTF-8, each continuation starting with a space.
+	 * Characters are never split.
+	 */
+	private static void fold(Writer writer, CharSequence line) throws IOException
+	{
+		int bytes = 0;
+		int from = 0;
+		for (int i = 0; i < line.length(); i++)
+		{
+			char c = line.charAt(i);
+			int length = c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isHighSurrogate(c) ? 4 : Character.isLowSurrogate(c) ? 0 : 3;
+			if (bytes + length > MAX_LINE_BYTES)
+			{
+				writer.append(line, from, i).append(CRLF).append(' ');
+				from = i;
+				// the space counts
+				bytes = 1;
+			}
+			bytes += length;
+		}
+		writer.append(line, from, line.length()).append(CRLF);
+	}
+
+	/** Formats a point in time as UTC date and time, {@code yyyyMMdd'T'HHmmss'Z'}. */
+	private static String formatDate(long time)
+	{
+		long days = Math.floorDiv(time, DAY);
+		long seconds = Math.floorMod(time, DAY) / SECOND;
+
+		// civil date from days since 1.1.1970
+		long shifted = days + 719468;
+		long era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+		long dayOfEra = shifted - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long monthIndex = (5 * dayOfYear + 2) / 153;
+		long day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+		long month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		char[] text = new char[16];
+		put(text, 0, year, 4);
+		put(text, 4, month, 2);
+		put(text, 6, day, 2);
+		text[8] = 'T';
+		put(text, 9, seconds / 3600, 2);
+		put(text, 11, seconds / 60 % 60, 2);
+		put(text, 13, seconds % 60, 2);
+		text[15] = 'Z';
+		return new String(text);
+	}
+
+	private static void put(char[] text, int from, long value, int digits)
+	{
+		for (int i = from + digits - 1; i >= from; i--)
+		{
+			text[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+}
@@ -0,0 +1,429 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IUser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.TimeZone;
+
+import app.AppExceptions.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Imports the events of an iCalendar stream (RFC 5545, {@code .ics}) into a calendar of a user.
+ * <p>
+ * The stream is read line by line: folded lines are joined, and the properties of a {@code VEVENT} are collected
+ * until its end. Only {@code SUMMARY}, {@code DTSTART}, {@code DTEND}, {@code DURATION} and {@code CLASS} are used;
+ * other properties and nested components like alarms are skipped. The events are handed to the calendar
+ * in batches of {@value #BATCH_SIZE}, each merged in one pass with {@link Calendar#createEvents(EventBatch)},
+ * so the memory used does not depend on the size of the stream.
+ * </p>
+ * <p>
+ * {@code CLASS:PUBLIC}, or no class at all, creates a public event; {@code PRIVATE}, {@code CONFIDENTIAL} and any other
+ * class create a private one. Dates in UTC, with a {@code TZID} and floating ones in the default time zone are understood,
+ * as well as whole days ({@code VALUE=DATE}). An event without end ends at its start, or a day later if it is a whole day.
+ * </p>
+ */
+public class IcsImporter
+{
+	/** Number of events parsed before they are added to the calendar. */
+	public static final int BATCH_SIZE = 1024;
+
+	private static final long SECOND = 1000L;
+	private static final long DAY = 24L * 60L * 60L * SECOND;
+
+	private final Calendar calendar;
+
+	private final HashMap<String, TimeZone> timeZones = new HashMap<String, TimeZone>();
+
+	/** Events parsed, but not yet added, and the lines they start at. */
+	private final EventBatch batch = new EventBatch(BATCH_SIZE);
+	private final long[] batchLineNumbers = new long[BATCH_SIZE];
+
+	/** Line number of the current line, and of the start of the current event. */
+	private long lineNumber;
+	private long eventLineNumber;
+
+	/** The importer of a calendar.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 */
+	public IcsImporter(IUser user, String calendarName) throws UnknownCalendarException
+	{
+		this.calendar = user.getCalendar(calendarName);
+	}
+
+	/** Imports all events of the stream. The events of the batches added before a failure stay in the calendar.
+	 * @return The number of events imported.
+	 * @throws IOException If the stream cannot be read or is no valid iCalendar stream, or events end before they start.
+	 */
+	public long importEvents(Reader reader) throws IOException
+	{
+		BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+		long imported = 0;
+		this.lineNumber = 0;
+		this.batch.clear();
+
+		// properties of the current event, null outside of an event
+		String summary = null;
+		String start = null;
+		String end = null;
+		String duration = null;
+		String visibility = null;
+		boolean inEvent = false;
+		int skippedDepth = 0;
+
+		String physical = lines.readLine();
+		while (physical != null)
+		{
+			this.lineNumber++;
+			long contentLineNumber = this.lineNumber;
+			String line = physical;
+			physical = lines.readLine();
+			if (physical != null && physical.length() > 0 && (physical.charAt(0) == ' ' || physical.charAt(0) == '\t'))
+			{
+				StringBuilder unfolded = new StringBuilder(line);
+				while (physical != null && physical.length() > 0 && (physical.charAt(0) == ' ' || physical.charAt(0) == '\t'))
+				{
+					this.lineNumber++;
+					unfolded.append(physical, 1, physical.length());
+					physical = lines.readLine();
+				}
+				line = unfolded.toString();
+			}
+			if (line.length() == 0)
+			{
+				continue;
+			}
+
+			int colon = valueStart(line);
+			if (colon < 0)
+			{
+				throw new IOException("Line " + contentLineNumber + " is no iCalendar property: " + line);
+			}
+			int semicolon = line.indexOf(';');
+			String name = line.substring(0, semicolon >= 0 && semicolon < colon ? semicolon : colon).toUpperCase();
+			String value = line.substring(colon + 1);
+
+			if (skippedDepth > 0)
+			{
+				if (name.equals("BEGIN"))
+				{
+					skippedDepth++;
+				}
+				else if (name.equals("END"))
+				{
+					skippedDepth--;
+				}
+			}
+			else if (name.equals("BEGIN"))
+			{
+				if (value.equalsIgnoreCase("VEVENT") && !inEvent)
+				{
+					inEvent = true;
+					this.eventLineNumber = contentLineNumber;
+					summary = null;
+					start = null;
+					end = null;
+					duration = null;
+					visibility = null;
+				}
+				else if (inEvent || !value.equalsIgnoreCase("VCALENDAR"))
+				{
+					// alarms in events, time zone definitions, to-dos and other components
+					skippedDepth = 1;
+				}
+			}
+			else if (inEvent)
+			{
+				if (name.equals("END"))
+				{
+					if (start == null)
+					{
+						throw new IOException("The event at line " + this.eventLineNumber + " has no DTSTART!");
+					}
+					this.parseEvent(summary, start, end, duration, visibility);
+					imported++;
+					inEvent = false;
+					if (this.batch.size() == BATCH_SIZE)
+					{
+						this.addBatch();
+					}
+				}
+				else if (name.equals("SUMMARY"))
+				{
+					summary = unescape(value);
+				}
+				else if (name.equals("DTSTART"))
+				{
+					start = line;
+				}
+				else if (name.equals("DTEND"))
+				{
+					end = line;
+				}
+				else if (name.equals("DURATION"))
+				{
+					duration = value;
+				}
+				else if (name.equals("CLASS"))
+				{
+					visibility = value;
+				}
+			}
+		}
+		if (inEvent || skippedDepth > 0)
+		{
+			throw new IOException("The stream ends within a component!");
+		}
+		this.addBatch();
+		return imported;
+	}
+
+	/** Adds the events of the batch to the calendar. Events with the same start are ordered as in the stream. */
+	private void addBatch() throws IOException
+	{
+		try
+		{
+			this.calendar.createEvents(this.batch);
+		}
+		catch (InvalidDatesException e)
+		{
+			StringBuilder lineNumbers = new StringBuilder();
+			for (int position : e.getPositions())
+			{
+				lineNumbers.append(lineNumbers.length() == 0 ? "" : ", ").append(this.batchLineNumbers[position]);
+			}
+			throw new IOException("The events at the lines " + lineNumbers + " end before they start!", e);
+		}
+		catch (UnknownCalendarException e)
+		{
+			throw new IOException("The calendar has been deleted during the import!", e);
+		}
+		this.batch.clear();
+	}
+
+	private void parseEvent(String summary, String start, String end, String duration, String visibility) throws IOException
+	{
+		long startTime = this.parseDate(start);
+		long endTime;
+		if (end != null)
+		{
+			endTime = this.parseDate(end);
+		}
+		else if (duration != null)
+		{
+			endTime = startTime + this.parseDuration(duration);
+		}
+		else
+		{
+			endTime = isWholeDay(start) ? startTime + DAY : startTime;
+		}
+		this.batchLineNumbers[this.batch.size()] = this.eventLineNumber;
+		this.batch.add(summary, startTime, endTime, visibility != null && !visibility.trim().equalsIgnoreCase("PUBLIC"));
+	}
+
+	/** Position of the colon separating name and parameters from the value, -1 if there is none.
+	 * Colons in quoted parameter values do not count.
+	 */
+	private static int valueStart(String line)
+	{
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++)
+		{
+			char c = line.charAt(i);
+			if (c == '"')
+			{
+				quoted = !quoted;
+			}
+			else if (c == ':' && !quoted)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** The value of a parameter of a property line, {@code null} if it has none. */
+	private static String parameter(String line, String parameterName)
+	{
+		int colon = valueStart(line);
+		String parameters = line.substring(0, colon).toUpperCase();
+		int index = parameters.indexOf(";" + parameterName + "=");
+		if (index < 0)
+		{
+			return null;
+		}
+		int from = index + parameterName.length() + 2;
+		int to = from;
+		boolean quoted = false;
+		while (to < colon && (quoted || line.charAt(to) != ';'))
+		{
+			if (line.charAt(to) == '"')
+			{
+				quoted = !quoted;
+			}
+			to++;
+		}
+		String value = line.substring(from, to);
+		return value.startsWith("\"") && value.endsWith("\"") && value.length() > 1 ? value.substring(1, value.length() - 1) : value;
+	}
+
+	private static boolean isWholeDay(String line)
+	{
+		return "DATE".equalsIgnoreCase(parameter(line, "VALUE")) || line.length() - valueStart(line) - 1 == 8;
+	}
+
+	/** Parses the date of a {@code DTSTART} or {@code DTEND} line: {@code yyyyMMdd} or {@code yyyyMMdd'T'HHmmss},
+	 * followed by {@code Z} for UTC.
+	 */
+	private long parseDate(String line) throws IOException
+	{
+		String value = line.substring(valueStart(line) + 1).trim();
+		int length = value.length();
+		boolean utc = length > 0 && (value.charAt(length - 1) == 'Z' || value.charAt(length - 1) == 'z');
+		if (!(length == 8 || (length == 15 || length == 16 && utc) && (value.charAt(8) == 'T' || value.charAt(8) == 't')))
+		{
+			throw new IOException("The date \"" + value + "\" of the event at line " + this.eventLineNumber + " is invalid!");
+		}
+		long days = daysFromCivil(this.digits(value, 0, 4), this.digits(value, 4, 6), this.digits(value, 6, 8));
+		long localTime = days * DAY;
+		if (length > 8)
+		{
+			localTime += ((this.digits(value, 9, 11) * 60L + this.digits(value, 11, 13)) * 60L + this.digits(value, 13, 15)) * SECOND;
+		}
+		if (utc)
+		{
+			return localTime;
+		}
+		String zoneId = parameter(line, "TZID");
+		TimeZone zone = TimeZone.getDefault();
+		if (zoneId != null)
+		{
+			zone = this.timeZones.get(zoneId);
+			if (zone == null)
+			{
+				zone = TimeZone.getTimeZone(zoneId);
+				this.timeZones.put(zoneId, zone);
+			}
+		}
+		return localTime - zone.getOffset(localTime - zone.getOffset(localTime));
+	}
+
+	private int digits(String value, int from, int to) throws IOException
+	{
+		int number = 0;
+		for (int i = from; i < to; i++)
+		{
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+			{
+				throw new IOException("The date \"" + value + "\" of the event at line " + this.eventLineNumber + " is invalid!");
+			}
+			number = number * 10 + (c - '0');
+		}
+		return number;
+	}
+
+	/** Days since 1.1.1970 of a date of the proleptic Gregorian calendar. */
+	private static long daysFromCivil(long year, int month, int day)
+	{
+		year -= month <= 2 ? 1 : 0;
+		long era = (year >= 0 ? year : year - 399) / 400;
+		long yearOfEra = year - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/** Parses a duration like {@code P1W}, {@code P2DT3H} or {@code -PT15M} in milliseconds. */
+	private long parseDuration(String value) throws IOException
+	{
+		String duration = value.trim().toUpperCase();
+		int i = 0;
+		long sign = 1;
+		if (duration.startsWith("+") || duration.startsWith("-"))
+		{
+			sign = duration.charAt(0) == '-' ? -1 : 1;
+			i++;
+		}
+		if (i >= duration.length() || duration.charAt(i) != 'P')
+		{
+			throw new IOException("The duration \"" + value + "\" of the event at line " + this.eventLineNumber + " is invalid!");
+		}
+		i++;
+		long millis = 0;
+		long number = -1;
+		for (; i < duration.length(); i++)
+		{
+			char c = duration.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				number = Math.max(number, 0) * 10 + (c - '0');
+				continue;
+			}
+			if (c == 'T')
+			{
+				continue;
+			}
+			if (number < 0)
+			{
+				throw new IOException("The duration \"" + value + "\" of the event at line " + this.eventLineNumber + " is invalid!");
+			}
+			switch (c)
+			{
+			case 'W':
+				millis += number * 7 * DAY;
+				break;
+			case 'D':
+				millis += number * DAY;
+				break;
+			case 'H':
+				millis += number * 60 * 60 * SECOND;
+				break;
+			case 'M':
+				millis += number * 60 * SECOND;
+				break;
+			case 'S':
+				millis += number * SECOND;
+				break;
+			default:
+				throw new IOException("The duration \"" + value + "\" of the event at line " + this.eventLineNumber + " is invalid!");
+			}
+			number = -1;
+		}
+		return sign * millis;
+	}
+
+	/** Resolves the escaped characters of a text value. */
+	private static String unescape(String value)
+	{
+		if (value.indexOf('\\') < 0)
+		{
+			return value;
+		}
+		StringBuilder text = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length())
+			{
+				char escaped = value.charAt(++i);
+				text.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+			}
+			else
+			{
+				text.append(c);
+			}
+		}
+		return text.toString();
+	}
+}
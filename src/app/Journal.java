@@ -0,0 +1,806 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.ICalendar.Storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Append-only journal of the changes of an {@link App}, replayed when the app is started again.
+ * <p>
+ * A change is appended as a record while the locks of the change are held, so the records of a user are in the order
+ * the changes have been made. The record only goes to a buffer in memory. Once the locks are released,
+ * {@link #commit(long)} writes the buffer to the file and, depending on the {@link SyncPolicy}, forces it to the disk.
+ * Writers committing at the same time share one write and one fsync (group commit): one of them writes the records
+ * of all of them, while the others wait for it.
+ * </p>
+ * <p>
+ * The file starts with a header of {@value #HEADER_BYTES} bytes: magic number, format version and generation.
+ * A record is the length of its payload, the payload and a CRC32 of the payload. A record cut off by a crash is
+ * recognized by its length or its checksum, and removed from the file when the journal is opened.
+ * </p>
+ * <p>
+ * A checkpoint starts the next generation with {@link #rotate()}: the file is renamed to a segment named after its generation,
+ * and a new file is started under the name of the journal. Once the {@link Snapshot} of the old generations is durable,
+ * their segments are deleted. The snapshot knows the last generation it contains, so the files left behind by a crash
+ * during a checkpoint are replayed if they are not in the snapshot yet, and never twice.
+ * </p>
+ * <p>
+ * If the file cannot be written, the change stays applied in memory, but the call throws an {@link UncheckedIOException},
+ * and so does every later change: the state in memory is no longer the one of the journal.
+ * </p>
+ */
+public class Journal
+{
+	/** When the changes are forced from the file to the disk. */
+	public enum SyncPolicy
+	{
+		/** A change is on the disk when the call returns. Changes made at the same time share one fsync. */
+		ALWAYS,
+
+		/** A change is written to the file when the call returns, and forced to the disk within {@value Journal#SYNC_INTERVAL} ms.
+		 * A crash of the process loses no change, a crash of the machine the changes of the last interval. */
+		PERIODIC,
+
+		/** A change is written to the file when the call returns. The operating system decides when it reaches the disk. */
+		NEVER
+	}
+
+	/** Interval of the fsync of the {@link SyncPolicy#PERIODIC} policy, in milliseconds. */
+	static final long SYNC_INTERVAL = 1000;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** "CALJ" */
+	private static final int MAGIC = 0x43414C4A;
+	private static final int VERSION = 3;
+	static final int HEADER_BYTES = 16;
+
+	private static final byte CREATE_USER = 1;
+	private static final byte CHANGE_PASSWORD = 2;
+	private static final byte DELETE_USER = 3;
+	private static final byte CREATE_CALENDAR = 4;
+	private static final byte DELETE_CALENDAR = 5;
+	private static final byte CREATE_EVENT = 6;
+	private static final byte EDIT_EVENT = 7;
+	private static final byte DELETE_EVENT = 8;
+	private static final byte CREATE_EVENTS = 9;
+
+	private final File journalFile;
+	private final SyncPolicy policy;
+	private final Timer syncTimer;
+
+	/** File of the current generation. Only replaced by {@link #rotate()}, while no batch is written. */
+	private RandomAccessFile file;
+	private FileChannel channel;
+
+	/** Generation of the changes in the file. Only changed while no changes are made. */
+	private long generation;
+
+	/** Generations in segments, which are not yet known to be in a snapshot. Guarded by {@link #lock}. */
+	private final List<Long> segments;
+
+	/** Guards the buffer and the positions below. Only held for copying, never while writing the file. */
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition flushed = this.lock.newCondition();
+
+	/** Records appended, but not yet handed to a writer. */
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+	/** Positions in the journal, which only grow, even when a new generation starts:
+	 * end of the records appended, written to the file, and forced to the disk. */
+	private long appended;
+	private long written;
+	private long synced;
+
+	/** Whether a writer is writing a batch of records to the file. */
+	private boolean flushing;
+
+	/** The error of a failed write. Once set, the journal refuses all changes. */
+	private IOException failure;
+
+	/** Position at which the current generation starts. */
+	private long generationStart;
+
+	private Journal(File journalFile, RandomAccessFile file, SyncPolicy policy, long generation, long end, List<Long> segments)
+	{
+		this.journalFile = journalFile;
+		this.file = file;
+		this.channel = file.getChannel();
+		this.policy = policy;
+		this.generation = generation;
+		this.segments = segments;
+		this.generationStart = end;
+		this.appended = end;
+		this.written = end;
+		this.synced = end;
+
+		if (policy == SyncPolicy.PERIODIC)
+		{
+			this.syncTimer = new Timer("Journal sync", true);
+			this.syncTimer.schedule(new TimerTask()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						sync();
+					}
+					catch (UncheckedIOException e)
+					{
+						// the failure is kept and reported to the writers
+					}
+				}
+			}, SYNC_INTERVAL, SYNC_INTERVAL);
+		}
+		else
+		{
+			this.syncTimer = null;
+		}
+	}
+
+	/** Opens the journal in {@code journalFile}, creating it if it does not exist, and replays its changes to {@code auth}:
+	 * first those of the segments left behind by checkpoints which have not completed, then those of the file itself.
+	 * A record cut off at the end of the file is removed.
+	 * @param auth The user database restored from the snapshot, without journal, so that the replayed changes are not journaled again.
+	 * @param snapshotGeneration The last generation contained in the snapshot {@code auth} has been restored from, 0 if there is none.
+	 * Files of this or older generations are not replayed; segments are deleted, the file is started over with the next generation.
+	 * @throws IOException If the files cannot be read, their generations do not follow the snapshot, or their changes do not apply.
+	 */
+	static Journal open(File journalFile, SyncPolicy policy, Authentication auth, long snapshotGeneration) throws IOException
+	{
+		long expected = snapshotGeneration + 1;
+		ArrayList<Long> segments = new ArrayList<Long>();
+		for (Long segment : findSegments(journalFile).keySet())
+		{
+			File segmentFile = segmentFile(journalFile, segment);
+			if (segment <= snapshotGeneration)
+			{
+				Files.delete(segmentFile.toPath());
+				continue;
+			}
+			if (segment != expected)
+			{
+				throw new IOException("The journal segment of generation " + segment + " follows generation " + (expected - 1) + "!");
+			}
+			RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+			try
+			{
+				if (readHeader(file) != segment)
+				{
+					throw new IOException("The journal segment " + segmentFile + " is not of generation " + segment + "!");
+				}
+				replay(file, auth);
+			}
+			finally
+			{
+				file.close();
+			}
+			segments.add(segment);
+			expected++;
+		}
+
+		RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+		try
+		{
+			long generation = readHeader(file);
+			long end = HEADER_BYTES;
+			if (generation == expected)
+			{
+				end = replay(file, auth);
+				if (end < file.length())
+				{
+					file.setLength(end);
+				}
+			}
+			else if (generation <= snapshotGeneration || (generation == 0 && !segments.isEmpty()))
+			{
+				// contained in the snapshot, or started but cut off before its header was complete
+				generation = expected;
+				writeHeader(file, generation);
+			}
+			else
+			{
+				throw new IOException("The journal continues generation " + (generation - 1) + ", but the snapshot and the segments end with generation " + (expected - 1) + "!");
+			}
+			file.getChannel().position(end);
+			return new Journal(journalFile, file, policy, generation, end, segments);
+		}
+		catch (IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	/** The file a generation is renamed to by {@link #rotate()}. */
+	private static File segmentFile(File journalFile, long generation)
+	{
+		return new File(journalFile.getPath() + "." + generation);
+	}
+
+	/** Provides the segments next to the journal, by generation. */
+	private static TreeMap<Long, File> findSegments(File journalFile)
+	{
+		TreeMap<Long, File> segments = new TreeMap<Long, File>();
+		File directory = journalFile.getAbsoluteFile().getParentFile();
+		String prefix = journalFile.getName() + ".";
+		File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return segments;
+		}
+		for (File file : files)
+		{
+			String name = file.getName();
+			if (name.startsWith(prefix) && name.length() > prefix.length() && name.length() - prefix.length() < 19)
+			{
+				String suffix = name.substring(prefix.length());
+				boolean digits = true;
+				for (int i = 0; i < suffix.length(); i++)
+				{
+					digits &= Character.isDigit(suffix.charAt(i));
+				}
+				if (digits)
+				{
+					segments.put(Long.parseLong(suffix), file);
+				}
+			}
+		}
+		return segments;
+	}
+
+	/** Provides the generation of the journal, 0 if the file is too short to hold a header, as it is new or has been cut off while it was started.
+	 * @throws IOException If the file is no journal, or of a version this code cannot read.
+	 */
+	private static long readHeader(RandomAccessFile file) throws IOException
+	{
+		if (file.length() < HEADER_BYTES)
+		{
+			return 0;
+		}
+		file.seek(0);
+		if (file.readInt() != MAGIC)
+		{
+			throw new IOException("The file is not a journal!");
+		}
+		int version = file.readInt();
+		if (version != VERSION)
+		{
+			throw new IOException("The journal has the unknown version " + version + "!");
+		}
+		return file.readLong();
+	}
+
+	/** Empties the file and starts it with the header of {@code generation}. */
+	private static void writeHeader(RandomAccessFile file, long generation) throws IOException
+	{
+		file.setLength(0);
+		file.seek(0);
+		file.writeInt(MAGIC);
+		file.writeInt(VERSION);
+		file.writeLong(generation);
+		file.getChannel().force(true);
+	}
+
+	/** Applies the records of the file in order.
+	 * @return The end of the last complete record.
+	 */
+	private static long replay(RandomAccessFile file, Authentication auth) throws IOException
+	{
+		long length = file.length();
+		file.getChannel().position(HEADER_BYTES);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.getChannel()), 1 << 16));
+		long position = HEADER_BYTES;
+		CRC32 checksum = new CRC32();
+		while (length - position >= 8)
+		{
+			int payloadLength = in.readInt();
+			if (payloadLength <= 0 || payloadLength > length - position - 8)
+			{
+				break;
+			}
+			byte[] payload = new byte[payloadLength];
+			in.readFully(payload);
+			checksum.reset();
+			checksum.update(payload, 0, payloadLength);
+			if (in.readInt() != (int) checksum.getValue())
+			{
+				break;
+			}
+
+			try
+			{
+				apply(new DataInputStream(new ByteArrayInputStream(payload)), auth);
+			}
+			catch (EOFException e)
+			{
+				throw new IOException("The journal record at " + position + " is incomplete!", e);
+			}
+			catch (Exception e)
+			{
+				throw new IOException("The journal record at " + position + " does not apply: " + e.getMessage(), e);
+			}
+			position += payloadLength + 8;
+		}
+		return position;
+	}
+
+	/** Applies a record by making the same change again. */
+	private static void apply(DataInputStream record, Authentication auth) throws Exception
+	{
+		byte type = record.readByte();
+		String username = readString(record);
+		switch (type)
+		{
+		case CREATE_USER:
+			auth.restoreUser(username, readString(record));
+			break;
+		case CHANGE_PASSWORD:
+			auth.restorePassword(username, readString(record));
+			break;
+		case DELETE_USER:
+			auth.restoreDeletion(username);
+			break;
+		case CREATE_CALENDAR:
+			auth.getUser(username).createNewCalendar(readString(record), Storage.valueOf(readString(record)));
+			break;
+		case DELETE_CALENDAR:
+			auth.getUser(username).deleteCalendar(readString(record));
+			break;
+		case CREATE_EVENT:
+			Calendar calendar = auth.getUser(username).getCalendar(readString(record));
+			Event event = Event.restore(readString(record), record.readLong(), record.readLong(), record.readBoolean(), record.readLong());
+			Event.reserveSequence(event.getSequence());
+			calendar.insertEvent(event);
+			break;
+		case CREATE_EVENTS:
+			Calendar batchCalendar = auth.getUser(username).getCalendar(readString(record));
+			Event[] events = new Event[record.readInt()];
+			for (int i = 0; i < events.length; i++)
+			{
+				events[i] = Event.restore(readString(record), record.readLong(), record.readLong(), record.readBoolean(), record.readLong());
+				Event.reserveSequence(events[i].getSequence());
+			}
+			batchCalendar.insertEvents(events, events.length);
+			break;
+		case EDIT_EVENT:
+			auth.getUser(username).getCalendar(readString(record)).editEvent(readString(record), new Date(record.readLong()),
+					readString(record), new Date(record.readLong()), new Date(record.readLong()), record.readBoolean());
+			break;
+		case DELETE_EVENT:
+			auth.getUser(username).getCalendar(readString(record)).deleteEvent(readString(record), new Date(record.readLong()));
+			break;
+		default:
+			throw new IOException("Unknown record type " + type);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		if (length < 0)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/////////////
+	// RECORDS //
+	/////////////
+
+	/* Every method appends a record and returns its end, to be passed to commit(long).
+	 * The records of the users only hold password hashes, which are restored without checking a password again. */
+
+	long logCreateUser(String username, String passwordHash)
+	{
+		return this.append(new Record(CREATE_USER).putString(username).putString(passwordHash));
+	}
+
+	long logChangePassword(String username, String newPasswordHash)
+	{
+		return this.append(new Record(CHANGE_PASSWORD).putString(username).putString(newPasswordHash));
+	}
+
+	long logDeleteUser(String username)
+	{
+		return this.append(new Record(DELETE_USER).putString(username));
+	}
+
+	long logCreateCalendar(String username, String calendarName, Storage storage)
+	{
+		return this.append(new Record(CREATE_CALENDAR).putString(username).putString(calendarName).putString(storage.name()));
+	}
+
+	long logDeleteCalendar(String username, String calendarName)
+	{
+		return this.append(new Record(DELETE_CALENDAR).putString(username).putString(calendarName));
+	}
+
+	long logCreateEvent(String username, String calendarName, Event event)
+	{
+		return this.append(new Record(CREATE_EVENT).putString(username).putString(calendarName).putString(event.getEventName())
+				.putLong(event.getStartTime()).putLong(event.getEndTime()).putBoolean(event.isPrivate()).putLong(event.getSequence()));
+	}
+
+	/** Appends the events of a batch as a single record, so that they are replayed as a batch too. */
+	long logCreateEvents(String username, String calendarName, Event[] events, int count)
+	{
+		Record record = new Record(CREATE_EVENTS).putString(username).putString(calendarName).putInt(count);
+		for (int i = 0; i < count; i++)
+		{
+			record.putString(events[i].getEventName()).putLong(events[i].getStartTime()).putLong(events[i].getEndTime())
+					.putBoolean(events[i].isPrivate()).putLong(events[i].getSequence());
+		}
+		return this.append(record);
+	}
+
+	long logEditEvent(String username, String calendarName, Event event, Event editedEvent)
+	{
+		return this.append(new Record(EDIT_EVENT).putString(username).putString(calendarName).putString(event.getEventName()).putLong(event.getStartTime())
+				.putString(editedEvent.getEventName()).putLong(editedEvent.getStartTime()).putLong(editedEvent.getEndTime()).putBoolean(editedEvent.isPrivate()));
+	}
+
+	long logDeleteEvent(String username, String calendarName, Event event)
+	{
+		return this.append(new Record(DELETE_EVENT).putString(username).putString(calendarName).putString(event.getEventName()).putLong(event.getStartTime()));
+	}
+
+	/** Payload of a record, in the format read by {@link DataInputStream}. */
+	private static class Record extends ByteArrayOutputStream
+	{
+		private Record(byte type)
+		{
+			super(64);
+			this.write(type);
+		}
+
+		private Record putInt(int value)
+		{
+			this.write(value >>> 24);
+			this.write(value >>> 16);
+			this.write(value >>> 8);
+			this.write(value);
+			return this;
+		}
+
+		private Record putLong(long value)
+		{
+			this.putInt((int) (value >>> 32));
+			return this.putInt((int) value);
+		}
+
+		private Record putBoolean(boolean value)
+		{
+			this.write(value ? 1 : 0);
+			return this;
+		}
+
+		private Record putString(String value)
+		{
+			if (value == null)
+			{
+				return this.putInt(-1);
+			}
+			byte[] bytes = value.getBytes(UTF8);
+			this.putInt(bytes.length);
+			this.write(bytes, 0, bytes.length);
+			return this;
+		}
+
+		/** Writes the record with its length and checksum. */
+		private void frameTo(ByteArrayOutputStream out)
+		{
+			CRC32 checksum = new CRC32();
+			checksum.update(this.buf, 0, this.count);
+			writeInt(out, this.count);
+			out.write(this.buf, 0, this.count);
+			writeInt(out, (int) checksum.getValue());
+		}
+
+		private static void writeInt(ByteArrayOutputStream out, int value)
+		{
+			out.write(value >>> 24);
+			out.write(value >>> 16);
+			out.write(value >>> 8);
+			out.write(value);
+		}
+	}
+
+	/** Adds the record to the buffer.
+	 * @return The end of the record in the file.
+	 */
+	private long append(Record record)
+	{
+		this.lock.lock();
+		try
+		{
+			record.frameTo(this.buffer);
+			this.appended += record.size() + 8;
+			return this.appended;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	////////////
+	// COMMIT //
+	////////////
+
+	/** Waits until the records up to {@code position} are written to the file, and forced to the disk if the policy
+	 * is {@link SyncPolicy#ALWAYS}. Must be called without holding any lock of the app, so that other changes
+	 * can be appended meanwhile and written together with the next batch.
+	 * @throws UncheckedIOException If the journal cannot be written.
+	 */
+	void commit(long position)
+	{
+		this.flush(position, this.policy == SyncPolicy.ALWAYS);
+	}
+
+	/** Forces all records appended so far to the disk. */
+	void sync()
+	{
+		long end;
+		this.lock.lock();
+		try
+		{
+			end = this.appended;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		this.flush(end, true);
+	}
+
+	/** Makes sure the records up to {@code position} are written. The first writer to arrive writes the whole buffer,
+	 * the writers arriving meanwhile wait for it and write the records appended in the meantime with the next batch.
+	 */
+	private void flush(long position, boolean force)
+	{
+		FileChannel channel;
+		byte[] batch;
+		long batchEnd;
+		this.lock.lock();
+		try
+		{
+			while (true)
+			{
+				if (this.failure != null)
+				{
+					throw new UncheckedIOException("The journal cannot be written!", this.failure);
+				}
+				if (this.written >= position && (!force || this.synced >= position))
+				{
+					return;
+				}
+				if (!this.flushing)
+				{
+					break;
+				}
+				this.flushed.awaitUninterruptibly();
+			}
+			this.flushing = true;
+			channel = this.channel;
+			batch = this.buffer.toByteArray();
+			this.buffer.reset();
+			batchEnd = this.appended;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+
+		IOException error = null;
+		try
+		{
+			ByteBuffer bytes = ByteBuffer.wrap(batch);
+			while (bytes.hasRemaining())
+			{
+				channel.write(bytes);
+			}
+			if (force)
+			{
+				channel.force(false);
+			}
+		}
+		catch (IOException e)
+		{
+			error = e;
+		}
+
+		this.lock.lock();
+		try
+		{
+			this.flushing = false;
+			if (error != null)
+			{
+				this.failure = error;
+			}
+			else
+			{
+				this.written = batchEnd;
+				if (force)
+				{
+					this.synced = batchEnd;
+				}
+			}
+			this.flushed.signalAll();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		if (error != null)
+		{
+			throw new UncheckedIOException("The journal cannot be written!", error);
+		}
+	}
+
+	/** Whether there are changes which are not yet in a snapshot: in the current generation, or in segments. */
+	boolean hasChanges()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.appended > this.generationStart || !this.segments.isEmpty();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/** Starts the next generation: forces the records appended so far to the disk, renames the file to the segment
+	 * of its generation and starts a new file. Must be called while no changes are made. It costs one fsync,
+	 * independent of the number of changes in the journal.
+	 * @return The generation that has ended, which the snapshot taken at this point contains.
+	 * @throws IOException If the segment cannot be completed or the new file cannot be started. The journal keeps working
+	 * if the rename fails, and refuses all changes if the records or the new file cannot be written.
+	 */
+	long rotate() throws IOException
+	{
+		this.lock.lock();
+		try
+		{
+			while (this.flushing)
+			{
+				this.flushed.awaitUninterruptibly();
+			}
+			if (this.failure != null)
+			{
+				throw this.failure;
+			}
+			try
+			{
+				ByteBuffer bytes = ByteBuffer.wrap(this.buffer.toByteArray());
+				while (bytes.hasRemaining())
+				{
+					this.channel.write(bytes);
+				}
+				this.channel.force(false);
+			}
+			catch (IOException e)
+			{
+				this.failure = e;
+				throw e;
+			}
+			this.buffer.reset();
+			this.written = this.appended;
+			this.synced = this.appended;
+
+			// the open file keeps its content under its new name
+			Files.move(this.journalFile.toPath(), segmentFile(this.journalFile, this.generation).toPath(), StandardCopyOption.ATOMIC_MOVE);
+			RandomAccessFile next = null;
+			try
+			{
+				this.file.close();
+				next = new RandomAccessFile(this.journalFile, "rw");
+				writeHeader(next, this.generation + 1);
+				next.getChannel().position(HEADER_BYTES);
+			}
+			catch (IOException e)
+			{
+				if (next != null)
+				{
+					next.close();
+				}
+				this.failure = e;
+				throw e;
+			}
+			this.segments.add(this.generation);
+			this.file = next;
+			this.channel = next.getChannel();
+			this.generation++;
+			this.generationStart = this.appended;
+			return this.generation - 1;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/** Deletes the segments up to {@code snapshotGeneration}, once the snapshot containing them is durable. */
+	void deleteSegments(long snapshotGeneration) throws IOException
+	{
+		this.lock.lock();
+		try
+		{
+			while (!this.segments.isEmpty() && this.segments.get(0) <= snapshotGeneration)
+			{
+				Files.deleteIfExists(segmentFile(this.journalFile, this.segments.get(0)).toPath());
+				this.segments.remove(0);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/** Forces all records to the disk and closes the file. Changes made afterwards cannot be committed. */
+	void close() throws IOException
+	{
+		if (this.syncTimer != null)
+		{
+			this.syncTimer.cancel();
+		}
+		try
+		{
+			this.sync();
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+		finally
+		{
+			this.lock.lock();
+			try
+			{
+				this.file.close();
+			}
+			finally
+			{
+				this.lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Columns in direct buffers outside of the heap, so that the garbage collector never has to look at the events.
+ * <p>
+ * Every row is a record of {@value #RECORD_BYTES} bytes: start, end, sequence and the latest end up to the row as {@code long},
+ * and the id of the name as {@code int}, padded so the {@code long} values stay aligned. The records are kept in chunks
+ * of 2^{@value #CHUNK_BITS} rows, as a single buffer cannot hold more than 2 GB. The bit set of the public rows and the
+ * latest end of each block are kept in two more direct buffers.
+ * </p>
+ * <p>
+ * The heap only holds the buffer objects, one per chunk, and the name dictionary, which grows with the number of
+ * distinct names, not with the number of events. The memory of a version is released by the buffers once the
+ * version is no longer reachable, so iterators still reading an old version stay valid.
+ * </p>
+ */
+class OffHeapEventColumns extends EventColumns
+{
+	private static final int CHUNK_BITS = 20;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	private static final int RECORD_BYTES = 40;
+	private static final int START_TIME = 0;
+	private static final int END_TIME = 8;
+	private static final int SEQUENCE = 16;
+	private static final int PREFIX_MAX_END = 24;
+	private static final int NAME_ID = 32;
+
+	/** Changes kept in the heap are bounded, so that the heap used by a calendar does not grow with its size.
+	 * Merging then costs a copy of the rows every 2^14 changes. */
+	private static final int MAX_PENDING_CHANGES = 1 << 14;
+
+	private final ByteBuffer[] chunks;
+	private final LongBuffer publicRows;
+	private final LongBuffer blockMaxEnds;
+
+	/** Provides empty columns with a new name dictionary. */
+	OffHeapEventColumns()
+	{
+		this(new NameDictionary(), 0);
+	}
+
+	private OffHeapEventColumns(NameDictionary names, int size)
+	{
+		super(names, size);
+		this.chunks = new ByteBuffer[(size + CHUNK_MASK) >>> CHUNK_BITS];
+		for (int chunk = 0; chunk < this.chunks.length; chunk++)
+		{
+			int rows = Math.min(1 << CHUNK_BITS, size - (chunk << CHUNK_BITS));
+			this.chunks[chunk] = allocate(rows * RECORD_BYTES);
+		}
+		this.publicRows = allocate(((size + 63) >>> 6) * 8).asLongBuffer();
+		this.blockMaxEnds = allocate(((size + (1 << BLOCK_BITS) - 1) >>> BLOCK_BITS) * 8).asLongBuffer();
+	}
+
+	private static ByteBuffer allocate(int bytes)
+	{
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+	private ByteBuffer chunk(int row)
+	{
+		return this.chunks[row >>> CHUNK_BITS];
+	}
+
+	private static int offset(int row, int field)
+	{
+		return (row & CHUNK_MASK) * RECORD_BYTES + field;
+	}
+
+	@Override
+	EventColumns create(int size)
+	{
+		return new OffHeapEventColumns(new NameDictionary(), size);
+	}
+
+	@Override
+	int maxPendingChanges()
+	{
+		return MAX_PENDING_CHANGES;
+	}
+
+	@Override
+	long startTime(int row)
+	{
+		return this.chunk(row).getLong(offset(row, START_TIME));
+	}
+
+	@Override
+	long endTime(int row)
+	{
+		return this.chunk(row).getLong(offset(row, END_TIME));
+	}
+
+	@Override
+	long sequence(int row)
+	{
+		return this.chunk(row).getLong(offset(row, SEQUENCE));
+	}
+
+	@Override
+	int nameId(int row)
+	{
+		return this.chunk(row).getInt(offset(row, NAME_ID));
+	}
+
+	@Override
+	long prefixMaxEnd(int row)
+	{
+		return this.chunk(row).getLong(offset(row, PREFIX_MAX_END));
+	}
+
+	@Override
+	long blockMaxEnd(int block)
+	{
+		return this.blockMaxEnds.get(block);
+	}
+
+	@Override
+	protected long publicWord(int word)
+	{
+		return this.publicRows.get(word);
+	}
+
+	@Override
+	protected void setRow(int row, long startTime, long endTime, long sequence, int nameId, boolean isPublic)
+	{
+		ByteBuffer chunk = this.chunk(row);
+		chunk.putLong(offset(row, START_TIME), startTime);
+		chunk.putLong(offset(row, END_TIME), endTime);
+		chunk.putLong(offset(row, SEQUENCE), sequence);
+		chunk.putInt(offset(row, NAME_ID), nameId);
+		if (isPublic)
+		{
+			int word = row >>> 6;
+			this.publicRows.put(word, this.publicRows.get(word) | (1L << row));
+		}
+	}
+
+	@Override
+	protected void setPrefixMaxEnd(int row, long maxEnd)
+	{
+		this.chunk(row).putLong(offset(row, PREFIX_MAX_END), maxEnd);
+	}
+
+	@Override
+	protected void setBlockMaxEnd(int block, long maxEnd)
+	{
+		this.blockMaxEnds.put(block, maxEnd);
+	}
+}
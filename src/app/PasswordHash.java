@@ -0,0 +1,129 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** PBKDF2 hash (HMAC-SHA256) of a password, the only form in which {@link Authentication}, the {@link Journal} and the {@link Snapshot}
+ * keep a password.
+ * <p>
+ * Every hash gets its own random salt of {@value #SALT_BYTES} bytes, so equal passwords have different hashes, and is derived in
+ * {@value #DEFAULT_ITERATIONS} iterations unless set otherwise, so that guessing the passwords of a leaked journal or snapshot is slow.
+ * A hash keeps the number of iterations it was created with, so the default can be raised without invalidating existing hashes.
+ * Its text form, as written to the files, is the number of iterations, the salt and the hash in Base64, separated by colons.
+ * </p>
+ * <p>
+ * Only the creation of a user, the change of a password and the checks of {@link Authentication#getUser(String, String)},
+ * {@link Authentication#setNewPassword(String, String, String)} and {@link Authentication#deleteUser(String, String)} derive a hash;
+ * reads of public events and restoring the database do not.
+ * </p>
+ */
+final class PasswordHash
+{
+	/** Iterations of the hashes created, if not set otherwise by {@link #setIterations(int)}. */
+	static final int DEFAULT_ITERATIONS = 210000;
+
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BITS = 256;
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final String SEPARATOR = ":";
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	/** Iterations of the hashes created from now on. */
+	private static volatile int iterations = DEFAULT_ITERATIONS;
+
+	private final int hashIterations;
+	private final byte[] salt;
+	private final byte[] hash;
+
+	private PasswordHash(int hashIterations, byte[] salt, byte[] hash)
+	{
+		this.hashIterations = hashIterations;
+		this.salt = salt;
+		this.hash = hash;
+	}
+
+	/** Sets the iterations of the hashes created from now on; existing hashes keep theirs. */
+	static void setIterations(int newIterations)
+	{
+		if (newIterations < 1)
+		{
+			throw new IllegalArgumentException("The number of iterations must be at least 1!");
+		}
+		iterations = newIterations;
+	}
+
+	/** Hashes the {@code password} with a new salt. */
+	static PasswordHash create(String password)
+	{
+		byte[] salt = new byte[SALT_BYTES];
+		RANDOM.nextBytes(salt);
+		int hashIterations = iterations;
+		return new PasswordHash(hashIterations, salt, derive(password, salt, hashIterations));
+	}
+
+	/** Reads a hash from its text form, as provided by {@link #toString()}.
+	 * @throws IllegalArgumentException If {@code text} is no password hash.
+	 */
+	static PasswordHash parse(String text)
+	{
+		String[] parts = text.split(SEPARATOR, -1);
+		if (parts.length != 3)
+		{
+			throw new IllegalArgumentException("The password hash must consist of iterations, salt and hash!");
+		}
+		int hashIterations = Integer.parseInt(parts[0]);
+		if (hashIterations < 1)
+		{
+			throw new IllegalArgumentException("The number of iterations must be at least 1!");
+		}
+		return new PasswordHash(hashIterations, Base64.getDecoder().decode(parts[1]), Base64.getDecoder().decode(parts[2]));
+	}
+
+	/** Checks whether {@code password} is the password hashed, taking the same time wherever the hashes differ. */
+	boolean matches(String password)
+	{
+		return password != null && MessageDigest.isEqual(this.hash, derive(password, this.salt, this.hashIterations));
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.hashIterations + SEPARATOR + Base64.getEncoder().encodeToString(this.salt) + SEPARATOR + Base64.getEncoder().encodeToString(this.hash);
+	}
+
+	private static byte[] derive(String password, byte[] salt, int hashIterations)
+	{
+		char[] characters = password.toCharArray();
+		PBEKeySpec spec = new PBEKeySpec(characters, salt, hashIterations, HASH_BITS);
+		try
+		{
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		}
+		catch (GeneralSecurityException e)
+		{
+			// every Java platform since 8 supports PBKDF2 with HMAC-SHA256
+			throw new IllegalStateException(e);
+		}
+		finally
+		{
+			spec.clearPassword();
+			Arrays.fill(characters, '\0');
+		}
+	}
+}
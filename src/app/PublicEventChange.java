@@ -0,0 +1,64 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.IEvent;
+import interfaces.IPublicEventChange;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** A change of a public event, as delivered by the {@link ChangeFeed}.
+ * The events are the immutable {@link Event} objects of the calendar, so they are not copied.
+ */
+public class PublicEventChange implements IPublicEventChange
+{
+	private final Type type;
+	private final String username;
+	private final String calendarName;
+	private final Event oldEvent;
+	private final Event newEvent;
+
+	PublicEventChange(Type type, String username, String calendarName, Event oldEvent, Event newEvent)
+	{
+		this.type = type;
+		this.username = username;
+		this.calendarName = calendarName;
+		this.oldEvent = oldEvent;
+		this.newEvent = newEvent;
+	}
+
+	@Override
+	public Type getType()
+	{
+		return this.type;
+	}
+
+	@Override
+	public String getUsername()
+	{
+		return this.username;
+	}
+
+	@Override
+	public String getCalendarName()
+	{
+		return this.calendarName;
+	}
+
+	@Override
+	public IEvent getOldEvent()
+	{
+		return this.oldEvent;
+	}
+
+	@Override
+	public IEvent getNewEvent()
+	{
+		return this.newEvent;
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.ICalendar;
+import interfaces.IEvent;
+import interfaces.ITimelineEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** The public events of all calendars of all users, sorted by start date.
+ * <p>
+ * The calendars keep the timeline up to date with every change, under the lock of their owner: public events are added
+ * when they are created or made public and removed when they are deleted or made private, or their calendar or user is deleted.
+ * The events are kept in a concurrent skip list ordered like the calendars, by start date and creation order,
+ * so changes of different users do not block each other and readers take no lock. Listing the next {@code k} events
+ * from a date seeks the date once and walks {@code k} entries, in {@code O(log n + k)}, however many users and calendars there are.
+ * </p>
+ * <p>
+ * Unlike the calendars, the timeline does not work on versions: a reader sees every change that is done
+ * when it passes the event. The skip list only holds the events of {@link ICalendar.Storage#TREE} calendars, which keep
+ * the same {@link Event} objects anyway. The other storages keep no event objects, so the timeline only knows which of
+ * their calendars have had public events, and merges their next events, read from the stores of the calendars like an {@link Agenda},
+ * into the events of the skip list. Their events are thus listed from the versions of their calendars when the listing starts,
+ * each of these calendars costs a seek of {@code O(log n)}, and the {@code k} events listed cost {@code O(k log c)} for {@code c} of them.
+ * </p>
+ * <p>
+ * All changes of public events are passed on to the {@link ChangeFeed} of the app.
+ * </p>
+ */
+final class PublicTimeline
+{
+	/** The next public event of a calendar not in the skip list, and the iterator behind it. */
+	private static class Cursor
+	{
+		private final Calendar calendar;
+		private final Iterator<IEvent> events;
+		private Event next;
+
+		Cursor(Calendar calendar, Iterator<IEvent> events)
+		{
+			this.calendar = calendar;
+			this.events = events;
+		}
+
+		/** Moves to the next event of the calendar.
+		 * @return {@code false} if the calendar has no more events.
+		 */
+		boolean advance()
+		{
+			if (this.events.hasNext())
+			{
+				this.next = (Event) this.events.next();
+				return true;
+			}
+			this.next = null;
+			return false;
+		}
+	}
+
+	private static final Comparator<Cursor> ORDER = new Comparator<Cursor>()
+	{
+		@Override
+		public int compare(Cursor cursor1, Cursor cursor2)
+		{
+			return cursor1.next.compareTo(cursor2.next);
+		}
+	};
+
+	/** The public events of the {@link ICalendar.Storage#TREE} calendars. */
+	private final ConcurrentSkipListMap<Event, Calendar> events = new ConcurrentSkipListMap<Event, Calendar>();
+
+	/** The calendars of the other storages which have had public events, merged from their stores. */
+	private final Set<Calendar> stores = Collections.newSetFromMap(new ConcurrentHashMap<Calendar, Boolean>());
+
+	private final ChangeFeed feed;
+
+	PublicTimeline(ChangeFeed feed)
+	{
+		this.feed = feed;
+	}
+
+	/** Replaces the event {@code removed} of the {@code calendar} by {@code added}, as far as they are public.
+	 * Must be called with the lock of the owner of the {@code calendar} held.
+	 * @param removed Event to remove, {@code null} to only add.
+	 * @param added Event to add, {@code null} to only remove.
+	 */
+	void replace(Calendar calendar, Event removed, Event added)
+	{
+		if (!isInSkipList(calendar))
+		{
+			if (added != null && added.isPublic())
+			{
+				this.stores.add(calendar);
+			}
+			this.feed.publish(calendar, removed, added);
+			return;
+		}
+		boolean sameKey = removed != null && added != null && removed.compareTo(added) == 0;
+		if (sameKey && removed.isPublic())
+		{
+			// an edit keeping the start date has the same key, and put would only replace the calendar, not the stale key
+			this.events.remove(removed);
+		}
+		// otherwise adds first, so that a moved event is rather seen twice than not at all
+		if (added != null && added.isPublic())
+		{
+			this.events.put(added, calendar);
+		}
+		if (!sameKey && removed != null && removed.isPublic())
+		{
+			this.events.remove(removed);
+		}
+		this.feed.publish(calendar, removed, added);
+	}
+
+	/** Adds the public ones of newly created or restored events of the {@code calendar}.
+	 * Must be called with the lock of the owner of the {@code calendar} held.
+	 */
+	void addAll(Calendar calendar, Event[] events, int count)
+	{
+		boolean inSkipList = isInSkipList(calendar);
+		for (int i = 0; i < count; i++)
+		{
+			if (events[i].isPublic())
+			{
+				if (inSkipList)
+				{
+					this.events.put(events[i], calendar);
+				}
+				else
+				{
+					this.stores.add(calendar);
+				}
+				this.feed.publish(calendar, null, events[i]);
+			}
+		}
+	}
+
+	/** Removes all public events of a deleted {@code calendar}.
+	 * Must be called with the lock of the owner of the {@code calendar} held.
+	 */
+	void removeAll(Calendar calendar)
+	{
+		boolean inSkipList = isInSkipList(calendar);
+		this.stores.remove(calendar);
+		Iterator<IEvent> iteratorEvents = calendar.getEvents().iterator(Event.searchKey(Long.MIN_VALUE), null, true);
+		while (iteratorEvents.hasNext())
+		{
+			Event event = (Event) iteratorEvents.next();
+			if (inSkipList)
+			{
+				this.events.remove(event);
+			}
+			this.feed.publish(calendar, event, null);
+		}
+	}
+
+	/** Lists the public events starting at {@code startDate} or later.
+	 * @param limit Maximal number of events to return, {@link ICalendar#NO_LIMIT} for all of them.
+	 * @return The first {@code limit} events sorted by start date, each with its user and calendar.
+	 */
+	ArrayList<ITimelineEvent> getEventsStartingFrom(Date startDate, int limit)
+	{
+		Event from = Event.searchKey(startDate);
+		ArrayList<ITimelineEvent> output = new ArrayList<ITimelineEvent>();
+		Iterator<Map.Entry<Event, Calendar>> entries = this.events.tailMap(from).entrySet().iterator();
+		Map.Entry<Event, Calendar> entry = entries.hasNext() ? entries.next() : null;
+		PriorityQueue<Cursor> cursors = new PriorityQueue<Cursor>(Math.max(1, this.stores.size()), ORDER);
+		for (Calendar calendar : this.stores)
+		{
+			Cursor cursor = new Cursor(calendar, calendar.getEvents().iterator(from, null, true));
+			if (cursor.advance())
+			{
+				cursors.add(cursor);
+			}
+		}
+		while ((limit == ICalendar.NO_LIMIT || output.size() < limit) && (entry != null || !cursors.isEmpty()))
+		{
+			Cursor cursor = cursors.peek();
+			if (entry != null && (cursor == null || entry.getKey().compareTo(cursor.next) < 0))
+			{
+				Calendar calendar = entry.getValue();
+				output.add(new TimelineEvent(entry.getKey(), calendar.getOwner().getName(), calendar.getName()));
+				entry = entries.hasNext() ? entries.next() : null;
+			}
+			else
+			{
+				cursors.poll();
+				output.add(new TimelineEvent(cursor.next, cursor.calendar.getOwner().getName(), cursor.calendar.getName()));
+				if (cursor.advance())
+				{
+					cursors.add(cursor);
+				}
+			}
+		}
+		return output;
+	}
+
+	/** Whether the public events of the {@code calendar} are kept in the skip list, or read from its store. */
+	private static boolean isInSkipList(Calendar calendar)
+	{
+		return calendar.getStorage() == ICalendar.Storage.TREE;
+	}
+}
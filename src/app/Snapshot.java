@@ -0,0 +1,553 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.ICalendar.Storage;
+import interfaces.IEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compact binary image of the whole state of an {@link App}: the users with their password hashes, calendars and events.
+ * <p>
+ * Format of version {@value #VERSION}: a header of {@value #HEADER_BYTES} bytes (magic number, version, last {@link Journal}
+ * generation contained, largest event sequence, number of users, position of the index), one section per user, and the index
+ * with position, length and CRC32 of every section. A section holds name and {@link PasswordHash} of the user, then its calendars.
+ * A calendar lists the names of its events once, followed by the events in start order as variable-length numbers:
+ * name id and visibility, start as difference to the previous start, duration and sequence.
+ * An event takes about 10 bytes.
+ * </p>
+ * <p>
+ * The file is loaded by mapping it into memory. The sections do not depend on each other, so the users are restored
+ * in parallel, one range of sections per task, and the events of a calendar are merged into its store in one pass.
+ * A change of the format gets a new version; versions the loader does not know are rejected.
+ * </p>
+ * <p>
+ * Writing is split in two: {@link #capture(Authentication, List)} takes an {@link Image} of the state while the changes
+ * are stopped, which only costs time in the number of users and calendars, as the versions of the event stores are
+ * immutable. {@link #write(File, Image, long)} then streams the image to the disk while the changes go on.
+ * </p>
+ */
+final class Snapshot
+{
+	/** "CALS" */
+	private static final int MAGIC = 0x43414C53;
+	static final int VERSION = 3;
+	private static final int HEADER_BYTES = 36;
+	private static final int INDEX_ENTRY_BYTES = 20;
+
+	/** Largest range of sections mapped at once. */
+	private static final long MAX_MAPPING = 1L << 28;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private Snapshot()
+	{
+	}
+
+	///////////
+	// WRITE //
+	///////////
+
+	/** The state of all users at one point in time. It references the versions of the event stores of that time,
+	 * which stay unchanged; their memory is shared with the current versions, except for the parts changed since.
+	 */
+	static class Image
+	{
+		private final String[] usernames;
+		private final String[] passwordHashes;
+		private final String[][] calendarNames;
+		private final Storage[][] storages;
+
+		/** Released user by user while the image is written, so that the old versions can be collected. */
+		private final EventStore[][] events;
+
+		private Image(int users)
+		{
+			this.usernames = new String[users];
+			this.passwordHashes = new String[users];
+			this.calendarNames = new String[users][];
+			this.storages = new Storage[users][];
+			this.events = new EventStore[users][];
+		}
+	}
+
+	/** Takes the image of the given users. They must not change meanwhile. */
+	static Image capture(Authentication auth, List<User> users)
+	{
+		Image image = new Image(users.size());
+		for (int u = 0; u < users.size(); u++)
+		{
+			User user = users.get(u);
+			List<Calendar> calendars = user.getCalendars();
+			image.usernames[u] = user.getName();
+			image.passwordHashes[u] = auth.getPasswordHash(user.getName());
+			image.calendarNames[u] = new String[calendars.size()];
+			image.storages[u] = new Storage[calendars.size()];
+			image.events[u] = new EventStore[calendars.size()];
+			for (int c = 0; c < calendars.size(); c++)
+			{
+				image.calendarNames[u][c] = calendars.get(c).getName();
+				image.storages[u][c] = calendars.get(c).getStorage();
+				image.events[u][c] = calendars.get(c).getEvents();
+			}
+		}
+		return image;
+	}
+
+	/** Writes an image to a temporary file, forces it to the disk and moves it over {@code snapshotFile}.
+	 * Needs a buffer of 1 MB, independent of the size of the image.
+	 * @param journalGeneration The last journal generation whose changes are contained.
+	 */
+	static void write(File snapshotFile, Image image, long journalGeneration) throws IOException
+	{
+		int userCount = image.usernames.length;
+		File tempFile = new File(snapshotFile.getPath() + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+		try
+		{
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			Output out = new Output(channel, HEADER_BYTES);
+			long[] offsets = new long[userCount];
+			long[] lengths = new long[userCount];
+			int[] checksums = new int[userCount];
+			long maxSequence = -1;
+			for (int u = 0; u < userCount; u++)
+			{
+				offsets[u] = out.beginSection();
+				out.putString(image.usernames[u]);
+				out.putString(image.passwordHashes[u]);
+				out.putVarLong(image.calendarNames[u].length);
+				for (int c = 0; c < image.calendarNames[u].length; c++)
+				{
+					out.putString(image.calendarNames[u][c]);
+					out.putString(image.storages[u][c].name());
+					maxSequence = Math.max(maxSequence, writeEvents(out, image.events[u][c]));
+				}
+				image.events[u] = null;
+				lengths[u] = out.position() - offsets[u];
+				checksums[u] = out.endSection();
+			}
+
+			long indexOffset = out.position();
+			for (int u = 0; u < userCount; u++)
+			{
+				out.putLong(offsets[u]);
+				out.putLong(lengths[u]);
+				out.putInt(checksums[u]);
+			}
+			out.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(VERSION).putLong(journalGeneration).putLong(maxSequence).putInt(userCount).putLong(indexOffset);
+			header.flip();
+			while (header.hasRemaining())
+			{
+				channel.write(header, header.position());
+			}
+			channel.force(true);
+		}
+		finally
+		{
+			file.close();
+		}
+		Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** Writes the events of a calendar: their names first, then the events.
+	 * @return The largest sequence of the events, -1 if there are none.
+	 */
+	private static long writeEvents(Output out, EventStore events) throws IOException
+	{
+		HashMap<String, Integer> nameIds = new HashMap<String, Integer>();
+		ArrayList<String> names = new ArrayList<String>();
+		Iterator<IEvent> iteratorEvents = events.iterator(Event.searchKey(Long.MIN_VALUE), null, false);
+		while (iteratorEvents.hasNext())
+		{
+			String name = iteratorEvents.next().getEventName();
+			if (!nameIds.containsKey(name))
+			{
+				nameIds.put(name, names.size());
+				names.add(name);
+			}
+		}
+		out.putVarLong(names.size());
+		for (String name : names)
+		{
+			out.putString(name);
+		}
+
+		out.putVarLong(events.size());
+		long previousStart = 0;
+		long maxSequence = -1;
+		iteratorEvents = events.iterator(Event.searchKey(Long.MIN_VALUE), null, false);
+		while (iteratorEvents.hasNext())
+		{
+			Event event = (Event) iteratorEvents.next();
+			out.putVarLong(((long) nameIds.get(event.getEventName()) << 1) | (event.isPrivate() ? 1 : 0));
+			long startDifference = event.getStartTime() - previousStart;
+			out.putVarLong((startDifference << 1) ^ (startDifference >> 63));
+			out.putVarLong(event.getEndTime() - event.getStartTime());
+			out.putVarLong(event.getSequence());
+			previousStart = event.getStartTime();
+			maxSequence = Math.max(maxSequence, event.getSequence());
+		}
+		return maxSequence;
+	}
+
+	/** Buffered output to a file channel, which keeps the checksum of the current section. */
+	private static class Output
+	{
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+		private final CRC32 checksum = new CRC32();
+
+		/** Position in the file of the start of the buffer. */
+		private long flushed;
+
+		/** Position in the buffer from which the bytes still have to be added to the checksum, -1 outside of a section. */
+		private int sectionMark = -1;
+
+		private Output(FileChannel channel, long start)
+		{
+			this.channel = channel;
+			this.flushed = start;
+		}
+
+		private long position()
+		{
+			return this.flushed + this.buffer.position();
+		}
+
+		/** Starts a section.
+		 * @return Its position in the file.
+		 */
+		private long beginSection()
+		{
+			this.checksum.reset();
+			this.sectionMark = this.buffer.position();
+			return this.position();
+		}
+
+		/** Ends a section.
+		 * @return Its checksum.
+		 */
+		private int endSection()
+		{
+			this.checksum.update(this.buffer.array(), this.sectionMark, this.buffer.position() - this.sectionMark);
+			this.sectionMark = -1;
+			return (int) this.checksum.getValue();
+		}
+
+		private void flush() throws IOException
+		{
+			if (this.sectionMark >= 0)
+			{
+				this.checksum.update(this.buffer.array(), this.sectionMark, this.buffer.position() - this.sectionMark);
+				this.sectionMark = 0;
+			}
+			this.buffer.flip();
+			while (this.buffer.hasRemaining())
+			{
+				this.flushed += this.channel.write(this.buffer, this.flushed);
+			}
+			this.buffer.clear();
+		}
+
+		private void ensure(int bytes) throws IOException
+		{
+			if (this.buffer.remaining() < bytes)
+			{
+				this.flush();
+			}
+		}
+
+		private void putInt(int value) throws IOException
+		{
+			this.ensure(4);
+			this.buffer.putInt(value);
+		}
+
+		private void putLong(long value) throws IOException
+		{
+			this.ensure(8);
+			this.buffer.putLong(value);
+		}
+
+		/** Writes a number which is not negative in 7 bit groups, the lowest first. */
+		private void putVarLong(long value) throws IOException
+		{
+			this.ensure(10);
+			while ((value & ~0x7FL) != 0)
+			{
+				this.buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			this.buffer.put((byte) value);
+		}
+
+		/** Writes the length plus one, 0 for {@code null}, and the UTF-8 bytes. */
+		private void putString(String value) throws IOException
+		{
+			if (value == null)
+			{
+				this.putVarLong(0);
+				return;
+			}
+			byte[] bytes = value.getBytes(UTF8);
+			this.putVarLong(bytes.length + 1);
+			int written = 0;
+			while (written < bytes.length)
+			{
+				this.ensure(1);
+				int length = Math.min(bytes.length - written, this.buffer.remaining());
+				this.buffer.put(bytes, written, length);
+				written += length;
+			}
+		}
+	}
+
+	//////////
+	// LOAD //
+	//////////
+
+	/** Restores the users of the snapshot in {@code snapshotFile} to {@code auth}.
+	 * @param auth An empty user database without journal.
+	 * @return The last journal generation contained in the snapshot.
+	 * @throws IOException If the file cannot be read, is damaged, or is of a version this code does not know.
+	 */
+	static long load(File snapshotFile, Authentication auth) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(snapshotFile, "r");
+		try
+		{
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			while (header.hasRemaining())
+			{
+				if (channel.read(header, header.position()) < 0)
+				{
+					throw new IOException("The snapshot is incomplete!");
+				}
+			}
+			header.flip();
+			if (header.getInt() != MAGIC)
+			{
+				throw new IOException("The file is not a snapshot!");
+			}
+			int version = header.getInt();
+			if (version != VERSION)
+			{
+				throw new IOException("The snapshot has the unknown version " + version + "!");
+			}
+			long journalGeneration = header.getLong();
+			long maxSequence = header.getLong();
+			int userCount = header.getInt();
+			long indexOffset = header.getLong();
+			if (indexOffset + (long) userCount * INDEX_ENTRY_BYTES > channel.size())
+			{
+				throw new IOException("The snapshot is incomplete!");
+			}
+
+			MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) userCount * INDEX_ENTRY_BYTES);
+			long[] offsets = new long[userCount];
+			long[] lengths = new long[userCount];
+			int[] checksums = new int[userCount];
+			for (int u = 0; u < userCount; u++)
+			{
+				offsets[u] = index.getLong();
+				lengths[u] = index.getLong();
+				checksums[u] = index.getInt();
+			}
+
+			restoreUsers(channel, auth, offsets, lengths, checksums, indexOffset - HEADER_BYTES);
+			Event.reserveSequence(maxSequence);
+			return journalGeneration;
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/** Restores the users with a task per range of sections, on as many threads as there are processors. */
+	private static void restoreUsers(FileChannel channel, Authentication auth, long[] offsets, long[] lengths, int[] checksums, long totalBytes) throws IOException
+	{
+		int threads = Runtime.getRuntime().availableProcessors();
+		// several tasks per thread, so that a few large users do not leave the other threads idle
+		long taskBytes = Math.max(1 << 20, Math.min(MAX_MAPPING, totalBytes / (threads * 4L)));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try
+		{
+			ArrayList<Future<Void>> tasks = new ArrayList<Future<Void>>();
+			int first = 0;
+			while (first < offsets.length)
+			{
+				int last = first + 1;
+				while (last < offsets.length && offsets[last] + lengths[last] - offsets[first] <= taskBytes)
+				{
+					last++;
+				}
+				tasks.add(pool.submit(new RestoreTask(channel, auth, offsets, lengths, checksums, first, last)));
+				first = last;
+			}
+			for (Future<Void> task : tasks)
+			{
+				task.get();
+			}
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("The snapshot does not apply: " + e.getCause().getMessage(), e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while loading the snapshot!");
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	/** Restores the users of the sections from {@code first} (inclusive) to {@code last} (exclusive). */
+	private static class RestoreTask implements Callable<Void>
+	{
+		private final FileChannel channel;
+		private final Authentication auth;
+		private final long[] offsets;
+		private final long[] lengths;
+		private final int[] checksums;
+		private final int first;
+		private final int last;
+
+		private RestoreTask(FileChannel channel, Authentication auth, long[] offsets, long[] lengths, int[] checksums, int first, int last)
+		{
+			this.channel = channel;
+			this.auth = auth;
+			this.offsets = offsets;
+			this.lengths = lengths;
+			this.checksums = checksums;
+			this.first = first;
+			this.last = last;
+		}
+
+		@Override
+		public Void call() throws Exception
+		{
+			long start = this.offsets[this.first];
+			long size = this.offsets[this.last - 1] + this.lengths[this.last - 1] - start;
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException("The snapshot of a user is larger than 2 GB!");
+			}
+			MappedByteBuffer mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+
+			CRC32 checksum = new CRC32();
+			for (int u = this.first; u < this.last; u++)
+			{
+				ByteBuffer section = mapped.duplicate();
+				section.position((int) (this.offsets[u] - start));
+				section.limit((int) (this.offsets[u] - start + this.lengths[u]));
+				section = section.slice();
+
+				checksum.reset();
+				checksum.update(section.duplicate());
+				if ((int) checksum.getValue() != this.checksums[u])
+				{
+					throw new IOException("The snapshot of user " + u + " is damaged!");
+				}
+				restoreUser(section, this.auth);
+			}
+			return null;
+		}
+	}
+
+	private static void restoreUser(ByteBuffer in, Authentication auth) throws Exception
+	{
+		User user = auth.restoreUser(getString(in), getString(in));
+		int calendarCount = (int) getVarLong(in);
+		for (int c = 0; c < calendarCount; c++)
+		{
+			String calendarName = getString(in);
+			user.createNewCalendar(calendarName, Storage.valueOf(getString(in)));
+			Calendar calendar = user.getCalendar(calendarName);
+
+			String[] names = new String[(int) getVarLong(in)];
+			for (int n = 0; n < names.length; n++)
+			{
+				names[n] = getString(in);
+			}
+
+			Event[] events = new Event[(int) getVarLong(in)];
+			long startTime = 0;
+			for (int e = 0; e < events.length; e++)
+			{
+				long nameAndVisibility = getVarLong(in);
+				long startDifference = getVarLong(in);
+				startTime += (startDifference >>> 1) ^ -(startDifference & 1);
+				long endTime = startTime + getVarLong(in);
+				events[e] = Event.restore(names[(int) (nameAndVisibility >>> 1)], startTime, endTime, (nameAndVisibility & 1) != 0, getVarLong(in));
+			}
+			calendar.insertEvents(events, events.length);
+		}
+	}
+
+	private static long getVarLong(ByteBuffer in)
+	{
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do
+		{
+			b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while (b < 0);
+		return value;
+	}
+
+	private static String getString(ByteBuffer in)
+	{
+		int length = (int) getVarLong(in) - 1;
+		if (length < 0)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, UTF8);
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.ISyncedEvent;
+
+import java.util.Date;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** An event listed by a sync query, together with its identity, which is the creation order of the event ({@link Event#getSequence()}).
+ */
+public class SyncedEvent implements ISyncedEvent
+{
+	private final Event event;
+
+	SyncedEvent(Event event)
+	{
+		this.event = event;
+	}
+
+	@Override
+	public long getEventId()
+	{
+		return this.event.getSequence();
+	}
+
+	@Override
+	public String getEventName()
+	{
+		return this.event.getEventName();
+	}
+
+	@Override
+	public Date getStartDate()
+	{
+		return this.event.getStartDate();
+	}
+
+	@Override
+	public Date getEndDate()
+	{
+		return this.event.getEndDate();
+	}
+
+	@Override
+	public boolean isPrivate()
+	{
+		return this.event.isPrivate();
+	}
+
+	@Override
+	public boolean isPublic()
+	{
+		return this.event.isPublic();
+	}
+}
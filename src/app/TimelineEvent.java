@@ -0,0 +1,31 @@
+/**
+ * Calendar framework
+ */
+package app;
+
+import interfaces.ITimelineEvent;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** A public event of the {@link PublicTimeline} together with its user and calendar.
+ */
+public class TimelineEvent extends AgendaEvent implements ITimelineEvent
+{
+	private final String username;
+
+	TimelineEvent(Event event, String username, String calendarName)
+	{
+		super(event, calendarName);
+		this.username = username;
+	}
+
+	@Override
+	public String getUsername()
+	{
+		return this.username;
+	}
+}
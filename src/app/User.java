@@ -3,12 +3,22 @@
  */
 package app;
 
+import interfaces.IAgendaEvent;
+import interfaces.ICalendar;
+import interfaces.ICalendarChanges;
+import interfaces.ICalendar.Storage;
 import interfaces.IEvent;
+import interfaces.IEventVisitor;
 import interfaces.IUser;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import app.AppExceptions.*;
 
@@ -19,11 +29,43 @@ import app.AppExceptions.*;
  */
 
 /** User object that represents an user.
+ * <p>
+ * Every user has its own lock, which is taken by all changes of the calendar list and of the calendars of the user.
+ * Writes of one user therefore never block writes of another user. Reads take no lock at all:
+ * the calendars are looked up in a concurrent map, and the calendars publish immutable versions of their events.
+ * </p>
  */
 public class User implements IUser
 {
-	private ArrayList<Calendar> calendars;
+	/** The calendars keyed by name, so looking up a calendar does not depend on the number of calendars. */
+	private ConcurrentHashMap<String, Calendar> calendars;
+
+	/** The calendar names in creation order. Replaced by a new list on every change, as it is handed out to callers. */
+	private volatile List<String> calendarNames;
+
+	/** The calendars in the order of {@link #calendarNames}, replaced together with it. Read without a lock by {@link #getCalendars()},
+	 * which must not combine the names with the map, as a calendar may be gone from it by the time its name is looked up. */
+	private volatile List<Calendar> calendarList;
+
 	private String name;
+	private final ReentrantLock lock;
+
+	/** Journal of the changes of this user, {@code null} if the app has none or the user has been deleted.
+	 * Only read and changed with the {@link #lock} held. */
+	private Journal journal;
+
+	/** Timeline of the public events of all users, {@code null} if the user is not in the database (any more).
+	 * Only read and changed with the {@link #lock} held. */
+	private PublicTimeline timeline;
+
+	/** Cache of the day overviews of the app, {@code null} if the user is not in the database (any more).
+	 * Read without a lock by the queries, only changed with the {@link #lock} held. */
+	private volatile DayOverviewCache overviewCache;
+
+	/** Version stamps of the calendars of the user with all events and with only the public ones, see {@link #getMyVersion()}.
+	 * Only changed with the {@link #lock} held. */
+	private volatile long version = Calendar.newVersionStamp();
+	private volatile long publicVersion = Calendar.newVersionStamp();
 
 	/** Constructor for an user object. It contains the {@link Calendar} object.
 	 * @param name The user name must be unique.
@@ -31,46 +73,206 @@ public class User implements IUser
 	public User(String name)
 	{
 		this.name = name;
-		this.calendars = new ArrayList<Calendar>();
+		this.calendars = new ConcurrentHashMap<String, Calendar>();
+		this.calendarNames = Collections.emptyList();
+		this.calendarList = Collections.emptyList();
+		this.lock = new ReentrantLock();
+	}
+
+	/** The lock taken by all changes of the calendars of this user. */
+	ReentrantLock getLock()
+	{
+		return this.lock;
+	}
+
+	/** The journal to append the changes of this user to, {@code null} if they are not journaled.
+	 * Must be called with the {@link #getLock() lock} held. */
+	Journal getJournal()
+	{
+		return this.journal;
+	}
+
+	void setJournal(Journal journal)
+	{
+		this.lock.lock();
+		try
+		{
+			this.journal = journal;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/** The timeline to keep the public events of this user in, {@code null} if they are not listed.
+	 * Must be called with the {@link #getLock() lock} held. */
+	PublicTimeline getTimeline()
+	{
+		return this.timeline;
+	}
+
+	void setTimeline(PublicTimeline timeline)
+	{
+		this.lock.lock();
+		try
+		{
+			this.timeline = timeline;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+
+	/** The cache to keep the day overviews of the calendars of this user in, {@code null} if they are not cached. */
+	DayOverviewCache getOverviewCache()
+	{
+		return this.overviewCache;
+	}
+
+	void setOverviewCache(DayOverviewCache overviewCache)
+	{
+		this.lock.lock();
+		try
+		{
+			this.overviewCache = overviewCache;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
 	}
 
 	@Override
-	public void createNewCalendar(String nameOfCalendar) throws CalendarIsNotUniqueException
+	public long getMyVersion()
 	{
-		isCalendarnameUnique(nameOfCalendar);
+		return this.version;
+	}
 
-		Calendar newCalendar = new Calendar(this, nameOfCalendar);
-		this.calendars.add(newCalendar);
+	/** Provides the version stamp of the calendar names and the public events of the user, see {@link #getMyVersion()}. */
+	long getPublicVersion()
+	{
+		return this.publicVersion;
 	}
 
-	private void isCalendarnameUnique(String nameOfCalendar) throws CalendarIsNotUniqueException
+	/** Moves the version stamps on. Must be called with the {@link #getLock() lock} held.
+	 * @param publicChange {@code true} if the change is visible to other users.
+	 */
+	void changed(boolean publicChange)
 	{
-		for (Calendar c : this.calendars)
+		this.version++;
+		if (publicChange)
 		{
-			if (c.getName().equals(nameOfCalendar))
-			{
-				throw new CalendarIsNotUniqueException(c);
-			}
+			this.publicVersion++;
 		}
 	}
 
 	@Override
-	public void deleteCalendar(String nameOfCalendar) throws UnknownCalendarException
+	public long getMyCalendarVersion(String calendarName) throws UnknownCalendarException
 	{
-		Calendar calendarToDelete = this.getCalendar(nameOfCalendar);
-		this.calendars.remove(calendarToDelete);
+		return this.getCalendar(calendarName).getVersion();
 	}
 
 	@Override
-	public ArrayList<String> getAllMyCalendarNames()
+	public void createNewCalendar(String nameOfCalendar) throws CalendarIsNotUniqueException
+	{
+		this.createNewCalendar(nameOfCalendar, Storage.TREE);
+	}
+
+	@Override
+	public void createNewCalendar(String nameOfCalendar, Storage storage) throws CalendarIsNotUniqueException
+	{
+		Journal journal;
+		long position = 0;
+		this.lock.lock();
+		try
+		{
+			isCalendarnameUnique(nameOfCalendar);
+
+			journal = this.journal;
+			if (journal != null)
+			{
+				position = journal.logCreateCalendar(this.name, nameOfCalendar, storage);
+			}
+
+			Calendar newCalendar = new Calendar(this, nameOfCalendar, storage);
+			this.calendars.put(nameOfCalendar, newCalendar);
+
+			ArrayList<String> newCalendarNames = new ArrayList<String>(this.calendarNames);
+			newCalendarNames.add(nameOfCalendar);
+			this.calendarNames = Collections.unmodifiableList(newCalendarNames);
+			ArrayList<Calendar> newCalendarList = new ArrayList<Calendar>(this.calendarList);
+			newCalendarList.add(newCalendar);
+			this.calendarList = Collections.unmodifiableList(newCalendarList);
+			this.changed(true);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		if (journal != null)
+		{
+			journal.commit(position);
+		}
+	}
+
+	private void isCalendarnameUnique(String nameOfCalendar) throws CalendarIsNotUniqueException
 	{
-		ArrayList<String> allCalendarNames = new ArrayList<String>();
+		Calendar c = this.calendars.get(nameOfCalendar);
+		if (c != null)
+		{
+			throw new CalendarIsNotUniqueException(c);
+		}
+	}
 
-		for (Calendar c : this.calendars)
+	@Override
+	public void deleteCalendar(String nameOfCalendar) throws UnknownCalendarException
+	{
+		Journal journal;
+		long position = 0;
+		this.lock.lock();
+		try
+		{
+			Calendar calendar = this.getCalendar(nameOfCalendar);
+			journal = this.journal;
+			if (journal != null)
+			{
+				position = journal.logDeleteCalendar(this.name, nameOfCalendar);
+			}
+			if (this.timeline != null)
+			{
+				this.timeline.removeAll(calendar);
+			}
+			if (this.overviewCache != null)
+			{
+				this.overviewCache.removeAll(calendar);
+			}
+			this.calendars.remove(nameOfCalendar);
+			calendar.detach();
+
+			ArrayList<String> newCalendarNames = new ArrayList<String>(this.calendarNames);
+			newCalendarNames.remove(nameOfCalendar);
+			this.calendarNames = Collections.unmodifiableList(newCalendarNames);
+			ArrayList<Calendar> newCalendarList = new ArrayList<Calendar>(this.calendarList);
+			newCalendarList.remove(calendar);
+			this.calendarList = Collections.unmodifiableList(newCalendarList);
+			this.changed(true);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		if (journal != null)
 		{
-			allCalendarNames.add(c.getName());
+			journal.commit(position);
 		}
-		return allCalendarNames;
+	}
+
+	@Override
+	public List<String> getAllMyCalendarNames()
+	{
+		return this.calendarNames;
 	}
 
 	@Override
@@ -87,6 +289,14 @@ public class User implements IUser
 		return calendar.getAllEventsAtDate(date);
 	}
 
+	@Override
+	public ArrayList<IEvent> getMyCalendarAllEventsDuring(String calendarName, Date from, Date to) throws UnknownCalendarException, AccessDeniedException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		return calendar.getAllEventsDuring(from, to);
+	}
+
 	@Override
 	public Iterator<IEvent> getMyCalendarAllEventsStartingFrom(String calendarName, Date startDate) throws UnknownCalendarException, AccessDeniedException
 	{
@@ -95,6 +305,73 @@ public class User implements IUser
 		return calendar.getAllEventsStartingFrom(startDate);
 	}
 
+	@Override
+	public ArrayList<IEvent> getMyCalendarAllEventsStartingBetween(String calendarName, Date from, Date to, int limit) throws UnknownCalendarException, AccessDeniedException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		return calendar.getAllEventsStartingBetween(from, to, limit);
+	}
+
+	@Override
+	public boolean visitMyCalendarAllEventsAtDate(String calendarName, Date date, IEventVisitor visitor) throws UnknownCalendarException, AccessDeniedException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		return calendar.visitAllEventsAtDate(date, visitor);
+	}
+
+	@Override
+	public boolean visitMyCalendarAllEventsDuring(String calendarName, Date from, Date to, IEventVisitor visitor) throws UnknownCalendarException, AccessDeniedException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		return calendar.visitAllEventsDuring(from, to, visitor);
+	}
+
+	@Override
+	public boolean visitMyCalendarAllEventsStartingBetween(String calendarName, Date from, Date to, IEventVisitor visitor) throws UnknownCalendarException, AccessDeniedException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		return calendar.visitAllEventsStartingBetween(from, to, visitor);
+	}
+
+	@Override
+	public ICalendarChanges getMyCalendarAllChangesSince(String calendarName, String syncToken) throws UnknownCalendarException, AccessDeniedException, InvalidCursorException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		return calendar.getAllChangesSince(syncToken);
+	}
+
+	@Override
+	public void setMyCalendarChangeRetention(String calendarName, int changes) throws UnknownCalendarException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		calendar.setChangeRetention(changes);
+	}
+
+	@Override
+	public Iterator<IAgendaEvent> getMyAgendaStartingFrom(List<String> calendarNames, Date startDate) throws UnknownCalendarException, AccessDeniedException
+	{
+		return new Agenda(this.getCalendars(calendarNames), Event.searchKey(startDate), null);
+	}
+
+	@Override
+	public ArrayList<IAgendaEvent> getMyAgendaStartingBetween(List<String> calendarNames, Date from, Date to, int limit) throws UnknownCalendarException, AccessDeniedException
+	{
+		Agenda agenda = new Agenda(this.getCalendars(calendarNames), Event.searchKey(from), Event.searchKey(to));
+
+		ArrayList<IAgendaEvent> output = new ArrayList<IAgendaEvent>();
+		while ((limit == ICalendar.NO_LIMIT || output.size() < limit) && agenda.hasNext())
+		{
+			output.add(agenda.next());
+		}
+		return output;
+	}
+
 	@Override
 	public Iterator<IEvent> getMyCalendarPublicEventsStartingFrom(String calendarName, Date startDate) throws UnknownCalendarException
 	{
@@ -103,6 +380,14 @@ public class User implements IUser
 		return calendar.getAllPublicEventsStartingFrom(startDate);
 	}
 
+	@Override
+	public ArrayList<IEvent> getMyCalendarPublicEventsStartingBetween(String calendarName, Date from, Date to, int limit) throws UnknownCalendarException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		return calendar.getAllPublicEventsStartingBetween(from, to, limit);
+	}
+
 	@Override
 	public ArrayList<IEvent> getMyCalendarPublicEventsAtDate(String calendarName, Date date) throws UnknownCalendarException
 	{
@@ -111,6 +396,22 @@ public class User implements IUser
 		return calendar.getAllPublicEventsAtDate(date);
 	}
 
+	@Override
+	public ArrayList<IEvent> getMyCalendarPublicEventsDuring(String calendarName, Date from, Date to) throws UnknownCalendarException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		return calendar.getAllPublicEventsDuring(from, to);
+	}
+
+	@Override
+	public EventPage getMyCalendarPublicEventsPage(String calendarName, Date startDate, String cursor, int pageSize) throws UnknownCalendarException, InvalidCursorException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		return calendar.getPublicEventsPage(startDate, cursor, pageSize);
+	}
+
 	/* Operation on events */
 
 	@Override
@@ -129,6 +430,14 @@ public class User implements IUser
 		calendar.createPublicEvent(eventName, startDate, endDate);
 	}
 
+	@Override
+	public void createEvents(String calendarName, EventBatch batch) throws AccessDeniedException, InvalidDatesException, UnknownCalendarException
+	{
+		Calendar calendar = this.getCalendar(calendarName);
+
+		calendar.createEvents(batch);
+	}
+
 	@Override
 	public void editEventName(String calendarName, String eventName, Date startDate, String newEventName) throws AccessDeniedException, UnknownEventException, UnknownCalendarException, InvalidDateException
 	{
@@ -180,15 +489,35 @@ public class User implements IUser
 	@Override
 	public Calendar getCalendar(String calendarName) throws UnknownCalendarException
 	{
-		Iterator<Calendar> iteratorCalendar = this.calendars.iterator();
-		while (iteratorCalendar.hasNext())
+		Calendar calendar = this.calendars.get(calendarName);
+		if (calendar == null)
 		{
-			Calendar currentCalendar = iteratorCalendar.next();
-			if (currentCalendar.getName().equals(calendarName))
-			{
-				return currentCalendar;
-			}
+			throw new UnknownCalendarException(calendarName);
 		}
-		throw new UnknownCalendarException(calendarName);
+		return calendar;
+	}
+
+	/** Looks up the calendars with the given names, each of them once.
+	 * @param calendarNames Titles of the calendars, {@code null} for all calendars.
+	 * @throws UnknownCalendarException If the user has no calendar with one of the names.
+	 */
+	private List<Calendar> getCalendars(List<String> calendarNames) throws UnknownCalendarException
+	{
+		if (calendarNames == null)
+		{
+			return this.getCalendars();
+		}
+		LinkedHashMap<String, Calendar> calendars = new LinkedHashMap<String, Calendar>();
+		for (String calendarName : calendarNames)
+		{
+			calendars.put(calendarName, this.getCalendar(calendarName));
+		}
+		return new ArrayList<Calendar>(calendars.values());
+	}
+
+	/** All calendars in the order of {@link #getAllMyCalendarNames()}, for agendas and for snapshots taken while the changes are stopped. */
+	List<Calendar> getCalendars()
+	{
+		return new ArrayList<Calendar>(this.calendarList);
 	}
 }
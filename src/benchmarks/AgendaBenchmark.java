@@ -0,0 +1,113 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IAgendaEvent;
+import interfaces.ICalendar;
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Random;
+
+import app.App;
+import app.EventBatch;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compares the merged agenda of {@link IUser#getMyAgendaStartingBetween(java.util.List, Date, Date, int)}
+ * with collecting the events of every calendar on its own and sorting them, as a caller had to before.
+ * The user has 20 calendars of {@code events / 20} events each spread over ten years, alternately stored as trees and columns;
+ * the agenda lists the next 50 events in a window of a year. The number of events is given as argument (default 1 000 000).
+ */
+public class AgendaBenchmark extends BenchmarkTemplate
+{
+	private static final int CALENDARS = 20;
+	private static final int LIMIT = 50;
+	private static final int QUERIES = 200;
+
+	public static void main(String[] args) throws Exception
+	{
+		new AgendaBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		App app = new App();
+		app.createUser("Benchmark", "pw");
+		IUser user = app.loginUser("Benchmark", "pw");
+		Random random = new Random(events);
+		for (int c = 0; c < CALENDARS; c++)
+		{
+			String calendarName = "Calendar " + c;
+			user.createNewCalendar(calendarName, c % 2 == 0 ? ICalendar.Storage.TREE : ICalendar.Storage.COLUMNAR);
+			EventBatch batch = new EventBatch(events / CALENDARS);
+			for (int i = 0; i < events / CALENDARS; i++)
+			{
+				Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+				batch.addPublicEvent("Event " + i, startDate, new Date(startDate.getTime() + DAY / 24));
+			}
+			user.createEvents(calendarName, batch);
+		}
+
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			boolean measured = round == WARMUP_ROUNDS;
+			long checksum = 0;
+			long start = System.nanoTime();
+			for (int q = 0; q < QUERIES; q++)
+			{
+				Date from = this.day(q * 3000L / QUERIES);
+				ArrayList<IAgendaEvent> agenda = user.getMyAgendaStartingBetween(null, from, this.day(q * 3000L / QUERIES + 365), LIMIT);
+				checksum += agenda.get(LIMIT - 1).getStartDate().getTime();
+			}
+			long elapsed = System.nanoTime() - start;
+			if (measured)
+			{
+				this.report("merged agenda, first " + LIMIT, QUERIES, elapsed);
+			}
+
+			start = System.nanoTime();
+			for (int q = 0; q < QUERIES; q++)
+			{
+				Date from = this.day(q * 3000L / QUERIES);
+				checksum -= this.collectAndSort(user, from, this.day(q * 3000L / QUERIES + 365)).get(LIMIT - 1).getStartDate().getTime();
+			}
+			elapsed = System.nanoTime() - start;
+			if (measured)
+			{
+				this.report("every calendar on its own and sorted, first " + LIMIT, QUERIES, elapsed);
+			}
+			if (checksum != 0)
+			{
+				throw new IllegalStateException("The agendas differ!");
+			}
+		}
+	}
+
+	private ArrayList<IEvent> collectAndSort(IUser user, Date from, Date to) throws Exception
+	{
+		ArrayList<IEvent> all = new ArrayList<IEvent>();
+		for (String calendarName : user.getAllMyCalendarNames())
+		{
+			all.addAll(user.getMyCalendarAllEventsStartingBetween(calendarName, from, to, ICalendar.NO_LIMIT));
+		}
+		Collections.sort(all, new Comparator<IEvent>()
+		{
+			@Override
+			public int compare(IEvent event1, IEvent event2)
+			{
+				return event1.getStartDate().compareTo(event2.getStartDate());
+			}
+		});
+		return new ArrayList<IEvent>(all.subList(0, LIMIT));
+	}
+}
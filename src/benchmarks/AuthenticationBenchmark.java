@@ -0,0 +1,84 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import app.App;
+import app.AppExceptions.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures {@link App#loginUser(String, String)} and {@link App#getAllCalendarsNamesFromUser(String)}
+ * while the user database grows from 1'000 to 1'000'000 users.
+ * The time per operation should stay flat.
+ */
+public class AuthenticationBenchmark extends BenchmarkTemplate
+{
+	private static final int LOOKUPS = 1000000;
+	private static final int HASHED_LOGINS = 20;
+
+	public static void main(String[] args) throws Exception
+	{
+		new AuthenticationBenchmark().run();
+	}
+
+	public void run() throws UsernameAlreadyExistException, UnknownUserException, AccessDeniedException
+	{
+		App app = new App();
+
+		// the logins below only measure the lookup of the user, as the template hashes in a single iteration
+		App.setPasswordHashIterations(App.DEFAULT_PASSWORD_HASH_ITERATIONS);
+		app.createUser("hashed", "pw");
+		App.setPasswordHashIterations(1);
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			long start = System.nanoTime();
+			for (int i = 0; i < HASHED_LOGINS; i++)
+			{
+				app.loginUser("hashed", "pw");
+			}
+			if (round == WARMUP_ROUNDS)
+			{
+				this.report("loginUser, " + App.DEFAULT_PASSWORD_HASH_ITERATIONS + " iterations", HASHED_LOGINS, System.nanoTime() - start);
+			}
+		}
+
+		int users = 0;
+
+		for (int size = 1000; size <= 1000000; size *= 10)
+		{
+			for (; users < size; users++)
+			{
+				app.createUser("user" + users, "pw" + users);
+			}
+
+			for (int round = 0; round <= WARMUP_ROUNDS; round++)
+			{
+				long start = System.nanoTime();
+				for (int i = 0; i < LOOKUPS; i++)
+				{
+					int n = (int) ((i * 7919L) % size);
+					app.loginUser("user" + n, "pw" + n);
+				}
+				long loginTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < LOOKUPS; i++)
+				{
+					app.getAllCalendarsNamesFromUser("user" + ((i * 7919L) % size));
+				}
+				long lookupTime = System.nanoTime() - start;
+
+				if (round == WARMUP_ROUNDS)
+				{
+					this.report("loginUser, " + size + " users", LOOKUPS, loginTime);
+					this.report("getAllCalendarsNamesFromUser, " + size + " users", LOOKUPS, lookupTime);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IUser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Date;
+import java.util.Random;
+
+import app.App;
+import app.Calendar;
+import app.AppExceptions.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Common helpers for the benchmarks. The benchmarks are plain programs with a {@code main} method
+ * and print one line per measurement, so they can be run from the IDE without any harness.
+ */
+public abstract class BenchmarkTemplate
+{
+	static
+	{
+		// the benchmarks create up to millions of users and measure the app, not the password hash
+		App.setPasswordHashIterations(1);
+	}
+
+	/** One day in milliseconds. */
+	protected static final long DAY = 24L * 60L * 60L * 1000L;
+
+	/** Start of the time line all generated events are placed on (1.1.2011). */
+	protected static final long ORIGIN = 1293836400000L;
+
+	/** Number of unmeasured repetitions before each measurement to let the JIT settle. */
+	protected static final int WARMUP_ROUNDS = 3;
+
+	/** A date {@code days} days after {@link #ORIGIN}. */
+	protected Date day(long days)
+	{
+		return new Date(ORIGIN + days * DAY);
+	}
+
+	/** Prints the time per operation of a measurement. */
+	protected void report(String label, long operations, long elapsedNanos)
+	{
+		System.out.println(String.format("%-50s %12d ops %12.1f ns/op", label, operations, (double) elapsedNanos / operations));
+	}
+
+	/** Bytes allocated so far by the current thread, or -1 if the virtual machine cannot tell. */
+	protected long allocatedBytes()
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/** Heap in use after collecting the garbage. */
+	protected long usedHeap() throws InterruptedException
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++)
+		{
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/** Creates a calendar with {@code size} events spread over ten years, every second one is public. */
+	protected Calendar createCalendar(int size) throws UsernameAlreadyExistException, UnknownUserException, AccessDeniedException, CalendarIsNotUniqueException, UnknownCalendarException, InvalidDateException
+	{
+		App app = new App();
+		app.createUser("Benchmark", "pw");
+		IUser user = app.loginUser("Benchmark", "pw");
+		user.createNewCalendar("Rooms");
+		Calendar calendar = user.getCalendar("Rooms");
+
+		Random random = new Random(size);
+		for (int i = 0; i < size; i++)
+		{
+			Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+			Date endDate = new Date(startDate.getTime() + random.nextInt(48) * DAY / 24);
+			if (i % 2 == 0)
+			{
+				calendar.createPublicEvent("Event " + i, startDate, endDate);
+			}
+			else
+			{
+				calendar.createPrivateEvent("Event " + i, startDate, endDate);
+			}
+		}
+		return calendar;
+	}
+}
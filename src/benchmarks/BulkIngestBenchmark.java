@@ -0,0 +1,96 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.ICalendar;
+import interfaces.IUser;
+
+import java.util.Date;
+import java.util.Random;
+
+import app.App;
+import app.EventBatch;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compares creating events one by one through {@link IUser#createPublicEvent(String, String, Date, Date)}
+ * with creating them in batches through {@link IUser#createEvents(String, EventBatch)}, for each {@link ICalendar.Storage}.
+ * The events are created in random order in a new calendar; the number of events is given as argument (default 200 000).
+ */
+public class BulkIngestBenchmark extends BenchmarkTemplate
+{
+	private static final int[] BATCH_SIZES = { 1024, 65536, Integer.MAX_VALUE };
+
+	public static void main(String[] args) throws Exception
+	{
+		new BulkIngestBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 200000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		App app = new App();
+		app.createUser("Benchmark", "pw");
+		IUser user = app.loginUser("Benchmark", "pw");
+
+		String[] names = new String[events];
+		Date[] startDates = new Date[events];
+		Date[] endDates = new Date[events];
+		Random random = new Random(events);
+		for (int i = 0; i < events; i++)
+		{
+			names[i] = "Event " + i;
+			startDates[i] = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+			endDates[i] = new Date(startDates[i].getTime() + random.nextInt(48) * DAY / 24);
+		}
+
+		int calendars = 0;
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			boolean measured = round == WARMUP_ROUNDS;
+			for (ICalendar.Storage storage : ICalendar.Storage.values())
+			{
+				String calendarName = "Calendar " + calendars++;
+				user.createNewCalendar(calendarName, storage);
+				long start = System.nanoTime();
+				for (int i = 0; i < events; i++)
+				{
+					user.createPublicEvent(calendarName, names[i], startDates[i], endDates[i]);
+				}
+				long elapsed = System.nanoTime() - start;
+				user.deleteCalendar(calendarName);
+				if (measured)
+				{
+					this.report(storage + ", one by one", events, elapsed);
+				}
+
+				for (int batchSize : BATCH_SIZES)
+				{
+					calendarName = "Calendar " + calendars++;
+					user.createNewCalendar(calendarName, storage);
+					start = System.nanoTime();
+					EventBatch batch = new EventBatch(Math.min(batchSize, events));
+					for (int i = 0; i < events; i++)
+					{
+						batch.addPublicEvent(names[i], startDates[i], endDates[i]);
+						if (batch.size() == batchSize || i == events - 1)
+						{
+							user.createEvents(calendarName, batch);
+							batch.clear();
+						}
+					}
+					elapsed = System.nanoTime() - start;
+					user.deleteCalendar(calendarName);
+					if (measured)
+					{
+						this.report(storage + ", batches of " + Math.min(batchSize, events), events, elapsed);
+					}
+				}
+			}
+		}
+	}
+}
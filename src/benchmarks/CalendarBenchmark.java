@@ -0,0 +1,77 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IEvent;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+
+import app.Calendar;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the "starting from" queries on calendars with 100'000 and more events.
+ * Every query reads the next {@value #PAGE} events from a random point in time, like an agenda view does.
+ */
+public class CalendarBenchmark extends BenchmarkTemplate
+{
+	private static final int PAGE = 20;
+	private static final int QUERIES = 200;
+
+	public static void main(String[] args) throws Exception
+	{
+		new CalendarBenchmark().run();
+	}
+
+	public void run() throws Exception
+	{
+		for (int size = 100000; size <= 400000; size *= 2)
+		{
+			Calendar calendar = this.createCalendar(size);
+			Random random = new Random(42);
+
+			for (int round = 0; round <= WARMUP_ROUNDS; round++)
+			{
+				long allTime = 0;
+				long publicTime = 0;
+				for (int i = 0; i < QUERIES; i++)
+				{
+					Date from = this.day(random.nextInt(3650));
+
+					long start = System.nanoTime();
+					this.read(calendar.getAllEventsStartingFrom(from));
+					allTime += System.nanoTime() - start;
+
+					start = System.nanoTime();
+					this.read(calendar.getAllPublicEventsStartingFrom(from));
+					publicTime += System.nanoTime() - start;
+				}
+
+				if (round == WARMUP_ROUNDS)
+				{
+					this.report("getAllEventsStartingFrom, " + size + " events", QUERIES, allTime);
+					this.report("getAllPublicEventsStartingFrom, " + size + " events", QUERIES, publicTime);
+				}
+			}
+		}
+	}
+
+	/** Reads the first {@value #PAGE} events of a query. */
+	protected int read(Iterator<IEvent> events)
+	{
+		int count = 0;
+		while (count < PAGE && events.hasNext())
+		{
+			events.next();
+			count++;
+		}
+		return count;
+	}
+}
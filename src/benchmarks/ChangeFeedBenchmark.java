@@ -0,0 +1,155 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IEvent;
+import interfaces.IPublicEventChange;
+import interfaces.IPublicEventListener;
+import interfaces.ISubscription;
+import interfaces.IUser;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import app.App;
+import app.EventBatch;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compares watching calendars by polling them with {@link App#getUsersCalendarPublicEvents(String, String, Date)}
+ * with subscribing to their changes through {@link App#subscribeToPublicEvents(String, String, IPublicEventListener, int)}.
+ * There are 200 users with one watched calendar each, sharing the public events given as argument (default 1 000 000).
+ * The polling is measured per round over all calendars; the feed by the cost of 100 000 edits for the writers,
+ * with and without subscriptions, and by the number of batches the changes were delivered in.
+ */
+public class ChangeFeedBenchmark extends BenchmarkTemplate
+{
+	private static final int USERS = 200;
+	private static final int EDITS = 100000;
+
+	public static void main(String[] args) throws Exception
+	{
+		new ChangeFeedBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		App app = new App();
+		IUser[] users = new IUser[USERS];
+		Random random = new Random(events);
+		int perUser = events / USERS;
+		long[][] startTimes = new long[USERS][perUser];
+		String[][] names = new String[USERS][perUser];
+		for (int u = 0; u < USERS; u++)
+		{
+			app.createUser("User " + u, "pw");
+			users[u] = app.loginUser("User " + u, "pw");
+			users[u].createNewCalendar("Watched");
+			EventBatch batch = new EventBatch(perUser);
+			for (int i = 0; i < perUser; i++)
+			{
+				startTimes[u][i] = ORIGIN + (long) (random.nextDouble() * 3650 * DAY);
+				names[u][i] = "Event " + i;
+				batch.addPublicEvent(names[u][i], new Date(startTimes[u][i]), new Date(startTimes[u][i] + DAY / 24));
+			}
+			users[u].createEvents("Watched", batch);
+		}
+
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			long start = System.nanoTime();
+			long seen = 0;
+			for (int u = 0; u < USERS; u++)
+			{
+				Iterator<IEvent> iteratorEvents = app.getUsersCalendarPublicEvents("User " + u, "Watched", new Date(Long.MIN_VALUE));
+				while (iteratorEvents.hasNext())
+				{
+					iteratorEvents.next();
+					seen++;
+				}
+			}
+			if (round == WARMUP_ROUNDS)
+			{
+				this.report("polling all watched calendars once", seen, System.nanoTime() - start);
+			}
+		}
+
+		int edit = 0;
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			long start = System.nanoTime();
+			edit = this.edit(users, startTimes, names, random, edit);
+			if (round == WARMUP_ROUNDS)
+			{
+				this.report("edits without subscriptions", EDITS, System.nanoTime() - start);
+			}
+		}
+
+		final AtomicLong changes = new AtomicLong();
+		final AtomicLong batches = new AtomicLong();
+		final AtomicLong dropped = new AtomicLong();
+		ISubscription[] subscriptions = new ISubscription[USERS];
+		for (int u = 0; u < USERS; u++)
+		{
+			subscriptions[u] = app.subscribeToPublicEvents("User " + u, "Watched", new IPublicEventListener()
+			{
+				@Override
+				public void onChanges(List<IPublicEventChange> delivered)
+				{
+					changes.addAndGet(delivered.size());
+					batches.incrementAndGet();
+				}
+
+				@Override
+				public void onChangesDropped(int droppedChanges)
+				{
+					dropped.addAndGet(droppedChanges);
+				}
+			}, 1024);
+		}
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			changes.set(0);
+			batches.set(0);
+			dropped.set(0);
+			long start = System.nanoTime();
+			edit = this.edit(users, startTimes, names, random, edit);
+			long elapsed = System.nanoTime() - start;
+			while (changes.get() + dropped.get() < EDITS)
+			{
+				Thread.sleep(1);
+			}
+			if (round == WARMUP_ROUNDS)
+			{
+				this.report("edits with a subscription per calendar", EDITS, elapsed);
+				System.out.println(String.format("delivered %d changes in %d batches, %d dropped", changes.get(), batches.get(), dropped.get()));
+			}
+		}
+		for (ISubscription subscription : subscriptions)
+		{
+			subscription.cancel();
+		}
+	}
+
+	/** Renames {@link #EDITS} random events, the {@code edit}th edit first. */
+	private int edit(IUser[] users, long[][] startTimes, String[][] names, Random random, int edit) throws Exception
+	{
+		for (int i = 0; i < EDITS; i++, edit++)
+		{
+			int u = random.nextInt(USERS);
+			int e = random.nextInt(startTimes[u].length);
+			String newName = "Edit " + edit;
+			users[u].editEventName("Watched", names[u][e], new Date(startTimes[u][e]), newName);
+			names[u][e] = newName;
+		}
+		return edit;
+	}
+}
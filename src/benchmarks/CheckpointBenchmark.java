@@ -0,0 +1,168 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.ICalendar;
+import interfaces.IUser;
+
+import java.io.File;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import app.App;
+import app.Journal.SyncPolicy;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the pause a checkpoint causes to the writers of an {@link App}.
+ * Writer threads create events all the time, once while nothing else happens and once while checkpoints are taken,
+ * and record the time of every change in a histogram of {@value #BUCKET_NANOS} ns buckets per phase.
+ * The percentiles of both phases are compared, as the longest changes are usually caused by the garbage collector.
+ * The number of events the app holds is given as argument (default 1 000 000). Run it with a heap of 2 GB.
+ */
+public class CheckpointBenchmark extends BenchmarkTemplate
+{
+	private static final int USERS = 1000;
+	private static final int WRITERS = 4;
+	private static final int CHECKPOINTS = 3;
+
+	private static final long BUCKET_NANOS = 10000;
+	private static final int BUCKETS = 100000;
+
+	private static final int IDLE = 0;
+	private static final int CHECKPOINTING = 1;
+
+	private volatile int phase = IDLE;
+	private volatile boolean stopped;
+
+	public static void main(String[] args) throws Exception
+	{
+		new CheckpointBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		File journal = File.createTempFile("benchmark", ".journal");
+		journal.deleteOnExit();
+		new File(journal.getPath() + ".snapshot").deleteOnExit();
+
+		final App app = new App(journal, SyncPolicy.NEVER);
+		final IUser[] users = new IUser[USERS];
+		for (int u = 0; u < USERS; u++)
+		{
+			app.createUser("user" + u, "pw");
+			users[u] = app.loginUser("user" + u, "pw");
+			users[u].createNewCalendar("Work");
+			users[u].createNewCalendar("Rooms", ICalendar.Storage.COLUMNAR);
+		}
+		Random random = new Random(events);
+		for (int i = 0; i < events; i++)
+		{
+			Date date = this.randomDate(random);
+			users[random.nextInt(USERS)].createPublicEvent(i % 10 == 0 ? "Work" : "Rooms", "Event " + random.nextInt(500), date, date);
+		}
+		// a first checkpoint, so that all phases write the same amount
+		app.checkpoint();
+
+		final long[][] maxNanos = new long[WRITERS][2];
+		final long[][][] histograms = new long[WRITERS][2][BUCKETS];
+		final CountDownLatch done = new CountDownLatch(WRITERS);
+		for (int t = 0; t < WRITERS; t++)
+		{
+			final int thread = t;
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						Random random = new Random(thread);
+						while (!stopped)
+						{
+							int current = phase;
+							IUser user = users[random.nextInt(USERS)];
+							Date date = randomDate(random);
+							long start = System.nanoTime();
+							user.createPublicEvent("Rooms", "Event", date, date);
+							long elapsed = System.nanoTime() - start;
+							maxNanos[thread][current] = Math.max(maxNanos[thread][current], elapsed);
+							histograms[thread][current][(int) Math.min(BUCKETS - 1, elapsed / BUCKET_NANOS)]++;
+						}
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+
+		long idleStart = System.nanoTime();
+		Thread.sleep(3000);
+		long idleNanos = System.nanoTime() - idleStart;
+
+		this.phase = CHECKPOINTING;
+		long checkpointStart = System.nanoTime();
+		for (int c = 0; c < CHECKPOINTS; c++)
+		{
+			long start = System.nanoTime();
+			app.checkpoint();
+			this.report("checkpoint of " + events + " events", 1, System.nanoTime() - start);
+		}
+		long checkpointNanos = System.nanoTime() - checkpointStart;
+		this.stopped = true;
+		done.await();
+		app.close();
+
+		String[] labels = { "writers, no checkpoint", "writers, during checkpoints" };
+		long[] durations = { idleNanos, checkpointNanos };
+		for (int p = 0; p < 2; p++)
+		{
+			long max = 0;
+			long[] histogram = new long[BUCKETS];
+			long count = 0;
+			for (int t = 0; t < WRITERS; t++)
+			{
+				max = Math.max(max, maxNanos[t][p]);
+				for (int b = 0; b < BUCKETS; b++)
+				{
+					histogram[b] += histograms[t][p][b];
+					count += histograms[t][p][b];
+				}
+			}
+			System.out.println(String.format("%-50s %10.0f changes/s  p99 %8.2f ms  p99.9 %8.2f ms  max %8.2f ms", labels[p], count * 1e9 / durations[p],
+					percentile(histogram, count, 0.99) / 1e6, percentile(histogram, count, 0.999) / 1e6, max / 1e6));
+		}
+	}
+
+	/** The upper bound of the bucket holding the given fraction of the changes. */
+	private static long percentile(long[] histogram, long count, double fraction)
+	{
+		long seen = 0;
+		for (int b = 0; b < histogram.length; b++)
+		{
+			seen += histogram[b];
+			if (seen >= count * fraction)
+			{
+				return (b + 1) * BUCKET_NANOS;
+			}
+		}
+		return histogram.length * BUCKET_NANOS;
+	}
+
+	private Date randomDate(Random random)
+	{
+		return new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+	}
+}
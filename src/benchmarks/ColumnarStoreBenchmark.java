@@ -0,0 +1,115 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.ICalendar;
+import interfaces.ICalendar.Storage;
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+
+import app.App;
+import app.Calendar;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compares the storages of a calendar with a million events, like the calendar of a room.
+ * The events are bookings of up to a day with 1'000 different names, every second one is public.
+ * Reports the heap per event, the time to create the events one by one and the time of typical queries.
+ */
+public class ColumnarStoreBenchmark extends BenchmarkTemplate
+{
+	private static final int EVENTS = 1000000;
+	private static final int QUERIES = 2000;
+	private static final int SCANS = 5;
+
+	public static void main(String[] args) throws Exception
+	{
+		new ColumnarStoreBenchmark().run();
+	}
+
+	public void run() throws Exception
+	{
+		for (Storage storage : Storage.values())
+		{
+			long before = this.usedHeap();
+			long start = System.nanoTime();
+			Calendar calendar = this.createRoomCalendar(storage);
+			long createTime = System.nanoTime() - start;
+			long after = this.usedHeap();
+			System.out.println(String.format("%-50s %12.1f bytes/event", storage + ", heap", (double) (after - before) / EVENTS));
+			this.report(storage + ", create event", EVENTS, createTime);
+
+			for (int round = 0; round <= WARMUP_ROUNDS; round++)
+			{
+				Random random = new Random(42);
+				long atDateTime = 0;
+				long pageTime = 0;
+				for (int i = 0; i < QUERIES; i++)
+				{
+					Date date = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+
+					start = System.nanoTime();
+					calendar.getAllPublicEventsAtDate(date);
+					atDateTime += System.nanoTime() - start;
+
+					start = System.nanoTime();
+					Iterator<IEvent> events = calendar.getAllPublicEventsStartingFrom(date);
+					for (int n = 0; n < 20 && events.hasNext(); n++)
+					{
+						events.next();
+					}
+					pageTime += System.nanoTime() - start;
+				}
+
+				start = System.nanoTime();
+				long found = 0;
+				for (int i = 0; i < SCANS; i++)
+				{
+					found += calendar.getAllEventsStartingBetween(this.day(-1), this.day(3651), ICalendar.NO_LIMIT).size();
+				}
+				long scanTime = System.nanoTime() - start;
+
+				if (round == WARMUP_ROUNDS)
+				{
+					this.report(storage + ", getAllPublicEventsAtDate", QUERIES, atDateTime);
+					this.report(storage + ", 20 of getAllPublicEventsStartingFrom", QUERIES, pageTime);
+					this.report(storage + ", full scan, per event", found, scanTime);
+				}
+			}
+			calendar = null;
+		}
+	}
+
+	private Calendar createRoomCalendar(Storage storage) throws Exception
+	{
+		App app = new App();
+		app.createUser("Room", "pw");
+		IUser user = app.loginUser("Room", "pw");
+		user.createNewCalendar("Bookings", storage);
+
+		Random random = new Random(EVENTS);
+		for (int i = 0; i < EVENTS; i++)
+		{
+			Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+			Date endDate = new Date(startDate.getTime() + random.nextInt(24) * DAY / 24);
+			if (i % 2 == 0)
+			{
+				user.createPublicEvent("Bookings", "Booking " + (i % 1000), startDate, endDate);
+			}
+			else
+			{
+				user.createPrivateEvent("Bookings", "Booking " + (i % 1000), startDate, endDate);
+			}
+		}
+		return user.getCalendar("Bookings");
+	}
+}
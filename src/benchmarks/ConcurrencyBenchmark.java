@@ -0,0 +1,130 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import app.App;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the throughput of one shared {@link App} with 1 to N threads.
+ * Every thread writes to the calendar of its own users and reads the public events of random users,
+ * one write per {@value #READS_PER_WRITE} reads.
+ * With per-user locks the throughput should grow with the number of cores.
+ */
+public class ConcurrencyBenchmark extends BenchmarkTemplate
+{
+	private static final int USERS = 256;
+	private static final int EVENTS_PER_USER = 2000;
+	private static final int READS_PER_WRITE = 10;
+	private static final long DURATION_MILLIS = 2000;
+
+	public static void main(String[] args) throws Exception
+	{
+		new ConcurrencyBenchmark().run();
+	}
+
+	public void run() throws Exception
+	{
+		final App app = new App();
+		final IUser[] users = new IUser[USERS];
+		Random random = new Random(42);
+		for (int u = 0; u < USERS; u++)
+		{
+			app.createUser("user" + u, "pw");
+			users[u] = app.loginUser("user" + u, "pw");
+			users[u].createNewCalendar("Public");
+			for (int i = 0; i < EVENTS_PER_USER; i++)
+			{
+				Date startDate = this.day(random.nextInt(3650));
+				users[u].createPublicEvent("Public", "Event " + i, startDate, startDate);
+			}
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			for (int threads = 1; threads <= cores; threads *= 2)
+			{
+				long operations = this.measure(app, users, threads);
+				if (round == WARMUP_ROUNDS)
+				{
+					System.out.println(String.format("%-50s %12.0f ops/s", threads + " threads", operations * 1000.0 / DURATION_MILLIS));
+				}
+			}
+		}
+	}
+
+	private long measure(final App app, final IUser[] users, final int threads) throws InterruptedException
+	{
+		final long[] operations = new long[threads];
+		final CountDownLatch done = new CountDownLatch(threads);
+		final long end = System.currentTimeMillis() + DURATION_MILLIS;
+
+		for (int t = 0; t < threads; t++)
+		{
+			final int thread = t;
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						Random random = new Random(thread);
+						long count = 0;
+						while (System.currentTimeMillis() < end)
+						{
+							if (count % READS_PER_WRITE == 0)
+							{
+								// write to one of the users owned by this thread
+								IUser user = users[thread + threads * random.nextInt(USERS / threads)];
+								Date startDate = day(random.nextInt(3650));
+								user.createPublicEvent("Public", "Temporary", startDate, startDate);
+								user.deleteEvent("Public", "Temporary", startDate);
+							}
+							else
+							{
+								Iterator<IEvent> events = app.getUsersCalendarPublicEvents("user" + random.nextInt(USERS), "Public", day(random.nextInt(3650)));
+								for (int i = 0; i < 10 && events.hasNext(); i++)
+								{
+									events.next();
+								}
+							}
+							count++;
+						}
+						operations[thread] = count;
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		done.await();
+
+		long total = 0;
+		for (long count : operations)
+		{
+			total += count;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IApp;
+import interfaces.ICalendar;
+import interfaces.IConditionalResult;
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+
+import app.App;
+import app.EventBatch;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compares polling the public events of a month through {@link IApp#getUsersCalendarPublicEventsOverview(String, String, Date, Date)}
+ * with polling them through {@link IApp#getUsersCalendarPublicEventsOverviewIfModified(String, String, Date, Date, long)} while nothing
+ * changes, for each {@link ICalendar.Storage}, and prints the time and the bytes allocated per poll.
+ * The number of events is given as argument (default 1 000 000).
+ */
+public class ConditionalReadBenchmark extends BenchmarkTemplate
+{
+	private static final int POLLS = 2000;
+
+	public static void main(String[] args) throws Exception
+	{
+		new ConditionalReadBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		App app = new App();
+		app.createUser("Benchmark", "pw");
+		IUser user = app.loginUser("Benchmark", "pw");
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			String calendarName = "Calendar " + storage;
+			user.createNewCalendar(calendarName, storage);
+			Random random = new Random(events);
+			EventBatch batch = new EventBatch(events);
+			for (int i = 0; i < events; i++)
+			{
+				Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+				Date endDate = new Date(startDate.getTime() + random.nextInt(48) * DAY / 24);
+				if (i % 2 == 0)
+				{
+					batch.addPublicEvent("Event " + i, startDate, endDate);
+				}
+				else
+				{
+					batch.addPrivateEvent("Event " + i, startDate, endDate);
+				}
+			}
+			user.createEvents(calendarName, batch);
+
+			Date from = this.day(1800);
+			Date to = this.day(1830);
+			long version = app.getUsersCalendarPublicEventsOverviewIfModified("Benchmark", calendarName, from, to, 0).getVersion();
+			for (int round = 0; round <= WARMUP_ROUNDS; round++)
+			{
+				long listed = 0;
+				long allocated = this.allocatedBytes();
+				long start = System.nanoTime();
+				for (int poll = 0; poll < POLLS; poll++)
+				{
+					ArrayList<IEvent> result = app.getUsersCalendarPublicEventsOverview("Benchmark", calendarName, from, to);
+					listed += result.size();
+				}
+				long fullTime = System.nanoTime() - start;
+				long fullAllocated = this.allocatedBytes() - allocated;
+
+				int modified = 0;
+				allocated = this.allocatedBytes();
+				start = System.nanoTime();
+				for (int poll = 0; poll < POLLS; poll++)
+				{
+					IConditionalResult<ArrayList<IEvent>> result = app.getUsersCalendarPublicEventsOverviewIfModified("Benchmark", calendarName, from, to, version);
+					modified += result.isModified() ? 1 : 0;
+				}
+				long conditionalTime = System.nanoTime() - start;
+				long conditionalAllocated = this.allocatedBytes() - allocated;
+
+				if (round == WARMUP_ROUNDS)
+				{
+					this.report(storage + ", full read of " + listed / POLLS + " events", POLLS, fullTime);
+					System.out.println(storage + ", full read: " + fullAllocated / POLLS + " bytes/op");
+					this.report(storage + ", unchanged conditional read (" + modified + " modified)", POLLS, conditionalTime);
+					System.out.println(storage + ", unchanged conditional read: " + conditionalAllocated / POLLS + " bytes/op");
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IApp;
+import interfaces.ICalendar;
+import interfaces.IUser;
+
+import java.util.Date;
+import java.util.Random;
+
+import app.App;
+import app.EventBatch;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the day overviews of {@link IApp#getUsersCalendarPublicEventsOverview(String, String, Date)} with and without
+ * the overview cache, for each {@link ICalendar.Storage}. The overviews ask for 30 popular days; after every 1000 overviews,
+ * one event on a random day is created, so some cached days are dropped. The number of events is given as argument (default 1 000 000).
+ */
+public class DayOverviewBenchmark extends BenchmarkTemplate
+{
+	private static final int OVERVIEWS = 100000;
+	private static final int OVERVIEWS_PER_CHANGE = 1000;
+	private static final int POPULAR_DAYS = 30;
+
+	public static void main(String[] args) throws Exception
+	{
+		new DayOverviewBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		App app = new App();
+		app.createUser("Benchmark", "pw");
+		IUser user = app.loginUser("Benchmark", "pw");
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			String calendarName = "Calendar " + storage;
+			user.createNewCalendar(calendarName, storage);
+			Random random = new Random(events);
+			EventBatch batch = new EventBatch(events);
+			for (int i = 0; i < events; i++)
+			{
+				Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+				batch.addPublicEvent("Event " + i, startDate, new Date(startDate.getTime() + random.nextInt(48) * DAY / 24));
+			}
+			user.createEvents(calendarName, batch);
+
+			Date[] days = new Date[POPULAR_DAYS];
+			for (int d = 0; d < POPULAR_DAYS; d++)
+			{
+				days[d] = this.day(1800 + d);
+			}
+			for (int capacity : new int[] { 0, 4096 })
+			{
+				app.setOverviewCacheCapacity(capacity);
+				for (int round = 0; round <= WARMUP_ROUNDS; round++)
+				{
+					long listed = 0;
+					long start = System.nanoTime();
+					for (int i = 0; i < OVERVIEWS; i++)
+					{
+						if (i % OVERVIEWS_PER_CHANGE == 0)
+						{
+							Date startDate = this.day(1800 + random.nextInt(POPULAR_DAYS));
+							user.createPublicEvent(calendarName, "Change " + i, startDate, startDate);
+						}
+						listed += app.getUsersCalendarPublicEventsOverview("Benchmark", calendarName, days[random.nextInt(POPULAR_DAYS)]).size();
+					}
+					long elapsed = System.nanoTime() - start;
+					if (round == WARMUP_ROUNDS)
+					{
+						this.report(storage + ", cache of " + capacity + ", " + listed / OVERVIEWS + " events", OVERVIEWS, elapsed);
+					}
+				}
+				System.out.println(app.getOverviewCacheStatistics());
+			}
+			user.deleteCalendar(calendarName);
+		}
+	}
+}
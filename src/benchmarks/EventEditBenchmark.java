@@ -0,0 +1,82 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+
+import app.Calendar;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures lookups, edits and deletes of single events on large calendars.
+ * Every operation has to find the event by name and start date first.
+ */
+public class EventEditBenchmark extends BenchmarkTemplate
+{
+	private static final int OPERATIONS = 20000;
+
+	public static void main(String[] args) throws Exception
+	{
+		new EventEditBenchmark().run();
+	}
+
+	public void run() throws Exception
+	{
+		for (int size = 100000; size <= 400000; size *= 2)
+		{
+			for (int round = 0; round <= WARMUP_ROUNDS; round++)
+			{
+				Calendar calendar = this.createCalendar(size);
+				ArrayList<IEvent> events = new ArrayList<IEvent>();
+				Iterator<IEvent> iteratorEvents = calendar.getAllEventsStartingFrom(new Date(0));
+				while (iteratorEvents.hasNext())
+				{
+					events.add(iteratorEvents.next());
+				}
+				Collections.shuffle(events, new Random(round));
+
+				long start = System.nanoTime();
+				for (int i = 0; i < OPERATIONS; i++)
+				{
+					IEvent event = events.get(i);
+					calendar.getEvent(event.getEventName(), event.getStartDate());
+				}
+				long lookupTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < OPERATIONS; i++)
+				{
+					IEvent event = events.get(i);
+					calendar.editEvent(event.getEventName(), event.getStartDate(), null, null, new Date(event.getEndDate().getTime() + DAY), null);
+				}
+				long editTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = OPERATIONS; i < 2 * OPERATIONS; i++)
+				{
+					IEvent event = events.get(i);
+					calendar.deleteEvent(event.getEventName(), event.getStartDate());
+				}
+				long deleteTime = System.nanoTime() - start;
+
+				if (round == WARMUP_ROUNDS)
+				{
+					this.report("getEvent, " + size + " events", OPERATIONS, lookupTime);
+					this.report("editEvent, " + size + " events", OPERATIONS, editTime);
+					this.report("deleteEvent, " + size + " events", OPERATIONS, deleteTime);
+				}
+			}
+		}
+	}
+}
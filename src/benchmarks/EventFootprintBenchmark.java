@@ -0,0 +1,67 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.ICalendar;
+
+import java.util.Date;
+
+import app.Calendar;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the heap used per event and the time per event of queries that scan whole calendars.
+ * The overview scans every event of ten years for overlap with the time span,
+ * the range query walks all events in start order.
+ */
+public class EventFootprintBenchmark extends BenchmarkTemplate
+{
+	private static final int SCANS = 20;
+
+	public static void main(String[] args) throws Exception
+	{
+		new EventFootprintBenchmark().run();
+	}
+
+	public void run() throws Exception
+	{
+		for (int size = 100000; size <= 400000; size *= 2)
+		{
+			long before = this.usedHeap();
+			Calendar calendar = this.createCalendar(size);
+			long after = this.usedHeap();
+			System.out.println(String.format("%-50s %12.1f bytes/event", "heap, " + size + " events", (double) (after - before) / size));
+
+			Date from = this.day(-1);
+			Date to = this.day(3651);
+			for (int round = 0; round <= WARMUP_ROUNDS; round++)
+			{
+				long found = 0;
+				long start = System.nanoTime();
+				for (int i = 0; i < SCANS; i++)
+				{
+					found += calendar.getAllEventsDuring(from, to).size();
+				}
+				long overlapTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < SCANS; i++)
+				{
+					found += calendar.getAllEventsStartingBetween(from, to, ICalendar.NO_LIMIT).size();
+				}
+				long rangeTime = System.nanoTime() - start;
+
+				if (round == WARMUP_ROUNDS)
+				{
+					this.report("getAllEventsDuring, " + size + " events", found / 2, overlapTime);
+					this.report("getAllEventsStartingBetween, " + size + " events", found / 2, rangeTime);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.ICalendar.Storage;
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+
+import app.App;
+import app.Calendar;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compares the pauses of the garbage collector with a calendar of two million events in every storage.
+ * <p>
+ * Reports the heap and the memory outside of it used by the calendar, the time of a full collection,
+ * and the collections during a mix of queries and new bookings. A full collection has to visit every object
+ * on the heap, so its time grows with the events kept as objects.
+ * Run with a heap large enough for the {@code TREE} calendar, e.g. {@code -Xmx2g}.
+ * </p>
+ */
+public class GcPauseBenchmark extends BenchmarkTemplate
+{
+	private static final int EVENTS = 2000000;
+	private static final int FULL_COLLECTIONS = 5;
+	private static final int OPERATIONS = 200000;
+
+	public static void main(String[] args) throws Exception
+	{
+		new GcPauseBenchmark().run();
+	}
+
+	public void run() throws Exception
+	{
+		for (Storage storage : Storage.values())
+		{
+			long heapBefore = this.usedHeap();
+			long directBefore = this.usedDirectMemory();
+			IUser user = this.createRoomUser(storage);
+			Calendar calendar = user.getCalendar("Bookings");
+			long heapAfter = this.usedHeap();
+			long directAfter = this.usedDirectMemory();
+			System.out.println(String.format("%-50s %12.1f bytes/event", storage + ", heap", (double) (heapAfter - heapBefore) / EVENTS));
+			System.out.println(String.format("%-50s %12.1f bytes/event", storage + ", outside of the heap", (double) (directAfter - directBefore) / EVENTS));
+
+			long start = System.nanoTime();
+			for (int i = 0; i < FULL_COLLECTIONS; i++)
+			{
+				System.gc();
+			}
+			long fullTime = System.nanoTime() - start;
+			System.out.println(String.format("%-50s %12.1f ms", storage + ", full collection", fullTime / 1e6 / FULL_COLLECTIONS));
+
+			long collectionsBefore = this.collections();
+			long collectionTimeBefore = this.collectionTime();
+			Random random = new Random(42);
+			start = System.nanoTime();
+			for (int i = 0; i < OPERATIONS; i++)
+			{
+				Date date = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+				if (i % 10 == 0)
+				{
+					user.createPublicEvent("Bookings", "Booking " + (i % 1000), date, new Date(date.getTime() + DAY / 24));
+				}
+				else if (i % 2 == 0)
+				{
+					calendar.getAllPublicEventsAtDate(date);
+				}
+				else
+				{
+					Iterator<IEvent> events = calendar.getAllPublicEventsStartingFrom(date);
+					for (int n = 0; n < 20 && events.hasNext(); n++)
+					{
+						events.next();
+					}
+				}
+			}
+			long workloadTime = System.nanoTime() - start;
+			long collections = this.collections() - collectionsBefore;
+			long collectionTime = this.collectionTime() - collectionTimeBefore;
+			this.report(storage + ", queries and bookings", OPERATIONS, workloadTime);
+			System.out.println(String.format("%-50s %12d collections %8.1f ms/collection %8.1f %% of the time", storage + ", collections during them",
+					collections, collections == 0 ? 0.0 : (double) collectionTime / collections, collectionTime * 1e8 / workloadTime));
+
+			user = null;
+			calendar = null;
+		}
+	}
+
+	private IUser createRoomUser(Storage storage) throws Exception
+	{
+		App app = new App();
+		app.createUser("Room", "pw");
+		IUser user = app.loginUser("Room", "pw");
+		user.createNewCalendar("Bookings", storage);
+
+		Random random = new Random(EVENTS);
+		for (int i = 0; i < EVENTS; i++)
+		{
+			Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+			Date endDate = new Date(startDate.getTime() + random.nextInt(24) * DAY / 24);
+			if (i % 2 == 0)
+			{
+				user.createPublicEvent("Bookings", "Booking " + (i % 1000), startDate, endDate);
+			}
+			else
+			{
+				user.createPrivateEvent("Bookings", "Booking " + (i % 1000), startDate, endDate);
+			}
+		}
+		return user;
+	}
+
+	/** Memory of the direct buffers in use. Measured after {@link #usedHeap()}, which releases the buffers no longer reachable. */
+	private long usedDirectMemory()
+	{
+		long used = 0;
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+		{
+			if (pool.getName().equals("direct"))
+			{
+				used += pool.getMemoryUsed();
+			}
+		}
+		return used;
+	}
+
+	private long collections()
+	{
+		long collections = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			collections += collector.getCollectionCount();
+		}
+		return collections;
+	}
+
+	/** Total time of the collections in milliseconds. */
+	private long collectionTime()
+	{
+		long time = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			time += collector.getCollectionTime();
+		}
+		return time;
+	}
+}
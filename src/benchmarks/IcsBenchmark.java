@@ -0,0 +1,97 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.ICalendar;
+import interfaces.IUser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Random;
+
+import app.App;
+import app.IcsExporter;
+import app.IcsImporter;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the events per second of exporting a calendar to an {@code .ics} file and importing it into another calendar,
+ * for each {@link ICalendar.Storage}. The number of events is given as argument (default 1 000 000).
+ */
+public class IcsBenchmark extends BenchmarkTemplate
+{
+	public static void main(String[] args) throws Exception
+	{
+		new IcsBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		File file = File.createTempFile("benchmark", ".ics");
+		file.deleteOnExit();
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			App app = new App();
+			app.createUser("Benchmark", "pw");
+			IUser user = app.loginUser("Benchmark", "pw");
+			user.createNewCalendar("Rooms", storage);
+			Random random = new Random(events);
+			for (int i = 0; i < events; i++)
+			{
+				Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+				Date endDate = new Date(startDate.getTime() + random.nextInt(48) * DAY / 24);
+				if (i % 2 == 0)
+				{
+					user.createPublicEvent("Rooms", "Room " + random.nextInt(500), startDate, endDate);
+				}
+				else
+				{
+					user.createPrivateEvent("Rooms", "Room " + random.nextInt(500), startDate, endDate);
+				}
+			}
+
+			for (int round = 0; round < 2; round++)
+			{
+				long start = System.nanoTime();
+				Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+				try
+				{
+					new IcsExporter(user, "Rooms").exportEvents(writer);
+				}
+				finally
+				{
+					writer.close();
+				}
+				this.report(storage + ", export " + file.length() / (1024 * 1024) + " MB", events, System.nanoTime() - start);
+
+				String copy = "Copy " + round;
+				user.createNewCalendar(copy, storage);
+				start = System.nanoTime();
+				Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"), 1 << 16);
+				try
+				{
+					new IcsImporter(user, copy).importEvents(reader);
+				}
+				finally
+				{
+					reader.close();
+				}
+				this.report(storage + ", import", events, System.nanoTime() - start);
+				user.deleteCalendar(copy);
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IUser;
+
+import java.io.File;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+
+import app.App;
+import app.Journal.SyncPolicy;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the changes per second of an {@link App} with a journal, for every {@link SyncPolicy} and 1 to 32 threads,
+ * and the time to replay the journal when the app is started again.
+ * Every thread creates events in the calendar of its own user. With {@link SyncPolicy#ALWAYS} a single thread
+ * waits for one fsync per change; more threads share their fsyncs, so the changes per second should grow with them.
+ */
+public class JournalBenchmark extends BenchmarkTemplate
+{
+	private static final int MAX_THREADS = 32;
+	private static final long DURATION_MILLIS = 2000;
+
+	public static void main(String[] args) throws Exception
+	{
+		new JournalBenchmark().run();
+	}
+
+	public void run() throws Exception
+	{
+		for (SyncPolicy policy : SyncPolicy.values())
+		{
+			File file = File.createTempFile("benchmark", ".journal");
+			file.deleteOnExit();
+			App app = new App(file, policy);
+			IUser[] users = new IUser[MAX_THREADS];
+			for (int u = 0; u < MAX_THREADS; u++)
+			{
+				app.createUser("user" + u, "pw");
+				users[u] = app.loginUser("user" + u, "pw");
+				users[u].createNewCalendar("Work");
+			}
+
+			long changes = 0;
+			for (int threads = 1; threads <= MAX_THREADS; threads *= 2)
+			{
+				long operations = this.measure(users, threads);
+				changes += operations;
+				System.out.println(String.format("%-50s %12.0f changes/s", policy + ", " + threads + " threads", operations * 1000.0 / DURATION_MILLIS));
+			}
+			app.close();
+
+			long start = System.nanoTime();
+			new App(file, policy).close();
+			this.report(policy + ", replay " + file.length() / 1024 + " KB", changes, System.nanoTime() - start);
+		}
+	}
+
+	private long measure(final IUser[] users, final int threads) throws InterruptedException
+	{
+		final long[] operations = new long[threads];
+		final CountDownLatch done = new CountDownLatch(threads);
+		final long end = System.currentTimeMillis() + DURATION_MILLIS;
+
+		for (int t = 0; t < threads; t++)
+		{
+			final int thread = t;
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						long count = 0;
+						while (System.currentTimeMillis() < end)
+						{
+							Date startDate = day(count % 3650);
+							users[thread].createPublicEvent("Work", "Event " + count, startDate, startDate);
+							count++;
+						}
+						operations[thread] = count;
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		done.await();
+
+		long total = 0;
+		for (long count : operations)
+		{
+			total += count;
+		}
+		return total;
+	}
+}
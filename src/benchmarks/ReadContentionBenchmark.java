@@ -0,0 +1,156 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import app.App;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the read throughput on one popular public calendar while its owner keeps changing it.
+ * Several reader threads list the public events of the calendar, alternating between the lazy iterator
+ * and the overview of a day, while one writer thread creates, edits and deletes events of the same calendar
+ * as fast as it can. Each measurement is repeated without the writer for comparison.
+ * As readers do not lock, the writer should barely slow them down.
+ */
+public class ReadContentionBenchmark extends BenchmarkTemplate
+{
+	private static final int EVENTS = 20000;
+	private static final int MAX_READERS = 4;
+	private static final long DURATION_MILLIS = 2000;
+
+	public static void main(String[] args) throws Exception
+	{
+		new ReadContentionBenchmark().run();
+	}
+
+	public void run() throws Exception
+	{
+		App app = new App();
+		app.createUser("Popular", "pw");
+		IUser owner = app.loginUser("Popular", "pw");
+		owner.createNewCalendar("Public");
+		Random random = new Random(42);
+		for (int i = 0; i < EVENTS; i++)
+		{
+			Date startDate = this.day(random.nextInt(3650));
+			owner.createPublicEvent("Public", "Event " + i, startDate, new Date(startDate.getTime() + DAY / 2));
+		}
+
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			for (int readers = 1; readers <= MAX_READERS; readers *= 2)
+			{
+				long readsAlone = this.measure(app, owner, readers, false);
+				long readsWithWriter = this.measure(app, owner, readers, true);
+				if (round == WARMUP_ROUNDS)
+				{
+					System.out.println(String.format("%-50s %12.0f reads/s", readers + " readers", readsAlone * 1000.0 / DURATION_MILLIS));
+					System.out.println(String.format("%-50s %12.0f reads/s", readers + " readers, 1 writer", readsWithWriter * 1000.0 / DURATION_MILLIS));
+				}
+			}
+		}
+	}
+
+	/** Runs the readers (and the writer) for {@link #DURATION_MILLIS} and provides the number of reads. */
+	private long measure(final App app, final IUser owner, final int readers, boolean withWriter) throws InterruptedException
+	{
+		final long[] reads = new long[readers];
+		final CountDownLatch done = new CountDownLatch(readers);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final long end = System.currentTimeMillis() + DURATION_MILLIS;
+
+		Thread writer = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Random random = new Random(-1);
+					while (running.get())
+					{
+						Date startDate = day(random.nextInt(3650));
+						owner.createPublicEvent("Public", "Temporary", startDate, startDate);
+						owner.editEventEndDate("Public", "Temporary", startDate, new Date(startDate.getTime() + DAY));
+						owner.deleteEvent("Public", "Temporary", startDate);
+					}
+				}
+				catch (Exception e)
+				{
+					e.printStackTrace();
+				}
+			}
+		};
+		if (withWriter)
+		{
+			writer.start();
+		}
+
+		for (int t = 0; t < readers; t++)
+		{
+			final int thread = t;
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						Random random = new Random(thread);
+						long count = 0;
+						while (System.currentTimeMillis() < end)
+						{
+							Date date = day(random.nextInt(3650));
+							if (count % 2 == 0)
+							{
+								Iterator<IEvent> events = app.getUsersCalendarPublicEvents("Popular", "Public", date);
+								for (int i = 0; i < 10 && events.hasNext(); i++)
+								{
+									events.next();
+								}
+							}
+							else
+							{
+								app.getUsersCalendarPublicEventsOverview("Popular", "Public", date);
+							}
+							count++;
+						}
+						reads[thread] = count;
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		done.await();
+		running.set(false);
+		writer.join();
+
+		long total = 0;
+		for (long count : reads)
+		{
+			total += count;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.ICalendar;
+import interfaces.IUser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Random;
+
+import app.App;
+import app.Journal.SyncPolicy;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the time an {@link App} needs to start, once by replaying all its changes from the journal,
+ * and once by loading them from a snapshot written by {@link App#checkpoint()}.
+ * Every user has a small tree calendar and a large columnar one; the number of events is given as argument
+ * (default 2 000 000). Run it with a heap of 2 GB.
+ */
+public class StartupBenchmark extends BenchmarkTemplate
+{
+	private static final int USERS = 1000;
+
+	public static void main(String[] args) throws Exception
+	{
+		new StartupBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 2000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		File journal = File.createTempFile("benchmark", ".journal");
+		File replayedJournal = File.createTempFile("benchmark", ".journal");
+		File snapshot = new File(journal.getPath() + ".snapshot");
+		journal.deleteOnExit();
+		replayedJournal.deleteOnExit();
+		snapshot.deleteOnExit();
+
+		App app = new App(journal, SyncPolicy.NEVER);
+		IUser[] users = new IUser[USERS];
+		for (int u = 0; u < USERS; u++)
+		{
+			app.createUser("user" + u, "pw");
+			users[u] = app.loginUser("user" + u, "pw");
+			users[u].createNewCalendar("Work");
+			users[u].createNewCalendar("Rooms", ICalendar.Storage.COLUMNAR);
+		}
+		Random random = new Random(events);
+		for (int i = 0; i < events; i++)
+		{
+			IUser user = users[random.nextInt(USERS)];
+			Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+			Date endDate = new Date(startDate.getTime() + random.nextInt(48) * DAY / 24);
+			if (i % 10 == 0)
+			{
+				user.createPrivateEvent("Work", "Meeting " + random.nextInt(100), startDate, endDate);
+			}
+			else
+			{
+				user.createPublicEvent("Rooms", "Room " + random.nextInt(500), startDate, endDate);
+			}
+		}
+		app.close();
+		Files.copy(journal.toPath(), replayedJournal.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		app = new App(journal, SyncPolicy.NEVER);
+		long start = System.nanoTime();
+		app.checkpoint();
+		this.report("checkpoint, snapshot " + snapshot.length() / 1024 + " KB", events, System.nanoTime() - start);
+		app.close();
+		app = null;
+		users = null;
+
+		for (int round = 0; round < 2; round++)
+		{
+			this.usedHeap();
+			start = System.nanoTime();
+			new App(replayedJournal, SyncPolicy.NEVER).close();
+			this.report("replay journal of " + replayedJournal.length() / 1024 + " KB", events, System.nanoTime() - start);
+
+			this.usedHeap();
+			start = System.nanoTime();
+			new App(journal, SyncPolicy.NEVER).close();
+			this.report("load snapshot of " + snapshot.length() / 1024 + " KB", events, System.nanoTime() - start);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.ICalendar;
+import interfaces.ICalendarChanges;
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+
+import app.App;
+import app.EventBatch;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compares keeping a copy of a calendar up to date with {@link IUser#getMyCalendarAllChangesSince(String, String)}
+ * with reading the whole calendar through {@link IUser#getMyCalendarAllEventsStartingFrom(String, Date)}, for each {@link ICalendar.Storage}.
+ * Between two syncs, 100 random events are renamed. The number of events is given as argument (default 1 000 000).
+ */
+public class SyncBenchmark extends BenchmarkTemplate
+{
+	private static final int CHANGES = 100;
+	private static final int SYNCS = 20;
+
+	public static void main(String[] args) throws Exception
+	{
+		new SyncBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		App app = new App();
+		app.createUser("Benchmark", "pw");
+		IUser user = app.loginUser("Benchmark", "pw");
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			String calendarName = "Calendar " + storage;
+			user.createNewCalendar(calendarName, storage);
+			Random random = new Random(events);
+			long[] startTimes = new long[events];
+			String[] names = new String[events];
+			EventBatch batch = new EventBatch(events);
+			for (int i = 0; i < events; i++)
+			{
+				startTimes[i] = ORIGIN + (long) (random.nextDouble() * 3650 * DAY);
+				names[i] = "Event " + i;
+				batch.addPrivateEvent(names[i], new Date(startTimes[i]), new Date(startTimes[i] + DAY / 24));
+			}
+			user.createEvents(calendarName, batch);
+
+			String token = user.getMyCalendarAllChangesSince(calendarName, null).getSyncToken();
+			int edits = 0;
+			for (int round = 0; round <= WARMUP_ROUNDS; round++)
+			{
+				long deltaTime = 0;
+				long fullTime = 0;
+				long listed = 0;
+				for (int sync = 0; sync < SYNCS; sync++)
+				{
+					for (int c = 0; c < CHANGES; c++)
+					{
+						int e = random.nextInt(events);
+						String newName = "Edit " + edits++;
+						user.editEventName(calendarName, names[e], new Date(startTimes[e]), newName);
+						names[e] = newName;
+					}
+
+					long start = System.nanoTime();
+					ICalendarChanges changes = user.getMyCalendarAllChangesSince(calendarName, token);
+					token = changes.getSyncToken();
+					listed += changes.getChangedEvents().size();
+					deltaTime += System.nanoTime() - start;
+
+					start = System.nanoTime();
+					Iterator<IEvent> iteratorEvents = user.getMyCalendarAllEventsStartingFrom(calendarName, new Date(Long.MIN_VALUE));
+					while (iteratorEvents.hasNext())
+					{
+						iteratorEvents.next();
+					}
+					fullTime += System.nanoTime() - start;
+				}
+				if (round == WARMUP_ROUNDS)
+				{
+					this.report(storage + ", sync of " + listed / SYNCS + " changed events", SYNCS, deltaTime);
+					this.report(storage + ", reading all " + events + " events", SYNCS, fullTime);
+				}
+			}
+			user.deleteCalendar(calendarName);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Random;
+
+import app.App;
+import app.EventBatch;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compares listing the next 20 public events of all users through {@link App#getAllUsersPublicEventsStartingFrom(Date, int)}
+ * with asking every calendar of every user for its next 20 public events and merging them, as a caller had to before.
+ * There are 1000 users with 5 calendars each, sharing the events given as argument (default 1 000 000), every second one is public.
+ */
+public class TimelineBenchmark extends BenchmarkTemplate
+{
+	private static final int USERS = 1000;
+	private static final int CALENDARS = 5;
+	private static final int LIMIT = 20;
+	private static final int QUERIES = 100;
+
+	public static void main(String[] args) throws Exception
+	{
+		new TimelineBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		App app = new App();
+		Random random = new Random(events);
+		long start = System.nanoTime();
+		for (int u = 0; u < USERS; u++)
+		{
+			app.createUser("User " + u, "pw");
+			IUser user = app.loginUser("User " + u, "pw");
+			for (int c = 0; c < CALENDARS; c++)
+			{
+				user.createNewCalendar("Calendar " + c);
+				EventBatch batch = new EventBatch(events / USERS / CALENDARS);
+				for (int i = 0; i < events / USERS / CALENDARS; i++)
+				{
+					Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+					Date endDate = new Date(startDate.getTime() + DAY / 24);
+					if (i % 2 == 0)
+					{
+						batch.addPublicEvent("Event " + i, startDate, endDate);
+					}
+					else
+					{
+						batch.addPrivateEvent("Event " + i, startDate, endDate);
+					}
+				}
+				user.createEvents("Calendar " + c, batch);
+			}
+		}
+		this.report("creating the events in batches", events, System.nanoTime() - start);
+
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			boolean measured = round == WARMUP_ROUNDS;
+			long checksum = 0;
+			start = System.nanoTime();
+			for (int q = 0; q < QUERIES; q++)
+			{
+				checksum += app.getAllUsersPublicEventsStartingFrom(this.day(q * 3000L / QUERIES), LIMIT).get(LIMIT - 1).getStartDate().getTime();
+			}
+			long elapsed = System.nanoTime() - start;
+			if (measured)
+			{
+				this.report("public timeline, first " + LIMIT, QUERIES, elapsed);
+			}
+
+			start = System.nanoTime();
+			for (int q = 0; q < QUERIES; q++)
+			{
+				checksum -= this.collectAndSort(app, this.day(q * 3000L / QUERIES)).get(LIMIT - 1).getStartDate().getTime();
+			}
+			elapsed = System.nanoTime() - start;
+			if (measured)
+			{
+				this.report("every calendar of every user, first " + LIMIT, QUERIES, elapsed);
+			}
+			if (checksum != 0)
+			{
+				throw new IllegalStateException("The timelines differ!");
+			}
+		}
+	}
+
+	private ArrayList<IEvent> collectAndSort(App app, Date from) throws Exception
+	{
+		ArrayList<IEvent> all = new ArrayList<IEvent>();
+		for (int u = 0; u < USERS; u++)
+		{
+			for (String calendarName : app.getAllCalendarsNamesFromUser("User " + u))
+			{
+				all.addAll(app.getUsersCalendarPublicEventsStartingBetween("User " + u, calendarName, from, new Date(Long.MAX_VALUE), LIMIT));
+			}
+		}
+		Collections.sort(all, new Comparator<IEvent>()
+		{
+			@Override
+			public int compare(IEvent event1, IEvent event2)
+			{
+				return event1.getStartDate().compareTo(event2.getStartDate());
+			}
+		});
+		return new ArrayList<IEvent>(all.subList(0, LIMIT));
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.IUser;
+
+import java.util.Date;
+
+import app.App;
+import app.AppExceptions.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Measures the calendar lookup of an {@link IUser} while the number of its calendars grows from 10 to 10'000,
+ * as for service accounts with one calendar per room or resource.
+ * The time per operation should stay flat.
+ */
+public class UserCalendarBenchmark extends BenchmarkTemplate
+{
+	private static final int LOOKUPS = 1000000;
+
+	public static void main(String[] args) throws Exception
+	{
+		new UserCalendarBenchmark().run();
+	}
+
+	public void run() throws UsernameAlreadyExistException, UnknownUserException, AccessDeniedException, CalendarIsNotUniqueException, UnknownCalendarException
+	{
+		App app = new App();
+		app.createUser("Service", "pw");
+		IUser user = app.loginUser("Service", "pw");
+		int calendars = 0;
+		Date date = this.day(0);
+
+		for (int size = 10; size <= 10000; size *= 10)
+		{
+			long start = System.nanoTime();
+			int created = size - calendars;
+			for (; calendars < size; calendars++)
+			{
+				user.createNewCalendar("Room " + calendars);
+			}
+			this.report("createNewCalendar, up to " + size + " calendars", created, System.nanoTime() - start);
+
+			for (int round = 0; round <= WARMUP_ROUNDS; round++)
+			{
+				start = System.nanoTime();
+				for (int i = 0; i < LOOKUPS; i++)
+				{
+					user.getMyCalendarPublicEventsAtDate("Room " + ((i * 7919L) % size), date);
+				}
+				long lookupTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < LOOKUPS; i++)
+				{
+					user.getAllMyCalendarNames();
+				}
+				long namesTime = System.nanoTime() - start;
+
+				if (round == WARMUP_ROUNDS)
+				{
+					this.report("getMyCalendarPublicEventsAtDate, " + size + " calendars", LOOKUPS, lookupTime);
+					this.report("getAllMyCalendarNames, " + size + " calendars", LOOKUPS, namesTime);
+				}
+			}
+		}
+	}
+}
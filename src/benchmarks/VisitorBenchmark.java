@@ -0,0 +1,123 @@
+/**
+ * Calendar framework
+ */
+package benchmarks;
+
+import interfaces.ICalendar;
+import interfaces.IEvent;
+import interfaces.IEventVisitor;
+import interfaces.IUser;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+
+import app.App;
+import app.EventBatch;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+/** Compares reading the events of a day through {@link IUser#getMyCalendarAllEventsAtDate(String, Date)} with visiting them through
+ * {@link IUser#visitMyCalendarAllEventsAtDate(String, Date, IEventVisitor)}, for each {@link ICalendar.Storage}, and prints the time
+ * and the bytes allocated per query, with the overview cache disabled. 1% of the events are pending changes, not yet merged into the columns.
+ * The number of events is given as argument (default 1 000 000).
+ */
+public class VisitorBenchmark extends BenchmarkTemplate
+{
+	private static final int QUERIES = 20000;
+
+	/** Sums up the durations of the visited events. */
+	private static class Summer implements IEventVisitor
+	{
+		private long sum;
+
+		@Override
+		public boolean visit(String eventName, long startTime, long endTime, boolean isPrivate)
+		{
+			this.sum += endTime - startTime;
+			return true;
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		new VisitorBenchmark().run(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+	}
+
+	public void run(int events) throws Exception
+	{
+		App app = new App();
+		app.createUser("Benchmark", "pw");
+		IUser user = app.loginUser("Benchmark", "pw");
+		// compares the searches, not the cached results
+		app.setOverviewCacheCapacity(0);
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			String calendarName = "Calendar " + storage;
+			user.createNewCalendar(calendarName, storage);
+			Random random = new Random(events);
+			EventBatch batch = new EventBatch(events);
+			for (int i = 0; i < events; i++)
+			{
+				Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+				batch.addPrivateEvent("Event " + i, startDate, new Date(startDate.getTime() + random.nextInt(48) * DAY / 24));
+			}
+			user.createEvents(calendarName, batch);
+			for (int i = 0; i < events / 100; i++)
+			{
+				Date startDate = new Date(ORIGIN + (long) (random.nextDouble() * 3650 * DAY));
+				user.createPrivateEvent(calendarName, "Change " + i, startDate, new Date(startDate.getTime() + random.nextInt(48) * DAY / 24));
+			}
+
+			Date[] days = new Date[100];
+			for (int d = 0; d < days.length; d++)
+			{
+				days[d] = this.day(random.nextInt(3650));
+			}
+			Summer summer = new Summer();
+			for (int round = 0; round <= WARMUP_ROUNDS; round++)
+			{
+				long sum = 0;
+				long allocated = this.allocatedBytes();
+				long start = System.nanoTime();
+				for (int i = 0; i < QUERIES; i++)
+				{
+					ArrayList<IEvent> found = user.getMyCalendarAllEventsAtDate(calendarName, days[i % days.length]);
+					for (IEvent event : found)
+					{
+						sum += event.getEndDate().getTime() - event.getStartDate().getTime();
+					}
+				}
+				long listTime = System.nanoTime() - start;
+				long listAllocated = this.allocatedBytes() - allocated;
+
+				summer.sum = 0;
+				allocated = this.allocatedBytes();
+				start = System.nanoTime();
+				for (int i = 0; i < QUERIES; i++)
+				{
+					user.visitMyCalendarAllEventsAtDate(calendarName, days[i % days.length], summer);
+				}
+				long visitorTime = System.nanoTime() - start;
+				long visitorAllocated = this.allocatedBytes() - allocated;
+
+				if (round == WARMUP_ROUNDS)
+				{
+					if (sum != summer.sum)
+					{
+						throw new IllegalStateException("The visitor saw other events than the list");
+					}
+					this.report(storage + ", list", QUERIES, listTime);
+					System.out.println(storage + ", list: " + listAllocated / QUERIES + " bytes/op");
+					this.report(storage + ", visitor", QUERIES, visitorTime);
+					System.out.println(storage + ", visitor: " + visitorAllocated / QUERIES + " bytes/op");
+				}
+			}
+			user.deleteCalendar(calendarName);
+		}
+	}
+}
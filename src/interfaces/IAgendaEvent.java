@@ -0,0 +1,17 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface IAgendaEvent extends IEvent
+{
+	/** Provides the calendar the event belongs to.
+	 * @return The name of the calendar of the user the event was found in.
+	 */
+	public String getCalendarName();
+}
@@ -6,6 +6,7 @@ package interfaces;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import app.Authentication;
 import app.AppExceptions.*;
 
@@ -45,22 +46,53 @@ public interface IApp
 
 		/* Getters for calendars & events for users that are not owners of the calendars */
 
-		/** Provides all calendar names as an {@link ArrayList} of strings of a specific users.
+		/** Provides all calendar names as a {@link List} of strings of a specific users.
 		 * The {@link IUser} used here must not leave this function as it does not ask for a password for it.
 		 * @param username Owner of the calendars requested
-		 * @return An {@link ArrayList} with all calendar names of the user as represented as strings.
+		 * @return An unmodifiable {@link List} with all calendar names of the user as represented as strings, see {@link IUser#getAllMyCalendarNames()}.
 		 * @throws UnknownUserException If {@code username} is not in the database.
 		 * @see IApp#loginUser(String, String)
 		 */
-		public ArrayList<String> getAllCalendarsNamesFromUser(String username) throws UnknownUserException;
+		public List<String> getAllCalendarsNamesFromUser(String username) throws UnknownUserException;
+
+		/**
+		 * Provides the version stamp of the public view of a user, that is of its calendar names and public events.
+		 * It changes whenever a calendar is created or deleted, or a public event changes, but not when only private events change.
+		 * Two equal stamps of a user mean that its public view is the same; the stamps are not ordered.
+		 * @param username Owner of the calendars.
+		 * @return The current version stamp, e.g. for an ETag.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 */
+		public long getUsersPublicVersion(String username) throws UnknownUserException;
+
+		/**
+		 * Provides the version stamp of the public events of a {@link ICalendar}, see {@link ICalendar#getPublicVersion()}.
+		 * @param username Owner of the calendar.
+		 * @param calendarName Title of a calendar to identify it.
+		 * @return The current version stamp, e.g. for an ETag.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+		 */
+		public long getUsersCalendarPublicVersion(String username, String calendarName) throws UnknownUserException, UnknownCalendarException;
+
+		/**
+		 * Provides the calendar names of a user like {@link #getAllCalendarsNamesFromUser(String)}, unless the caller already has them.
+		 * @param username Owner of the calendars requested.
+		 * @param knownVersion {@link IConditionalResult#getVersion()} of the names the caller has, any value otherwise.
+		 * @return The names with their version, or a constant result without names if the {@link #getUsersPublicVersion(String) public version}
+		 * of the user is still {@code knownVersion}.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 */
+		public IConditionalResult<List<String>> getAllCalendarsNamesFromUserIfModified(String username, long knownVersion) throws UnknownUserException;
 
 		/**
 		 * Returns all public events from a {@link ICalendar} that occur at a given {@code date} as an {@link ArrayList}.
+		 * An event occurs at {@code date} if it starts at {@code date} or before and ends at {@code date} or later.
 		 * The {@link IUser} used here must not leave this function as it does not ask for a password for it.
 		 * @param username Owner of the calendar.
 		 * @param calendarName Title of a calendar to identify it.
 		 * @param date Date from which to list all public events.
-		 * @return An {@link ArrayList} with all public events from the calendar.
+		 * @return An {@link ArrayList} with all public events from the calendar happening at {@code date}, sorted by start date.
 		 * @throws UnknownUserException If {@code username} is not in the database.
 		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
 		 * @throws AccessDeniedException When passwords do not match up.
@@ -68,6 +100,43 @@ public interface IApp
 		 */
 		public ArrayList<IEvent> getUsersCalendarPublicEventsOverview(String username, String calendarName, Date date) throws UnknownUserException, UnknownCalendarException, AccessDeniedException;
 
+		/**
+		 * Provides the public events at a given {@code date} like {@link #getUsersCalendarPublicEventsOverview(String, String, Date)},
+		 * unless the public events of the calendar did not change since the caller read them. Only the version stamp is looked at then.
+		 * @param knownVersion {@link IConditionalResult#getVersion()} of the events the caller has, any value otherwise.
+		 * @return The events with their version, or a constant result without events if the
+		 * {@link #getUsersCalendarPublicVersion(String, String) public version} of the calendar is still {@code knownVersion}.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+		 */
+		public IConditionalResult<ArrayList<IEvent>> getUsersCalendarPublicEventsOverviewIfModified(String username, String calendarName, Date date, long knownVersion) throws UnknownUserException, UnknownCalendarException;
+
+		/**
+		 * Returns all public events from a {@link ICalendar} overlapping the time span from {@code from} to {@code to} as an {@link ArrayList}.
+		 * An event overlaps the time span if it starts before {@code to} and ends at {@code from} or later.
+		 * The {@link IUser} used here must not leave this function as it does not ask for a password for it.
+		 * @param username Owner of the calendar.
+		 * @param calendarName Title of a calendar to identify it.
+		 * @param from Begin of the time span, e.g. the beginning of a day.
+		 * @param to End of the time span (not included), e.g. the beginning of the next day.
+		 * @return An {@link ArrayList} with all public events from the calendar overlapping the time span, sorted by start date.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+		 * @throws AccessDeniedException When passwords do not match up.
+		 */
+		public ArrayList<IEvent> getUsersCalendarPublicEventsOverview(String username, String calendarName, Date from, Date to) throws UnknownUserException, UnknownCalendarException, AccessDeniedException;
+
+		/**
+		 * Provides the public events overlapping a time span like {@link #getUsersCalendarPublicEventsOverview(String, String, Date, Date)},
+		 * unless the public events of the calendar did not change since the caller read them. Only the version stamp is looked at then.
+		 * @param knownVersion {@link IConditionalResult#getVersion()} of the events the caller has, any value otherwise.
+		 * @return The events with their version, or a constant result without events if the
+		 * {@link #getUsersCalendarPublicVersion(String, String) public version} of the calendar is still {@code knownVersion}.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+		 */
+		public IConditionalResult<ArrayList<IEvent>> getUsersCalendarPublicEventsOverviewIfModified(String username, String calendarName, Date from, Date to, long knownVersion) throws UnknownUserException, UnknownCalendarException;
+
 		/**
 		 * Returns all public events from a {@link ICalendar} that start at the given date {@code startDate} as an {@link Iterator}.
 		 * The {@link IUser} used here must not leave this function as it does not ask for a password for it.
@@ -75,12 +144,109 @@ public interface IApp
 		 * @param calendarName Title of a calendar to identify it.
 		 * @param startDate Public events that start at {@code startDate} are returned.
 		 * @return An {@link Iterator} with all public events that start at {@code startDate}.
+		 * It is lazy and works on a snapshot, see {@link ICalendar#getAllPublicEventsStartingFrom(Date)}.
 		 * @throws UnknownUserException If {@code username} is not in the database.
 		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
 		 * @throws AccessDeniedException When passwords do not match up.
 		 */
 		public Iterator<IEvent> getUsersCalendarPublicEvents(String username, String calendarName, Date startDate) throws UnknownUserException, UnknownCalendarException, AccessDeniedException;
 
+		/**
+		 * Returns the public events from a {@link ICalendar} starting in the time range from {@code from} to {@code to}, e.g. for a week view.
+		 * Only the events in the range are looked at.
+		 * The {@link IUser} used here must not leave this function as it does not ask for a password for it.
+		 * @param username Owner of the calendar.
+		 * @param calendarName Title of a calendar to identify it.
+		 * @param from Begin of the time range.
+		 * @param to End of the time range, not included.
+		 * @param limit Maximal number of events to return, {@link ICalendar#NO_LIMIT} for all of them.
+		 * @return The first {@code limit} public events starting at {@code from} or later and before {@code to}, sorted by start date.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+		 */
+		public ArrayList<IEvent> getUsersCalendarPublicEventsStartingBetween(String username, String calendarName, Date from, Date to, int limit) throws UnknownUserException, UnknownCalendarException;
+
+		/**
+		 * Provides the public events starting in a time range like {@link #getUsersCalendarPublicEventsStartingBetween(String, String, Date, Date, int)},
+		 * unless the public events of the calendar did not change since the caller read them. Only the version stamp is looked at then.
+		 * @param knownVersion {@link IConditionalResult#getVersion()} of the events the caller has, any value otherwise.
+		 * @return The events with their version, or a constant result without events if the
+		 * {@link #getUsersCalendarPublicVersion(String, String) public version} of the calendar is still {@code knownVersion}.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+		 */
+		public IConditionalResult<ArrayList<IEvent>> getUsersCalendarPublicEventsStartingBetweenIfModified(String username, String calendarName, Date from, Date to, int limit, long knownVersion) throws UnknownUserException, UnknownCalendarException;
+
+		/**
+		 * Pages through the public events from a {@link ICalendar} that start at {@code startDate} or later, sorted by start date.
+		 * Fetching a page costs a seek and the events of the page, no matter how many pages were read before.
+		 * The {@link IUser} used here must not leave this function as it does not ask for a password for it.
+		 * @param username Owner of the calendar.
+		 * @param calendarName Title of a calendar to identify it.
+		 * @param startDate Date from which the public events are listed. It is only used for the first page.
+		 * @param cursor {@code null} for the first page, otherwise {@link IEventPage#getNextCursor()} of the previous page.
+		 * If the calendar was modified in the meantime, the listing continues right behind the last event of the previous page.
+		 * @param pageSize Maximal number of events on the page, at least 1.
+		 * @return The requested page.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+		 * @throws InvalidCursorException If {@code cursor} was not handed out by this query.
+		 */
+		public IEventPage getUsersCalendarPublicEventsPage(String username, String calendarName, Date startDate, String cursor, int pageSize) throws UnknownUserException, UnknownCalendarException, InvalidCursorException;
+
+		/**
+		 * Returns the public events from a {@link ICalendar} created, edited or deleted since the previous sync,
+		 * to keep a copy of the public events up to date without reading all of them, see {@link ICalendar#getPublicChangesSince(String)}.
+		 * @param username Owner of the calendar.
+		 * @param calendarName Title of a calendar to identify it.
+		 * @param syncToken {@code null} for all public events, otherwise {@link ICalendarChanges#getSyncToken()} of the previous sync.
+		 * @return The changes, or all public events if the changes since {@code syncToken} are not known any more.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+		 * @throws InvalidCursorException If {@code syncToken} was not handed out by a sync query.
+		 */
+		public ICalendarChanges getUsersCalendarPublicChangesSince(String username, String calendarName, String syncToken) throws UnknownUserException, UnknownCalendarException, InvalidCursorException;
+
+		/**
+		 * Returns the next public events of all calendars of all users, e.g. for a "what's on" page.
+		 * The events are kept in one index across all users, so only the returned events are looked at.
+		 * @param startDate Date from which the public events are listed.
+		 * @param limit Maximal number of events to return, {@link ICalendar#NO_LIMIT} for all of them.
+		 * @return The first {@code limit} public events starting at {@code startDate} or later, sorted by start date,
+		 * each with its user and calendar.
+		 */
+		public ArrayList<ITimelineEvent> getAllUsersPublicEventsStartingFrom(Date startDate, int limit);
+
+		/**
+		 * Subscribes to the changes of the public events of a user or of one of the calendars of a user,
+		 * instead of reading the events again and again to find them.
+		 * The changes are delivered asynchronously and in batches, in the order they were made. Private events are never delivered.
+		 * If the calendar or the user is deleted, the deletion of all its public events is delivered, and the subscription
+		 * goes on with a calendar or user created with the same name later.
+		 * @param username Owner of the calendars.
+		 * @param calendarName Title of a calendar to identify it, {@code null} for all calendars of the user, also those created later.
+		 * @param listener Receives the changes, see {@link IPublicEventListener}.
+		 * @param bufferSize Maximal number of changes buffered while the listener is busy, at least 1.
+		 * Further changes are dropped, and the listener is told how many.
+		 * @return The subscription, to cancel it.
+		 * @throws UnknownUserException If {@code username} is not in the database.
+		 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+		 */
+		public ISubscription subscribeToPublicEvents(String username, String calendarName, IPublicEventListener listener, int bufferSize) throws UnknownUserException, UnknownCalendarException;
+
+		/**
+		 * Provides the counters of the cache of the day overviews, that is of the events at a date of a calendar
+		 * like {@link #getUsersCalendarPublicEventsOverview(String, String, Date)} lists them.
+		 * @return The counters at the time of the call.
+		 */
+		public ICacheStatistics getOverviewCacheStatistics();
+
+		/**
+		 * Changes the size of the cache of the day overviews. The entries used least recently are evicted first.
+		 * @param entries Maximal number of overviews to keep, of any calendar, date and visibility; {@code 0} disables the cache.
+		 */
+		public void setOverviewCacheCapacity(int entries);
+
 		/**
 		 * @param username {@link IUser} from which the object should be returned.
 		 * @param password Secret string of randomly composed characters chosen at creation time.
@@ -0,0 +1,30 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface ICacheStatistics
+{
+	/** @return Number of lookups answered from the cache. */
+	public long getHits();
+
+	/** @return Number of lookups which had to query the calendar. */
+	public long getMisses();
+
+	/** @return Number of entries dropped to make room for new ones, as the cache was full. */
+	public long getEvictions();
+
+	/** @return Number of entries dropped because an event of their day was changed, or their calendar was deleted. */
+	public long getInvalidations();
+
+	/** @return Number of entries in the cache. */
+	public int getSize();
+
+	/** @return Maximal number of entries in the cache, {@code 0} if it is disabled. */
+	public int getCapacity();
+}
@@ -18,22 +18,123 @@ import app.AppExceptions.*;
  */
 public interface ICalendar
 {
+	/** Limit of the range queries to get all events in the range. */
+	public static final int NO_LIMIT = -1;
+
+	/** How a calendar stores its events. The queries of a calendar give the same results with every kind of storage. */
+	public enum Storage
+	{
+		/** Event objects in a balanced tree. Changes cost O(log n). The default for calendars of people. */
+		TREE,
+
+		/** Parallel arrays of primitives, about a sixth of the memory of {@link #TREE}. Meant for calendars with
+		 * millions of events like those of rooms or equipment. Reads create the event objects they return,
+		 * and changes are collected and merged into the arrays from time to time. */
+		COLUMNAR,
+
+		/** Like {@link #COLUMNAR}, but the arrays are kept outside of the Java heap. The heap used by the calendar
+		 * hardly grows with the number of events, so the pauses of the garbage collector do not grow either.
+		 * Meant for datasets of several gigabytes; the memory is limited by {@code -XX:MaxDirectMemorySize}. */
+		OFF_HEAP
+	}
+
 	public String getName();
 
+	/** Tells how the calendar stores its events. */
+	public Storage getStorage();
+
+	/** Provides the version stamp of the public events, which changes whenever a public event is created, edited or deleted,
+	 * or an event is made public or private, but not when only private events change.
+	 * Two equal stamps of a calendar mean that its public events are the same; the stamps are not ordered.
+	 * @return The current version stamp, e.g. for an ETag.
+	 */
+	public long getPublicVersion();
+
 	/* Functions to get particular events from calendars */
 
 	/** Used to get a list with public events only from the specified calendar, that are set to happen at the date {@code startDate}.
+	 * <p>
+	 * The {@link Iterator} is lazy: the events are looked up in start order while it is advanced,
+	 * so reading only the next few events does not cost more than these events.
+	 * It works on a snapshot: it lists the events as they were when the calendar was queried,
+	 * even if events are created, edited or deleted while it is read. Query the calendar again to see the changes.
+	 * </p>
 	 * @param startDate Date when events take place.
-	 * @return All public events with {@code startDate} as starting point.
+	 * @return All public events with {@code startDate} as starting point, sorted by start date.
 	 */
 	public Iterator<IEvent> getAllPublicEventsStartingFrom(Date startDate);
 
-	/** Used to get an {@link ArrayList} with public events occurring on a given {@code date}.
+	/** Used to get an {@link ArrayList} with public events occurring on a given {@code date},
+	 * that is public events which start at {@code date} or before and end at {@code date} or later.
 	 * @param date Date form which all public events should be listed.
-	 * @return All public events from a specified calendar.
+	 * @return All public events from a specified calendar happening at {@code date}, sorted by start date.
 	 */
 	public ArrayList<IEvent> getAllPublicEventsAtDate(Date date);
 
+	/** Used to get an {@link ArrayList} with public events overlapping the time span from {@code from} to {@code to},
+	 * that is public events which start before {@code to} and end at {@code from} or later.
+	 * @param from Begin of the time span.
+	 * @param to End of the time span, not included.
+	 * @return All public events from a specified calendar overlapping the time span, sorted by start date.
+	 */
+	public ArrayList<IEvent> getAllPublicEventsDuring(Date from, Date to);
+
+	/** Used to get the public events starting in the time range from {@code from} to {@code to}, e.g. for a week view.
+	 * Only the events in the range are looked at.
+	 * @param from Begin of the time range.
+	 * @param to End of the time range, not included.
+	 * @param limit Maximal number of events to return, {@link #NO_LIMIT} for all of them.
+	 * @return The first {@code limit} public events starting at {@code from} or later and before {@code to}, sorted by start date.
+	 */
+	public ArrayList<IEvent> getAllPublicEventsStartingBetween(Date from, Date to, int limit);
+
+	/** Passes the public events occurring on a given {@code date} to the {@code visitor}, like {@link #getAllPublicEventsAtDate(Date)} lists them.
+	 * Unlike the lists, the visitors do not create any object per query, which matters for queries run very often.
+	 * @param date Date form which all public events should be visited.
+	 * @param visitor Receives the events sorted by start date, and may stop the query.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 */
+	public boolean visitPublicEventsAtDate(Date date, IEventVisitor visitor);
+
+	/** Passes the public events overlapping the time span from {@code from} to {@code to} to the {@code visitor},
+	 * like {@link #getAllPublicEventsDuring(Date, Date)} lists them. No object is created per query.
+	 * @param from Begin of the time span.
+	 * @param to End of the time span, not included.
+	 * @param visitor Receives the events sorted by start date, and may stop the query.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 */
+	public boolean visitPublicEventsDuring(Date from, Date to, IEventVisitor visitor);
+
+	/** Passes the public events starting in the time range from {@code from} to {@code to} to the {@code visitor},
+	 * like {@link #getAllPublicEventsStartingBetween(Date, Date, int)} lists them. No object is created per query.
+	 * @param from Begin of the time range.
+	 * @param to End of the time range, not included.
+	 * @param visitor Receives the events sorted by start date, and may stop the query instead of a limit.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 */
+	public boolean visitPublicEventsStartingBetween(Date from, Date to, IEventVisitor visitor);
+
+	/** Used to page through the public events starting at {@code startDate} or later, sorted by start date.
+	 * Each page costs a seek and the events of the page, no matter how many pages were read before.
+	 * @param startDate Date from which the public events are listed. It is only used for the first page.
+	 * @param cursor {@code null} for the first page, otherwise {@link IEventPage#getNextCursor()} of the previous page.
+	 * If the calendar was modified in the meantime, the listing continues right behind the last event of the previous page.
+	 * @param pageSize Maximal number of events on the page, at least 1.
+	 * @return The requested page.
+	 * @throws InvalidCursorException If {@code cursor} was not handed out by this query.
+	 */
+	public IEventPage getPublicEventsPage(Date startDate, String cursor, int pageSize) throws InvalidCursorException;
+
+	/** Used to keep a copy of the public events up to date: lists the public events created, edited or deleted since
+	 * the state of the calendar the {@code syncToken} was handed out for. Only the changes are looked at.
+	 * If the changes are not known any more, because there were too many since or the app was restarted, all public events are listed.
+	 * Events made private are listed as removed.
+	 * @param syncToken {@code null} for all public events, otherwise {@link ICalendarChanges#getSyncToken()} of the previous sync.
+	 * @return The changes, and the token for the next sync.
+	 * @throws InvalidCursorException If {@code syncToken} was not handed out by a sync query.
+	 */
+	public ICalendarChanges getPublicChangesSince(String syncToken) throws InvalidCursorException;
+
 	//////////////////////
 	// ONLY FOR TESTING //
 	//////////////////////
@@ -0,0 +1,37 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+import java.util.ArrayList;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface ICalendarChanges
+{
+	/** Tells, if all events of the calendar are listed instead of the changes, because the sync token was {@code null},
+	 * too old or from before a restart of the app. The client has to drop all events it has then.
+	 * @return {@code true} if {@link #getChangedEvents()} holds all events of the calendar.
+	 */
+	public boolean isFullSync();
+
+	/** Provides the events created or changed since the sync token, in their current version, or all events for a full sync.
+	 * An event which was changed several times is only listed once.
+	 * @return The events to add or to replace, matched by {@link ISyncedEvent#getEventId()}.
+	 */
+	public ArrayList<ISyncedEvent> getChangedEvents();
+
+	/** Provides the tombstones of the events deleted since the sync token, or no longer visible to the caller.
+	 * An id may also belong to an event the client never had.
+	 * @return The ids of the events to remove.
+	 */
+	public ArrayList<Long> getRemovedEventIds();
+
+	/** Provides the sync token of this state of the calendar. The token is opaque and only meant to be passed back to the sync query.
+	 * @return The token to ask for the next changes with.
+	 */
+	public String getSyncToken();
+}
@@ -0,0 +1,27 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface IConditionalResult<T>
+{
+	/** Tells, if the result changed since the version the caller already had.
+	 * @return {@code false} if the caller's copy is still current; it is the same constant result then.
+	 */
+	public boolean isModified();
+
+	/** Provides the result, if it changed.
+	 * @return The current result, {@code null} if not {@link #isModified() modified}.
+	 */
+	public T getResult();
+
+	/** Provides the version of the result, to pass with the next conditional read.
+	 * @return The version of {@link #getResult()}, only set if {@link #isModified() modified}; the caller's version stays current otherwise.
+	 */
+	public long getVersion();
+}
@@ -0,0 +1,29 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+import java.util.ArrayList;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface IEventPage
+{
+	/** Provides the events of this page, sorted by start date.
+	 * @return At most as many events as the requested page size.
+	 */
+	public ArrayList<IEvent> getEvents();
+
+	/** Tells, if there are events after this page.
+	 * @return {@code true} if {@link #getNextCursor()} leads to more events.
+	 */
+	public boolean hasNextPage();
+
+	/** Provides the cursor for the next page. The cursor is opaque and only meant to be passed back to the paginated query.
+	 * @return The cursor to fetch the next page with, {@code null} if this is the last page.
+	 */
+	public String getNextCursor();
+}
@@ -0,0 +1,23 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface IEventVisitor
+{
+	/** Receives the next event of a query, in order of the start date. The event is passed as its values instead of an {@link IEvent},
+	 * so that the query does not create any object, whichever {@link ICalendar.Storage} the calendar uses.
+	 * Called by the thread running the query, before the query returns.
+	 * @param eventName Title of the event.
+	 * @param startTime Start in milliseconds since the epoch, see {@link java.util.Date#getTime()}.
+	 * @param endTime End in milliseconds since the epoch.
+	 * @param isPrivate {@code true} if the event is private.
+	 * @return {@code true} to receive the next event, {@code false} to stop the query.
+	 */
+	public boolean visit(String eventName, long startTime, long endTime, boolean isPrivate);
+}
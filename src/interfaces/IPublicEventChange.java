@@ -0,0 +1,49 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface IPublicEventChange
+{
+	/** The kinds of changes as seen from outside the calendar, where only public events are visible. */
+	public enum Type
+	{
+		/** A public event was created. Only {@link IPublicEventChange#getNewEvent()} is set. */
+		CREATED,
+		/** A public event was edited and stayed public. Both the old and the new version are set. */
+		EDITED,
+		/** A public event was deleted, also with its calendar or user. Only {@link IPublicEventChange#getOldEvent()} is set. */
+		DELETED,
+		/** A private event was made public, maybe edited at the same time. Only {@link IPublicEventChange#getNewEvent()} is set. */
+		MADE_PUBLIC,
+		/** A public event was made private, maybe edited at the same time. Only {@link IPublicEventChange#getOldEvent()}, the last public version, is set. */
+		MADE_PRIVATE
+	}
+
+	public Type getType();
+
+	/** Provides the owner of the calendar of the event.
+	 * @return The name of the user.
+	 */
+	public String getUsername();
+
+	/** Provides the calendar of the event.
+	 * @return The name of the calendar.
+	 */
+	public String getCalendarName();
+
+	/** Provides the public version of the event before the change.
+	 * @return The event before the change, {@code null} if it was not public.
+	 */
+	public IEvent getOldEvent();
+
+	/** Provides the public version of the event after the change.
+	 * @return The event after the change, {@code null} if it is not public.
+	 */
+	public IEvent getNewEvent();
+}
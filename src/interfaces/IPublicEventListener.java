@@ -0,0 +1,29 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+import java.util.List;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface IPublicEventListener
+{
+	/** Receives the next changes of the subscribed public events. Called by a thread of the app, never by two threads at once
+	 * for the same subscription, and in the order the changes were made. The listener should return quickly,
+	 * as the changes made meanwhile are buffered and dropped once the buffer of the subscription is full.
+	 * If the listener throws an exception, the subscription is cancelled.
+	 * @param changes All changes since the last call, at least one.
+	 */
+	public void onChanges(List<IPublicEventChange> changes);
+
+	/** Reports that changes were dropped because the buffer of the subscription was full.
+	 * Called right after {@link #onChanges(List)} with the changes made before the dropped ones.
+	 * The listener should read the events again to catch up.
+	 * @param droppedChanges Number of changes dropped since the last call.
+	 */
+	public void onChangesDropped(int droppedChanges);
+}
@@ -0,0 +1,20 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface ISubscription
+{
+	/** Stops the notifications. Changes still buffered are dropped; a call to the listener already running is finished. */
+	public void cancel();
+
+	/** Tells, if the subscription has been cancelled, by {@link #cancel()} or because its listener failed.
+	 * @return {@code true} if no more changes are delivered.
+	 */
+	public boolean isCancelled();
+}
@@ -0,0 +1,17 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface ISyncedEvent extends IEvent
+{
+	/** Provides the identity of the event, which stays the same when the event is edited.
+	 * @return The id to match the event with {@link ICalendarChanges#getRemovedEventIds()} and with later versions of it.
+	 */
+	public long getEventId();
+}
@@ -0,0 +1,17 @@
+/**
+ * Calendar framework
+ */
+package interfaces;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+public interface ITimelineEvent extends IAgendaEvent
+{
+	/** Provides the owner of the calendar the event belongs to.
+	 * @return The name of the user.
+	 */
+	public String getUsername();
+}
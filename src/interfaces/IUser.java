@@ -6,6 +6,7 @@ package interfaces;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 import app.*;
 import app.AppExceptions.*;
@@ -27,16 +28,37 @@ public interface IUser
 	 */
 	public void createNewCalendar(String nameOfCalendar) throws CalendarIsNotUniqueException;
 
+	/** Creates a new {@link Calendar} for the specified user, which stores its events in the given way.
+	 * @param nameOfCalendar The title of the calendar to be created. The name must be unique.
+	 * @param storage How the calendar stores its events.
+	 * @throws CalendarIsNotUniqueException If a {@code calendar} with the same title already exists in the calendar list of the {@code user}.
+	 */
+	public void createNewCalendar(String nameOfCalendar, ICalendar.Storage storage) throws CalendarIsNotUniqueException;
+
 	/** Removes the calendar including all events in it from the user.
 	 * @param nameOfCalendar The title the calendar was given at creation time.
 	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
 	 */
 	public void deleteCalendar(String nameOfCalendar) throws UnknownCalendarException;
 
-	/** Provides an {@link ArrayList} with all calendar titles created by the user.
-	 * @return The string literals of the calendars as {@link ArrayList}.
+	/** Provides all calendar titles created by the user, in the order the calendars were created.
+	 * @return The string literals of the calendars as unmodifiable {@link List}.
+	 * The list does not change if calendars are created or deleted later.
+	 */
+	public List<String> getAllMyCalendarNames();
+
+	/** Provides the version stamp of the calendars of the user, which changes with every change of a calendar or its events.
+	 * Two equal stamps of a user mean that nothing changed in between; the stamps are not ordered.
+	 * @return The current version stamp, e.g. for an ETag.
+	 */
+	public long getMyVersion();
+
+	/** Provides the version stamp of all (public and private) events of the specified calendar, see {@link ICalendar#getPublicVersion()}.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @return The current version stamp, which changes with every change of the events.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
 	 */
-	public ArrayList<String> getAllMyCalendarNames();
+	public long getMyCalendarVersion(String calendarName) throws UnknownCalendarException;
 
 	/** Tells, if the user has any calendars.
 	 * @return If the {@link Calendar} {@link ArrayList} is empty, {@code true} is returned, {@code false} in all other cases.
@@ -44,17 +66,30 @@ public interface IUser
 	public boolean hasNoCalendar();
 
 	/** Provides all (public and private) events at a given {@link Date} from the specified calendar as an {@link ArrayList}.
+	 * An event is at {@code date} if it starts at {@code date} or before and ends at {@code date} or later.
 	 * @param calendarName Title of the calendar to identify it.
 	 * @param date Date form which to list all events.
-	 * @return All events in the calendar.
+	 * @return All events in the calendar happening at {@code date}, sorted by start date.
 	 * @throws AccessDeniedException When passwords do not match up.
 	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
 	 * @see Authentication#getUser(String, String)
 	 */
 	public ArrayList<IEvent> getMyCalendarAllEventsAtDate(String calendarName, Date date) throws UnknownCalendarException, AccessDeniedException;
 
+	/** Provides all (public and private) events from the specified calendar overlapping the time span from {@code from} to {@code to} as an {@link ArrayList}.
+	 * An event overlaps the time span if it starts before {@code to} and ends at {@code from} or later.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @param from Begin of the time span.
+	 * @param to End of the time span, not included.
+	 * @return All events in the calendar overlapping the time span, sorted by start date.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 */
+	public ArrayList<IEvent> getMyCalendarAllEventsDuring(String calendarName, Date from, Date to) throws UnknownCalendarException, AccessDeniedException;
+
 	/** Provides an {@link Iterator} with all (public and private) events from the specified calendar, that begin at the given date {@code startDate}.
 	 * @param calendarName Title of the calendar to identify it.
+	 * The iterator is lazy and works on a snapshot, see {@link ICalendar#getAllPublicEventsStartingFrom(Date)}.
 	 * @param startDate Starting point of events.
 	 * @return All events that are set to start at {@code startDate}.
 	 * @throws AccessDeniedException When passwords do not match up.
@@ -62,10 +97,115 @@ public interface IUser
 	 */
 	public Iterator<IEvent> getMyCalendarAllEventsStartingFrom(String calendarName, Date startDate) throws UnknownCalendarException, AccessDeniedException;
 
+	/** Provides the (public and private) events from the specified calendar starting in the time range from {@code from} to {@code to}.
+	 * Only the events in the range are looked at.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @param from Begin of the time range.
+	 * @param to End of the time range, not included.
+	 * @param limit Maximal number of events to return, {@link ICalendar#NO_LIMIT} for all of them.
+	 * @return The first {@code limit} events starting at {@code from} or later and before {@code to}, sorted by start date.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 */
+	public ArrayList<IEvent> getMyCalendarAllEventsStartingBetween(String calendarName, Date from, Date to, int limit) throws UnknownCalendarException, AccessDeniedException;
+
+	/** Passes all (public and private) events at a given {@link Date} from the specified calendar to the {@code visitor},
+	 * like {@link #getMyCalendarAllEventsAtDate(String, Date)} lists them, but without creating any object per query.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @param date Date form which to visit all events.
+	 * @param visitor Receives the events sorted by start date, and may stop the query.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 */
+	public boolean visitMyCalendarAllEventsAtDate(String calendarName, Date date, IEventVisitor visitor) throws UnknownCalendarException, AccessDeniedException;
+
+	/** Passes all (public and private) events from the specified calendar overlapping the time span from {@code from} to {@code to}
+	 * to the {@code visitor}, like {@link #getMyCalendarAllEventsDuring(String, Date, Date)} lists them, but without creating any object per query.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @param from Begin of the time span.
+	 * @param to End of the time span, not included.
+	 * @param visitor Receives the events sorted by start date, and may stop the query.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 */
+	public boolean visitMyCalendarAllEventsDuring(String calendarName, Date from, Date to, IEventVisitor visitor) throws UnknownCalendarException, AccessDeniedException;
+
+	/** Passes the (public and private) events from the specified calendar starting in the time range from {@code from} to {@code to}
+	 * to the {@code visitor}, like {@link #getMyCalendarAllEventsStartingBetween(String, Date, Date, int)} lists them,
+	 * but without creating any object per query.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @param from Begin of the time range.
+	 * @param to End of the time range, not included.
+	 * @param visitor Receives the events sorted by start date, and may stop the query instead of a limit.
+	 * @return {@code false} if the visitor stopped the query, {@code true} if it received all events.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 */
+	public boolean visitMyCalendarAllEventsStartingBetween(String calendarName, Date from, Date to, IEventVisitor visitor) throws UnknownCalendarException, AccessDeniedException;
+
 	public Iterator<IEvent> getMyCalendarPublicEventsStartingFrom(String calendarName, Date startDate) throws UnknownCalendarException;
 
+	public ArrayList<IEvent> getMyCalendarPublicEventsStartingBetween(String calendarName, Date from, Date to, int limit) throws UnknownCalendarException;
+
 	public ArrayList<IEvent> getMyCalendarPublicEventsAtDate(String calendarName, Date date) throws UnknownCalendarException;
 
+	/** Pages through the public events of the specified calendar, see {@link ICalendar#getPublicEventsPage(Date, String, int)}.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @param startDate Date from which the public events are listed. It is only used for the first page.
+	 * @param cursor {@code null} for the first page, otherwise {@link IEventPage#getNextCursor()} of the previous page.
+	 * @param pageSize Maximal number of events on the page, at least 1.
+	 * @return The requested page.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 * @throws InvalidCursorException If {@code cursor} was not handed out by this query.
+	 */
+	public IEventPage getMyCalendarPublicEventsPage(String calendarName, Date startDate, String cursor, int pageSize) throws UnknownCalendarException, InvalidCursorException;
+
+	public ArrayList<IEvent> getMyCalendarPublicEventsDuring(String calendarName, Date from, Date to) throws UnknownCalendarException;
+
+	/** Provides the (public and private) events of the specified calendar created, edited or deleted since the previous sync,
+	 * to keep a copy of the calendar up to date without reading all of it, see {@link ICalendar#getPublicChangesSince(String)}.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @param syncToken {@code null} for all events, otherwise {@link ICalendarChanges#getSyncToken()} of the previous sync.
+	 * @return The changes, or all events if the changes since {@code syncToken} are not known any more.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 * @throws InvalidCursorException If {@code syncToken} was not handed out by a sync query.
+	 */
+	public ICalendarChanges getMyCalendarAllChangesSince(String calendarName, String syncToken) throws UnknownCalendarException, AccessDeniedException, InvalidCursorException;
+
+	/** Sets how many recent changes of the specified calendar, deletions included, are kept for syncing.
+	 * Clients which are more changes behind get all events.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @param changes Number of changes to keep, at least 1.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 */
+	public void setMyCalendarChangeRetention(String calendarName, int changes) throws UnknownCalendarException;
+
+	/** Provides an {@link Iterator} with all (public and private) events of several calendars, merged into one agenda sorted by start date.
+	 * The iterator is lazy: the calendars are not copied, only as many events are looked at as are taken from the iterator.
+	 * It works on a snapshot of each calendar, see {@link ICalendar#getAllPublicEventsStartingFrom(Date)}.
+	 * @param calendarNames Titles of the calendars to merge, {@code null} for all calendars of the user.
+	 * @param startDate Starting point of events.
+	 * @return All events of the calendars that are set to start at {@code startDate} or later, each with the name of its calendar.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with one of the names.
+	 */
+	public Iterator<IAgendaEvent> getMyAgendaStartingFrom(List<String> calendarNames, Date startDate) throws UnknownCalendarException, AccessDeniedException;
+
+	/** Provides the (public and private) events of several calendars starting in the time range from {@code from} to {@code to}, merged into one agenda.
+	 * Only the first {@code limit} events in the range are looked at.
+	 * @param calendarNames Titles of the calendars to merge, {@code null} for all calendars of the user.
+	 * @param from Begin of the time range.
+	 * @param to End of the time range, not included.
+	 * @param limit Maximal number of events to return, {@link ICalendar#NO_LIMIT} for all of them.
+	 * @return The first {@code limit} events starting at {@code from} or later and before {@code to}, sorted by start date, each with the name of its calendar.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with one of the names.
+	 */
+	public ArrayList<IAgendaEvent> getMyAgendaStartingBetween(List<String> calendarNames, Date from, Date to, int limit) throws UnknownCalendarException, AccessDeniedException;
+
 	///////////////////
 	// EVENT ACTIONS //
 	///////////////////
@@ -92,6 +232,15 @@ public interface IUser
 	 */
 	public void createPublicEvent(String calendarName, String eventName, Date startDate, Date endDate) throws AccessDeniedException, InvalidDateException, UnknownCalendarException;
 
+	/** Creates all events of a batch in the given {@link Calendar} at once, see {@link Calendar#createEvents(EventBatch)}.
+	 * @param calendarName Title of the calendar to identify it.
+	 * @param batch The events to create.
+	 * @throws AccessDeniedException When passwords do not match up.
+	 * @throws UnknownCalendarException If the {@code user} has no calendar with such a name.
+	 * @throws InvalidDatesException If events of the batch end before they start. No event is created then.
+	 */
+	public void createEvents(String calendarName, EventBatch batch) throws AccessDeniedException, InvalidDatesException, UnknownCalendarException;
+
 	public void editEventName(String calendarName, String eventName, Date startDate, String newEventName) throws AccessDeniedException, UnknownEventException, UnknownCalendarException, InvalidDateException;
 
 	public void editEventStartDate(String calendarName, String eventName, Date startDate, Date newStartDate) throws AccessDeniedException, UnknownEventException, UnknownCalendarException, InvalidDateException;
@@ -7,7 +7,11 @@ import interfaces.*;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import org.junit.*;
 import ch.unibe.jexample.*;
 import static org.junit.Assert.*;
@@ -90,7 +94,8 @@ public class CalendarSpecificTests extends TestTemplate
 
 		this.userAlpha.createPrivateEvent("CalendarAlpha", "Party", this.stringParseToDate("22.09.2011"),  this.stringParseToDate("29.09.2011"));
 
-		assertFalse(calendarAlpha.getAllEventsAtDate(this.stringParseToDate("1.1.1970")).isEmpty());
+		assertTrue(calendarAlpha.getAllEventsAtDate(this.stringParseToDate("1.1.1970")).isEmpty());
+		assertFalse(calendarAlpha.getAllEventsAtDate(this.stringParseToDate("25.09.2011")).isEmpty());
 		Event eventParty = calendarAlpha.getEvent("Party", this.stringParseToDate("22.09.2011"));
 		assertEquals(eventParty.getEventName(), "Party");
 		return app;
@@ -173,8 +178,8 @@ public class CalendarSpecificTests extends TestTemplate
 		this.userAlpha.createPrivateEvent("Other calendar", "Private Event", this.stringParseToDate("23.9.2011"), this.stringParseToDate("23.9.2011"));
 		this.userAlpha.createPublicEvent("Other calendar", "Public Event", this.stringParseToDate("23.9.2011"), this.stringParseToDate("23.9.2011"));
 
-		ArrayList<String> alphasCalendarListViaUser = userAlpha.getAllMyCalendarNames();
-		ArrayList<String> alphasCalendarListViaApp = app.getAllCalendarsNamesFromUser("Alpha");
+		List<String> alphasCalendarListViaUser = userAlpha.getAllMyCalendarNames();
+		List<String> alphasCalendarListViaApp = app.getAllCalendarsNamesFromUser("Alpha");
 		assertEquals(alphasCalendarListViaUser, alphasCalendarListViaApp);
 
 		assertEquals(3, alphasCalendarListViaUser.size());
@@ -203,18 +208,18 @@ public class CalendarSpecificTests extends TestTemplate
 				ArrayList<IEvent> userAllEventsDate = userAlpha.getMyCalendarAllEventsAtDate("CalendarAlpha", this.stringParseToDate("23.09.2011"));
 				assertEquals(4, userAllEventsDate.size());
 
-			// Retrieve 2 public events with ArrayList
+			// Retrieve 2 public events with ArrayList, sorted by start date
 				ArrayList<IEvent> userPublicEventsDate = userAlpha.getMyCalendarPublicEventsAtDate("CalendarAlpha", this.stringParseToDate("23.09.2011"));
 				assertEquals(2, userPublicEventsDate.size());
-				assertEquals("My public one-day event", userPublicEventsDate.get(0).getEventName());
-				assertEquals("My public night event", userPublicEventsDate.get(1).getEventName());
+				assertEquals("My public night event", userPublicEventsDate.get(0).getEventName());
+				assertEquals("My public one-day event", userPublicEventsDate.get(1).getEventName());
 
 		// Retrieve via app
 			// Retrieve 2 public events with ArrayList
 				ArrayList<IEvent> appPublicEventsDate = app.getUsersCalendarPublicEventsOverview("Alpha", "CalendarAlpha", this.stringParseToDate("23.09.2011"));
 				assertEquals(2, appPublicEventsDate.size());
-				assertEquals("My public one-day event", appPublicEventsDate.get(0).getEventName());
-				assertEquals("My public night event", appPublicEventsDate.get(1).getEventName());
+				assertEquals("My public night event", appPublicEventsDate.get(0).getEventName());
+				assertEquals("My public one-day event", appPublicEventsDate.get(1).getEventName());
 
 		return app;
 	}
@@ -277,18 +282,18 @@ public class CalendarSpecificTests extends TestTemplate
 				ArrayList<IEvent> userAllEventsDate = userAlpha.getMyCalendarAllEventsAtDate("CalendarAlpha", this.stringParseToDate("23.09.2011"));
 				assertEquals(4, userAllEventsDate.size());
 
-			// Retrieve 2 public events with ArrayList
+			// Retrieve 2 public events with ArrayList, sorted by start date
 				ArrayList<IEvent> userPublicEventsDate = userAlpha.getMyCalendarPublicEventsAtDate("CalendarAlpha", this.stringParseToDate("23.09.2011"));
 				assertEquals(2, userPublicEventsDate.size());
-				assertEquals("My public one-day event", userPublicEventsDate.get(0).getEventName());
-				assertEquals("My public night event", userPublicEventsDate.get(1).getEventName());
+				assertEquals("My public night event", userPublicEventsDate.get(0).getEventName());
+				assertEquals("My public one-day event", userPublicEventsDate.get(1).getEventName());
 
 		// Retrieve via app
 			// Retrieve 2 public events with ArrayList
 				ArrayList<IEvent> appPublicEventsDate = app.getUsersCalendarPublicEventsOverview("Alpha", "CalendarAlpha", this.stringParseToDate("23.09.2011"));
 				assertEquals(2, appPublicEventsDate.size());
-				assertEquals("My public one-day event", appPublicEventsDate.get(0).getEventName());
-				assertEquals("My public night event", appPublicEventsDate.get(1).getEventName());
+				assertEquals("My public night event", appPublicEventsDate.get(0).getEventName());
+				assertEquals("My public one-day event", appPublicEventsDate.get(1).getEventName());
 
 		return app;
 	}
@@ -336,4 +341,466 @@ public class CalendarSpecificTests extends TestTemplate
 
 		return app;
 	}
+
+	@Given("alphaCalendarOwnerShouldBeUserAlpha")
+	public App shouldRetrieveOnlyEventsOverlappingDateOrTimeSpan(App app) throws UnknownCalendarException, UnknownUserException, AccessDeniedException, InvalidDateException, ParseException
+	{
+		// Create calendar entries
+		userAlpha.createPublicEvent("CalendarAlpha", "My public past event", this.stringParseToDate("20.09.2011"), this.stringParseToDate("22.09.2011"));
+		userAlpha.createPrivateEvent("CalendarAlpha", "My private long event", this.stringParseToDate("21.09.2011"), this.stringParseToDate("26.09.2011"));
+		userAlpha.createPublicEvent("CalendarAlpha", "My public one-day event", this.stringParseToDate("24.09.2011"), this.stringParseToDate("24.09.2011"));
+		userAlpha.createPublicEvent("CalendarAlpha", "My public future event", this.stringParseToDate("27.09.2011"), this.stringParseToDate("28.09.2011"));
+
+		// Events which have not started yet are not happening at a date
+			ArrayList<IEvent> userAllEventsDate = userAlpha.getMyCalendarAllEventsAtDate("CalendarAlpha", this.stringParseToDate("23.09.2011"));
+			assertEquals(1, userAllEventsDate.size());
+			assertEquals("My private long event", userAllEventsDate.get(0).getEventName());
+
+		// Time span from 22.09.2011 to 27.09.2011, the end is not included
+			ArrayList<IEvent> userAllEventsSpan = userAlpha.getMyCalendarAllEventsDuring("CalendarAlpha", this.stringParseToDate("22.09.2011"), this.stringParseToDate("27.09.2011"));
+			assertEquals(3, userAllEventsSpan.size());
+			assertEquals("My public past event", userAllEventsSpan.get(0).getEventName());
+			assertEquals("My private long event", userAllEventsSpan.get(1).getEventName());
+			assertEquals("My public one-day event", userAllEventsSpan.get(2).getEventName());
+
+			ArrayList<IEvent> appPublicEventsSpan = app.getUsersCalendarPublicEventsOverview("Alpha", "CalendarAlpha", this.stringParseToDate("22.09.2011"), this.stringParseToDate("27.09.2011"));
+			assertEquals(2, appPublicEventsSpan.size());
+			assertEquals("My public past event", appPublicEventsSpan.get(0).getEventName());
+			assertEquals("My public one-day event", appPublicEventsSpan.get(1).getEventName());
+
+		return app;
+	}
+
+	@Given("alphaCalendarOwnerShouldBeUserAlpha")
+	public App iteratorShouldReadSnapshotOfCalendar(App app) throws UnknownCalendarException, UnknownEventException, AccessDeniedException, InvalidDateException, ParseException
+	{
+		userAlpha.createPublicEvent("CalendarAlpha", "First", this.stringParseToDate("21.09.2011"), this.stringParseToDate("21.09.2011"));
+		userAlpha.createPrivateEvent("CalendarAlpha", "Second", this.stringParseToDate("22.09.2011"), this.stringParseToDate("22.09.2011"));
+		userAlpha.createPublicEvent("CalendarAlpha", "Third", this.stringParseToDate("23.09.2011"), this.stringParseToDate("23.09.2011"));
+
+		Iterator<IEvent> publicEvents = userAlpha.getMyCalendarPublicEventsStartingFrom("CalendarAlpha", this.stringParseToDate("20.09.2011"));
+		assertEquals("First", publicEvents.next().getEventName());
+
+		userAlpha.createPublicEvent("CalendarAlpha", "Fourth", this.stringParseToDate("24.09.2011"), this.stringParseToDate("24.09.2011"));
+		userAlpha.editEventName("CalendarAlpha", "Third", this.stringParseToDate("23.09.2011"), "Third edited");
+		userAlpha.deleteEvent("CalendarAlpha", "First", this.stringParseToDate("21.09.2011"));
+
+		// the iterator still lists the calendar as it was when it was queried
+		assertEquals("Third", publicEvents.next().getEventName());
+		assertFalse(publicEvents.hasNext());
+
+		publicEvents = userAlpha.getMyCalendarPublicEventsStartingFrom("CalendarAlpha", this.stringParseToDate("20.09.2011"));
+		assertEquals("Third edited", publicEvents.next().getEventName());
+		assertEquals("Fourth", publicEvents.next().getEventName());
+		assertFalse(publicEvents.hasNext());
+		return app;
+	}
+
+	@Given("alphaCalendarOwnerShouldBeUserAlpha")
+	public App shouldPageThroughPublicEvents(App app) throws UnknownCalendarException, UnknownUserException, UnknownEventException, AccessDeniedException, InvalidDateException, InvalidCursorException, ParseException
+	{
+		for (int day = 21; day <= 25; day++)
+		{
+			userAlpha.createPublicEvent("CalendarAlpha", "Public " + day, this.stringParseToDate(day + ".09.2011"), this.stringParseToDate(day + ".09.2011"));
+		}
+		userAlpha.createPrivateEvent("CalendarAlpha", "Private 22", this.stringParseToDate("22.09.2011"), this.stringParseToDate("22.09.2011"));
+
+		IEventPage firstPage = app.getUsersCalendarPublicEventsPage("Alpha", "CalendarAlpha", this.stringParseToDate("20.09.2011"), null, 2);
+		assertEquals(2, firstPage.getEvents().size());
+		assertEquals("Public 21", firstPage.getEvents().get(0).getEventName());
+		assertEquals("Public 22", firstPage.getEvents().get(1).getEventName());
+		assertTrue(firstPage.hasNextPage());
+
+		IEventPage secondPage = app.getUsersCalendarPublicEventsPage("Alpha", "CalendarAlpha", null, firstPage.getNextCursor(), 2);
+		assertEquals("Public 23", secondPage.getEvents().get(0).getEventName());
+		assertEquals("Public 24", secondPage.getEvents().get(1).getEventName());
+
+		IEventPage lastPage = app.getUsersCalendarPublicEventsPage("Alpha", "CalendarAlpha", null, secondPage.getNextCursor(), 2);
+		assertEquals(1, lastPage.getEvents().size());
+		assertEquals("Public 25", lastPage.getEvents().get(0).getEventName());
+		assertFalse(lastPage.hasNextPage());
+		assertNull(lastPage.getNextCursor());
+
+		// a stale cursor continues behind the last event of its page
+		userAlpha.deleteEvent("CalendarAlpha", "Public 22", this.stringParseToDate("22.09.2011"));
+		userAlpha.deleteEvent("CalendarAlpha", "Public 23", this.stringParseToDate("23.09.2011"));
+		IEventPage resumedPage = app.getUsersCalendarPublicEventsPage("Alpha", "CalendarAlpha", null, firstPage.getNextCursor(), 2);
+		assertEquals("Public 24", resumedPage.getEvents().get(0).getEventName());
+		assertEquals("Public 25", resumedPage.getEvents().get(1).getEventName());
+
+		try
+		{
+			app.getUsersCalendarPublicEventsPage("Alpha", "CalendarAlpha", null, "no cursor", 2);
+			fail("InvalidCursorException expected!");
+		}
+		catch (InvalidCursorException e)
+		{
+			assertNotNull(e);
+		}
+		return app;
+	}
+
+	@Given("alphaCalendarOwnerShouldBeUserAlpha")
+	public App shouldRetrieveEventsStartingInRange(App app) throws UnknownCalendarException, UnknownUserException, AccessDeniedException, InvalidDateException, ParseException
+	{
+		userAlpha.createPublicEvent("CalendarAlpha", "Before", this.stringParseToDate("18.09.2011"), this.stringParseToDate("20.09.2011"));
+		userAlpha.createPublicEvent("CalendarAlpha", "Monday", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		userAlpha.createPrivateEvent("CalendarAlpha", "Tuesday", this.stringParseToDate("20.09.2011"), this.stringParseToDate("20.09.2011"));
+		userAlpha.createPublicEvent("CalendarAlpha", "Wednesday", this.stringParseToDate("21.09.2011"), this.stringParseToDate("21.09.2011"));
+		userAlpha.createPublicEvent("CalendarAlpha", "Next Monday", this.stringParseToDate("26.09.2011"), this.stringParseToDate("26.09.2011"));
+
+		ArrayList<IEvent> week = userAlpha.getMyCalendarAllEventsStartingBetween("CalendarAlpha", this.stringParseToDate("19.09.2011"), this.stringParseToDate("26.09.2011"), ICalendar.NO_LIMIT);
+		assertEquals(3, week.size());
+		assertEquals("Monday", week.get(0).getEventName());
+		assertEquals("Tuesday", week.get(1).getEventName());
+		assertEquals("Wednesday", week.get(2).getEventName());
+
+		ArrayList<IEvent> publicWeek = app.getUsersCalendarPublicEventsStartingBetween("Alpha", "CalendarAlpha", this.stringParseToDate("19.09.2011"), this.stringParseToDate("26.09.2011"), ICalendar.NO_LIMIT);
+		assertEquals(2, publicWeek.size());
+		assertEquals("Monday", publicWeek.get(0).getEventName());
+		assertEquals("Wednesday", publicWeek.get(1).getEventName());
+
+		ArrayList<IEvent> limitedWeek = userAlpha.getMyCalendarPublicEventsStartingBetween("CalendarAlpha", this.stringParseToDate("19.09.2011"), this.stringParseToDate("26.09.2011"), 1);
+		assertEquals(1, limitedWeek.size());
+		assertEquals("Monday", limitedWeek.get(0).getEventName());
+		return app;
+	}
+
+	@Given("userAlphaShouldHaveNoCalendars")
+	public App columnarCalendarsShouldGiveSameResultsAsTreeCalendar(App app) throws CalendarIsNotUniqueException, UnknownCalendarException, UnknownEventException, AccessDeniedException, InvalidDateException, InvalidCursorException, ParseException
+	{
+		this.userAlpha.createNewCalendar("Rooms tree", ICalendar.Storage.TREE);
+		this.userAlpha.createNewCalendar("Rooms columnar", ICalendar.Storage.COLUMNAR);
+		this.userAlpha.createNewCalendar("Rooms off-heap", ICalendar.Storage.OFF_HEAP);
+		assertEquals(ICalendar.Storage.COLUMNAR, this.userAlpha.getCalendar("Rooms columnar").getStorage());
+		assertEquals(ICalendar.Storage.OFF_HEAP, this.userAlpha.getCalendar("Rooms off-heap").getStorage());
+		String[] calendarNames = new String[] { "Rooms tree", "Rooms columnar", "Rooms off-heap" };
+
+		// enough events and changes to merge the changes of the columnar calendar several times
+		long origin = this.stringParseToDate("01.09.2011").getTime();
+		long hour = 60L * 60L * 1000L;
+		Random random = new Random(42);
+		for (int i = 0; i < 500; i++)
+		{
+			Date startDate = new Date(origin + random.nextInt(60 * 24) * hour);
+			Date endDate = new Date(startDate.getTime() + random.nextInt(72) * hour);
+			for (String calendarName : calendarNames)
+			{
+				if (i % 3 == 0)
+				{
+					this.userAlpha.createPrivateEvent(calendarName, "Booking " + (i % 7), startDate, endDate);
+				}
+				else
+				{
+					this.userAlpha.createPublicEvent(calendarName, "Booking " + (i % 7), startDate, endDate);
+				}
+			}
+		}
+		Iterator<IEvent> iteratorEvents = this.userAlpha.getMyCalendarAllEventsStartingFrom("Rooms tree", new Date(origin));
+		int i = 0;
+		ArrayList<IEvent> toChange = new ArrayList<IEvent>();
+		while (iteratorEvents.hasNext())
+		{
+			IEvent event = iteratorEvents.next();
+			if (i++ % 4 == 0)
+			{
+				toChange.add(event);
+			}
+		}
+		for (IEvent event : toChange)
+		{
+			for (String calendarName : calendarNames)
+			{
+				if (event.isPublic())
+				{
+					this.userAlpha.deleteEvent(calendarName, event.getEventName(), event.getStartDate());
+				}
+				else
+				{
+					this.userAlpha.editEventStartDate(calendarName, event.getEventName(), event.getStartDate(), new Date(event.getStartDate().getTime() - hour));
+					this.userAlpha.editEventStateToPublic(calendarName, event.getEventName(), new Date(event.getStartDate().getTime() - hour));
+				}
+			}
+		}
+
+		Calendar tree = this.userAlpha.getCalendar("Rooms tree");
+		for (String columnarName : new String[] { "Rooms columnar", "Rooms off-heap" })
+		{
+			Calendar columnar = this.userAlpha.getCalendar(columnarName);
+			for (int day = -1; day < 62; day++)
+			{
+				Date date = new Date(origin + day * 24 * hour);
+				Date nextWeek = new Date(date.getTime() + 7 * 24 * hour);
+				assertEquals(this.describe(tree.getAllEventsAtDate(date).iterator()), this.describe(columnar.getAllEventsAtDate(date).iterator()));
+				assertEquals(this.describe(tree.getAllPublicEventsAtDate(date).iterator()), this.describe(columnar.getAllPublicEventsAtDate(date).iterator()));
+				assertEquals(this.describe(tree.getAllEventsDuring(date, nextWeek).iterator()), this.describe(columnar.getAllEventsDuring(date, nextWeek).iterator()));
+				assertEquals(this.describe(tree.getAllPublicEventsDuring(date, nextWeek).iterator()), this.describe(columnar.getAllPublicEventsDuring(date, nextWeek).iterator()));
+				assertEquals(this.describe(tree.getAllEventsStartingFrom(date)), this.describe(columnar.getAllEventsStartingFrom(date)));
+				assertEquals(this.describe(tree.getAllPublicEventsStartingFrom(date)), this.describe(columnar.getAllPublicEventsStartingFrom(date)));
+				assertEquals(this.describe(tree.getAllEventsStartingBetween(date, nextWeek, 5).iterator()), this.describe(columnar.getAllEventsStartingBetween(date, nextWeek, 5).iterator()));
+				assertEquals(this.describe(tree.getAllPublicEventsStartingBetween(date, nextWeek, ICalendar.NO_LIMIT).iterator()), this.describe(columnar.getAllPublicEventsStartingBetween(date, nextWeek, ICalendar.NO_LIMIT).iterator()));
+				assertEquals(this.describe(tree.getPublicEventsPage(date, null, 10).getEvents().iterator()), this.describe(columnar.getPublicEventsPage(date, null, 10).getEvents().iterator()));
+			}
+			for (IEvent event : tree.getAllEventsDuring(new Date(origin - 24 * hour), new Date(origin + 62 * 24 * hour)))
+			{
+				Event treeEvent = tree.getEvent(event.getEventName(), event.getStartDate());
+				Event columnarEvent = columnar.getEvent(event.getEventName(), event.getStartDate());
+				assertEquals(treeEvent.getEndDate(), columnarEvent.getEndDate());
+				assertEquals(treeEvent.isPublic(), columnarEvent.isPublic());
+			}
+		}
+		return app;
+	}
+
+	@Given("userAlphaShouldHaveNoCalendars")
+	public App batchOfEventsShouldGiveSameCalendarAsSingleEvents(App app) throws CalendarIsNotUniqueException, UnknownCalendarException, UnknownEventException, AccessDeniedException, InvalidDateException, InvalidDatesException, ParseException
+	{
+		long origin = this.stringParseToDate("01.09.2011").getTime();
+		long hour = 60L * 60L * 1000L;
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			this.userAlpha.createNewCalendar("Single " + storage, storage);
+			this.userAlpha.createNewCalendar("Batch " + storage, storage);
+
+			// batches of growing size, so that small and large ones meet a calendar of any size
+			Random random = new Random(7);
+			int created = 0;
+			for (int batchSize : new int[] { 1, 10, 300, 5, 1000, 50 })
+			{
+				EventBatch batch = new EventBatch();
+				for (int i = 0; i < batchSize; i++, created++)
+				{
+					// few distinct start dates, so that the order of equal start dates is checked
+					Date startDate = new Date(origin + random.nextInt(100) * hour);
+					Date endDate = new Date(startDate.getTime() + random.nextInt(72) * hour);
+					if (created % 3 == 0)
+					{
+						this.userAlpha.createPrivateEvent("Single " + storage, "Booking " + created, startDate, endDate);
+						batch.addPrivateEvent("Booking " + created, startDate, endDate);
+					}
+					else
+					{
+						this.userAlpha.createPublicEvent("Single " + storage, "Booking " + created, startDate, endDate);
+						batch.addPublicEvent("Booking " + created, startDate, endDate);
+					}
+				}
+				this.userAlpha.createEvents("Batch " + storage, batch);
+			}
+
+			Calendar single = this.userAlpha.getCalendar("Single " + storage);
+			Calendar batched = this.userAlpha.getCalendar("Batch " + storage);
+			assertEquals(this.describe(single.getAllEventsStartingFrom(new Date(origin))), this.describe(batched.getAllEventsStartingFrom(new Date(origin))));
+			for (int day = 0; day < 8; day++)
+			{
+				Date date = new Date(origin + day * 24 * hour);
+				assertEquals(this.describe(single.getAllPublicEventsAtDate(date).iterator()), this.describe(batched.getAllPublicEventsAtDate(date).iterator()));
+			}
+			Event first = (Event) single.getAllEventsStartingFrom(new Date(origin)).next();
+			assertEquals(first.getEndDate(), batched.getEvent(first.getEventName(), first.getStartDate()).getEndDate());
+		}
+		return app;
+	}
+
+	@Given("userAlphaShouldHaveNoCalendars")
+	public App batchWithInvalidDatesShouldReportAllAndCreateNothing(App app) throws CalendarIsNotUniqueException, UnknownCalendarException, AccessDeniedException, ParseException
+	{
+		this.userAlpha.createNewCalendar("Imported");
+		Date monday = this.stringParseToDate("19.09.2011");
+		Date tuesday = this.stringParseToDate("20.09.2011");
+		EventBatch batch = new EventBatch();
+		batch.addPublicEvent("Fine", monday, tuesday);
+		batch.addPublicEvent("Backwards", tuesday, monday);
+		batch.addPrivateEvent("Fine too", monday, monday);
+		batch.addPrivateEvent("Backwards too", tuesday, monday);
+		try
+		{
+			this.userAlpha.createEvents("Imported", batch);
+			fail("InvalidDatesException expected!");
+		}
+		catch (InvalidDatesException e)
+		{
+			assertEquals(Arrays.asList(1, 3), e.getPositions());
+			assertEquals(2, e.getInvalidDates().size());
+		}
+		assertFalse(this.userAlpha.getMyCalendarAllEventsStartingFrom("Imported", monday).hasNext());
+		return app;
+	}
+
+	@Given("userAlphaShouldHaveNoCalendars")
+	public App syncShouldOnlyListChangesSinceTheToken(App app) throws CalendarIsNotUniqueException, UnknownCalendarException, UnknownEventException, UnknownUserException, AccessDeniedException, InvalidDateException, InvalidCursorException, ParseException
+	{
+		Date monday = this.stringParseToDate("19.09.2011");
+		Date tuesday = this.stringParseToDate("20.09.2011");
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			String name = "Synced " + storage;
+			this.userAlpha.createNewCalendar(name, storage);
+			this.userAlpha.createPublicEvent(name, "Meeting", monday, tuesday);
+			this.userAlpha.createPrivateEvent(name, "Dentist", monday, monday);
+
+			ICalendarChanges full = this.userAlpha.getMyCalendarAllChangesSince(name, null);
+			assertTrue(full.isFullSync());
+			assertEquals("Meeting Dentist", this.describe(full));
+			long dentist = full.getChangedEvents().get(1).getEventId();
+
+			ICalendarChanges none = this.userAlpha.getMyCalendarAllChangesSince(name, full.getSyncToken());
+			assertFalse(none.isFullSync());
+			assertEquals("", this.describe(none));
+			assertEquals(full.getSyncToken(), none.getSyncToken());
+
+			this.userAlpha.createPublicEvent(name, "Lunch", tuesday, tuesday);
+			this.userAlpha.editEventName(name, "Meeting", monday, "Lecture");
+			this.userAlpha.editEventStartDate(name, "Lecture", monday, tuesday);
+			this.userAlpha.editEventStateToPublic(name, "Dentist", monday);
+			this.userAlpha.createPublicEvent(name, "Short-lived", monday, monday);
+			this.userAlpha.deleteEvent(name, "Short-lived", monday);
+			ICalendarChanges changes = this.userAlpha.getMyCalendarAllChangesSince(name, none.getSyncToken());
+			assertFalse(changes.isFullSync());
+			assertEquals("Lunch Lecture Dentist", this.describe(changes));
+			assertEquals(full.getChangedEvents().get(0).getEventId(), changes.getChangedEvents().get(1).getEventId());
+			assertEquals(tuesday, changes.getChangedEvents().get(1).getStartDate());
+			assertEquals(1, changes.getRemovedEventIds().size());
+
+			// the public view lists events made private as removed
+			ICalendarChanges publicChanges = app.getUsersCalendarPublicChangesSince("Alpha", name, changes.getSyncToken());
+			this.userAlpha.editEventStateToPrivate(name, "Dentist", monday);
+			this.userAlpha.deleteEvent(name, "Lunch", tuesday);
+			publicChanges = app.getUsersCalendarPublicChangesSince("Alpha", name, publicChanges.getSyncToken());
+			assertEquals("", this.describe(publicChanges));
+			assertTrue(publicChanges.getRemovedEventIds().contains(dentist));
+			assertEquals(2, publicChanges.getRemovedEventIds().size());
+			assertEquals("Lecture", this.describe(app.getUsersCalendarPublicChangesSince("Alpha", name, null)));
+		}
+		return app;
+	}
+
+	@Given("userAlphaShouldHaveNoCalendars")
+	public App publicSyncShouldNotMentionPrivateEvents(App app) throws CalendarIsNotUniqueException, UnknownCalendarException, UnknownEventException, UnknownUserException, AccessDeniedException, InvalidDateException, InvalidCursorException, ParseException
+	{
+		Date monday = this.stringParseToDate("19.09.2011");
+		Date tuesday = this.stringParseToDate("20.09.2011");
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			String name = "Private " + storage;
+			this.userAlpha.createNewCalendar(name, storage);
+			String token = app.getUsersCalendarPublicChangesSince("Alpha", name, null).getSyncToken();
+
+			this.userAlpha.createPrivateEvent(name, "Dentist", monday, monday);
+			this.userAlpha.editEventName(name, "Dentist", monday, "Doctor");
+			this.userAlpha.editEventEndDate(name, "Doctor", monday, tuesday);
+			this.userAlpha.createPrivateEvent(name, "Nap", tuesday, tuesday);
+			this.userAlpha.deleteEvent(name, "Nap", tuesday);
+			ICalendarChanges publicChanges = app.getUsersCalendarPublicChangesSince("Alpha", name, token);
+			assertFalse(publicChanges.isFullSync());
+			assertEquals("", this.describe(publicChanges));
+			assertTrue(publicChanges.getRemovedEventIds().isEmpty());
+
+			// an event public for a while since the token is listed as removed, as the client may know it
+			this.userAlpha.editEventStateToPublic(name, "Doctor", monday);
+			this.userAlpha.editEventStateToPrivate(name, "Doctor", monday);
+			publicChanges = app.getUsersCalendarPublicChangesSince("Alpha", name, publicChanges.getSyncToken());
+			assertEquals("", this.describe(publicChanges));
+			assertEquals(1, publicChanges.getRemovedEventIds().size());
+			assertEquals(this.userAlpha.getMyCalendarAllChangesSince(name, null).getChangedEvents().get(0).getEventId(), (long) publicChanges.getRemovedEventIds().get(0));
+		}
+		return app;
+	}
+
+	@Given("userAlphaShouldHaveNoCalendars")
+	public App publicSyncShouldNotCountPrivateChanges(App app) throws CalendarIsNotUniqueException, UnknownCalendarException, UnknownEventException, UnknownUserException, AccessDeniedException, InvalidDateException, InvalidCursorException, ParseException
+	{
+		Date monday = this.stringParseToDate("19.09.2011");
+		this.userAlpha.createNewCalendar("Busy");
+		this.userAlpha.setMyCalendarChangeRetention("Busy", 3);
+		this.userAlpha.createPublicEvent("Busy", "Meeting", monday, monday);
+		String token = app.getUsersCalendarPublicChangesSince("Alpha", "Busy", null).getSyncToken();
+		for (int i = 0; i < 100; i++)
+		{
+			this.userAlpha.createPrivateEvent("Busy", "Event " + i, monday, monday);
+		}
+		this.userAlpha.deleteEvent("Busy", "Event 0", monday);
+
+		// private changes neither move the public token on nor push public changes out of the log
+		ICalendarChanges publicChanges = app.getUsersCalendarPublicChangesSince("Alpha", "Busy", token);
+		assertFalse(publicChanges.isFullSync());
+		assertEquals("", this.describe(publicChanges));
+		assertEquals(token, publicChanges.getSyncToken());
+
+		this.userAlpha.editEventName("Busy", "Meeting", monday, "Lecture");
+		for (int i = 1; i < 100; i++)
+		{
+			this.userAlpha.deleteEvent("Busy", "Event " + i, monday);
+		}
+		publicChanges = app.getUsersCalendarPublicChangesSince("Alpha", "Busy", token);
+		assertFalse(publicChanges.isFullSync());
+		assertEquals("Lecture", this.describe(publicChanges));
+		assertTrue(publicChanges.getRemovedEventIds().isEmpty());
+
+		// the tokens of the two views are not interchangeable
+		assertTrue(this.userAlpha.getMyCalendarAllChangesSince("Busy", publicChanges.getSyncToken()).isFullSync());
+		return app;
+	}
+
+	@Given("userAlphaShouldHaveNoCalendars")
+	public App syncWithUnknownChangesShouldListAllEvents(App app) throws CalendarIsNotUniqueException, UnknownCalendarException, UnknownEventException, AccessDeniedException, InvalidDateException, InvalidCursorException, ParseException
+	{
+		Date monday = this.stringParseToDate("19.09.2011");
+		this.userAlpha.createNewCalendar("Busy");
+		this.userAlpha.setMyCalendarChangeRetention("Busy", 3);
+		String token = this.userAlpha.getMyCalendarAllChangesSince("Busy", null).getSyncToken();
+		for (int i = 0; i < 100; i++)
+		{
+			this.userAlpha.createPrivateEvent("Busy", "Event " + i, monday, monday);
+		}
+		ICalendarChanges tooOld = this.userAlpha.getMyCalendarAllChangesSince("Busy", token);
+		assertTrue(tooOld.isFullSync());
+		assertEquals(100, tooOld.getChangedEvents().size());
+
+		this.userAlpha.deleteEvent("Busy", "Event 0", monday);
+		this.userAlpha.deleteEvent("Busy", "Event 1", monday);
+		ICalendarChanges recent = this.userAlpha.getMyCalendarAllChangesSince("Busy", tooOld.getSyncToken());
+		assertFalse(recent.isFullSync());
+		assertEquals(2, recent.getRemovedEventIds().size());
+
+		// a calendar created again with the same name does not continue the versions of the old one
+		this.userAlpha.deleteCalendar("Busy");
+		this.userAlpha.createNewCalendar("Busy");
+		this.userAlpha.createPrivateEvent("Busy", "New", monday, monday);
+		assertTrue(this.userAlpha.getMyCalendarAllChangesSince("Busy", recent.getSyncToken()).isFullSync());
+
+		try
+		{
+			this.userAlpha.getMyCalendarAllChangesSince("Busy", "garbage");
+			fail("InvalidCursorException expected!");
+		}
+		catch (InvalidCursorException e)
+		{
+			assertNotNull(e);
+		}
+		return app;
+	}
+
+	/** Lists the names of the changed events of a sync. */
+	private String describe(ICalendarChanges changes)
+	{
+		StringBuilder description = new StringBuilder();
+		for (ISyncedEvent event : changes.getChangedEvents())
+		{
+			description.append(description.length() == 0 ? "" : " ").append(event.getEventName());
+		}
+		return description.toString();
+	}
+
+	/** Describes the events by their values, to compare events of different calendars. */
+	private String describe(Iterator<IEvent> events)
+	{
+		StringBuilder description = new StringBuilder();
+		while (events.hasNext())
+		{
+			IEvent event = events.next();
+			description.append(event.getEventName()).append(' ').append(event.getStartDate().getTime()).append('-')
+					.append(event.getEndDate().getTime()).append(event.isPublic() ? " public\n" : " private\n");
+		}
+		return description.toString();
+	}
 }
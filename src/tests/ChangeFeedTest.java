@@ -0,0 +1,212 @@
+/**
+ * Calendar framework
+ */
+package tests;
+
+import interfaces.IPublicEventChange;
+import interfaces.IPublicEventListener;
+import interfaces.ISubscription;
+import interfaces.IUser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+
+import app.App;
+import app.AppExceptions.*;
+import app.EventBatch;
+import ch.unibe.jexample.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+@RunWith(JExample.class)
+public class ChangeFeedTest extends TestTemplate
+{
+	/** Collects the delivered changes as strings, and the dropped changes as {@code "dropped n"}. */
+	private static class Recorder implements IPublicEventListener
+	{
+		private final LinkedBlockingQueue<String> received = new LinkedBlockingQueue<String>();
+
+		@Override
+		public void onChanges(List<IPublicEventChange> changes)
+		{
+			for (IPublicEventChange change : changes)
+			{
+				String oldName = change.getOldEvent() == null ? "-" : change.getOldEvent().getEventName();
+				String newName = change.getNewEvent() == null ? "-" : change.getNewEvent().getEventName();
+				this.received.add(change.getType() + " " + change.getCalendarName() + " " + oldName + " " + newName);
+			}
+		}
+
+		@Override
+		public void onChangesDropped(int droppedChanges)
+		{
+			this.received.add("dropped " + droppedChanges);
+		}
+
+		/** Waits for the next {@code count} notifications. */
+		List<String> take(int count) throws InterruptedException
+		{
+			List<String> notifications = new ArrayList<String>();
+			for (int i = 0; i < count; i++)
+			{
+				String notification = this.received.poll(10, TimeUnit.SECONDS);
+				assertNotNull("Notification expected after " + notifications, notification);
+				notifications.add(notification);
+			}
+			return notifications;
+		}
+	}
+
+	@Test
+	public App changesOfPublicEventsShouldBeDeliveredWithoutPrivateOnes() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		app.createUser("Beta", "456");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Work");
+		alpha.createNewCalendar("Home");
+
+		Recorder work = new Recorder();
+		Recorder all = new Recorder();
+		app.subscribeToPublicEvents("Alpha", "Work", work, 100);
+		app.subscribeToPublicEvents("Alpha", null, all, 100);
+		try
+		{
+			app.subscribeToPublicEvents("Alpha", "Unknown", new Recorder(), 100);
+			fail("UnknownCalendarException expected!");
+		}
+		catch (UnknownCalendarException e)
+		{
+			assertNotNull(e);
+		}
+
+		alpha.createPublicEvent("Work", "Meeting", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		alpha.createPrivateEvent("Work", "Secret", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		alpha.editEventName("Work", "Meeting", this.stringParseToDate("19.09.2011"), "Lecture");
+		alpha.editEventName("Work", "Secret", this.stringParseToDate("19.09.2011"), "Still secret");
+		alpha.editEventStateToPrivate("Work", "Lecture", this.stringParseToDate("19.09.2011"));
+		alpha.editEventStateToPublic("Work", "Still secret", this.stringParseToDate("19.09.2011"));
+		alpha.deleteEvent("Work", "Still secret", this.stringParseToDate("19.09.2011"));
+		EventBatch batch = new EventBatch();
+		batch.addPublicEvent("Party", this.stringParseToDate("24.09.2011"), this.stringParseToDate("25.09.2011"));
+		batch.addPrivateEvent("Nap", this.stringParseToDate("24.09.2011"), this.stringParseToDate("24.09.2011"));
+		alpha.createEvents("Home", batch);
+		app.loginUser("Beta", "456").createNewCalendar("Work");
+		app.loginUser("Beta", "456").createPublicEvent("Work", "Other user", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		alpha.deleteCalendar("Home");
+
+		List<String> expected = new ArrayList<String>();
+		expected.add("CREATED Work - Meeting");
+		expected.add("EDITED Work Meeting Lecture");
+		expected.add("MADE_PRIVATE Work Lecture -");
+		expected.add("MADE_PUBLIC Work - Still secret");
+		expected.add("DELETED Work Still secret -");
+		assertEquals(expected, work.take(expected.size()));
+
+		expected.add("CREATED Home - Party");
+		expected.add("DELETED Home Party -");
+		assertEquals(expected, all.take(expected.size()));
+
+		Thread.sleep(100);
+		assertTrue(work.received.isEmpty());
+		assertTrue(all.received.isEmpty());
+		return app;
+	}
+
+	@Test
+	public App slowListenerShouldGetBoundedBufferAndDroppedCount() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Work");
+
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Recorder slow = new Recorder()
+		{
+			@Override
+			public void onChanges(List<IPublicEventChange> changes)
+			{
+				super.onChanges(changes);
+				entered.countDown();
+				try
+				{
+					release.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		Recorder other = new Recorder();
+		app.subscribeToPublicEvents("Alpha", "Work", slow, 2);
+		ISubscription otherSubscription = app.subscribeToPublicEvents("Alpha", "Work", other, 100);
+
+		alpha.createPublicEvent("Work", "Event 0", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+		for (int i = 1; i <= 4; i++)
+		{
+			alpha.createPublicEvent("Work", "Event " + i, this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		}
+		// the slow listener does not hold up the others
+		assertEquals(5, other.take(5).size());
+		release.countDown();
+
+		List<String> expected = new ArrayList<String>();
+		expected.add("CREATED Work - Event 0");
+		expected.add("CREATED Work - Event 1");
+		expected.add("CREATED Work - Event 2");
+		expected.add("dropped 2");
+		assertEquals(expected, slow.take(4));
+
+		otherSubscription.cancel();
+		assertTrue(otherSubscription.isCancelled());
+		alpha.createPublicEvent("Work", "Event 5", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		assertEquals("CREATED Work - Event 5", slow.take(1).get(0));
+		Thread.sleep(100);
+		assertTrue(other.received.isEmpty());
+		return app;
+	}
+
+	@Test
+	public void subscriptionsShouldEndWithTheDeletedUser() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Work");
+		alpha.createPublicEvent("Work", "Meeting", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+
+		Recorder old = new Recorder();
+		ISubscription oldSubscription = app.subscribeToPublicEvents("Alpha", null, old, 100);
+		app.deleteUser("Alpha", "123");
+		// the deletion of the events is still delivered
+		assertEquals("DELETED Work Meeting -", old.take(1).get(0));
+
+		// a new user with the same name does not deliver to the subscribers of the deleted one
+		app.createUser("Alpha", "456");
+		IUser newAlpha = app.loginUser("Alpha", "456");
+		newAlpha.createNewCalendar("Work");
+		Recorder current = new Recorder();
+		app.subscribeToPublicEvents("Alpha", "Work", current, 100);
+		newAlpha.createPublicEvent("Work", "Lecture", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		assertEquals("CREATED Work - Lecture", current.take(1).get(0));
+		Thread.sleep(100);
+		assertTrue(old.received.isEmpty());
+		assertTrue(oldSubscription.isCancelled());
+	}
+}
@@ -0,0 +1,233 @@
+/**
+ * Calendar framework
+ */
+package tests;
+
+import interfaces.ICalendar;
+import interfaces.IEvent;
+import interfaces.IEventVisitor;
+import interfaces.IUser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+
+import app.App;
+import app.EventBatch;
+import ch.unibe.jexample.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+@RunWith(JExample.class)
+public class EventVisitorTest extends TestTemplate
+{
+	private static final long HOUR = 60L * 60L * 1000L;
+
+	/** Describes the visited events like {@link EventVisitorTest#describe(ArrayList)}, and stops after {@code limit} events. */
+	private static class Describer implements IEventVisitor
+	{
+		private final StringBuilder description = new StringBuilder();
+		private int limit;
+
+		private Describer(int limit)
+		{
+			this.limit = limit;
+		}
+
+		@Override
+		public boolean visit(String eventName, long startTime, long endTime, boolean isPrivate)
+		{
+			this.description.append(eventName).append(' ').append(startTime).append('-').append(endTime).append(' ').append(isPrivate).append('\n');
+			return --this.limit > 0;
+		}
+
+		@Override
+		public String toString()
+		{
+			return this.description.toString();
+		}
+	}
+
+	/** Only counts the visited events. */
+	private static class Counter implements IEventVisitor
+	{
+		private long count;
+
+		@Override
+		public boolean visit(String eventName, long startTime, long endTime, boolean isPrivate)
+		{
+			this.count++;
+			return true;
+		}
+	}
+
+	@Test
+	public App visitorsShouldPassTheSameEventsAsTheLists() throws Exception
+	{
+		App app = this.createApp();
+		IUser alpha = app.loginUser("Alpha", "123");
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			String calendarName = "Rooms " + storage;
+			ICalendar calendar = alpha.getCalendar(calendarName);
+			for (int day = 0; day < 12; day++)
+			{
+				Date date = this.day(day);
+				Date nextWeek = this.day(day + 7);
+				Describer describer = new Describer(Integer.MAX_VALUE);
+				assertTrue(alpha.visitMyCalendarAllEventsAtDate(calendarName, date, describer));
+				assertEquals(this.describe(alpha.getMyCalendarAllEventsAtDate(calendarName, date)), describer.toString());
+				describer = new Describer(Integer.MAX_VALUE);
+				assertTrue(alpha.visitMyCalendarAllEventsDuring(calendarName, date, nextWeek, describer));
+				assertEquals(this.describe(alpha.getMyCalendarAllEventsDuring(calendarName, date, nextWeek)), describer.toString());
+				describer = new Describer(Integer.MAX_VALUE);
+				assertTrue(alpha.visitMyCalendarAllEventsStartingBetween(calendarName, date, nextWeek, describer));
+				assertEquals(this.describe(alpha.getMyCalendarAllEventsStartingBetween(calendarName, date, nextWeek, ICalendar.NO_LIMIT)), describer.toString());
+
+				describer = new Describer(Integer.MAX_VALUE);
+				assertTrue(calendar.visitPublicEventsAtDate(date, describer));
+				assertEquals(this.describe(calendar.getAllPublicEventsAtDate(date)), describer.toString());
+				describer = new Describer(Integer.MAX_VALUE);
+				assertTrue(calendar.visitPublicEventsDuring(date, nextWeek, describer));
+				assertEquals(this.describe(calendar.getAllPublicEventsDuring(date, nextWeek)), describer.toString());
+				describer = new Describer(Integer.MAX_VALUE);
+				assertTrue(calendar.visitPublicEventsStartingBetween(date, nextWeek, describer));
+				assertEquals(this.describe(calendar.getAllPublicEventsStartingBetween(date, nextWeek, ICalendar.NO_LIMIT)), describer.toString());
+
+				describer = new Describer(3);
+				assertFalse(calendar.visitPublicEventsStartingBetween(date, nextWeek, describer));
+				assertEquals(this.describe(calendar.getAllPublicEventsStartingBetween(date, nextWeek, 3)), describer.toString());
+			}
+		}
+		return app;
+	}
+
+	@Test
+	public void visitorsShouldNotAllocate() throws Exception
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported())
+		{
+			// the virtual machine cannot tell
+			return;
+		}
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		allocations.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+
+		App app = this.createApp();
+		IUser alpha = app.loginUser("Alpha", "123");
+		Date[] dates = new Date[12];
+		for (int day = 0; day < dates.length; day++)
+		{
+			dates[day] = this.day(day);
+		}
+		Counter counter = new Counter();
+		int queries = 10000;
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			String calendarName = "Rooms " + storage;
+			ICalendar calendar = alpha.getCalendar(calendarName);
+			for (int round = 0; round < 3; round++)
+			{
+				long overhead = -allocations.getThreadAllocatedBytes(thread);
+				overhead += allocations.getThreadAllocatedBytes(thread);
+				long allocated = -allocations.getThreadAllocatedBytes(thread);
+				for (int i = 0; i < queries; i++)
+				{
+					Date date = dates[i % 5];
+					Date nextWeek = dates[i % 5 + 7];
+					alpha.visitMyCalendarAllEventsAtDate(calendarName, date, counter);
+					alpha.visitMyCalendarAllEventsDuring(calendarName, date, nextWeek, counter);
+					calendar.visitPublicEventsStartingBetween(date, nextWeek, counter);
+				}
+				allocated += allocations.getThreadAllocatedBytes(thread) - overhead;
+				// the first rounds warm up the compiler
+				if (round == 2)
+				{
+					assertTrue(storage + ": " + allocated + " bytes allocated by " + queries * 3 + " queries", allocated < queries);
+				}
+			}
+		}
+		assertTrue(counter.count > queries);
+	}
+
+	/** Creates the user {@code Alpha} with a calendar {@code Rooms <storage>} for each {@link ICalendar.Storage}.
+	 * Most events are created in a batch, so that they are kept in columns, then some are deleted and some created one by one.
+	 */
+	private App createApp() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		for (ICalendar.Storage storage : ICalendar.Storage.values())
+		{
+			String calendarName = "Rooms " + storage;
+			alpha.createNewCalendar(calendarName, storage);
+			Random random = new Random(42);
+			EventBatch batch = new EventBatch();
+			for (int i = 0; i < 400; i++)
+			{
+				Date startDate = new Date(this.day(0).getTime() + random.nextInt(20 * 24) * HOUR);
+				Date endDate = new Date(startDate.getTime() + random.nextInt(72) * HOUR);
+				if (random.nextBoolean())
+				{
+					batch.addPublicEvent("Room " + i, startDate, endDate);
+				}
+				else
+				{
+					batch.addPrivateEvent("Room " + i, startDate, endDate);
+				}
+			}
+			alpha.createEvents(calendarName, batch);
+
+			Iterator<IEvent> iteratorEvents = alpha.getMyCalendarAllEventsStartingFrom(calendarName, this.day(3));
+			for (int i = 0; i < 10; i++)
+			{
+				IEvent event = iteratorEvents.next();
+				alpha.deleteEvent(calendarName, event.getEventName(), event.getStartDate());
+			}
+			for (int i = 0; i < 20; i++)
+			{
+				Date startDate = new Date(this.day(0).getTime() + random.nextInt(20 * 24) * HOUR);
+				Date endDate = new Date(startDate.getTime() + random.nextInt(72) * HOUR);
+				if (i % 2 == 0)
+				{
+					alpha.createPublicEvent(calendarName, "Booking " + i, startDate, endDate);
+				}
+				else
+				{
+					alpha.createPrivateEvent(calendarName, "Booking " + i, startDate, endDate);
+				}
+			}
+		}
+		return app;
+	}
+
+	private Date day(int day) throws Exception
+	{
+		return new Date(this.stringParseToDate("19.09.2011").getTime() + day * 24 * HOUR);
+	}
+
+	private String describe(ArrayList<IEvent> events)
+	{
+		StringBuilder description = new StringBuilder();
+		for (IEvent event : events)
+		{
+			description.append(event.getEventName()).append(' ').append(event.getStartDate().getTime()).append('-')
+					.append(event.getEndDate().getTime()).append(' ').append(event.isPrivate()).append('\n');
+		}
+		return description.toString();
+	}
+}
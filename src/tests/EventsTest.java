@@ -7,6 +7,8 @@ import interfaces.*;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
 import org.junit.*;
 import ch.unibe.jexample.*;
 import static org.junit.Assert.*;
@@ -121,6 +123,62 @@ public class EventsTest extends TestTemplate
 		return app;
 	}
 
+	@Given("eventTest")
+	public App editedStartDateShouldKeepEventsSorted(App app) throws AccessDeniedException, InvalidDateException, UnknownCalendarException, UnknownEventException, ParseException, CalendarIsNotUniqueException
+	{
+		this.userAlpha.createNewCalendar("MyCalendar");
+		this.userAlpha.createPrivateEvent("MyCalendar", "Early", this.stringParseToDate("01.07.2011"), this.stringParseToDate("01.12.2011"));
+		this.userAlpha.createPublicEvent("MyCalendar", "Late", this.stringParseToDate("01.09.2011"), this.stringParseToDate("01.12.2011"));
+
+		this.userAlpha.editEventStartDate("MyCalendar", "Early", this.stringParseToDate("01.07.2011"), this.stringParseToDate("01.10.2011"));
+
+		Iterator<IEvent> sortedEvents = this.userAlpha.getMyCalendarAllEventsStartingFrom("MyCalendar", this.stringParseToDate("01.01.2011"));
+		assertEquals("Late", sortedEvents.next().getEventName());
+		assertEquals("Early", sortedEvents.next().getEventName());
+		assertFalse(sortedEvents.hasNext());
+
+		return app;
+	}
+
+	@Given("eventTest")
+	public App eventMadePublicShouldBeListedAsPublic(App app) throws AccessDeniedException, InvalidDateException, UnknownCalendarException, UnknownEventException, ParseException, CalendarIsNotUniqueException
+	{
+		this.userAlpha.createNewCalendar("MyCalendar");
+		this.userAlpha.createPrivateEvent("MyCalendar", "Open house", this.stringParseToDate("01.07.2011"), this.stringParseToDate("01.08.2011"));
+		assertFalse(this.userAlpha.getMyCalendarPublicEventsStartingFrom("MyCalendar", this.stringParseToDate("01.01.2011")).hasNext());
+
+		this.userAlpha.editEventStateToPublic("MyCalendar", "Open house", this.stringParseToDate("01.07.2011"));
+
+		Iterator<IEvent> publicEvents = this.userAlpha.getMyCalendarPublicEventsStartingFrom("MyCalendar", this.stringParseToDate("01.01.2011"));
+		assertEquals("Open house", publicEvents.next().getEventName());
+		assertFalse(publicEvents.hasNext());
+
+		return app;
+	}
+
+	@Given("eventTest")
+	public App changedDatesShouldNotChangeEvent(App app) throws AccessDeniedException, InvalidDateException, UnknownCalendarException, UnknownEventException, ParseException, CalendarIsNotUniqueException
+	{
+		this.userAlpha.createNewCalendar("MyCalendar");
+		Date startDate = this.stringParseToDate("01.07.2011");
+		Date endDate = this.stringParseToDate("01.08.2011");
+		this.userAlpha.createPrivateEvent("MyCalendar", "Summer", startDate, endDate);
+		this.userAlpha.createPrivateEvent("MyCalendar", "Autumn", this.stringParseToDate("01.09.2011"), this.stringParseToDate("01.10.2011"));
+
+		startDate.setTime(this.stringParseToDate("01.12.2011").getTime());
+		endDate.setTime(this.stringParseToDate("31.12.2011").getTime());
+		Event summerEvent = this.userAlpha.getCalendar("MyCalendar").getEvent("Summer", this.stringParseToDate("01.07.2011"));
+		summerEvent.getStartDate().setTime(0);
+
+		assertEquals(this.stringParseToDate("01.07.2011"), summerEvent.getStartDate());
+		assertEquals(this.stringParseToDate("01.08.2011"), summerEvent.getEndDate());
+		Iterator<IEvent> sortedEvents = this.userAlpha.getMyCalendarAllEventsStartingFrom("MyCalendar", this.stringParseToDate("01.01.2011"));
+		assertEquals("Summer", sortedEvents.next().getEventName());
+		assertEquals("Autumn", sortedEvents.next().getEventName());
+
+		return app;
+	}
+
 	@Given("eventTest")
 	public App userShouldDeleteEvent(App app) throws AccessDeniedException, InvalidDateException, UnknownCalendarException, UnknownEventException, ParseException, CalendarIsNotUniqueException
 	{
@@ -133,4 +191,34 @@ public class EventsTest extends TestTemplate
 
 		return app;
 	}
+
+	@Given("eventTest")
+	public App eventWithSameNameAndStartDateShouldRemainAfterDelete(App app) throws AccessDeniedException, InvalidDateException, UnknownCalendarException, UnknownEventException, ParseException, CalendarIsNotUniqueException
+	{
+		this.userAlpha.createNewCalendar("MyCalendar");
+		this.userAlpha.createPrivateEvent("MyCalendar", "Meeting", this.stringParseToDate("01.07.2011"), this.stringParseToDate("01.08.2011"));
+		this.userAlpha.createPublicEvent("MyCalendar", "Meeting", this.stringParseToDate("01.07.2011"), this.stringParseToDate("02.08.2011"));
+
+		Calendar myCalendar = this.userAlpha.getCalendar("MyCalendar");
+		assertTrue(myCalendar.getEvent("Meeting", this.stringParseToDate("01.07.2011")).isPrivate());
+
+		this.userAlpha.deleteEvent("MyCalendar", "Meeting", this.stringParseToDate("01.07.2011"));
+
+		Event remainingEvent = myCalendar.getEvent("Meeting", this.stringParseToDate("01.07.2011"));
+		assertTrue(remainingEvent.isPublic());
+		assertEquals(this.stringParseToDate("02.08.2011"), remainingEvent.getEndDate());
+
+		this.userAlpha.deleteEvent("MyCalendar", "Meeting", this.stringParseToDate("01.07.2011"));
+		try
+		{
+			myCalendar.getEvent("Meeting", this.stringParseToDate("01.07.2011"));
+			fail("UnknownEventException expected!");
+		}
+		catch (UnknownEventException e)
+		{
+			assertNotNull(e);
+		}
+
+		return app;
+	}
 }
@@ -0,0 +1,165 @@
+/**
+ * Calendar framework
+ */
+package tests;
+
+import interfaces.IEvent;
+import interfaces.IUser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.TimeZone;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+
+import app.App;
+import app.IcsExporter;
+import app.IcsImporter;
+import ch.unibe.jexample.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+@RunWith(JExample.class)
+public class IcsTest extends TestTemplate
+{
+	@Test
+	public App exportedCalendarShouldBeImportedWithTheSameEvents() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		app.createUser("Beta", "456");
+		IUser alpha = app.loginUser("Alpha", "123");
+		IUser beta = app.loginUser("Beta", "456");
+		alpha.createNewCalendar("Work");
+		beta.createNewCalendar("Copy");
+
+		Date monday = this.stringParseToDate("19.09.2011");
+		Date tuesday = this.stringParseToDate("20.09.2011");
+		String longName = "A meeting with a name which is much longer than a single line of an iCalendar file, with \u00FCmlauts and \u20AC signs";
+		alpha.createPublicEvent("Work", "Meeting", monday, tuesday);
+		alpha.createPrivateEvent("Work", "Lunch; with, Bob\\\nand Carol", tuesday, tuesday);
+		alpha.createPublicEvent("Work", longName, this.stringParseToDate("01.01.1960"), monday);
+
+		StringWriter ics = new StringWriter();
+		assertEquals(3, new IcsExporter(alpha, "Work").exportEvents(ics));
+		for (String line : ics.toString().split("\r\n"))
+		{
+			assertTrue(line.getBytes("UTF-8").length <= 75);
+		}
+		assertTrue(ics.toString().contains("CLASS:PRIVATE\r\n"));
+
+		assertEquals(3, new IcsImporter(beta, "Copy").importEvents(new StringReader(ics.toString())));
+		assertEquals(this.describe(alpha, "Work"), this.describe(beta, "Copy"));
+		assertEquals(2, beta.getMyCalendarPublicEventsAtDate("Copy", monday).size());
+		return app;
+	}
+
+	@Test
+	public void propertiesOfVEventsShouldBeMapped() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Imported");
+
+		String ics = "BEGIN:VCALENDAR\r\n"
+				+ "VERSION:2.0\r\n"
+				+ "BEGIN:VTIMEZONE\r\n"
+				+ "TZID:Europe/Zurich\r\n"
+				+ "BEGIN:STANDARD\r\n"
+				+ "DTSTART:19701025T030000\r\n"
+				+ "END:STANDARD\r\n"
+				+ "END:VTIMEZONE\r\n"
+				+ "BEGIN:VEVENT\r\n"
+				+ "SUMMARY:Lecture on\r\n"
+				+ "  e\r\n"
+				+ "\tlectronics\r\n"
+				+ "DTSTART;TZID=\"Europe/Zurich\":20110919T101500\r\n"
+				+ "DURATION:PT1H30M\r\n"
+				+ "CLASS:PUBLIC\r\n"
+				+ "BEGIN:VALARM\r\n"
+				+ "SUMMARY:Not the event\r\n"
+				+ "TRIGGER:-PT15M\r\n"
+				+ "END:VALARM\r\n"
+				+ "END:VEVENT\r\n"
+				+ "BEGIN:VEVENT\r\n"
+				+ "SUMMARY:Holiday\r\n"
+				+ "DTSTART;VALUE=DATE:20110920\r\n"
+				+ "END:VEVENT\r\n"
+				+ "BEGIN:VEVENT\r\n"
+				+ "summary:Secret\r\n"
+				+ "dtstart:20110921T080000Z\r\n"
+				+ "dtend:20110921T090000Z\r\n"
+				+ "class:CONFIDENTIAL\r\n"
+				+ "END:VEVENT\r\n"
+				+ "END:VCALENDAR\r\n";
+		assertEquals(3, new IcsImporter(alpha, "Imported").importEvents(new StringReader(ics)));
+
+		ArrayList<IEvent> events = this.events(alpha, "Imported");
+		assertEquals("Lecture on electronics", events.get(0).getEventName());
+		assertEquals(1316420100000L, events.get(0).getStartDate().getTime());
+		assertEquals(1316420100000L + 90 * 60000L, events.get(0).getEndDate().getTime());
+		assertTrue(events.get(0).isPublic());
+
+		long holiday = this.stringParseToDate("20.09.2011").getTime();
+		assertEquals("Holiday", events.get(1).getEventName());
+		assertEquals(holiday, events.get(1).getStartDate().getTime());
+		assertEquals(holiday + 24 * 60 * 60000L, events.get(1).getEndDate().getTime());
+		assertTrue(events.get(1).isPublic());
+
+		assertEquals("Secret", events.get(2).getEventName());
+		assertEquals(1316592000000L, events.get(2).getStartDate().getTime());
+		assertTrue(events.get(2).isPrivate());
+		assertEquals(TimeZone.getTimeZone("Europe/Zurich").getOffset(1316420100000L), 2 * 60 * 60000L);
+	}
+
+	@Test
+	public void eventWithoutStartShouldBeRejected() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Imported");
+		try
+		{
+			new IcsImporter(alpha, "Imported").importEvents(new StringReader("BEGIN:VCALENDAR\nBEGIN:VEVENT\nSUMMARY:Nowhen\nEND:VEVENT\nEND:VCALENDAR\n"));
+			fail("IOException expected!");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage().contains("line 2"));
+		}
+	}
+
+	private ArrayList<IEvent> events(IUser user, String calendarName) throws Exception
+	{
+		ArrayList<IEvent> events = new ArrayList<IEvent>();
+		Iterator<IEvent> iteratorEvents = user.getMyCalendarAllEventsStartingFrom(calendarName, new Date(Long.MIN_VALUE));
+		while (iteratorEvents.hasNext())
+		{
+			events.add(iteratorEvents.next());
+		}
+		return events;
+	}
+
+	private String describe(IUser user, String calendarName) throws Exception
+	{
+		StringBuilder description = new StringBuilder();
+		for (IEvent event : this.events(user, calendarName))
+		{
+			description.append(event.getEventName()).append(' ').append(event.getStartDate().getTime()).append('-')
+					.append(event.getEndDate().getTime()).append(' ').append(event.isPrivate()).append('\n');
+		}
+		return description.toString();
+	}
+}
@@ -0,0 +1,682 @@
+/**
+ * Calendar framework
+ */
+package tests;
+
+import interfaces.ICalendar;
+import interfaces.IEvent;
+import interfaces.IEventPage;
+import interfaces.IUser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+
+import app.App;
+import app.Calendar;
+import app.EventBatch;
+import app.AppExceptions.*;
+import app.Journal.SyncPolicy;
+import ch.unibe.jexample.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Lukas Keller
+ * @author Renato Corti
+ *
+ */
+
+@RunWith(JExample.class)
+public class JournalTest extends TestTemplate
+{
+	private File journalFile;
+
+	private File newJournalFile() throws IOException
+	{
+		File file = File.createTempFile("calendar", ".journal");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public App journaledAppShouldRestoreItsStateAfterRestart() throws Exception
+	{
+		this.journalFile = this.newJournalFile();
+		App app = new App(this.journalFile, SyncPolicy.ALWAYS);
+
+		app.createUser("Alpha", "123");
+		app.createUser("Beta", "456");
+		app.createUser("Gamma", "789");
+		app.changePassword("Alpha", "123", "abc");
+		app.deleteUser("Gamma", "789");
+
+		IUser alpha = app.loginUser("Alpha", "abc");
+		alpha.createNewCalendar("Work");
+		alpha.createNewCalendar("Rooms", ICalendar.Storage.COLUMNAR);
+		alpha.createNewCalendar("Old");
+		alpha.deleteCalendar("Old");
+
+		Date monday = this.stringParseToDate("19.09.2011");
+		Date tuesday = this.stringParseToDate("20.09.2011");
+		Date wednesday = this.stringParseToDate("21.09.2011");
+		alpha.createPublicEvent("Work", "Meeting", monday, tuesday);
+		alpha.createPrivateEvent("Work", "Dentist", monday, monday);
+		alpha.createPublicEvent("Work", "Meeting", monday, wednesday);
+		alpha.createPublicEvent("Work", "Lunch", tuesday, tuesday);
+		alpha.createPrivateEvent("Rooms", "Booking", tuesday, wednesday);
+		alpha.editEventName("Work", "Lunch", tuesday, "Dinner");
+		alpha.editEventEndDate("Work", "Dinner", tuesday, wednesday);
+		alpha.editEventEndDate("Work", "Dentist", monday, tuesday);
+		alpha.editEventStartDate("Work", "Dentist", monday, tuesday);
+		alpha.editEventStateToPublic("Work", "Dentist", tuesday);
+		alpha.editEventStateToPublic("Rooms", "Booking", tuesday);
+		alpha.createPublicEvent("Work", "Cancelled", wednesday, wednesday);
+		alpha.deleteEvent("Work", "Cancelled", wednesday);
+
+		IEventPage firstPage = app.getUsersCalendarPublicEventsPage("Alpha", "Work", monday, null, 2);
+		String before = this.describe(app);
+		app.close();
+
+		App restarted = new App(this.journalFile, SyncPolicy.ALWAYS);
+		assertEquals(before, this.describe(restarted));
+		assertEquals(Arrays.asList("Work", "Rooms"), restarted.getAllCalendarsNamesFromUser("Alpha"));
+		assertEquals(ICalendar.Storage.COLUMNAR, restarted.loginUser("Alpha", "abc").getCalendar("Rooms").getStorage());
+
+		// events keep their order among equal start dates, so cursors stay valid
+		IEventPage nextPage = restarted.getUsersCalendarPublicEventsPage("Alpha", "Work", monday, firstPage.getNextCursor(), 10);
+		assertEquals(2, nextPage.getEvents().size());
+		assertEquals("Dentist", nextPage.getEvents().get(0).getEventName());
+		assertEquals("Dinner", nextPage.getEvents().get(1).getEventName());
+
+		try
+		{
+			restarted.loginUser("Alpha", "123");
+			fail("AccessDeniedException expected!");
+		}
+		catch (AccessDeniedException e)
+		{
+			assertNotNull(e);
+		}
+		try
+		{
+			restarted.loginUser("Gamma", "789");
+			fail("UnknownUserException expected!");
+		}
+		catch (UnknownUserException e)
+		{
+			assertNotNull(e);
+		}
+		return restarted;
+	}
+
+	@Given("journaledAppShouldRestoreItsStateAfterRestart")
+	public App restartedAppShouldJournalFurtherChanges(App app) throws Exception
+	{
+		IUser beta = app.loginUser("Beta", "456");
+		beta.createNewCalendar("Private");
+		beta.createPrivateEvent("Private", "Holidays", this.stringParseToDate("01.10.2011"), this.stringParseToDate("14.10.2011"));
+		String before = this.describe(app);
+		app.close();
+
+		App restarted = new App(this.journalFile, SyncPolicy.NEVER);
+		assertEquals(before, this.describe(restarted));
+		assertEquals(1, restarted.loginUser("Beta", "456").getMyCalendarAllEventsAtDate("Private", this.stringParseToDate("05.10.2011")).size());
+		return restarted;
+	}
+
+	@Given("restartedAppShouldJournalFurtherChanges")
+	public App closedAppShouldRefuseChanges(App app) throws Exception
+	{
+		app.close();
+		try
+		{
+			app.createUser("Delta", "000");
+			fail("UncheckedIOException expected!");
+		}
+		catch (UncheckedIOException e)
+		{
+			assertNotNull(e);
+		}
+		return app;
+	}
+
+	@Test
+	public void recordCutOffByCrashShouldBeDropped() throws Exception
+	{
+		File file = this.newJournalFile();
+		App app = new App(file, SyncPolicy.PERIODIC);
+		app.createUser("Alpha", "123");
+		app.loginUser("Alpha", "123").createNewCalendar("Work");
+		app.close();
+		long lengthWithCalendar = file.length();
+
+		app = new App(file, SyncPolicy.PERIODIC);
+		app.loginUser("Alpha", "123").createPublicEvent("Work", "Meeting", this.stringParseToDate("19.09.2011"), this.stringParseToDate("20.09.2011"));
+		app.close();
+
+		// the crash cuts the last record in half
+		RandomAccessFile journal = new RandomAccessFile(file, "rw");
+		journal.setLength((lengthWithCalendar + journal.length()) / 2);
+		journal.close();
+
+		app = new App(file, SyncPolicy.ALWAYS);
+		assertEquals(lengthWithCalendar, file.length());
+		assertTrue(app.loginUser("Alpha", "123").getMyCalendarAllEventsAtDate("Work", this.stringParseToDate("19.09.2011")).isEmpty());
+
+		app.loginUser("Alpha", "123").createPrivateEvent("Work", "Dentist", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		app.close();
+		app = new App(file, SyncPolicy.ALWAYS);
+		assertEquals(1, app.loginUser("Alpha", "123").getMyCalendarAllEventsAtDate("Work", this.stringParseToDate("19.09.2011")).size());
+		app.close();
+	}
+
+	@Test
+	public void concurrentChangesShouldAllBeRestored() throws Exception
+	{
+		File file = this.newJournalFile();
+		final App app = new App(file, SyncPolicy.ALWAYS);
+		final Date start = this.stringParseToDate("19.09.2011");
+		Thread[] writers = new Thread[8];
+		final Exception[] failure = new Exception[1];
+		for (int i = 0; i < writers.length; i++)
+		{
+			final String username = "User " + i;
+			app.createUser(username, "pw");
+			writers[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						IUser user = app.loginUser(username, "pw");
+						user.createNewCalendar("Work");
+						for (int n = 0; n < 50; n++)
+						{
+							user.createPublicEvent("Work", "Event " + n, new Date(start.getTime() + n * 60000L), new Date(start.getTime() + n * 60000L));
+						}
+						for (int n = 0; n < 50; n += 2)
+						{
+							user.deleteEvent("Work", "Event " + n, new Date(start.getTime() + n * 60000L));
+						}
+					}
+					catch (Exception e)
+					{
+						failure[0] = e;
+					}
+				}
+			};
+			writers[i].start();
+		}
+		for (Thread writer : writers)
+		{
+			writer.join();
+		}
+		assertNull(failure[0]);
+		String before = this.describe(app);
+		app.close();
+
+		App restarted = new App(file, SyncPolicy.ALWAYS);
+		assertEquals(before, this.describe(restarted));
+		assertEquals(25, restarted.getUsersCalendarPublicEventsStartingBetween("User 3", "Work", start, new Date(start.getTime() + 60 * 60000L), ICalendar.NO_LIMIT).size());
+		restarted.close();
+	}
+
+	@Test
+	public void batchOfEventsShouldBeRestoredAfterRestart() throws Exception
+	{
+		File file = this.newJournalFile();
+		App app = new App(file, SyncPolicy.ALWAYS);
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Work");
+		alpha.createNewCalendar("Rooms", ICalendar.Storage.COLUMNAR);
+		Date monday = this.stringParseToDate("19.09.2011");
+		for (String calendarName : new String[] { "Work", "Rooms" })
+		{
+			EventBatch batch = new EventBatch();
+			for (int i = 0; i < 200; i++)
+			{
+				batch.addPublicEvent("Event " + i, new Date(monday.getTime() + (i % 10) * 60000L), new Date(monday.getTime() + (i % 10) * 60000L));
+			}
+			alpha.createEvents(calendarName, batch);
+		}
+		alpha.createPublicEvent("Work", "After the batch", monday, monday);
+		String before = this.describe(app);
+		app.close();
+
+		App restarted = new App(file, SyncPolicy.ALWAYS);
+		assertEquals(before, this.describe(restarted));
+		assertEquals(201, restarted.getUsersCalendarPublicEventsStartingBetween("Alpha", "Work", monday, new Date(monday.getTime() + 60 * 60000L), ICalendar.NO_LIMIT).size());
+		restarted.close();
+	}
+
+	@Test
+	public void changesThroughADeletedCalendarShouldBeRefused() throws Exception
+	{
+		File file = this.newJournalFile();
+		App app = new App(file, SyncPolicy.ALWAYS);
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Work");
+		Date monday = this.stringParseToDate("19.09.2011");
+		alpha.createPublicEvent("Work", "Meeting", monday, monday);
+		Calendar stale = alpha.getCalendar("Work");
+		alpha.deleteCalendar("Work");
+		alpha.createNewCalendar("Work");
+
+		// none of the changes may reach the journal after the deletion of the calendar
+		try
+		{
+			stale.createPublicEvent("Lunch", monday, monday);
+			fail("UnknownCalendarException expected!");
+		}
+		catch (UnknownCalendarException e)
+		{
+			assertNotNull(e);
+		}
+		try
+		{
+			stale.editEvent("Meeting", monday, "Lecture", null, null, null);
+			fail("UnknownCalendarException expected!");
+		}
+		catch (UnknownCalendarException e)
+		{
+			assertNotNull(e);
+		}
+		try
+		{
+			stale.deleteEvent("Meeting", monday);
+			fail("UnknownCalendarException expected!");
+		}
+		catch (UnknownCalendarException e)
+		{
+			assertNotNull(e);
+		}
+		EventBatch batch = new EventBatch();
+		batch.addPublicEvent("Party", monday, monday);
+		try
+		{
+			stale.createEvents(batch);
+			fail("UnknownCalendarException expected!");
+		}
+		catch (UnknownCalendarException e)
+		{
+			assertNotNull(e);
+		}
+		String before = this.describe(app);
+		app.close();
+
+		App restarted = new App(file, SyncPolicy.ALWAYS);
+		assertEquals(before, this.describe(restarted));
+		assertTrue(restarted.loginUser("Alpha", "123").getMyCalendarAllEventsAtDate("Work", monday).isEmpty());
+		restarted.close();
+	}
+
+	@Test
+	public void passwordHashesShouldKeepTheirIterations() throws Exception
+	{
+		File file = this.newJournalFile();
+		App app = new App(file, SyncPolicy.ALWAYS);
+		app.createUser("Alpha", "123");
+		App.setPasswordHashIterations(App.DEFAULT_PASSWORD_HASH_ITERATIONS);
+		try
+		{
+			app.createUser("Beta", "456");
+		}
+		finally
+		{
+			App.setPasswordHashIterations(1000);
+		}
+		app.close();
+
+		String journal = new String(Files.readAllBytes(file.toPath()), "ISO-8859-1");
+		assertTrue(journal.contains("1000:"));
+		assertTrue(journal.contains(App.DEFAULT_PASSWORD_HASH_ITERATIONS + ":"));
+
+		// each hash is checked with the iterations it was created with
+		App restarted = new App(file, SyncPolicy.ALWAYS);
+		restarted.loginUser("Alpha", "123");
+		restarted.loginUser("Beta", "456");
+		try
+		{
+			restarted.loginUser("Beta", "123");
+			fail("AccessDeniedException expected!");
+		}
+		catch (AccessDeniedException e)
+		{
+			assertNotNull(e);
+		}
+		restarted.close();
+	}
+
+	@Test
+	public void journalShouldOnlyHoldPasswordHashes() throws Exception
+	{
+		File file = this.newJournalFile();
+		App app = new App(file, SyncPolicy.ALWAYS);
+		app.createUser("Alpha", "first secret");
+		app.createUser("Beta", "second secret");
+		app.changePassword("Alpha", "first secret", "third secret");
+		app.deleteUser("Beta", "second secret");
+		app.close();
+
+		String journal = new String(Files.readAllBytes(file.toPath()), "ISO-8859-1");
+		assertFalse(journal.contains("secret"));
+
+		App restarted = new App(file, SyncPolicy.ALWAYS);
+		restarted.loginUser("Alpha", "third secret");
+		try
+		{
+			restarted.loginUser("Alpha", "first secret");
+			fail("AccessDeniedException expected!");
+		}
+		catch (AccessDeniedException e)
+		{
+			assertNotNull(e);
+		}
+		try
+		{
+			restarted.loginUser("Beta", "second secret");
+			fail("UnknownUserException expected!");
+		}
+		catch (UnknownUserException e)
+		{
+			assertNotNull(e);
+		}
+		// the password is checked against the restored hash
+		restarted.changePassword("Alpha", "third secret", "fourth secret");
+		restarted.close();
+		restarted = new App(file, SyncPolicy.ALWAYS);
+		restarted.loginUser("Alpha", "fourth secret");
+		restarted.close();
+	}
+
+	@Test
+	public void checkpointShouldRestoreTheSameStateFromSnapshotAndJournal() throws Exception
+	{
+		File file = this.newJournalFile();
+		File snapshot = new File(file.getPath() + ".snapshot");
+		snapshot.deleteOnExit();
+		App app = new App(file, SyncPolicy.ALWAYS);
+		app.createUser("Alpha", "123");
+		app.createUser("Beta", "456");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Work");
+		alpha.createNewCalendar("Rooms", ICalendar.Storage.COLUMNAR);
+		alpha.createNewCalendar("Archive", ICalendar.Storage.OFF_HEAP);
+		Date monday = this.stringParseToDate("19.09.2011");
+		Date tuesday = this.stringParseToDate("20.09.2011");
+		alpha.createPublicEvent("Work", "Meeting", monday, tuesday);
+		alpha.createPrivateEvent("Work", "Dentist", monday, monday);
+		alpha.createPublicEvent("Work", "Meeting", monday, tuesday);
+		alpha.createPublicEvent("Rooms", "Booking", tuesday, tuesday);
+		alpha.createPublicEvent("Archive", "\u00C4pfel & Birnen", this.stringParseToDate("01.01.1960"), monday);
+		IEventPage firstPage = app.getUsersCalendarPublicEventsPage("Alpha", "Work", monday, null, 1);
+
+		app.checkpoint();
+		assertTrue(snapshot.exists());
+		long emptyJournal = file.length();
+
+		// changes after the checkpoint only go to the journal
+		app.loginUser("Beta", "456").createNewCalendar("Work");
+		app.loginUser("Beta", "456").createPublicEvent("Work", "Lunch", tuesday, tuesday);
+		alpha.deleteEvent("Work", "Dentist", monday);
+		assertTrue(file.length() > emptyJournal);
+		String before = this.describe(app);
+		app.close();
+
+		App restarted = new App(file, SyncPolicy.ALWAYS);
+		assertEquals(before, this.describe(restarted));
+		IUser restartedAlpha = restarted.loginUser("Alpha", "123");
+		assertEquals(Arrays.asList("Work", "Rooms", "Archive"), restartedAlpha.getAllMyCalendarNames());
+		assertEquals(ICalendar.Storage.OFF_HEAP, restartedAlpha.getCalendar("Archive").getStorage());
+		assertEquals("\u00C4pfel & Birnen", restartedAlpha.getMyCalendarAllEventsAtDate("Archive", this.stringParseToDate("01.01.1970")).get(0).getEventName());
+
+		// the public timeline is rebuilt from the snapshot and the journal
+		assertEquals(5, restarted.getAllUsersPublicEventsStartingFrom(new Date(Long.MIN_VALUE), ICalendar.NO_LIMIT).size());
+		assertEquals("Lunch", restarted.getAllUsersPublicEventsStartingFrom(tuesday, 2).get(1).getEventName());
+
+		// the order of events with equal start dates survives the snapshot, so cursors stay valid
+		IEventPage nextPage = restarted.getUsersCalendarPublicEventsPage("Alpha", "Work", monday, firstPage.getNextCursor(), 10);
+		assertEquals(1, nextPage.getEvents().size());
+
+		// events created after loading the snapshot are ordered after the restored ones
+		restartedAlpha.createPublicEvent("Work", "Meeting", monday, tuesday);
+		assertEquals(3, restarted.getUsersCalendarPublicEventsPage("Alpha", "Work", monday, null, 10).getEvents().size());
+		restarted.close();
+	}
+
+	@Test
+	public void journalOfAGenerationInTheSnapshotShouldNotBeReplayed() throws Exception
+	{
+		File file = this.newJournalFile();
+		File snapshot = new File(file.getPath() + ".snapshot");
+		snapshot.deleteOnExit();
+		App app = new App(file, SyncPolicy.ALWAYS);
+		app.createUser("Alpha", "123");
+		app.close();
+		byte[] oldJournal = Files.readAllBytes(file.toPath());
+
+		app = new App(file, SyncPolicy.ALWAYS);
+		app.checkpoint();
+		app.close();
+
+		// as if the app had crashed after writing the snapshot, but before emptying the journal
+		Files.write(file.toPath(), oldJournal);
+		app = new App(file, SyncPolicy.ALWAYS);
+		app.loginUser("Alpha", "123");
+		app.createUser("Beta", "456");
+		app.close();
+
+		app = new App(file, SyncPolicy.ALWAYS);
+		app.loginUser("Beta", "456");
+		app.close();
+	}
+
+	@Test
+	public void snapshotShouldOnlyHoldPasswordHashes() throws Exception
+	{
+		File file = this.newJournalFile();
+		File snapshot = new File(file.getPath() + ".snapshot");
+		snapshot.deleteOnExit();
+		App app = new App(file, SyncPolicy.ALWAYS);
+		app.createUser("Alpha", "first secret");
+		app.createUser("Beta", "second secret");
+		app.changePassword("Alpha", "first secret", "third secret");
+		app.checkpoint();
+		app.close();
+
+		String image = new String(Files.readAllBytes(snapshot.toPath()), "ISO-8859-1");
+		assertTrue(image.contains("Alpha"));
+		assertFalse(image.contains("secret"));
+
+		App restarted = new App(file, SyncPolicy.ALWAYS);
+		restarted.loginUser("Alpha", "third secret");
+		restarted.loginUser("Beta", "second secret");
+		try
+		{
+			restarted.loginUser("Alpha", "first secret");
+			fail("AccessDeniedException expected!");
+		}
+		catch (AccessDeniedException e)
+		{
+			assertNotNull(e);
+		}
+		restarted.close();
+	}
+
+	@Test
+	public void snapshotOfAnUnknownVersionShouldBeRejected() throws Exception
+	{
+		File file = this.newJournalFile();
+		File snapshot = new File(file.getPath() + ".snapshot");
+		snapshot.deleteOnExit();
+		App app = new App(file, SyncPolicy.NEVER);
+		app.createUser("Alpha", "123");
+		app.checkpoint();
+		app.close();
+
+		RandomAccessFile snapshotFile = new RandomAccessFile(snapshot, "rw");
+		snapshotFile.seek(4);
+		snapshotFile.writeInt(99);
+		snapshotFile.close();
+		try
+		{
+			new App(file, SyncPolicy.NEVER);
+			fail("IOException expected!");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage().contains("99"));
+		}
+	}
+
+	@Test
+	public void checkpointShouldCaptureAConsistentStateWhileChangesGoOn() throws Exception
+	{
+		File file = this.newJournalFile();
+		File snapshot = new File(file.getPath() + ".snapshot");
+		snapshot.deleteOnExit();
+		final App app = new App(file, SyncPolicy.NEVER);
+		final Date start = this.stringParseToDate("19.09.2011");
+		Thread[] writers = new Thread[4];
+		final Exception[] failure = new Exception[1];
+		for (int i = 0; i < writers.length; i++)
+		{
+			final String username = "User " + i;
+			app.createUser(username, "pw");
+			app.loginUser(username, "pw").createNewCalendar("Work", i % 2 == 0 ? ICalendar.Storage.TREE : ICalendar.Storage.COLUMNAR);
+			writers[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						IUser user = app.loginUser(username, "pw");
+						for (int n = 0; n < 2000; n++)
+						{
+							user.createPublicEvent("Work", "Event " + n, new Date(start.getTime() + n * 60000L), new Date(start.getTime() + n * 60000L));
+							if (n % 3 == 0)
+							{
+								user.deleteEvent("Work", "Event " + n, new Date(start.getTime() + n * 60000L));
+							}
+						}
+					}
+					catch (Exception e)
+					{
+						failure[0] = e;
+					}
+				}
+			};
+			writers[i].start();
+		}
+		for (int c = 0; c < 5; c++)
+		{
+			app.checkpoint();
+			assertFalse(new File(file.getPath() + "." + (c + 1)).exists());
+		}
+		for (Thread writer : writers)
+		{
+			writer.join();
+		}
+		assertNull(failure[0]);
+		String before = this.describe(app);
+		app.close();
+
+		App restarted = new App(file, SyncPolicy.NEVER);
+		assertEquals(before, this.describe(restarted));
+		assertEquals(1333, restarted.getUsersCalendarPublicEventsStartingBetween("User 3", "Work", start, new Date(start.getTime() + 2000 * 60000L), ICalendar.NO_LIMIT).size());
+		restarted.close();
+	}
+
+	@Test
+	public void failedCheckpointShouldKeepTheJournal() throws Exception
+	{
+		File file = this.newJournalFile();
+		File snapshot = new File(file.getPath() + ".snapshot");
+		File segment = new File(file.getPath() + ".1");
+		segment.deleteOnExit();
+		snapshot.deleteOnExit();
+		App app = new App(file, SyncPolicy.ALWAYS);
+		app.createUser("Alpha", "123");
+
+		// a directory which is not empty cannot be replaced by the snapshot
+		File blocker = new File(snapshot, "blocker");
+		assertTrue(snapshot.mkdir() && blocker.createNewFile());
+		try
+		{
+			app.checkpoint();
+			fail("IOException expected!");
+		}
+		catch (IOException e)
+		{
+			assertNotNull(e);
+		}
+		assertTrue(segment.exists());
+		app.createUser("Beta", "456");
+		app.close();
+
+		assertTrue(blocker.delete() && snapshot.delete());
+		app = new App(file, SyncPolicy.ALWAYS);
+		app.loginUser("Alpha", "123");
+		app.loginUser("Beta", "456");
+		app.checkpoint();
+		assertFalse(segment.exists());
+		app.close();
+
+		app = new App(file, SyncPolicy.ALWAYS);
+		app.loginUser("Alpha", "123");
+		app.loginUser("Beta", "456");
+		app.close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void appWithoutJournalShouldRefuseCheckpoints() throws Exception
+	{
+		new App().checkpoint();
+	}
+
+	/** Describes all users, calendars and events known to be in the app by their values. */
+	private String describe(App app) throws ParseException
+	{
+		StringBuilder description = new StringBuilder();
+		for (String username : new String[] { "Alpha", "Beta", "Gamma", "User 0", "User 3", "User 7" })
+		{
+			try
+			{
+				for (String calendarName : app.getAllCalendarsNamesFromUser(username))
+				{
+					description.append(username).append('/').append(calendarName).append('\n');
+					Iterator<IEvent> events = app.getUsersCalendarPublicEvents(username, calendarName, this.stringParseToDate("01.01.2000"));
+					ArrayList<IEvent> all = new ArrayList<IEvent>();
+					while (events.hasNext())
+					{
+						all.add(events.next());
+					}
+					for (IEvent event : all)
+					{
+						description.append(event.getEventName()).append(' ').append(event.getStartDate().getTime()).append('-')
+								.append(event.getEndDate().getTime()).append('\n');
+					}
+				}
+			}
+			catch (Exception e)
+			{
+				description.append(username).append(": ").append(e.getClass().getSimpleName()).append('\n');
+			}
+		}
+		return description.toString();
+	}
+}
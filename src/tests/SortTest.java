@@ -55,7 +55,7 @@ public class SortTest extends TestTemplate
 		checkSortedEvents.add(e2);
 		checkSortedEvents.add(e3);
 
-		ArrayList<IEvent> sortedEvents = this.userAlpha.getMyCalendarAllEventsAtDate("MyCalendar", this.stringParseToDate("01.01.1990"));
+		ArrayList<IEvent> sortedEvents = this.userAlpha.getMyCalendarAllEventsDuring("MyCalendar", this.stringParseToDate("01.01.1990"), this.stringParseToDate("01.01.2020"));
 
 		assertEquals(sortedEvents.size(),checkSortedEvents.size());
 
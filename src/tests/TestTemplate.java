@@ -7,6 +7,8 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import app.App;
+
 /**
  * @author Lukas Keller
  * @author Renato Corti
@@ -15,6 +17,12 @@ import java.util.Date;
 
 public class TestTemplate
 {
+	static
+	{
+		// the tests create and log in many users; the hashes are checked the same with any number of iterations
+		App.setPasswordHashIterations(1000);
+	}
+
 	protected Date stringParseToDate(String strDate) throws ParseException
 	{
 		SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yyyy");
@@ -7,7 +7,10 @@ import interfaces.*;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.*;
 import org.junit.runner.RunWith;
@@ -16,6 +19,7 @@ import app.App;
 import app.AppExceptions;
 import app.AppExceptions.*;
 import app.Calendar;
+import app.EventBatch;
 import app.Event;
 import ch.unibe.jexample.*;
 import static org.junit.Assert.*;
@@ -171,6 +175,31 @@ public class UserSpecificTests extends TestTemplate
 		return app;
 	}
 
+	@Given("deleteCalendarFromUserAlpha")
+	public App calendarNamesShouldBeUnmodifiableSnapshot(App app) throws CalendarIsNotUniqueException, UnknownCalendarException
+	{
+		List<String> namesBefore = userAlpha.getAllMyCalendarNames();
+		try
+		{
+			namesBefore.add("Sneaked in calendar");
+			fail("UnsupportedOperationException expected!");
+		}
+		catch (UnsupportedOperationException e)
+		{
+			assertNotNull(e);
+		}
+
+		userAlpha.createNewCalendar("Short-living calendar");
+		assertEquals(1, namesBefore.size());
+		assertEquals("Short-living calendar", userAlpha.getAllMyCalendarNames().get(1));
+
+		userAlpha.deleteCalendar("My calendar");
+		assertEquals(1, userAlpha.getAllMyCalendarNames().size());
+		assertEquals("Short-living calendar", userAlpha.getAllMyCalendarNames().get(0));
+		assertEquals("Short-living calendar", userAlpha.getCalendar("Short-living calendar").getName());
+		return app;
+	}
+
 	@Given("calendarOwnerShouldBeUserAlpha")
 	public App eventShouldBePrivate (App app) throws UnknownCalendarException, AccessDeniedException, InvalidDateException, UnknownEventException, ParseException
 	{
@@ -209,6 +238,19 @@ public class UserSpecificTests extends TestTemplate
 		return app;
 	}
 
+	@Given("deleteUserAlpha")
+	public App deletedUsernameShouldBeReusable(App app) throws UsernameAlreadyExistException, UnknownUserException, AccessDeniedException
+	{
+		app.createUser("Gamma", "ggg");
+		app.createUser("Alpha", "789");
+
+		IUser newAlpha = app.loginUser("Alpha", "789");
+		assertNotSame(this.userAlpha, newAlpha);
+		assertTrue(newAlpha.hasNoCalendar());
+		assertEquals("Gamma", app.loginUser("Gamma", "ggg").getName());
+		return app;
+	}
+
 	@Given("eventShouldBePrivate")
 	public App userBetaShouldNotAccessForeignUserAcount(App app)
 	{
@@ -252,7 +294,9 @@ public class UserSpecificTests extends TestTemplate
 		}
 		assertEquals(1, i);
 
-		ArrayList<IEvent> arrayListPublicEvents = app.getUsersCalendarPublicEventsOverview("Alpha", "My calendar", this.stringParseToDate("22.01.2011"));
+		assertTrue(app.getUsersCalendarPublicEventsOverview("Alpha", "My calendar", this.stringParseToDate("22.01.2011")).isEmpty());
+
+		ArrayList<IEvent> arrayListPublicEvents = app.getUsersCalendarPublicEventsOverview("Alpha", "My calendar", this.stringParseToDate("23.01.2011"));
 		assertEquals("My public event", arrayListPublicEvents.get(0).getEventName());
 		assertEquals(this.stringParseToDate("23.01.2011"), arrayListPublicEvents.get(0).getStartDate());
 		assertEquals(this.stringParseToDate("23.08.2011"), arrayListPublicEvents.get(0).getEndDate());
@@ -305,4 +349,310 @@ public class UserSpecificTests extends TestTemplate
 		}
 		return app;
 	}
+
+	@Given("simpleTest1")
+	public App concurrentUserCreationShouldKeepNamesUnique(final App app) throws InterruptedException
+	{
+		final int threads = 8;
+		final AtomicInteger created = new AtomicInteger();
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++)
+		{
+			final int thread = t;
+			workers[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 100; i++)
+					{
+						try
+						{
+							// every name is tried by two threads
+							app.createUser("Concurrent" + (i * threads / 2 + thread / 2), "pw");
+							created.incrementAndGet();
+						}
+						catch (UsernameAlreadyExistException e)
+						{
+							assertNotNull(e);
+						}
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers)
+		{
+			worker.join();
+		}
+		assertEquals(100 * threads / 2, created.get());
+		return app;
+	}
+
+	@Test
+	public App agendaShouldMergeCalendarsInStartOrder() throws Exception
+	{
+		App app = new App();
+		app.createUser("Agenda", "pw");
+		IUser user = app.loginUser("Agenda", "pw");
+		user.createNewCalendar("Work");
+		user.createNewCalendar("Rooms", ICalendar.Storage.COLUMNAR);
+		user.createNewCalendar("Empty");
+
+		user.createPublicEvent("Work", "Meeting", this.stringParseToDate("20.09.2011"), this.stringParseToDate("20.09.2011"));
+		user.createPrivateEvent("Rooms", "Room 1", this.stringParseToDate("19.09.2011"), this.stringParseToDate("21.09.2011"));
+		user.createPublicEvent("Rooms", "Room 2", this.stringParseToDate("20.09.2011"), this.stringParseToDate("22.09.2011"));
+		user.createPrivateEvent("Work", "Review", this.stringParseToDate("22.09.2011"), this.stringParseToDate("22.09.2011"));
+		user.createPublicEvent("Work", "Old", this.stringParseToDate("01.01.2011"), this.stringParseToDate("01.01.2011"));
+
+		Iterator<IAgendaEvent> agenda = user.getMyAgendaStartingFrom(null, this.stringParseToDate("19.09.2011"));
+		user.createPublicEvent("Rooms", "Too late", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		assertEquals("Room 1 Rooms, Meeting Work, Room 2 Rooms, Review Work", this.describe(agenda));
+		assertFalse(agenda.hasNext());
+
+		List<String> rooms = new ArrayList<String>();
+		rooms.add("Rooms");
+		rooms.add("Rooms");
+		assertEquals("Room 1 Rooms, Too late Rooms, Room 2 Rooms", this.describe(user.getMyAgendaStartingFrom(rooms, this.stringParseToDate("01.01.2011"))));
+
+		ArrayList<IAgendaEvent> window = user.getMyAgendaStartingBetween(null, this.stringParseToDate("19.09.2011"), this.stringParseToDate("22.09.2011"), ICalendar.NO_LIMIT);
+		assertEquals("Room 1 Rooms, Too late Rooms, Meeting Work, Room 2 Rooms", this.describe(window.iterator()));
+		ArrayList<IAgendaEvent> limited = user.getMyAgendaStartingBetween(null, this.stringParseToDate("01.01.2011"), this.stringParseToDate("01.01.2012"), 2);
+		assertEquals("Old Work, Room 1 Rooms", this.describe(limited.iterator()));
+		assertTrue(limited.get(0).isPublic());
+		assertEquals(this.stringParseToDate("01.01.2011"), limited.get(0).getStartDate());
+
+		rooms.add("Unknown");
+		try
+		{
+			user.getMyAgendaStartingFrom(rooms, this.stringParseToDate("01.01.2011"));
+			fail("UnknownCalendarException expected!");
+		}
+		catch (UnknownCalendarException e)
+		{
+			assertNotNull(e);
+		}
+		return app;
+	}
+
+	@Given("agendaShouldMergeCalendarsInStartOrder")
+	public App agendaShouldNotSeeCalendarsDeletedMeanwhile(App app) throws Exception
+	{
+		final IUser user = app.loginUser("Agenda", "pw");
+		final Throwable[] failure = new Throwable[1];
+		final Date start = this.stringParseToDate("19.09.2011");
+		Thread writer = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					for (int i = 0; i < 2000; i++)
+					{
+						user.createNewCalendar("Temporary");
+						user.createPublicEvent("Temporary", "Short-lived", start, start);
+						user.deleteCalendar("Temporary");
+					}
+				}
+				catch (Throwable e)
+				{
+					failure[0] = e;
+				}
+			}
+		};
+		writer.start();
+		while (writer.isAlive())
+		{
+			// throws a NullPointerException if a calendar of the list is gone from the lookup
+			this.describe(user.getMyAgendaStartingFrom(null, start));
+		}
+		writer.join();
+		assertNull(failure[0]);
+		assertEquals("Room 1 Rooms, Too late Rooms, Meeting Work, Room 2 Rooms, Review Work", this.describe(user.getMyAgendaStartingFrom(null, start)));
+		return app;
+	}
+
+	@Test
+	public App publicTimelineShouldListPublicEventsOfAllUsers() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		app.createUser("Beta", "456");
+		IUser alpha = app.loginUser("Alpha", "123");
+		IUser beta = app.loginUser("Beta", "456");
+		alpha.createNewCalendar("Work");
+		alpha.createNewCalendar("Trash");
+		beta.createNewCalendar("Rooms", ICalendar.Storage.COLUMNAR);
+
+		alpha.createPublicEvent("Work", "Meeting", this.stringParseToDate("20.09.2011"), this.stringParseToDate("20.09.2011"));
+		alpha.createPrivateEvent("Work", "Review", this.stringParseToDate("21.09.2011"), this.stringParseToDate("21.09.2011"));
+		alpha.createPublicEvent("Trash", "Gone", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		EventBatch batch = new EventBatch();
+		batch.addPublicEvent("Room 2", this.stringParseToDate("22.09.2011"), this.stringParseToDate("22.09.2011"));
+		batch.addPrivateEvent("Room 3", this.stringParseToDate("18.09.2011"), this.stringParseToDate("18.09.2011"));
+		batch.addPublicEvent("Room 1", this.stringParseToDate("19.09.2011"), this.stringParseToDate("19.09.2011"));
+		beta.createEvents("Rooms", batch);
+		assertEquals("Gone Trash, Room 1 Rooms, Meeting Work, Room 2 Rooms", this.describe(app.getAllUsersPublicEventsStartingFrom(this.stringParseToDate("01.01.2011"), ICalendar.NO_LIMIT).iterator()));
+
+		alpha.deleteCalendar("Trash");
+		alpha.editEventStateToPublic("Work", "Review", this.stringParseToDate("21.09.2011"));
+		alpha.editEventStartDate("Work", "Meeting", this.stringParseToDate("20.09.2011"), this.stringParseToDate("17.09.2011"));
+		beta.editEventStateToPrivate("Rooms", "Room 2", this.stringParseToDate("22.09.2011"));
+		beta.editEventStateToPublic("Rooms", "Room 3", this.stringParseToDate("18.09.2011"));
+		beta.deleteEvent("Rooms", "Room 1", this.stringParseToDate("19.09.2011"));
+		assertEquals("Meeting Work, Room 3 Rooms, Review Work", this.describe(app.getAllUsersPublicEventsStartingFrom(this.stringParseToDate("01.01.2011"), ICalendar.NO_LIMIT).iterator()));
+
+		ArrayList<ITimelineEvent> next = app.getAllUsersPublicEventsStartingFrom(this.stringParseToDate("18.09.2011"), 1);
+		assertEquals(1, next.size());
+		assertEquals("Room 3", next.get(0).getEventName());
+		assertEquals("Beta", next.get(0).getUsername());
+		assertTrue(next.get(0).isPublic());
+
+		app.deleteUser("Beta", "456");
+		assertEquals("Meeting Work, Review Work", this.describe(app.getAllUsersPublicEventsStartingFrom(this.stringParseToDate("01.01.2011"), ICalendar.NO_LIMIT).iterator()));
+
+		// edits keeping the start date must replace the listed event as well
+		alpha.editEventName("Work", "Review", this.stringParseToDate("21.09.2011"), "Long review");
+		alpha.editEventEndDate("Work", "Long review", this.stringParseToDate("21.09.2011"), this.stringParseToDate("23.09.2011"));
+		ArrayList<ITimelineEvent> edited = app.getAllUsersPublicEventsStartingFrom(this.stringParseToDate("21.09.2011"), ICalendar.NO_LIMIT);
+		assertEquals(1, edited.size());
+		assertEquals("Long review", edited.get(0).getEventName());
+		assertEquals(this.stringParseToDate("23.09.2011"), edited.get(0).getEndDate());
+		return app;
+	}
+
+	@Test
+	public App publicTimelineShouldMergeCalendarsOfAllStorages() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Work");
+		alpha.createNewCalendar("Rooms", ICalendar.Storage.COLUMNAR);
+		alpha.createNewCalendar("Desks", ICalendar.Storage.OFF_HEAP);
+		Date monday = this.stringParseToDate("19.09.2011");
+		Date tuesday = this.stringParseToDate("20.09.2011");
+
+		alpha.createPublicEvent("Desks", "Desk 1", monday, monday);
+		alpha.createPublicEvent("Work", "Meeting", monday, monday);
+		alpha.createPublicEvent("Rooms", "Room 1", monday, monday);
+		alpha.createPrivateEvent("Rooms", "Room 2", monday, monday);
+		alpha.createPublicEvent("Work", "Lunch", tuesday, tuesday);
+		alpha.createPublicEvent("Desks", "Desk 2", tuesday, tuesday);
+		alpha.createPublicEvent("Rooms", "Room 3", tuesday, tuesday);
+		assertEquals("Desk 1 Desks, Meeting Work, Room 1 Rooms, Lunch Work, Desk 2 Desks, Room 3 Rooms", this.describe(app.getAllUsersPublicEventsStartingFrom(monday, ICalendar.NO_LIMIT).iterator()));
+		assertEquals("Desk 1 Desks, Meeting Work, Room 1 Rooms", this.describe(app.getAllUsersPublicEventsStartingFrom(monday, 3).iterator()));
+		assertEquals("Lunch Work, Desk 2 Desks, Room 3 Rooms", this.describe(app.getAllUsersPublicEventsStartingFrom(tuesday, ICalendar.NO_LIMIT).iterator()));
+
+		alpha.editEventStateToPrivate("Desks", "Desk 1", monday);
+		alpha.editEventStateToPublic("Rooms", "Room 2", monday);
+		alpha.deleteEvent("Desks", "Desk 2", tuesday);
+		assertEquals("Meeting Work, Room 1 Rooms, Room 2 Rooms, Lunch Work, Room 3 Rooms", this.describe(app.getAllUsersPublicEventsStartingFrom(monday, ICalendar.NO_LIMIT).iterator()));
+
+		alpha.deleteCalendar("Rooms");
+		assertEquals("Meeting Work, Lunch Work", this.describe(app.getAllUsersPublicEventsStartingFrom(monday, ICalendar.NO_LIMIT).iterator()));
+		return app;
+	}
+
+	@Test
+	public App conditionalReadsShouldOnlyAnswerChanges() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Work");
+		Date monday = this.stringParseToDate("19.09.2011");
+		alpha.createPublicEvent("Work", "Meeting", monday, monday);
+
+		IConditionalResult<ArrayList<IEvent>> first = app.getUsersCalendarPublicEventsOverviewIfModified("Alpha", "Work", monday, 0);
+		assertTrue(first.isModified());
+		assertEquals(1, first.getResult().size());
+		assertEquals(app.getUsersCalendarPublicVersion("Alpha", "Work"), first.getVersion());
+		IConditionalResult<ArrayList<IEvent>> unchanged = app.getUsersCalendarPublicEventsOverviewIfModified("Alpha", "Work", monday, first.getVersion());
+		assertFalse(unchanged.isModified());
+		assertNull(unchanged.getResult());
+		assertSame(unchanged, app.getUsersCalendarPublicEventsStartingBetweenIfModified("Alpha", "Work", monday, monday, 1, first.getVersion()));
+
+		long userVersion = alpha.getMyVersion();
+		long calendarVersion = alpha.getMyCalendarVersion("Work");
+		long publicUserVersion = app.getUsersPublicVersion("Alpha");
+		alpha.createPrivateEvent("Work", "Lunch", monday, monday);
+		alpha.editEventName("Work", "Lunch", monday, "Long lunch");
+		assertFalse(alpha.getMyVersion() == userVersion);
+		assertFalse(alpha.getMyCalendarVersion("Work") == calendarVersion);
+		assertEquals(publicUserVersion, app.getUsersPublicVersion("Alpha"));
+		assertFalse(app.getUsersCalendarPublicEventsOverviewIfModified("Alpha", "Work", monday, monday, first.getVersion()).isModified());
+
+		alpha.editEventStateToPublic("Work", "Long lunch", monday);
+		IConditionalResult<ArrayList<IEvent>> changed = app.getUsersCalendarPublicEventsOverviewIfModified("Alpha", "Work", monday, first.getVersion());
+		assertTrue(changed.isModified());
+		assertEquals(2, changed.getResult().size());
+		assertFalse(publicUserVersion == app.getUsersPublicVersion("Alpha"));
+
+		IConditionalResult<List<String>> names = app.getAllCalendarsNamesFromUserIfModified("Alpha", 0);
+		assertEquals(1, names.getResult().size());
+		assertFalse(app.getAllCalendarsNamesFromUserIfModified("Alpha", names.getVersion()).isModified());
+		alpha.createNewCalendar("Home");
+		names = app.getAllCalendarsNamesFromUserIfModified("Alpha", names.getVersion());
+		assertTrue(names.isModified());
+		assertEquals(2, names.getResult().size());
+		return app;
+	}
+
+	@Test
+	public App overviewCacheShouldOnlyDropChangedDays() throws Exception
+	{
+		App app = new App();
+		app.createUser("Alpha", "123");
+		IUser alpha = app.loginUser("Alpha", "123");
+		alpha.createNewCalendar("Work");
+		Date monday = this.stringParseToDate("19.09.2011");
+		Date tuesday = this.stringParseToDate("20.09.2011");
+		alpha.createPublicEvent("Work", "Meeting", monday, tuesday);
+		alpha.createPrivateEvent("Work", "Lunch", tuesday, tuesday);
+
+		assertEquals(1, app.getUsersCalendarPublicEventsOverview("Alpha", "Work", monday).size());
+		app.getUsersCalendarPublicEventsOverview("Alpha", "Work", monday).clear();
+		assertEquals(1, app.getUsersCalendarPublicEventsOverview("Alpha", "Work", monday).size());
+		assertEquals(1, app.getUsersCalendarPublicEventsOverview("Alpha", "Work", tuesday).size());
+		assertEquals(2, alpha.getMyCalendarAllEventsAtDate("Work", tuesday).size());
+		ICacheStatistics statistics = app.getOverviewCacheStatistics();
+		assertEquals(2, statistics.getHits());
+		assertEquals(3, statistics.getMisses());
+		assertEquals(3, statistics.getSize());
+
+		// a private event only drops the overview of all events of its day
+		alpha.createPrivateEvent("Work", "Dinner", tuesday, tuesday);
+		assertEquals(1, app.getUsersCalendarPublicEventsOverview("Alpha", "Work", tuesday).size());
+		assertEquals(3, alpha.getMyCalendarAllEventsAtDate("Work", tuesday).size());
+		statistics = app.getOverviewCacheStatistics();
+		assertEquals(3, statistics.getHits());
+		assertEquals(1, statistics.getInvalidations());
+
+		// a public event drops the overviews of all days it happens at
+		alpha.editEventName("Work", "Meeting", monday, "Long meeting");
+		assertEquals("Long meeting", app.getUsersCalendarPublicEventsOverview("Alpha", "Work", monday).get(0).getEventName());
+		assertEquals("Long meeting", app.getUsersCalendarPublicEventsOverview("Alpha", "Work", tuesday).get(0).getEventName());
+		assertEquals(4, app.getOverviewCacheStatistics().getInvalidations());
+		assertEquals(3, app.getOverviewCacheStatistics().getHits());
+
+		app.setOverviewCacheCapacity(1);
+		assertEquals(1, app.getOverviewCacheStatistics().getSize());
+		assertEquals(1, app.getOverviewCacheStatistics().getEvictions());
+		alpha.deleteCalendar("Work");
+		assertEquals(0, app.getOverviewCacheStatistics().getSize());
+		return app;
+	}
+
+	private String describe(Iterator<? extends IAgendaEvent> agenda)
+	{
+		StringBuilder description = new StringBuilder();
+		while (agenda.hasNext())
+		{
+			IAgendaEvent event = agenda.next();
+			description.append(description.length() == 0 ? "" : ", ").append(event.getEventName()).append(' ').append(event.getCalendarName());
+		}
+		return description.toString();
+	}
 }